@@ -43,7 +43,9 @@ import no.nordicsemi.android.ble.callback.FailCallback;
 import no.nordicsemi.android.ble.data.DataMerger;
 import no.nordicsemi.android.ble.error.GattError;
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
+import no.nordicsemi.android.mcumgr.McuManager;
 import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.McuMgrRequestObserver;
 import no.nordicsemi.android.mcumgr.McuMgrScheme;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.ble.callback.SmpMerger;
@@ -56,6 +58,9 @@ import no.nordicsemi.android.mcumgr.ble.exception.McuMgrInsufficientAuthenticati
 import no.nordicsemi.android.mcumgr.ble.exception.McuMgrNotSupportedException;
 import no.nordicsemi.android.mcumgr.ble.exception.McuMgrUnsupportedConfigurationException;
 import no.nordicsemi.android.mcumgr.ble.util.ResultCondition;
+import no.nordicsemi.android.mcumgr.capabilities.CapabilitiesProvider;
+import no.nordicsemi.android.mcumgr.capabilities.CapabilityCache;
+import no.nordicsemi.android.mcumgr.capabilities.DeviceCapabilities;
 import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -79,7 +84,7 @@ import no.nordicsemi.android.mcumgr.util.CBOR;
  * </ul>
  */
 @SuppressWarnings("unused")
-public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
+public class McuMgrBleTransport extends BleManager implements McuMgrTransport, CapabilitiesProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(McuMgrBleTransport.class);
 
@@ -167,6 +172,40 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
      */
     private final UuidConfig mUUIDConfig;
 
+    /**
+     * The time after connection when the cached capabilities are revalidated, in milliseconds.
+     */
+    private final static long CAPABILITY_REVALIDATION_DELAY = 2000;
+
+    /**
+     * The cache of device capabilities, or null, if disabled.
+     * Call {@link #setCapabilityCache(CapabilityCache)} to enable.
+     */
+    @Nullable
+    private CapabilityCache mCapabilityCache;
+
+    /**
+     * The observer updating and invalidating the cached capabilities.
+     */
+    @Nullable
+    private McuMgrRequestObserver mCapabilityObserver;
+
+    /**
+     * The cached buffer size used as the maximum packet length since connection, or 0 if
+     * the McuMgr Params were read from the device.
+     */
+    private volatile int mCachedBufferSize;
+
+    /**
+     * Reads the capabilities from the connected device and updates the cache.
+     */
+    private final Runnable mRevalidateCapabilities = () -> {
+        final CapabilityCache cache = mCapabilityCache;
+        if (cache != null && isReady() && mDeviceBootloader == null) {
+            cache.revalidate(mDevice.getAddress(), this, getMtu(), this::onCapabilitiesRevalidated);
+        }
+    };
+
     /**
      * Construct a McuMgrBleTransport object.
      * <p>
@@ -292,6 +331,69 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         setMaxPacketLength(maxLength);
     }
 
+    //*******************************************************************************************
+    // Capabilities
+    //*******************************************************************************************
+
+    /**
+     * Sets the cache of device capabilities.
+     * <p>
+     * When the device is found in the cache, McuMgr Params request is not sent on connection
+     * and the cached buffer size is used instead. Shortly after connection the capabilities are
+     * read again in the background. The entry is invalidated when the device is reset.
+     * <p>
+     * The same cache may be shared by multiple transports. This method should be called before
+     * connecting to the device.
+     *
+     * @param cache the cache, or null to disable caching.
+     */
+    public void setCapabilityCache(@Nullable final CapabilityCache cache) {
+        final McuMgrRequestObserver observer = mCapabilityObserver;
+        if (observer != null) {
+            McuManager.removeRequestObserver(this, observer);
+            mCapabilityObserver = null;
+        }
+        mCapabilityCache = cache;
+        if (cache != null) {
+            mCapabilityObserver = cache.observe(mDevice.getAddress(), this);
+        }
+    }
+
+    /**
+     * Returns the cached capabilities of the device.
+     * <p>
+     * The capabilities are not available when connected to the bootloader
+     * in Firmware Loader mode.
+     *
+     * @return The capabilities, or null if not known.
+     */
+    @Nullable
+    @Override
+    public DeviceCapabilities getCapabilities() {
+        final CapabilityCache cache = mCapabilityCache;
+        if (cache == null || mDeviceBootloader != null) {
+            return null;
+        }
+        return cache.get(mDevice.getAddress());
+    }
+
+    /**
+     * Applies the buffer size read from the device, if it differs from the cached one used
+     * since connection, e.g. when the firmware was updated by another application.
+     */
+    private void onCapabilitiesRevalidated(@NonNull final DeviceCapabilities capabilities) {
+        final int cachedBufferSize = mCachedBufferSize;
+        if (cachedBufferSize == 0 || capabilities.bufferSize == cachedBufferSize)
+            return;
+        mCachedBufferSize = 0;
+        // If the McuMgr Params are no longer supported, packets must fit in a single MTU.
+        final int maxPacketLength = capabilities.bufferSize > 0 ? capabilities.bufferSize : getMtu() - 3;
+        if (getMinLogPriority() <= Log.INFO) {
+            log(Log.INFO, "Cached buffer size is out of date, using " + maxPacketLength + " bytes");
+        }
+        mMaxPacketLength = maxPacketLength;
+    }
+
     //*******************************************************************************************
     // Logging
     //*******************************************************************************************
@@ -762,6 +864,10 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
     protected final void initialize() {
         mSmpProtocol = new SmpProtocolSession(mHandler);
 
+        // If the device is known, its buffer size is taken from the cache and the McuMgr Params
+        // request below is skipped. The capabilities are revalidated after connection.
+        final DeviceCapabilities capabilities = getCapabilities();
+
         // Request as high MTU as possible. As SMP protocol is fairly slow, requires a
         // notification for each packet sent, make sure the packets are as big as possible.
         // If Data Length Extension (DLE) is enabled, a single Link Layer packet can contain 251
@@ -785,6 +891,13 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
                         log(Log.WARN, "Samsung A8 Tab detected, setting TX MTU to 23");
                         overrideMtu(23);
                     }
+                    if (capabilities != null && capabilities.bufferSize > 0) {
+                        if (getMinLogPriority() <= Log.INFO) {
+                            log(Log.INFO, "Using cached buffer size: " + capabilities.bufferSize + " bytes and count: " + capabilities.bufferCount);
+                        }
+                        mMaxPacketLength = capabilities.bufferSize;
+                        mCachedBufferSize = capabilities.bufferSize;
+                    }
                 })
                 .fail((device, status) -> {
                     if (getMinLogPriority() <= Log.WARN) {
@@ -800,46 +913,48 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         // data.
         enableNotifications(mSmpCharacteristicNotify).enqueue();
 
-        // Before we set the notification callback, let's first read the McuMgr params.
-        // See: https://github.com/zephyrproject-rtos/zephyr/pull/44643
-        // This allows the transport layer to send SMP packets longer than MTU-3.
-        // The longer packets are split into MTU-3 chunks in Ble Library by using MtuSlitter.
-
-        // Let's set one time notification callback...
-        waitForNotification(mSmpCharacteristicNotify)
-                // ...and send the hardcoded request.
-                .trigger(
-                        writeCharacteristic(mSmpCharacteristicWrite, READ_MCU_MGR_PARAMS,
-                                BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
-                )
-                // The response should be received immediately.
-                .timeout(1000 /* ms */)
-                .merge(new SmpMerger())
-                .with((device, data) -> {
-                    final byte[] bytes = data.getValue();
-                    // If the response is 14 bytes or shorter, that means the McuMgr Params
-                    // request is not supported. Let's pretend nothing happened.
-                    if (bytes != null && bytes.length > 14) {
-                        try {
-                            final McuMgrParamsResponse response = McuMgrResponse
-                                    .buildResponse(McuMgrScheme.BLE, bytes, McuMgrParamsResponse.class);
-                            if (getMinLogPriority() <= Log.INFO) {
-                                log(Log.INFO, "SMP reassembly supported with buffer size: " + response.bufSize + " bytes and count: " + response.bufCount);
+        if (capabilities == null) {
+            // Before we set the notification callback, let's first read the McuMgr params.
+            // See: https://github.com/zephyrproject-rtos/zephyr/pull/44643
+            // This allows the transport layer to send SMP packets longer than MTU-3.
+            // The longer packets are split into MTU-3 chunks in Ble Library by using MtuSlitter.
+
+            // Let's set one time notification callback...
+            waitForNotification(mSmpCharacteristicNotify)
+                    // ...and send the hardcoded request.
+                    .trigger(
+                            writeCharacteristic(mSmpCharacteristicWrite, READ_MCU_MGR_PARAMS,
+                                    BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE)
+                    )
+                    // The response should be received immediately.
+                    .timeout(1000 /* ms */)
+                    .merge(new SmpMerger())
+                    .with((device, data) -> {
+                        final byte[] bytes = data.getValue();
+                        // If the response is 14 bytes or shorter, that means the McuMgr Params
+                        // request is not supported. Let's pretend nothing happened.
+                        if (bytes != null && bytes.length > 14) {
+                            try {
+                                final McuMgrParamsResponse response = McuMgrResponse
+                                        .buildResponse(McuMgrScheme.BLE, bytes, McuMgrParamsResponse.class);
+                                if (getMinLogPriority() <= Log.INFO) {
+                                    log(Log.INFO, "SMP reassembly supported with buffer size: " + response.bufSize + " bytes and count: " + response.bufCount);
+                                }
+                                mMaxPacketLength = response.bufSize;
+                            } catch (final Exception e) {
+                                // Ignore
                             }
-                            mMaxPacketLength = response.bufSize;
-                        } catch (final Exception e) {
-                            // Ignore
                         }
-                    }
-                    if (mMaxPacketLength < 70) {
-                        // First Image Upload packet has a overhead of 69 bytes. To send at least 1
-                        // byte of data, the buffer must be at least 70 bytes long.
-                        if (getMinLogPriority() <= Log.WARN) {
-                            log(Log.WARN, "Maximum packet size too small for some features i.e. DFU");
+                        if (mMaxPacketLength < 70) {
+                            // First Image Upload packet has a overhead of 69 bytes. To send at least 1
+                            // byte of data, the buffer must be at least 70 bytes long.
+                            if (getMinLogPriority() <= Log.WARN) {
+                                log(Log.WARN, "Maximum packet size too small for some features i.e. DFU");
+                            }
                         }
-                    }
-                })
-                .enqueue();
+                    })
+                    .enqueue();
+        }
 
         // Registered as a callback for all notifications from the SMP characteristic.
         // Forwards the merged data packets to the protocol layer to be matched to a request.
@@ -878,6 +993,8 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
         mSmpCharacteristicWrite = null;
         mSmpCharacteristicNotify = null;
         mMaxPacketLength = 0;
+        mCachedBufferSize = 0;
+        mHandler.removeCallbacks(mRevalidateCapabilities);
         // Next reconnection will happen to the original device, not bootloader.
         mDeviceBootloader = null;
         onAdditionalServicesInvalidated();
@@ -901,6 +1018,10 @@ public class McuMgrBleTransport extends BleManager implements McuMgrTransport {
     }
 
     private synchronized void notifyConnected() {
+        if (mCapabilityCache != null) {
+            mHandler.removeCallbacks(mRevalidateCapabilities);
+            mHandler.postDelayed(mRevalidateCapabilities, CAPABILITY_REVALIDATION_DELAY);
+        }
         for (ConnectionObserver o : mConnectionObservers) {
             o.onConnected();
         }
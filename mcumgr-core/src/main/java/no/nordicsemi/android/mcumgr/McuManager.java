@@ -17,9 +17,12 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
@@ -97,6 +100,17 @@ public abstract class McuManager {
      */
     protected int mMtu = DEFAULT_MTU;
 
+    /**
+     * Request observers registered for each transport.
+     */
+    private final static Map<McuMgrTransport, List<McuMgrRequestObserver>> sRequestObservers =
+            new WeakHashMap<>();
+
+    /**
+     * Number of registered request observers, used to skip the lookup when there are none.
+     */
+    private static volatile int sRequestObserverCount = 0;
+
     /**
      * Construct a McuManager instance.
      *
@@ -108,6 +122,46 @@ public abstract class McuManager {
         mTransporter = transporter;
     }
 
+    /**
+     * Registers an observer notified about every request sent by any manager using the
+     * given transport.
+     *
+     * @param transport the transport.
+     * @param observer  the observer.
+     * @see #removeRequestObserver(McuMgrTransport, McuMgrRequestObserver)
+     */
+    public static void addRequestObserver(@NotNull McuMgrTransport transport,
+                                          @NotNull McuMgrRequestObserver observer) {
+        synchronized (sRequestObservers) {
+            List<McuMgrRequestObserver> observers = sRequestObservers.get(transport);
+            if (observers == null) {
+                observers = new CopyOnWriteArrayList<>();
+                sRequestObservers.put(transport, observers);
+            }
+            observers.add(observer);
+            sRequestObserverCount++;
+        }
+    }
+
+    /**
+     * Removes the request observer previously registered for the given transport.
+     *
+     * @param transport the transport.
+     * @param observer  the observer to remove.
+     */
+    public static void removeRequestObserver(@NotNull McuMgrTransport transport,
+                                             @NotNull McuMgrRequestObserver observer) {
+        synchronized (sRequestObservers) {
+            final List<McuMgrRequestObserver> observers = sRequestObservers.get(transport);
+            if (observers != null && observers.remove(observer)) {
+                sRequestObserverCount--;
+                if (observers.isEmpty()) {
+                    sRequestObservers.remove(transport);
+                }
+            }
+        }
+    }
+
     /**
      * Get the group ID for this manager.
      *
@@ -335,12 +389,13 @@ public abstract class McuManager {
                                                 long timeout,
                                                 @NotNull Class<T> respType,
                                                 @NotNull McuMgrCallback<T> callback) {
+        final McuMgrCallback<T> target = observe(commandId, callback);
         try {
             byte[] packet = buildPacket(getScheme(), op, flags, mGroupId, sequenceNum,
                     commandId, payloadMap);
-            send(packet, timeout, respType, callback);
+            send(packet, timeout, respType, target);
         } catch (McuMgrException e) {
-            callback.onError(e);
+            target.onError(e);
         }
     }
 
@@ -369,9 +424,73 @@ public abstract class McuManager {
                                              long timeout,
                                              @NotNull Class<T> respType)
             throws McuMgrException {
-        byte[] packet = buildPacket(getScheme(), op, flags, mGroupId, sequenceNum,
-                commandId, payloadMap);
-        return send(packet, timeout, respType);
+        final List<McuMgrRequestObserver> observers = getRequestObservers();
+        if (observers == null) {
+            byte[] packet = buildPacket(getScheme(), op, flags, mGroupId, sequenceNum,
+                    commandId, payloadMap);
+            return send(packet, timeout, respType);
+        }
+        final long sentTimestamp = System.currentTimeMillis();
+        try {
+            byte[] packet = buildPacket(getScheme(), op, flags, mGroupId, sequenceNum,
+                    commandId, payloadMap);
+            final T response = send(packet, timeout, respType);
+            notifyRequestCompleted(observers, commandId, sentTimestamp, null);
+            return response;
+        } catch (McuMgrException e) {
+            notifyRequestCompleted(observers, commandId, sentTimestamp, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps the callback, so that registered request observers are notified when the request
+     * completes. If there are no observers, the callback is returned as is.
+     */
+    @NotNull
+    private <T extends McuMgrResponse> McuMgrCallback<T> observe(int commandId,
+                                                                 @NotNull McuMgrCallback<T> callback) {
+        final List<McuMgrRequestObserver> observers = getRequestObservers();
+        if (observers == null) {
+            return callback;
+        }
+        final long sentTimestamp = System.currentTimeMillis();
+        return new McuMgrCallback<T>() {
+            @Override
+            public void onResponse(@NotNull T response) {
+                notifyRequestCompleted(observers, commandId, sentTimestamp, null);
+                callback.onResponse(response);
+            }
+
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                notifyRequestCompleted(observers, commandId, sentTimestamp, error);
+                callback.onError(error);
+            }
+        };
+    }
+
+    @Nullable
+    private List<McuMgrRequestObserver> getRequestObservers() {
+        if (sRequestObserverCount == 0) {
+            return null;
+        }
+        synchronized (sRequestObservers) {
+            return sRequestObservers.get(mTransporter);
+        }
+    }
+
+    private void notifyRequestCompleted(@NotNull List<McuMgrRequestObserver> observers,
+                                        int commandId, long sentTimestamp,
+                                        @Nullable McuMgrException error) {
+        final long timestamp = System.currentTimeMillis();
+        for (McuMgrRequestObserver observer : observers) {
+            try {
+                observer.onRequestCompleted(mGroupId, commandId, sentTimestamp, timestamp, error);
+            } catch (Exception e) {
+                LOG.warn("Request observer failed", e);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,335 @@
+package no.nordicsemi.android.mcumgr;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import no.nordicsemi.android.mcumgr.capabilities.CapabilitiesProvider;
+import no.nordicsemi.android.mcumgr.capabilities.DeviceCapabilities;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+
+/**
+ * A batch of independent requests, sent without waiting for the previous responses.
+ * <p>
+ * Requests may be sent by any managers, as long as they use the same transport:
+ * <pre>
+ * new McuMgrBatch(transport)
+ *         .add(callback -&gt; settingsManager.read("id/serial", callback))
+ *         .add(callback -&gt; statsManager.read("smp_svr_stats", callback))
+ *         .add(imageManager::list)
+ *         .execute(results -&gt; { ... });
+ * </pre>
+ * At most {@link #getWindowCapacity()} requests are in flight at the same time. When a response
+ * is received, the next request is sent. The callback is called once all requests have completed,
+ * with the results in the order the requests were added. A failed request does not stop the batch.
+ * @noinspection unused
+ */
+public class McuMgrBatch {
+    private final static Logger LOG = LoggerFactory.getLogger(McuMgrBatch.class);
+
+    /**
+     * A request in the batch.
+     *
+     * @param <T> the response type.
+     */
+    public interface Request<T extends McuMgrResponse> {
+        /**
+         * Sends the request using an asynchronous manager method.
+         *
+         * @param callback the callback to be passed to the manager.
+         */
+        void send(@NotNull McuMgrCallback<T> callback);
+    }
+
+    /**
+     * The result of a request in the batch.
+     *
+     * @param <T> the response type.
+     */
+    public static class Result<T extends McuMgrResponse> {
+        @Nullable
+        private final T response;
+        @Nullable
+        private final McuMgrException error;
+
+        private Result(@Nullable final T response, @Nullable final McuMgrException error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        /**
+         * Returns the response, or null if the request has failed.
+         */
+        @Nullable
+        public T getResponse() {
+            return response;
+        }
+
+        /**
+         * Returns the error, or null if the response was received.
+         */
+        @Nullable
+        public McuMgrException getError() {
+            return error;
+        }
+
+        /**
+         * Returns whether the response was received.
+         */
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return error == null ? "Result{" + response + "}" : "Result{error=" + error + "}";
+        }
+    }
+
+    /**
+     * The callback notified when all requests in the batch have completed.
+     */
+    public interface Callback {
+        /**
+         * Called when all requests in the batch have completed.
+         *
+         * @param results the results, in the order the requests were added.
+         */
+        void onCompleted(@NotNull List<Result<?>> results);
+    }
+
+    /**
+     * The listener notified of results of individual requests.
+     */
+    public interface ResultListener {
+        /**
+         * Called when the request has completed and all requests added before it have been
+         * reported. Results are therefore reported in the order the requests were added.
+         *
+         * @param index  the index of the request in the batch.
+         * @param result the result.
+         */
+        void onResult(int index, @NotNull Result<?> result);
+    }
+
+    /**
+     * Number of requests in flight when the number of device buffers is not known.
+     * Sending more could overflow the buffers of the device, so requests are sent one by one,
+     * like the uploaders do by default.
+     */
+    private final static int DEFAULT_WINDOW_CAPACITY = 1;
+
+    private final int windowCapacity;
+    @NotNull
+    private final List<Request<?>> requests = new ArrayList<>();
+
+    /**
+     * Creates a batch for the given transport.
+     * <p>
+     * If the transport provides cached capabilities of the device, the number of requests in
+     * flight is equal to the number of McuMgr buffers. Otherwise, requests are sent one by one;
+     * use {@link #McuMgrBatch(int)} to send more at the same time.
+     *
+     * @param transport the transport used by the managers sending the requests.
+     */
+    public McuMgrBatch(@NotNull final McuMgrTransport transport) {
+        this(getDefaultWindowCapacity(transport));
+    }
+
+    /**
+     * Creates a batch with the given number of requests in flight.
+     *
+     * @param windowCapacity the maximum number of requests in flight.
+     */
+    public McuMgrBatch(final int windowCapacity) {
+        if (windowCapacity < 1)
+            throw new IllegalArgumentException("Window capacity must be at least 1");
+        this.windowCapacity = windowCapacity;
+    }
+
+    /**
+     * Returns the maximum number of requests in flight.
+     */
+    public int getWindowCapacity() {
+        return windowCapacity;
+    }
+
+    /**
+     * Adds the request to the batch.
+     *
+     * @param request the request.
+     * @param <T>     the response type.
+     * @return This batch.
+     */
+    @NotNull
+    public <T extends McuMgrResponse> McuMgrBatch add(@NotNull final Request<T> request) {
+        requests.add(request);
+        return this;
+    }
+
+    /**
+     * Returns the number of requests in the batch.
+     */
+    public int size() {
+        return requests.size();
+    }
+
+    /**
+     * Sends all requests. This method returns immediately.
+     * <p>
+     * The batch may be executed again; requests added afterwards are not part of
+     * the current execution.
+     *
+     * @param callback the callback notified when all requests have completed.
+     */
+    public void execute(@NotNull final Callback callback) {
+        new Execution(new ArrayList<>(requests), null, callback).start();
+    }
+
+    /**
+     * Sends all requests. This method returns immediately.
+     * <p>
+     * The listener is notified of each result in the order the requests were added, as soon as
+     * the result and all preceding ones are available. The callback is called after the last
+     * result has been reported.
+     *
+     * @param listener the listener notified of each result.
+     * @param callback the callback notified when all requests have completed.
+     */
+    public void execute(@NotNull final ResultListener listener, @NotNull final Callback callback) {
+        new Execution(new ArrayList<>(requests), listener, callback).start();
+    }
+
+    /**
+     * Returns the number of requests which may be in flight at the same time using the
+     * given transport.
+     *
+     * @param transport the transport.
+     * @return The number of McuMgr buffers, if known, or 1.
+     */
+    public static int getDefaultWindowCapacity(@NotNull final McuMgrTransport transport) {
+        if (transport instanceof CapabilitiesProvider) {
+            final DeviceCapabilities capabilities = ((CapabilitiesProvider) transport).getCapabilities();
+            if (capabilities != null && capabilities.bufferCount > 0) {
+                return capabilities.bufferCount;
+            }
+        }
+        return DEFAULT_WINDOW_CAPACITY;
+    }
+
+    private class Execution {
+        @NotNull
+        private final List<Request<?>> requests;
+        @Nullable
+        private final ResultListener listener;
+        @NotNull
+        private final Callback callback;
+        @NotNull
+        private final Result<?>[] results;
+        private final long startTimestamp = System.currentTimeMillis();
+
+        /** Index of the next request to be sent. */
+        private int next;
+        /** Number of results reported, in order. */
+        private int reported;
+        /** Whether a thread is reporting results. */
+        private boolean reporting;
+
+        private Execution(@NotNull final List<Request<?>> requests,
+                          @Nullable final ResultListener listener,
+                          @NotNull final Callback callback) {
+            this.requests = requests;
+            this.listener = listener;
+            this.callback = callback;
+            this.results = new Result<?>[requests.size()];
+        }
+
+        void start() {
+            if (requests.isEmpty()) {
+                callback.onCompleted(Collections.emptyList());
+                return;
+            }
+            final int count = Math.min(windowCapacity, requests.size());
+            for (int i = 0; i < count; i++) {
+                sendNext();
+            }
+        }
+
+        private void sendNext() {
+            final int index;
+            synchronized (this) {
+                if (next == requests.size())
+                    return;
+                index = next++;
+            }
+            send(index, requests.get(index));
+        }
+
+        private <T extends McuMgrResponse> void send(final int index, @NotNull final Request<T> request) {
+            try {
+                request.send(new McuMgrCallback<T>() {
+                    @Override
+                    public void onResponse(@NotNull final T response) {
+                        onResult(index, new Result<>(response, null));
+                    }
+
+                    @Override
+                    public void onError(@NotNull final McuMgrException error) {
+                        onResult(index, new Result<T>(null, error));
+                    }
+                });
+            } catch (final Exception e) {
+                onResult(index, new Result<T>(null, new McuMgrException(e)));
+            }
+        }
+
+        private void onResult(final int index, @NotNull final Result<?> result) {
+            synchronized (this) {
+                if (results[index] != null)
+                    return;
+                results[index] = result;
+            }
+            sendNext();
+            report();
+        }
+
+        /**
+         * Reports the results which are available in order. Only one thread reports at a time,
+         * the others leave the results they have added to it.
+         */
+        private void report() {
+            synchronized (this) {
+                if (reporting)
+                    return;
+                reporting = true;
+            }
+            while (true) {
+                final int index;
+                synchronized (this) {
+                    // Once all results have been reported, the flag is left set.
+                    if (reported == results.length)
+                        break;
+                    if (results[reported] == null) {
+                        reporting = false;
+                        return;
+                    }
+                    index = reported++;
+                }
+                if (listener != null) {
+                    listener.onResult(index, results[index]);
+                }
+            }
+            LOG.debug("Batch of {} requests completed in {} ms",
+                    requests.size(), System.currentTimeMillis() - startTimestamp);
+            callback.onCompleted(Collections.unmodifiableList(Arrays.asList(results)));
+        }
+    }
+}
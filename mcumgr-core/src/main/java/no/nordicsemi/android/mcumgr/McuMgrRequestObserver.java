@@ -0,0 +1,29 @@
+package no.nordicsemi.android.mcumgr;
+
+import org.jetbrains.annotations.Nullable;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * Observer of requests sent by all {@link McuManager}s using the same {@link McuMgrTransport}.
+ * <p>
+ * Observers are registered using
+ * {@link McuManager#addRequestObserver(McuMgrTransport, McuMgrRequestObserver)}.
+ */
+public interface McuMgrRequestObserver {
+    /**
+     * Called when a response to a request has been received, or the request has failed.
+     * <p>
+     * This method may be called from any thread.
+     *
+     * @param groupId       the group ID of the request.
+     * @param commandId     the command ID of the request.
+     * @param sentTimestamp the time the request was sent, in milliseconds.
+     * @param timestamp     the time the response was received or the request has failed,
+     *                      in milliseconds.
+     * @param error         the error, or null if a response was received.
+     */
+    void onRequestCompleted(int groupId, int commandId,
+                            long sentTimestamp, long timestamp,
+                            @Nullable McuMgrException error);
+}
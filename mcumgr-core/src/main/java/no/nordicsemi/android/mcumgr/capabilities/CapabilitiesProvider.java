@@ -0,0 +1,19 @@
+package no.nordicsemi.android.mcumgr.capabilities;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link no.nordicsemi.android.mcumgr.McuMgrTransport} may implement this interface to
+ * provide cached capabilities of the connected device. Tasks may then skip sending requests
+ * for values which are already known.
+ */
+public interface CapabilitiesProvider {
+
+    /**
+     * Returns the cached capabilities of the device.
+     *
+     * @return The capabilities, or null if they are not known, or were invalidated.
+     */
+    @Nullable
+    DeviceCapabilities getCapabilities();
+}
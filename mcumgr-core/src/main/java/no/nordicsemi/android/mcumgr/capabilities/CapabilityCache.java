@@ -0,0 +1,409 @@
+package no.nordicsemi.android.mcumgr.capabilities;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.McuManager;
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
+import no.nordicsemi.android.mcumgr.McuMgrHeader;
+import no.nordicsemi.android.mcumgr.McuMgrRequestObserver;
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.managers.DefaultManager;
+import no.nordicsemi.android.mcumgr.managers.ImageManager;
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrBootloaderInfoResponse;
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrParamsResponse;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrImageStateResponse;
+import no.nordicsemi.android.mcumgr.util.ByteUtil;
+import no.nordicsemi.android.mcumgr.util.CBOR;
+
+/**
+ * A cache of {@link DeviceCapabilities}, keyed by device identity.
+ * <p>
+ * Capabilities are kept in memory and, optionally, in a directory on disk, so that they can be
+ * used immediately after the device reconnects, also after the application was restarted.
+ * The transport should serve the cached values and call
+ * {@link #revalidate(String, McuMgrTransport, int)} in the background, which reads them again
+ * from the device, together with the hash of the running firmware.
+ * <p>
+ * When observed using {@link #observe(String, McuMgrTransport)}, the entry is invalidated
+ * when a reset command or a SUIT envelope is sent, as the firmware may change. This happens
+ * also when the request has failed, as the device may reset before sending the response.
+ * <p>
+ * The cache is thread safe.
+ * @noinspection unused
+ */
+public class CapabilityCache {
+    private final static Logger LOG = LoggerFactory.getLogger(CapabilityCache.class);
+
+    private final static int GROUP_DEFAULT = 0;
+    private final static int GROUP_IMAGE = 1;
+    private final static int GROUP_SUIT = 66;
+
+    // Commands after which the firmware may change.
+    private final static int ID_RESET = 5;
+    private final static int ID_ENVELOPE_UPLOAD = 2;
+
+    /**
+     * Listener notified when the capabilities have been read from the device.
+     */
+    public interface OnRevalidatedListener {
+        /**
+         * Called when the capabilities have been read from the device and stored in the cache.
+         * It is not called if the entry was invalidated during revalidation.
+         *
+         * @param capabilities the current capabilities.
+         */
+        void onRevalidated(@NotNull DeviceCapabilities capabilities);
+    }
+
+    @Nullable
+    private final File directory;
+    @NotNull
+    private final Map<String, DeviceCapabilities> memory = new HashMap<>();
+    /**
+     * Number of invalidations of each device. Results of a revalidation started before
+     * the entry was invalidated are discarded.
+     */
+    @NotNull
+    private final Map<String, Integer> generations = new HashMap<>();
+
+    /**
+     * Creates a memory-only cache.
+     */
+    public CapabilityCache() {
+        this(null);
+    }
+
+    /**
+     * Creates a cache backed by a directory on disk.
+     *
+     * @param directory the directory for cached capabilities, or null to disable disk cache.
+     *                  The directory should not be used for anything else.
+     */
+    public CapabilityCache(@Nullable final File directory) {
+        this.directory = directory;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Failed to create cache directory: {}", directory);
+        }
+    }
+
+    /**
+     * Returns the cached capabilities of the device.
+     *
+     * @param deviceId the device identity, e.g. the Bluetooth address.
+     * @return The capabilities, or null if not cached.
+     */
+    @Nullable
+    public synchronized DeviceCapabilities get(@NotNull final String deviceId) {
+        final DeviceCapabilities capabilities = memory.get(deviceId);
+        if (capabilities != null)
+            return capabilities;
+
+        final File file = getFile(deviceId);
+        if (file == null || !file.isFile())
+            return null;
+        try {
+            final DeviceCapabilities content = CBOR.toObject(read(file), DeviceCapabilities.class);
+            memory.put(deviceId, content);
+            return content;
+        } catch (final IOException e) {
+            LOG.warn("Failed to read cached capabilities of {}", deviceId, e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the capabilities of the device, replacing the previous ones.
+     *
+     * @param deviceId     the device identity.
+     * @param capabilities the capabilities.
+     */
+    public synchronized void put(@NotNull final String deviceId,
+                                 @NotNull final DeviceCapabilities capabilities) {
+        memory.put(deviceId, capabilities);
+        write(deviceId, capabilities);
+    }
+
+    /**
+     * Removes the capabilities of the device from the cache.
+     *
+     * @param deviceId the device identity.
+     */
+    public synchronized void invalidate(@NotNull final String deviceId) {
+        memory.remove(deviceId);
+        generations.put(deviceId, getGeneration(deviceId) + 1);
+        final File file = getFile(deviceId);
+        if (file != null && file.isFile()) {
+            LOG.debug("Capabilities of {} invalidated", deviceId);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Starts observing requests sent using the given transport. Groups returning successful
+     * responses are added to the capabilities, and the entry is invalidated after a reset
+     * or a SUIT envelope upload, whether it has succeeded or not.
+     *
+     * @param deviceId  the device identity.
+     * @param transport the transport used to communicate with the device.
+     * @return The observer, which may be removed using
+     * {@link McuManager#removeRequestObserver(McuMgrTransport, McuMgrRequestObserver)}.
+     */
+    @NotNull
+    public McuMgrRequestObserver observe(@NotNull final String deviceId,
+                                         @NotNull final McuMgrTransport transport) {
+        final McuMgrRequestObserver observer = (groupId, commandId, sentTimestamp, timestamp, error) -> {
+            // The device may reset before the response is sent, in which case the request
+            // fails, e.g. with a disconnection error.
+            if ((groupId == GROUP_DEFAULT && commandId == ID_RESET) ||
+                (groupId == GROUP_SUIT && commandId == ID_ENVELOPE_UPLOAD)) {
+                invalidate(deviceId);
+                return;
+            }
+            if (error != null)
+                return;
+            synchronized (this) {
+                final DeviceCapabilities capabilities = memory.get(deviceId);
+                if (capabilities != null && capabilities.groups.add(groupId)) {
+                    write(deviceId, capabilities);
+                }
+            }
+        };
+        McuManager.addRequestObserver(transport, observer);
+        return observer;
+    }
+
+    /**
+     * Reads the capabilities from the device and stores them in the cache.
+     * <p>
+     * All requests are sent at once. This method returns immediately.
+     *
+     * @param deviceId  the device identity.
+     * @param transport the transport used to communicate with the device.
+     * @param mtu       the negotiated MTU, or 0 if unknown.
+     */
+    public void revalidate(@NotNull final String deviceId,
+                           @NotNull final McuMgrTransport transport,
+                           final int mtu) {
+        revalidate(deviceId, transport, mtu, null);
+    }
+
+    /**
+     * Reads the capabilities from the device and stores them in the cache.
+     * <p>
+     * All requests are sent at once. This method returns immediately. The listener allows
+     * the transport to apply values which differ from the cached ones used since connection.
+     *
+     * @param deviceId  the device identity.
+     * @param transport the transport used to communicate with the device.
+     * @param mtu       the negotiated MTU, or 0 if unknown.
+     * @param listener  the listener notified when the capabilities have been read.
+     */
+    public void revalidate(@NotNull final String deviceId,
+                           @NotNull final McuMgrTransport transport,
+                           final int mtu,
+                           @Nullable final OnRevalidatedListener listener) {
+        final DefaultManager defaultManager = new DefaultManager(transport);
+        final ImageManager imageManager = new ImageManager(transport);
+        final Revalidation revalidation = new Revalidation(deviceId, mtu, listener);
+
+        defaultManager.params(new McuMgrCallback<>() {
+            @Override
+            public void onResponse(@NotNull final McuMgrParamsResponse response) {
+                revalidation.onParams(response);
+            }
+
+            @Override
+            public void onError(@NotNull final McuMgrException error) {
+                revalidation.onParams(null);
+            }
+        });
+        defaultManager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_QUERY_BOOTLOADER, new McuMgrCallback<>() {
+            @Override
+            public void onResponse(@NotNull final McuMgrBootloaderInfoResponse response) {
+                revalidation.onBootloader(response);
+            }
+
+            @Override
+            public void onError(@NotNull final McuMgrException error) {
+                revalidation.onBootloader(null);
+            }
+        });
+        defaultManager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_MCUBOOT_QUERY_MODE, new McuMgrCallback<>() {
+            @Override
+            public void onResponse(@NotNull final McuMgrBootloaderInfoResponse response) {
+                revalidation.onMode(response);
+            }
+
+            @Override
+            public void onError(@NotNull final McuMgrException error) {
+                revalidation.onMode(null);
+            }
+        });
+        imageManager.list(new McuMgrCallback<>() {
+            @Override
+            public void onResponse(@NotNull final McuMgrImageStateResponse response) {
+                revalidation.onImageState(response);
+            }
+
+            @Override
+            public void onError(@NotNull final McuMgrException error) {
+                revalidation.onImageState(null);
+            }
+        });
+    }
+
+    /**
+     * Collects responses to requests sent in parallel and stores the capabilities when
+     * all of them have been received.
+     */
+    private class Revalidation {
+        @NotNull
+        private final String deviceId;
+        @NotNull
+        private final DeviceCapabilities capabilities = new DeviceCapabilities();
+        @Nullable
+        private final OnRevalidatedListener listener;
+        private final int generation;
+        private int remaining = 4;
+
+        private Revalidation(@NotNull final String deviceId, final int mtu,
+                             @Nullable final OnRevalidatedListener listener) {
+            this.deviceId = deviceId;
+            this.capabilities.mtu = mtu;
+            this.listener = listener;
+            this.generation = getGeneration(deviceId);
+        }
+
+        synchronized void onParams(@Nullable final McuMgrParamsResponse response) {
+            if (response != null && response.isSuccess()) {
+                capabilities.bufferSize = response.bufSize;
+                capabilities.bufferCount = response.bufCount;
+                capabilities.groups.add(GROUP_DEFAULT);
+                final McuMgrHeader header = response.getHeader();
+                if (header != null) {
+                    capabilities.smpVersion = header.getVersion();
+                }
+            }
+            onCompleted();
+        }
+
+        synchronized void onBootloader(@Nullable final McuMgrBootloaderInfoResponse response) {
+            if (response != null && response.isSuccess()) {
+                capabilities.bootloader = response.bootloader;
+                capabilities.groups.add(GROUP_DEFAULT);
+            }
+            onCompleted();
+        }
+
+        synchronized void onMode(@Nullable final McuMgrBootloaderInfoResponse response) {
+            if (response != null && response.isSuccess()) {
+                capabilities.bootloaderMode = response.mode;
+                capabilities.noDowngrade = response.noDowngrade;
+            }
+            onCompleted();
+        }
+
+        synchronized void onImageState(@Nullable final McuMgrImageStateResponse response) {
+            if (response != null && response.isSuccess() && response.images != null) {
+                capabilities.groups.add(GROUP_IMAGE);
+                for (final McuMgrImageStateResponse.ImageSlot slot : response.images) {
+                    if (slot.image == 0 && slot.active) {
+                        capabilities.firmwareHash = slot.hash;
+                    }
+                }
+            }
+            onCompleted();
+        }
+
+        private void onCompleted() {
+            if (--remaining > 0)
+                return;
+            capabilities.timestamp = System.currentTimeMillis();
+
+            synchronized (CapabilityCache.this) {
+                if (generation != getGeneration(deviceId)) {
+                    LOG.debug("Capabilities of {} invalidated during revalidation", deviceId);
+                    return;
+                }
+                // Groups found before are still supported, unless the firmware has changed.
+                final DeviceCapabilities previous = get(deviceId);
+                if (previous != null) {
+                    if (Arrays.equals(previous.firmwareHash, capabilities.firmwareHash)) {
+                        capabilities.groups.addAll(previous.groups);
+                    } else {
+                        LOG.info("Firmware of {} has changed", deviceId);
+                    }
+                }
+                LOG.debug("Capabilities of {}: {}", deviceId, capabilities);
+                put(deviceId, capabilities);
+            }
+            if (listener != null) {
+                listener.onRevalidated(capabilities);
+            }
+        }
+    }
+
+    private synchronized int getGeneration(@NotNull final String deviceId) {
+        final Integer generation = generations.get(deviceId);
+        return generation != null ? generation : 0;
+    }
+
+    private void write(@NotNull final String deviceId,
+                       @NotNull final DeviceCapabilities capabilities) {
+        final File file = getFile(deviceId);
+        if (file == null)
+            return;
+        try (FileOutputStream os = new FileOutputStream(file)) {
+            os.write(CBOR.toBytes(capabilities));
+        } catch (final IOException e) {
+            LOG.warn("Failed to cache capabilities of {}", deviceId, e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Nullable
+    private File getFile(@NotNull final String deviceId) {
+        if (directory == null)
+            return null;
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            final byte[] digest = md.digest(deviceId.getBytes(StandardCharsets.UTF_8));
+            return new File(directory, ByteUtil.byteArrayToHex(digest, "%02x"));
+        } catch (final NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static byte @NotNull [] read(@NotNull final File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        try (FileInputStream is = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                final int count = is.read(data, offset, data.length - offset);
+                if (count < 0)
+                    throw new IOException("Unexpected end of file");
+                offset += count;
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,92 @@
+package no.nordicsemi.android.mcumgr.capabilities;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrBootloaderInfoResponse;
+
+/**
+ * Capabilities of a device, which are not expected to change until the firmware is updated.
+ * <p>
+ * The capabilities are stored in a {@link CapabilityCache}.
+ * @noinspection unused
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DeviceCapabilities {
+    /** The hash of the image running on the device, or null if unknown. */
+    @JsonProperty("firmware_hash")
+    public byte @Nullable [] firmwareHash;
+
+    /** The McuMgr buffer size, or 0 if McuMgr Params command is not supported. */
+    @JsonProperty("buf_size")
+    public int bufferSize;
+
+    /** Number of McuMgr buffers, or 0 if McuMgr Params command is not supported. */
+    @JsonProperty("buf_count")
+    public int bufferCount;
+
+    /** The negotiated MTU, or 0 if unknown. */
+    @JsonProperty("mtu")
+    public int mtu;
+
+    /** The bootloader name, or null if Bootloader Info command is not supported. */
+    @JsonProperty("bootloader")
+    @Nullable
+    public String bootloader;
+
+    /** The MCUboot mode, one of McuMgrBootloaderInfoResponse.MODE_* constants. */
+    @JsonProperty("mode")
+    public int bootloaderMode = McuMgrBootloaderInfoResponse.MODE_UNKNOWN;
+
+    /** Whether MCUboot has downgrade prevention enabled. */
+    @JsonProperty("no_downgrade")
+    public boolean noDowngrade;
+
+    /** The SMP version reported by the device in response headers. */
+    @JsonProperty("smp_version")
+    public int smpVersion;
+
+    /** IDs of groups which returned a successful response. */
+    @JsonProperty("groups")
+    @NotNull
+    public Set<Integer> groups = new TreeSet<>();
+
+    /** The time the capabilities were read from the device, in milliseconds. */
+    @JsonProperty("timestamp")
+    public long timestamp;
+
+    @JsonCreator
+    public DeviceCapabilities() {}
+
+    /**
+     * Returns whether the group has returned a successful response.
+     *
+     * @param groupId the group ID.
+     * @return True, if the group is known to be supported.
+     */
+    public boolean isGroupSupported(final int groupId) {
+        return groups.contains(groupId);
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        return "DeviceCapabilities{" +
+                "bufferSize=" + bufferSize +
+                ", bufferCount=" + bufferCount +
+                ", mtu=" + mtu +
+                ", bootloader=" + bootloader +
+                ", bootloaderMode=" + bootloaderMode +
+                ", noDowngrade=" + noDowngrade +
+                ", smpVersion=" + smpVersion +
+                ", groups=" + groups +
+                '}';
+    }
+}
@@ -0,0 +1,247 @@
+package no.nordicsemi.android.mcumgr.crash;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.McuMgrBatch;
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.managers.ImageManager;
+import no.nordicsemi.android.mcumgr.response.img.McuMgrCoreLoadResponse;
+import no.nordicsemi.android.mcumgr.transfer.StreamDownloadCallback;
+
+/**
+ * A windowed download of a core dump, parsed while it is being downloaded.
+ * <p>
+ * The first Core Load request returns the size of the core dump and the size of a chunk. Then,
+ * following chunks are requested without waiting for the previous responses, with at most
+ * {@code windowCapacity} requests in flight. Chunks received out of order are held until all
+ * preceding ones have arrived and are passed to the {@link CoreDumpParser} in order, so the
+ * memory used is limited to the window.
+ * <p>
+ * If the device returns less data than requested, the remainder is requested again.
+ * <p>
+ * Unlike {@link ImageManager#coreDownload}, this download is not queued with other transfers
+ * of the manager, and can't be paused.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CoreDumpDownload {
+    private final static Logger LOG = LoggerFactory.getLogger(CoreDumpDownload.class);
+
+    /** A chunk to be requested: from the offset to the end, exclusive. */
+    private static class Chunk {
+        final int offset;
+        final int end;
+
+        Chunk(int offset, int end) {
+            this.offset = offset;
+            this.end = end;
+        }
+    }
+
+    @NotNull
+    private final ImageManager mImageManager;
+    @NotNull
+    private final CoreDumpParser mParser;
+    private final int mWindowCapacity;
+
+    @Nullable
+    private StreamDownloadCallback mCallback;
+
+    private int mTotal = -1;
+    private int mChunkSize;
+    /** Offset of the next new chunk. */
+    private int mNextOffset;
+    /** Offset up to which the data has been parsed. */
+    private int mParsedOffset;
+    private int mInFlight;
+    private boolean mFinished;
+    /** Remainders of chunks to be requested again. */
+    @NotNull
+    private final Deque<Chunk> mGaps = new ArrayDeque<>();
+    /** Chunks received out of order, by offset. */
+    @NotNull
+    private final Map<Integer, byte[]> mReceived = new HashMap<>();
+    private long mStartTimestamp;
+
+    /**
+     * Creates a download with the number of requests in flight equal to the number of McuMgr
+     * buffers of the device, if known, or 1.
+     *
+     * @param imageManager the Image Manager.
+     * @param parser       the parser receiving the core dump.
+     */
+    public CoreDumpDownload(@NotNull ImageManager imageManager, @NotNull CoreDumpParser parser) {
+        this(imageManager, parser, McuMgrBatch.getDefaultWindowCapacity(imageManager.getTransporter()));
+    }
+
+    /**
+     * Creates a download.
+     *
+     * @param imageManager   the Image Manager.
+     * @param parser         the parser receiving the core dump.
+     * @param windowCapacity the maximum number of requests in flight.
+     */
+    public CoreDumpDownload(@NotNull ImageManager imageManager, @NotNull CoreDumpParser parser,
+                            int windowCapacity) {
+        if (windowCapacity < 1)
+            throw new IllegalArgumentException("Window capacity must be at least 1");
+        mImageManager = imageManager;
+        mParser = parser;
+        mWindowCapacity = windowCapacity;
+    }
+
+    /**
+     * Starts the download. This method returns immediately.
+     *
+     * @param callback the callback notified about progress and completion.
+     */
+    public void start(@NotNull StreamDownloadCallback callback) {
+        synchronized (this) {
+            if (mCallback != null)
+                throw new IllegalStateException("Download already started");
+            mCallback = callback;
+            mStartTimestamp = System.currentTimeMillis();
+            mInFlight = 1;
+        }
+        // The first response tells the size of the core dump and of a chunk.
+        send(new Chunk(0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Cancels the download. Responses to requests in flight are ignored.
+     */
+    public void cancel() {
+        final StreamDownloadCallback callback;
+        synchronized (this) {
+            if (mFinished || mCallback == null)
+                return;
+            mFinished = true;
+            callback = mCallback;
+        }
+        callback.onDownloadCanceled();
+    }
+
+    private void send(@NotNull final Chunk chunk) {
+        mImageManager.coreLoad(chunk.offset, new McuMgrCallback<McuMgrCoreLoadResponse>() {
+            @Override
+            public void onResponse(@NotNull McuMgrCoreLoadResponse response) {
+                onChunk(chunk, response);
+            }
+
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                fail(error);
+            }
+        });
+    }
+
+    private void onChunk(@NotNull Chunk chunk, @NotNull McuMgrCoreLoadResponse response) {
+        final List<Chunk> requests = new ArrayList<>();
+        final StreamDownloadCallback callback;
+        final int parsed;
+        final int total;
+        final boolean completed;
+        try {
+            synchronized (this) {
+                if (mFinished)
+                    return;
+                mInFlight--;
+                if (response.rc != 0)
+                    throw new McuMgrErrorException(response);
+                if (response.data == null)
+                    throw new McuMgrException("Download response data is null.");
+
+                int end = chunk.end;
+                if (mTotal < 0) {
+                    mTotal = response.len;
+                    mChunkSize = Math.max(response.data.length, 1);
+                    mNextOffset = response.data.length;
+                    end = response.data.length;
+                    LOG.debug("Downloading core dump of {} bytes in chunks of {} bytes",
+                            mTotal, mChunkSize);
+                }
+                end = Math.min(end, mTotal);
+                final int length = Math.min(response.data.length, end - chunk.offset);
+                if (length <= 0 && chunk.offset < end)
+                    throw new McuMgrException("Download response data is empty.");
+                if (chunk.offset + length < end) {
+                    mGaps.add(new Chunk(chunk.offset + length, end));
+                }
+                mReceived.put(chunk.offset, length == response.data.length ?
+                        response.data : Arrays.copyOf(response.data, length));
+
+                // Parse the data which is available in order.
+                byte[] data;
+                while ((data = mReceived.remove(mParsedOffset)) != null) {
+                    mParser.parse(data);
+                    mParsedOffset += data.length;
+                }
+
+                completed = mParsedOffset >= mTotal;
+                if (completed) {
+                    mParser.finish();
+                    mFinished = true;
+                } else {
+                    while (mInFlight < mWindowCapacity) {
+                        Chunk next = mGaps.poll();
+                        if (next == null && mNextOffset < mTotal) {
+                            next = new Chunk(mNextOffset, Math.min(mNextOffset + mChunkSize, mTotal));
+                            mNextOffset = next.end;
+                        }
+                        if (next == null)
+                            break;
+                        requests.add(next);
+                        mInFlight++;
+                    }
+                }
+                callback = mCallback;
+                parsed = mParsedOffset;
+                total = mTotal;
+            }
+        } catch (McuMgrException e) {
+            fail(e);
+            return;
+        } catch (IOException e) {
+            fail(new McuMgrException("Parsing core dump failed.", e));
+            return;
+        }
+
+        callback.onDownloadProgressChanged(parsed, total, System.currentTimeMillis());
+        if (completed) {
+            LOG.info("Core dump of {} bytes downloaded in {} ms",
+                    total, System.currentTimeMillis() - mStartTimestamp);
+            callback.onDownloadCompleted();
+            return;
+        }
+        for (Chunk next : requests) {
+            send(next);
+        }
+    }
+
+    private void fail(@NotNull McuMgrException error) {
+        final StreamDownloadCallback callback;
+        synchronized (this) {
+            if (mFinished)
+                return;
+            mFinished = true;
+            callback = mCallback;
+        }
+        LOG.error("Core dump download failed", error);
+        if (callback != null) {
+            callback.onDownloadFailed(error);
+        }
+    }
+}
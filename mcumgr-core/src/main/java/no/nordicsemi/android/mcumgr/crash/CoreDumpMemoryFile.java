@@ -0,0 +1,141 @@
+package no.nordicsemi.android.mcumgr.crash;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link CoreDumpMemorySink} which stores memory regions of a core dump in a file.
+ * <p>
+ * Regions are appended to the file one after another; their addresses and positions are kept in
+ * memory, so the memory at a given address may be read back with {@link #read(long, int)}.
+ * The file is overwritten when the sink is created.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CoreDumpMemoryFile implements CoreDumpMemorySink, Closeable {
+
+    /**
+     * A memory region stored in the file.
+     */
+    public static class Region {
+        private final long mAddress;
+        private final int mLength;
+        private final long mPosition;
+
+        private Region(long address, int length, long position) {
+            mAddress = address;
+            mLength = length;
+            mPosition = position;
+        }
+
+        /**
+         * Returns the memory address of the region.
+         */
+        public long getAddress() {
+            return mAddress;
+        }
+
+        /**
+         * Returns the length of the region in bytes.
+         */
+        public int getLength() {
+            return mLength;
+        }
+
+        /**
+         * Returns the position of the region in the file.
+         */
+        public long getPosition() {
+            return mPosition;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            return String.format("{address=0x%08x, length=%d}", mAddress, mLength);
+        }
+    }
+
+    @NotNull
+    private final File mFile;
+    @NotNull
+    private final RandomAccessFile mRandomAccessFile;
+    @NotNull
+    private final List<Region> mRegions = new ArrayList<>();
+
+    /**
+     * Creates a sink storing regions in the given file.
+     *
+     * @param file the file.
+     * @throws IOException if the file can't be opened.
+     */
+    public CoreDumpMemoryFile(@NotNull File file) throws IOException {
+        mFile = file;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mRandomAccessFile.setLength(0);
+    }
+
+    @Override
+    public synchronized void onRegion(long address, int length) throws IOException {
+        mRegions.add(new Region(address, length, mRandomAccessFile.length()));
+    }
+
+    @Override
+    public synchronized void write(byte @NotNull [] data, int offset, int length) throws IOException {
+        mRandomAccessFile.seek(mRandomAccessFile.length());
+        mRandomAccessFile.write(data, offset, length);
+    }
+
+    /**
+     * Returns the file.
+     */
+    @NotNull
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Returns the regions stored so far, in the order they were received.
+     */
+    @NotNull
+    public synchronized List<Region> getRegions() {
+        return Collections.unmodifiableList(new ArrayList<>(mRegions));
+    }
+
+    /**
+     * Reads memory at the given address.
+     *
+     * @param address the memory address.
+     * @param length  the number of bytes to read.
+     * @return The memory, or null if it is not contained in a single stored region.
+     * @throws IOException if reading the file failed.
+     */
+    public synchronized byte @Nullable [] read(long address, int length) throws IOException {
+        for (Region region : mRegions) {
+            if (address >= region.mAddress && address + length <= region.mAddress + region.mLength) {
+                final long position = region.mPosition + address - region.mAddress;
+                // The region may not have been received completely yet.
+                if (position + length > mRandomAccessFile.length()) {
+                    return null;
+                }
+                final byte[] data = new byte[length];
+                mRandomAccessFile.seek(position);
+                mRandomAccessFile.readFully(data);
+                return data;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mRandomAccessFile.close();
+    }
+}
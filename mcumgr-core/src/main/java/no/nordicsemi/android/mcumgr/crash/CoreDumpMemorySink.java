@@ -0,0 +1,31 @@
+package no.nordicsemi.android.mcumgr.crash;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * A destination of memory entries of a core dump, used by the {@link CoreDumpParser}.
+ */
+public interface CoreDumpMemorySink {
+
+    /**
+     * Called when a memory entry begins. The data of the entry follows in one or more calls
+     * to {@link #write(byte[], int, int)}.
+     *
+     * @param address the memory address of the region.
+     * @param length  the length of the region in bytes.
+     * @throws IOException if the region can't be stored.
+     */
+    void onRegion(long address, int length) throws IOException;
+
+    /**
+     * Called with the next part of the current memory region.
+     *
+     * @param data   the data.
+     * @param offset the offset of the part in the data.
+     * @param length the length of the part.
+     * @throws IOException if the data can't be stored.
+     */
+    void write(byte @NotNull [] data, int offset, int length) throws IOException;
+}
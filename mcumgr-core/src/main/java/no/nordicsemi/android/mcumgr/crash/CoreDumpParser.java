@@ -0,0 +1,208 @@
+package no.nordicsemi.android.mcumgr.crash;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+import no.nordicsemi.android.mcumgr.util.ByteUtil;
+import no.nordicsemi.android.mcumgr.util.Endian;
+
+/**
+ * An incremental parser of core dump files.
+ * <p>
+ * Unlike {@link CoreDump#fromBytes(byte[])}, the core dump does not need to be kept in memory.
+ * Data may be passed in chunks of any size, in order, as they are downloaded. The header and
+ * each TLV entry are reported to the {@link Listener} as soon as they have been received.
+ * Values of memory entries are not buffered, but passed to the {@link CoreDumpMemorySink}
+ * as they arrive.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class CoreDumpParser {
+
+    /**
+     * The listener notified of parsed parts of the core dump.
+     */
+    public interface Listener {
+        /**
+         * Called when the header has been parsed.
+         *
+         * @param header the header.
+         */
+        void onHeader(@NotNull CoreDumpHeader header);
+
+        /**
+         * Called when a TLV entry, other than a memory entry, has been parsed, for example
+         * the image hash or the registers.
+         *
+         * @param entry the entry.
+         */
+        void onEntry(@NotNull CoreDumpTlvEntry entry);
+    }
+
+    /** Size of the file header and of the header of each TLV entry. */
+    private static final int HEADER_SIZE = 8;
+
+    @Nullable
+    private final Listener mListener;
+    @NotNull
+    private final CoreDumpMemorySink mMemorySink;
+
+    private final byte[] mHeaderBuffer = new byte[HEADER_SIZE];
+    private int mHeaderLength;
+
+    @Nullable
+    private CoreDumpHeader mHeader;
+    private byte @Nullable [] mImageHash;
+    private byte @Nullable [] mRegisters;
+
+    // The TLV entry being parsed.
+    private boolean mInValue;
+    private int mType;
+    private int mLength;
+    private long mOff;
+    private byte @Nullable [] mValue;
+    private int mValueLength;
+
+    private long mBytesParsed;
+
+    /**
+     * Creates a parser.
+     *
+     * @param listener   the listener notified of the header and entries, or null.
+     * @param memorySink the sink of memory entries.
+     */
+    public CoreDumpParser(@Nullable Listener listener, @NotNull CoreDumpMemorySink memorySink) {
+        mListener = listener;
+        mMemorySink = memorySink;
+    }
+
+    /**
+     * Parses the next chunk of the core dump.
+     *
+     * @param data   the data.
+     * @param offset the offset of the chunk in the data.
+     * @param length the length of the chunk.
+     * @throws IOException if the core dump is invalid, or the memory sink has failed.
+     */
+    public void parse(byte @NotNull [] data, int offset, int length) throws IOException {
+        final int end = offset + length;
+        while (offset < end) {
+            if (!mInValue) {
+                final int count = Math.min(HEADER_SIZE - mHeaderLength, end - offset);
+                System.arraycopy(data, offset, mHeaderBuffer, mHeaderLength, count);
+                mHeaderLength += count;
+                offset += count;
+                if (mHeaderLength == HEADER_SIZE) {
+                    mHeaderLength = 0;
+                    onHeaderBuffer();
+                }
+            } else {
+                final int count = Math.min(mLength - mValueLength, end - offset);
+                if (mValue != null) {
+                    System.arraycopy(data, offset, mValue, mValueLength, count);
+                } else {
+                    mMemorySink.write(data, offset, count);
+                }
+                mValueLength += count;
+                offset += count;
+                if (mValueLength == mLength) {
+                    onEntryEnd();
+                }
+            }
+        }
+        mBytesParsed += length;
+    }
+
+    /**
+     * Parses the next chunk of the core dump.
+     *
+     * @param data the data.
+     * @throws IOException if the core dump is invalid, or the memory sink has failed.
+     */
+    public void parse(byte @NotNull [] data) throws IOException {
+        parse(data, 0, data.length);
+    }
+
+    /**
+     * Verifies that the core dump has ended at the end of a TLV entry.
+     *
+     * @throws IOException if the core dump is truncated.
+     */
+    public void finish() throws IOException {
+        if (mHeader == null || mInValue || mHeaderLength > 0) {
+            throw new IOException("Core dump truncated at " + mBytesParsed + " bytes.");
+        }
+    }
+
+    /**
+     * Returns the header, or null if it has not been received yet.
+     */
+    @Nullable
+    public CoreDumpHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * Returns the image hash, or null if it has not been received yet.
+     */
+    public byte @Nullable [] getImageHash() {
+        return mImageHash;
+    }
+
+    /**
+     * Returns the registers, or null if they have not been received yet.
+     */
+    public byte @Nullable [] getRegisters() {
+        return mRegisters;
+    }
+
+    /**
+     * Returns the number of bytes parsed.
+     */
+    public long getBytesParsed() {
+        return mBytesParsed;
+    }
+
+    private void onHeaderBuffer() throws IOException {
+        if (mHeader == null) {
+            mHeader = CoreDumpHeader.fromBytes(mHeaderBuffer);
+            if (mListener != null) {
+                mListener.onHeader(mHeader);
+            }
+            return;
+        }
+        mType = ByteUtil.byteToUnsignedInt(mHeaderBuffer[0]);
+        mLength = ByteUtil.byteArrayToUnsignedInt(mHeaderBuffer, 2, Endian.LITTLE, 2);
+        mOff = ByteUtil.byteArrayToUnsignedLong(mHeaderBuffer, 4, Endian.LITTLE, 4);
+        mValueLength = 0;
+        if (mType == CoreDump.TLV_TYPE_MEM) {
+            mValue = null;
+            mMemorySink.onRegion(mOff, mLength);
+        } else {
+            mValue = new byte[mLength];
+        }
+        if (mLength == 0) {
+            onEntryEnd();
+        } else {
+            mInValue = true;
+        }
+    }
+
+    private void onEntryEnd() {
+        mInValue = false;
+        if (mValue == null) {
+            return;
+        }
+        final CoreDumpTlvEntry entry = new CoreDumpTlvEntry(mType, mLength, mOff, mValue);
+        mValue = null;
+        if (entry.getType() == CoreDump.TLV_TYPE_IMAGE && mImageHash == null) {
+            mImageHash = entry.getValue();
+        } else if (entry.getType() == CoreDump.TLV_TYPE_REG && mRegisters == null) {
+            mRegisters = entry.getValue();
+        }
+        if (mListener != null) {
+            mListener.onEntry(entry);
+        }
+    }
+}
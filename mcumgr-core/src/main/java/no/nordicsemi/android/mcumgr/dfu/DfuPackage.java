@@ -0,0 +1,321 @@
+package no.nordicsemi.android.mcumgr.dfu;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.ImageSet;
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
+import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImageSet;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * A DFU package, that is a ZIP file with a <i>manifest.json</i> file and images, as generated
+ * by the nRF Connect SDK.
+ * <p>
+ * Only the manifest is read when the package is opened. Entries are read from the file when
+ * requested, directly into buffers of the entry size, so the package itself is never held in
+ * memory. The package should be closed when no longer needed.
+ * <p>
+ * Each entry is verified against the manifest: an entry of a size different from the declared
+ * size is reported as an error. Packages generated by the nRF Connect SDK declare the exact size
+ * of each file; no padding is added.
+ * @noinspection unused
+ */
+public class DfuPackage implements Closeable {
+    private static final String MANIFEST = "manifest.json";
+
+    /**
+     * A file declared in the manifest.
+     */
+    public static class Entry {
+        /**
+         * The file type. Expected vales are: "application", "bin", "suit-envelope", "cache", "mcuboot".
+         */
+        @NotNull
+        public final String type;
+        /**
+         * The name of the image file.
+         */
+        @NotNull
+        public final String file;
+        /**
+         * The size of the image file in bytes, as declared in the manifest, or 0 if not given.
+         * If given, the file must have exactly this size.
+         */
+        public final long size;
+        /**
+         * Image index is used for multi-core devices. Index 0 is the main core (app core),
+         * index 1 is secondary core (net core), etc.
+         */
+        public final int imageIndex;
+        /**
+         * The slot number where the image is to be sent, or -1 if not given.
+         */
+        public final int slot;
+        /**
+         * The target partition ID. This parameter is valid for files with type "cache".
+         */
+        public final int partition;
+
+        private Entry(@NotNull final JsonNode node) throws IOException {
+            final JsonNode file = node.get("file");
+            if (file == null || !file.isTextual())
+                throw new IOException("Invalid manifest: file name missing");
+            this.file = file.asText();
+            this.type = node.path("type").asText("");
+            this.size = node.path("size").asLong(0);
+            this.imageIndex = node.path("image_index").asInt(0);
+            this.slot = node.path("slot").asInt(-1);
+            this.partition = node.path("partition").asInt(0);
+        }
+    }
+
+    @NotNull
+    private final ZipFile zip;
+    private final int formatVersion;
+    @NotNull
+    private final List<Entry> entries;
+
+    /**
+     * Opens the DFU package and reads the manifest.
+     *
+     * @param file the ZIP file.
+     * @throws IOException if the file is not a valid DFU package, or any of the files declared
+     *                     in the manifest is missing or has a different size.
+     */
+    public DfuPackage(@NotNull final File file) throws IOException {
+        zip = new ZipFile(file);
+        try {
+            final ZipEntry manifest = zip.getEntry(MANIFEST);
+            if (manifest == null)
+                throw new IOException("Invalid DFU package: " + MANIFEST + " not found");
+
+            final JsonNode root;
+            try (InputStream is = zip.getInputStream(manifest)) {
+                root = new ObjectMapper().readTree(is);
+            }
+            formatVersion = root.path("format-version").asInt(root.path("format_version").asInt(0));
+
+            final List<Entry> entries = new ArrayList<>();
+            for (final JsonNode node : root.path("files")) {
+                final Entry entry = new Entry(node);
+                getZipEntry(entry.file, entry.size);
+                entries.add(entry);
+            }
+            this.entries = Collections.unmodifiableList(entries);
+        } catch (final IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the version of the manifest format.
+     */
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    /**
+     * Returns the files declared in the manifest.
+     */
+    @NotNull
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns all images from the package.
+     *
+     * @return The image set.
+     * @throws IOException if reading an image has failed.
+     * @throws McuMgrException if any of the images is invalid.
+     */
+    @NotNull
+    public ImageSet getBinaries() throws IOException, McuMgrException {
+        final ImageSet binaries = getBinaries(null);
+        if (binaries == null)
+            return new ImageSet();
+        return binaries;
+    }
+
+    /**
+     * Returns the MCUboot images from the package.
+     *
+     * @return The image set, or null if the package does not contain MCUboot update.
+     * @throws IOException if reading an image has failed.
+     * @throws McuMgrException if any of the images is invalid.
+     */
+    @Nullable
+    public ImageSet getMcuBootBinaries() throws IOException, McuMgrException {
+        return getBinaries("mcuboot");
+    }
+
+    /**
+     * Returns the SUIT envelope.
+     * <p>
+     * This is valid only for SUIT updates using SUIT manager.
+     * @return The SUIT envelope, or null if not present in the package.
+     * @throws IOException if reading the envelope has failed.
+     */
+    public byte @Nullable [] getSuitEnvelope() throws IOException {
+        // First, search for an entry of type "suit-envelope".
+        for (final Entry entry : entries) {
+            if (entry.type.equals("suit-envelope")) {
+                return read(entry.file, entry.size);
+            }
+        }
+        // If not found, search for a file with the ".suit" extension.
+        for (final Entry entry : entries) {
+            if (entry.file.endsWith(".suit")) {
+                return read(entry.file, entry.size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Raw cache images are sent to the device together with the SUIT envelope before starting the
+     * update process. The cache images are stored in the cache partitions.
+     *
+     * @return The cache images, or null if not present in the package.
+     * @throws IOException if reading an image has failed.
+     */
+    @Nullable
+    public CacheImageSet getCacheBinaries() throws IOException {
+        CacheImageSet cache = null;
+        for (final Entry entry : entries) {
+            if (entry.type.equals("cache")) {
+                if (cache == null)
+                    cache = new CacheImageSet();
+                cache.add(entry.partition, read(entry.file, entry.size));
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a file from the package, e.g. a resource requested by the SUIT manifest.
+     *
+     * @param name the name of the file.
+     * @return The content of the file, or null if not found.
+     * @throws IOException if reading the file has failed.
+     */
+    public byte @Nullable [] getResource(@NotNull final String name) throws IOException {
+        if (zip.getEntry(name) == null)
+            return null;
+        for (final Entry entry : entries) {
+            if (entry.file.equals(name)) {
+                return read(name, entry.size);
+            }
+        }
+        return read(name, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    @Nullable
+    private ImageSet getBinaries(@Nullable final String type) throws IOException, McuMgrException {
+        ImageSet binaries = null;
+
+        int i = 0;
+        for (final Entry entry : entries) {
+            if (type == null || type.equals(entry.type)) {
+                if (binaries == null)
+                    binaries = new ImageSet();
+
+                int slot = entry.slot;
+                // If slot wasn't set in the manifest, set it to the default value.
+                if (slot < 0) {
+                    if ("mcuboot".equals(entry.type)) {
+                        // Before nRF Connect SDK 3.0 slot was not given for mcuboot updates.
+                        // Instead, slots were assigned in order of appearance in the manifest.
+                        slot = i++;
+                    } else {
+                        slot = TargetImage.SLOT_SECONDARY;
+                    }
+                }
+                binaries.add(new TargetImage(entry.imageIndex, slot, read(entry.file, entry.size)));
+            }
+        }
+        return binaries;
+    }
+
+    @NotNull
+    private ZipEntry getZipEntry(@NotNull final String name, final long declaredSize) throws IOException {
+        final ZipEntry entry = zip.getEntry(name);
+        if (entry == null || entry.isDirectory())
+            throw new IOException("File not found: " + name);
+        final long size = entry.getSize();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("File too large: " + name);
+        if (size >= 0)
+            checkSize(name, size, declaredSize);
+        return entry;
+    }
+
+    private byte @NotNull [] read(@NotNull final String name, final long declaredSize) throws IOException {
+        final ZipEntry entry = getZipEntry(name, declaredSize);
+        final long size = entry.getSize();
+        try (InputStream is = zip.getInputStream(entry)) {
+            if (size < 0) {
+                // The size is not known until the entry is inflated.
+                final byte[] data = readAll(is);
+                checkSize(name, data.length, declaredSize);
+                return data;
+            }
+            final byte[] data = new byte[(int) size];
+            int offset = 0;
+            while (offset < data.length) {
+                final int count = is.read(data, offset, data.length - offset);
+                if (count < 0)
+                    throw new IOException("Unexpected end of file: " + name);
+                offset += count;
+            }
+            if (is.read() != -1)
+                throw new IOException("File " + name + " is larger than " + size + " bytes");
+            return data;
+        }
+    }
+
+    /**
+     * Checks the size of a file against the size declared in the manifest, if given.
+     */
+    private static void checkSize(@NotNull final String name, final long size, final long declaredSize) throws IOException {
+        if (declaredSize > 0 && size != declaredSize)
+            throw new IOException("File " + name + " has " + size + " bytes, expected " + declaredSize);
+    }
+
+    private static byte @NotNull [] readAll(@NotNull final InputStream is) throws IOException {
+        byte[] data = new byte[8192];
+        int offset = 0;
+        int count;
+        while ((count = is.read(data, offset, data.length - offset)) != -1) {
+            offset += count;
+            if (offset == data.length) {
+                final byte[] larger = new byte[data.length * 2];
+                System.arraycopy(data, 0, larger, 0, offset);
+                data = larger;
+            }
+        }
+        final byte[] result = new byte[offset];
+        System.arraycopy(data, 0, result, 0, offset);
+        return result;
+    }
+}
@@ -67,7 +67,7 @@ public interface FirmwareUpgradeCallback<State> {
      */
     void onUploadProgressChanged(int bytesSent, int imageSize, long timestamp);
 
-    class Executor<State> implements FirmwareUpgradeCallback<State> {
+    class Executor<State> implements FirmwareUpgradeCallback<State>, UploadThroughputCallback {
         @NotNull
         private final MainThreadExecutor executor;
 
@@ -176,5 +176,20 @@ public interface FirmwareUpgradeCallback<State> {
             else
                 callback.onUploadProgressChanged(bytesSent, imageSize, timestamp);
         }
+
+        @Override
+        public void onUploadThroughputChanged(float throughput, float averageThroughput, long remainingTime) {
+            if (!(this.callback instanceof UploadThroughputCallback))
+                return;
+            final UploadThroughputCallback callback = (UploadThroughputCallback) this.callback;
+            if (runOnIUThread)
+                executor.execute(() -> {
+                    if (this.callback instanceof UploadThroughputCallback)
+                        ((UploadThroughputCallback) this.callback)
+                                .onUploadThroughputChanged(throughput, averageThroughput, remainingTime);
+                });
+            else
+                callback.onUploadThroughputChanged(throughput, averageThroughput, remainingTime);
+        }
     }
 }
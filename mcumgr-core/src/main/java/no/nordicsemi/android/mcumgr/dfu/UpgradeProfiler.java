@@ -0,0 +1,335 @@
+package no.nordicsemi.android.mcumgr.dfu;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import no.nordicsemi.android.mcumgr.McuManager;
+import no.nordicsemi.android.mcumgr.McuMgrRequestObserver;
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.transfer.PartitionTiming;
+
+/**
+ * The profiler records the timeline of a firmware upgrade.
+ * <p>
+ * Each task performed during the upgrade starts a new phase. The profiler observes all requests
+ * sent using the transport and connection events, and attributes them to the current phase.
+ * When the upgrade ends, an {@link UpgradeReport} is created.
+ * <p>
+ * Each request and connection event is also recorded with its timestamp. Events are kept in
+ * a ring buffer of primitive arrays, allocated when the upgrade starts, so recording an event
+ * does not allocate memory. When the buffer is full, the oldest events are dropped.
+ */
+public class UpgradeProfiler implements McuMgrRequestObserver, McuMgrTransport.ConnectionObserver {
+    /** The default maximum number of events kept in the report. */
+    public final static int DEFAULT_MAX_EVENTS = 8192;
+
+    /** Set in the event type of a failed request. */
+    private final static byte FLAG_FAILED = (byte) 0x80;
+
+    /** Profilers recording an upgrade, by transport. */
+    private final static Map<McuMgrTransport, UpgradeProfiler> sProfilers = new WeakHashMap<>();
+
+    /**
+     * Returns the profiler recording an upgrade using the given transport. Tasks use it to
+     * add their measurements to the report.
+     *
+     * @param transport the transport.
+     * @return The profiler, or null if no upgrade is being recorded.
+     */
+    @Nullable
+    public static UpgradeProfiler forTransport(@NotNull final McuMgrTransport transport) {
+        synchronized (sProfilers) {
+            return sProfilers.get(transport);
+        }
+    }
+
+    /**
+     * Statistics of the current phase.
+     */
+    private static class PhaseRecorder {
+        @NotNull
+        private final String task;
+        @Nullable
+        private final String state;
+        private final long startTimestamp;
+        private int requestCount;
+        private int failedRequestCount;
+        private long requestTime;
+        private long minRequestTime = Long.MAX_VALUE;
+        private long maxRequestTime;
+        private int disconnectionCount;
+        private long disconnectedTime;
+        private long swapTime = -1;
+        private int pollCount;
+        private long pollTime;
+        private long maxPollTime;
+        @NotNull
+        private List<PartitionTiming> partitionTimings = Collections.emptyList();
+
+        private PhaseRecorder(@NotNull final String task, @Nullable final String state,
+                              final long startTimestamp) {
+            this.task = task;
+            this.state = state;
+            this.startTimestamp = startTimestamp;
+        }
+
+        @NotNull
+        private UpgradeReport.Phase build(final long endTimestamp) {
+            return new UpgradeReport.Phase(task, state, startTimestamp, endTimestamp,
+                    requestCount, failedRequestCount, requestTime,
+                    requestCount > 0 ? minRequestTime : 0, maxRequestTime,
+                    disconnectionCount, disconnectedTime, swapTime,
+                    pollCount, pollTime, maxPollTime, partitionTimings);
+        }
+    }
+
+    @Nullable
+    private McuMgrTransport transport;
+    @NotNull
+    private final List<UpgradeReport.Phase> phases = new ArrayList<>();
+    @Nullable
+    private PhaseRecorder current;
+    private long startTimestamp;
+    /** The time the device has disconnected, or 0 if connected. */
+    private long disconnectedTimestamp;
+
+    private final int maxEvents;
+    private long[] eventTimestamps;
+    private int[] eventDurations;
+    /** Group ID and command ID of each request. */
+    private int[] eventIds;
+    /** Ordinal of the event type, with {@link #FLAG_FAILED} set for failed requests. */
+    private byte[] eventTypes;
+    /** Number of events recorded since the upgrade started, including dropped ones. */
+    private int eventTotal;
+
+    /**
+     * Creates a profiler keeping at most {@link #DEFAULT_MAX_EVENTS} events.
+     */
+    public UpgradeProfiler() {
+        this(DEFAULT_MAX_EVENTS);
+    }
+
+    /**
+     * Creates a profiler.
+     *
+     * @param maxEvents the maximum number of events kept in the report, 0 to record only
+     *                  the statistics of each phase.
+     */
+    public UpgradeProfiler(final int maxEvents) {
+        if (maxEvents < 0)
+            throw new IllegalArgumentException("Maximum number of events must not be negative");
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Starts recording a new upgrade.
+     *
+     * @param transport the transport used for the upgrade.
+     */
+    public void start(@NotNull final McuMgrTransport transport) {
+        final McuMgrTransport previous;
+        synchronized (this) {
+            previous = this.transport;
+            this.transport = transport;
+            phases.clear();
+            current = null;
+            disconnectedTimestamp = 0;
+            startTimestamp = System.currentTimeMillis();
+            eventTimestamps = new long[maxEvents];
+            eventDurations = new int[maxEvents];
+            eventIds = new int[maxEvents];
+            eventTypes = new byte[maxEvents];
+            eventTotal = 0;
+        }
+        // Observers are registered outside the lock, as the transport notifies them
+        // holding its own lock.
+        if (previous != null) {
+            unregister(previous);
+        }
+        McuManager.addRequestObserver(transport, this);
+        transport.addObserver(this);
+        synchronized (sProfilers) {
+            sProfilers.put(transport, this);
+        }
+    }
+
+    /**
+     * Starts a new phase, ending the current one.
+     *
+     * @param task  the name of the task.
+     * @param state the state of the upgrade, if any.
+     */
+    public synchronized void onTaskStarted(@NotNull final String task, @Nullable final String state) {
+        final long now = System.currentTimeMillis();
+        endPhase(now);
+        current = new PhaseRecorder(task, state, now);
+    }
+
+    /**
+     * Sets the time the device took to swap the images and boot, measured from the reset until
+     * it responded again, in the current phase.
+     *
+     * @param swapTime the swap time, in milliseconds.
+     */
+    public synchronized void setSwapTime(final long swapTime) {
+        if (current != null)
+            current.swapTime = swapTime;
+    }
+
+    /**
+     * Sets the statistics of polling the device for status, e.g. for SUIT resource requests,
+     * in the current phase.
+     *
+     * @param pollCount   number of polls sent.
+     * @param pollTime    sum of latencies of all polls, in milliseconds.
+     * @param maxPollTime the longest latency of a poll, in milliseconds.
+     */
+    public synchronized void setPollStatistics(final int pollCount, final long pollTime,
+                                               final long maxPollTime) {
+        if (current == null)
+            return;
+        current.pollCount = pollCount;
+        current.pollTime = pollTime;
+        current.maxPollTime = maxPollTime;
+    }
+
+    /**
+     * Sets the timing of each cache partition uploaded in the current phase.
+     *
+     * @param timings the timings, in order of upload.
+     */
+    public synchronized void setPartitionTimings(@NotNull final List<PartitionTiming> timings) {
+        if (current != null)
+            current.partitionTimings = new ArrayList<>(timings);
+    }
+
+    /**
+     * Ends recording and creates the report.
+     *
+     * @param outcome the result of the upgrade.
+     * @param error   the error, if the upgrade has failed.
+     * @return The report.
+     */
+    @NotNull
+    public UpgradeReport finish(@NotNull final UpgradeReport.Outcome outcome,
+                                @Nullable final McuMgrException error) {
+        final McuMgrTransport transport;
+        final UpgradeReport report;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            endPhase(now);
+            transport = this.transport;
+            this.transport = null;
+            final int count = Math.min(eventTotal, maxEvents);
+            report = new UpgradeReport(outcome, error, startTimestamp, now, new ArrayList<>(phases),
+                    buildEvents(), eventTotal - count);
+            eventTimestamps = null;
+            eventDurations = null;
+            eventIds = null;
+            eventTypes = null;
+            eventTotal = 0;
+        }
+        if (transport != null) {
+            unregister(transport);
+        }
+        return report;
+    }
+
+    @Override
+    public synchronized void onRequestCompleted(final int groupId, final int commandId,
+                                                final long sentTimestamp, final long timestamp,
+                                                @Nullable final McuMgrException error) {
+        final PhaseRecorder phase = current;
+        if (phase == null)
+            return;
+        final long time = timestamp - sentTimestamp;
+        phase.requestCount++;
+        if (error != null)
+            phase.failedRequestCount++;
+        phase.requestTime += time;
+        phase.minRequestTime = Math.min(phase.minRequestTime, time);
+        phase.maxRequestTime = Math.max(phase.maxRequestTime, time);
+        byte type = (byte) UpgradeReport.Event.Type.REQUEST.ordinal();
+        if (error != null)
+            type |= FLAG_FAILED;
+        record(type, timestamp, time, (groupId << 8) | (commandId & 0xFF));
+    }
+
+    @Override
+    public synchronized void onConnected() {
+        record((byte) UpgradeReport.Event.Type.CONNECTED.ordinal(), System.currentTimeMillis(), 0, -1);
+        if (disconnectedTimestamp == 0)
+            return;
+        final long now = System.currentTimeMillis();
+        if (current != null)
+            current.disconnectedTime += now - disconnectedTimestamp;
+        disconnectedTimestamp = 0;
+    }
+
+    @Override
+    public synchronized void onDisconnected() {
+        record((byte) UpgradeReport.Event.Type.DISCONNECTED.ordinal(), System.currentTimeMillis(), 0, -1);
+        if (disconnectedTimestamp != 0)
+            return;
+        disconnectedTimestamp = System.currentTimeMillis();
+        if (current != null)
+            current.disconnectionCount++;
+    }
+
+    private void endPhase(final long now) {
+        final PhaseRecorder phase = current;
+        if (phase == null)
+            return;
+        // The time disconnected is split between the phases.
+        if (disconnectedTimestamp != 0) {
+            phase.disconnectedTime += now - disconnectedTimestamp;
+            disconnectedTimestamp = now;
+        }
+        phases.add(phase.build(now));
+        current = null;
+    }
+
+    private void record(final byte type, final long timestamp, final long duration, final int id) {
+        if (eventTypes == null || maxEvents == 0)
+            return;
+        final int index = eventTotal++ % maxEvents;
+        eventTypes[index] = type;
+        eventTimestamps[index] = timestamp;
+        eventDurations[index] = (int) Math.min(duration, Integer.MAX_VALUE);
+        eventIds[index] = id;
+    }
+
+    @NotNull
+    private List<UpgradeReport.Event> buildEvents() {
+        final int count = Math.min(eventTotal, maxEvents);
+        final List<UpgradeReport.Event> events = new ArrayList<>(count);
+        final UpgradeReport.Event.Type[] types = UpgradeReport.Event.Type.values();
+        for (int i = eventTotal - count; i < eventTotal; i++) {
+            final int index = i % maxEvents;
+            final int id = eventIds[index];
+            final byte type = eventTypes[index];
+            events.add(new UpgradeReport.Event(types[type & ~FLAG_FAILED],
+                    eventTimestamps[index], eventDurations[index],
+                    id < 0 ? -1 : id >>> 8, id < 0 ? -1 : id & 0xFF,
+                    (type & FLAG_FAILED) != 0));
+        }
+        return events;
+    }
+
+    private void unregister(@NotNull final McuMgrTransport transport) {
+        synchronized (sProfilers) {
+            if (sProfilers.get(transport) == this)
+                sProfilers.remove(transport);
+        }
+        McuManager.removeRequestObserver(transport, this);
+        transport.removeObserver(this);
+    }
+}
@@ -0,0 +1,294 @@
+package no.nordicsemi.android.mcumgr.dfu;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.transfer.PartitionTiming;
+
+/**
+ * The timeline of a firmware upgrade, recorded by the {@link UpgradeProfiler}.
+ * <p>
+ * The upgrade is split into phases, one for each task performed. Each phase contains
+ * the statistics of the SMP requests sent while the task was performed and the time the
+ * device was disconnected, e.g. during a reset.
+ * <p>
+ * In addition, the report contains the timeline of individual {@link Event}s: every SMP
+ * round trip, disconnection and reconnection. At most the number of events set in the
+ * {@link UpgradeProfiler} are kept; if there were more, the oldest ones are dropped.
+ */
+@SuppressWarnings("unused")
+public class UpgradeReport {
+
+    /**
+     * The result of the upgrade.
+     */
+    public enum Outcome {
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * A single event of the upgrade.
+     */
+    public static class Event {
+
+        /**
+         * The type of the event.
+         */
+        public enum Type {
+            /** A response to an SMP request has been received, or the request has failed. */
+            REQUEST,
+            /** The device has disconnected. */
+            DISCONNECTED,
+            /** The device has connected. */
+            CONNECTED
+        }
+
+        /** The type of the event. */
+        @NotNull
+        public final Type type;
+        /** The time of the event, in milliseconds. For requests, the time the round trip ended. */
+        public final long timestamp;
+        /** The round trip time of a request, in milliseconds, or 0 for connection events. */
+        public final long duration;
+        /** The group ID of a request, or -1 for connection events. */
+        public final int groupId;
+        /** The command ID of a request, or -1 for connection events. */
+        public final int commandId;
+        /** Whether the request has failed. */
+        public final boolean failed;
+
+        Event(@NotNull final Type type, final long timestamp, final long duration,
+              final int groupId, final int commandId, final boolean failed) {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.duration = duration;
+            this.groupId = groupId;
+            this.commandId = commandId;
+            this.failed = failed;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            if (type != Type.REQUEST)
+                return String.format(Locale.US, "%d: %s", timestamp, type);
+            return String.format(Locale.US, "%d: request %d/%d in %d ms%s",
+                    timestamp, groupId, commandId, duration, failed ? " (failed)" : "");
+        }
+    }
+
+    /**
+     * A single phase of the upgrade.
+     */
+    public static class Phase {
+        /** The name of the task, e.g. "Upload". */
+        @NotNull
+        public final String task;
+        /** The state reported to the callback while the task was performed. */
+        @Nullable
+        public final String state;
+        /** The time the phase started, in milliseconds. */
+        public final long startTimestamp;
+        /** The time the phase ended, in milliseconds. */
+        public final long endTimestamp;
+        /** Number of requests sent during the phase. */
+        public final int requestCount;
+        /** Number of requests that failed, e.g. timed out. */
+        public final int failedRequestCount;
+        /** Sum of round trip times of all requests, in milliseconds. */
+        public final long requestTime;
+        /** The shortest round trip time, in milliseconds, or 0 if no request was sent. */
+        public final long minRequestTime;
+        /** The longest round trip time, in milliseconds, or 0 if no request was sent. */
+        public final long maxRequestTime;
+        /** Number of times the device has disconnected during the phase. */
+        public final int disconnectionCount;
+        /** Time the device was disconnected during the phase, in milliseconds. */
+        public final long disconnectedTime;
+        /**
+         * Time from the reset until the device responded again, in milliseconds, or -1 if not
+         * measured. It is set in the reset phase, if the device was probed while swapping images.
+         */
+        public final long swapTime;
+        /**
+         * Number of polls sent during the phase, e.g. while waiting for SUIT resource requests.
+         * Polls are also counted as requests.
+         */
+        public final int pollCount;
+        /** Sum of latencies of all polls, in milliseconds. */
+        public final long pollTime;
+        /** The longest latency of a poll, in milliseconds, or 0 if nothing was polled. */
+        public final long maxPollTime;
+        /**
+         * Timing of each cache partition uploaded during the phase, in order, or an empty list.
+         * A failed upload contains only the partitions completed before the failure.
+         */
+        @NotNull
+        public final List<PartitionTiming> partitionTimings;
+
+        Phase(@NotNull final String task, @Nullable final String state,
+              final long startTimestamp, final long endTimestamp,
+              final int requestCount, final int failedRequestCount,
+              final long requestTime, final long minRequestTime, final long maxRequestTime,
+              final int disconnectionCount, final long disconnectedTime, final long swapTime,
+              final int pollCount, final long pollTime, final long maxPollTime,
+              @NotNull final List<PartitionTiming> partitionTimings) {
+            this.task = task;
+            this.state = state;
+            this.startTimestamp = startTimestamp;
+            this.endTimestamp = endTimestamp;
+            this.requestCount = requestCount;
+            this.failedRequestCount = failedRequestCount;
+            this.requestTime = requestTime;
+            this.minRequestTime = minRequestTime;
+            this.maxRequestTime = maxRequestTime;
+            this.disconnectionCount = disconnectionCount;
+            this.disconnectedTime = disconnectedTime;
+            this.swapTime = swapTime;
+            this.pollCount = pollCount;
+            this.pollTime = pollTime;
+            this.maxPollTime = maxPollTime;
+            this.partitionTimings = Collections.unmodifiableList(partitionTimings);
+        }
+
+        /**
+         * Returns the duration of the phase.
+         *
+         * @return The duration in milliseconds.
+         */
+        public long getDuration() {
+            return endTimestamp - startTimestamp;
+        }
+
+        /**
+         * Returns the average round trip time of requests sent during the phase.
+         *
+         * @return The average round trip time in milliseconds, or 0 if no request was sent.
+         */
+        public long getAverageRequestTime() {
+            return requestCount > 0 ? requestTime / requestCount : 0;
+        }
+
+        /**
+         * Returns the average latency of polls sent during the phase.
+         *
+         * @return The average latency in milliseconds, or 0 if nothing was polled.
+         */
+        public long getAveragePollTime() {
+            return pollCount > 0 ? pollTime / pollCount : 0;
+        }
+
+        @NotNull
+        @Override
+        public String toString() {
+            final StringBuilder phase = new StringBuilder(String.format(Locale.US,
+                    "%s (%s): %d ms, %d requests (%d failed, avg %d ms, max %d ms), %d disconnections (%d ms)",
+                    task, state, getDuration(),
+                    requestCount, failedRequestCount, getAverageRequestTime(), maxRequestTime,
+                    disconnectionCount, disconnectedTime));
+            if (swapTime >= 0)
+                phase.append(", swap time ").append(swapTime).append(" ms");
+            if (pollCount > 0)
+                phase.append(String.format(Locale.US, ", %d polls (avg %d ms, max %d ms)",
+                        pollCount, getAveragePollTime(), maxPollTime));
+            for (final PartitionTiming timing : partitionTimings)
+                phase.append("\n    ").append(timing);
+            return phase.toString();
+        }
+    }
+
+    /** The result of the upgrade. */
+    @NotNull
+    public final Outcome outcome;
+    /** The error, if the upgrade has failed. */
+    @Nullable
+    public final Throwable error;
+    /** The time the upgrade started, in milliseconds. */
+    public final long startTimestamp;
+    /** The time the upgrade ended, in milliseconds. */
+    public final long endTimestamp;
+    /** Phases of the upgrade, in order. */
+    @NotNull
+    public final List<Phase> phases;
+    /** The most recent events of the upgrade, in order. */
+    @NotNull
+    public final List<Event> events;
+    /** Number of events dropped, as the limit of events has been reached. */
+    public final int droppedEventCount;
+
+    UpgradeReport(@NotNull final Outcome outcome, @Nullable final Throwable error,
+                  final long startTimestamp, final long endTimestamp,
+                  @NotNull final List<Phase> phases,
+                  @NotNull final List<Event> events, final int droppedEventCount) {
+        this.outcome = outcome;
+        this.error = error;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.phases = Collections.unmodifiableList(phases);
+        this.events = Collections.unmodifiableList(events);
+        this.droppedEventCount = droppedEventCount;
+    }
+
+    /**
+     * Returns the duration of the upgrade.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getDuration() {
+        return endTimestamp - startTimestamp;
+    }
+
+    /**
+     * Returns the total time the device was disconnected during the upgrade.
+     *
+     * @return The time in milliseconds.
+     */
+    public long getDisconnectedTime() {
+        long time = 0;
+        for (final Phase phase : phases) {
+            time += phase.disconnectedTime;
+        }
+        return time;
+    }
+
+    /**
+     * Returns the total time spent in each state, in order of first occurrence.
+     * Phases without a state are not included.
+     *
+     * @return The map of state names to time in milliseconds.
+     */
+    @NotNull
+    public Map<String, Long> getTimeByState() {
+        final Map<String, Long> map = new LinkedHashMap<>();
+        for (final Phase phase : phases) {
+            if (phase.state == null)
+                continue;
+            final Long time = map.get(phase.state);
+            map.put(phase.state, (time != null ? time : 0L) + phase.getDuration());
+        }
+        return map;
+    }
+
+    @NotNull
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder()
+                .append("Upgrade ").append(outcome)
+                .append(" in ").append(getDuration()).append(" ms");
+        if (error != null) {
+            builder.append(": ").append(error.getMessage());
+        }
+        for (final Phase phase : phases) {
+            builder.append("\n  ").append(phase);
+        }
+        return builder.toString();
+    }
+}
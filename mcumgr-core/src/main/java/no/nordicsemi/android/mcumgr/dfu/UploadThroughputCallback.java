@@ -0,0 +1,24 @@
+package no.nordicsemi.android.mcumgr.dfu;
+
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
+
+/**
+ * An optional callback reporting the upload throughput during a firmware upgrade.
+ * <p>
+ * Implement this interface in the class implementing {@link FirmwareUpgradeCallback} to receive
+ * the throughput and the estimated remaining time together with each progress update.
+ *
+ * @see ProgressTracker
+ */
+public interface UploadThroughputCallback {
+
+    /**
+     * Called right after {@link FirmwareUpgradeCallback#onUploadProgressChanged(int, int, long)}.
+     *
+     * @param throughput        the throughput since the previous progress update, in bytes per second.
+     * @param averageThroughput the smoothed throughput, in bytes per second.
+     * @param remainingTime     the estimated remaining time of the current upload in milliseconds,
+     *                          or -1 if unknown.
+     */
+    void onUploadThroughputChanged(float throughput, float averageThroughput, long remainingTime);
+}
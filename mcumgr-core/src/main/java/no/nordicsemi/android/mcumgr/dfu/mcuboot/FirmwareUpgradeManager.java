@@ -9,9 +9,12 @@ import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeCallback;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeController;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeReport;
+import no.nordicsemi.android.mcumgr.dfu.UploadThroughputCallback;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.ImageSet;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 
 /**
  * Manages a McuManager firmware upgrade. Once initialized, <b>this object can only perform a single
@@ -102,7 +105,7 @@ public class FirmwareUpgradeManager implements FirmwareUpgradeController {
         /**
          * Estimated time required for swapping images, in milliseconds.
          * If the mode is set to {@link Mode#TEST_AND_CONFIRM},
-         * the manager will try to reconnect after this time. 0 by default.
+         * the manager will probe the device for at most this time. 0 by default.
          */
         public final int estimatedSwapTime;
 
@@ -139,6 +142,12 @@ public class FirmwareUpgradeManager implements FirmwareUpgradeController {
              * {@link FirmwareUpgradeManager.Mode#TEST_AND_CONFIRM} mode, which
              * reconnects to the device after it resets.
              * <p>
+             * The value is an upper bound. While waiting, the manager periodically tries to
+             * reconnect and send an Echo command, with increasing delays, and continues as soon
+             * as the device responds. The measured time is reported as the swap time
+             * of the reset phase in {@link FirmwareUpgradeManager#getLastReport()}, which may be
+             * used to tune this value for a given device model.
+             * <p>
              * This value is ignored when the target device supports SUIT (Software Update for
              * Internet of Things).
              * </p>
@@ -265,6 +274,37 @@ public class FirmwareUpgradeManager implements FirmwareUpgradeController {
         mInternalCallback.setRunOnIUThread(uiThreadCallbacks);
     }
 
+    /**
+     * Sets how often the upload progress is reported to the callback.
+     * <p>
+     * A progress update is reported when at least the given time has passed, or the given number
+     * of bytes has been sent, since the last reported update. The first and the last update of
+     * each upload are always reported. Set both values to 0 to report every acknowledged chunk.
+     * <p>
+     * By default, the progress is reported at most every 100 ms.
+     *
+     * @param minIntervalMillis minimum time between progress updates, in milliseconds.
+     * @param minBytes          minimum number of bytes sent between progress updates.
+     * @see UploadThroughputCallback
+     */
+    public void setProgressReportingRate(final long minIntervalMillis, final int minBytes) {
+        mPerformer.setProgressTracker(new ProgressTracker(minIntervalMillis, minBytes));
+    }
+
+    /**
+     * Returns the report of the last firmware upgrade, or null if no upgrade has finished yet.
+     * <p>
+     * The report contains the duration of each task, the statistics of the requests sent
+     * and the time the device was disconnected, and allows to tell whether the time was spent
+     * on transfer, swap or reconnection.
+     *
+     * @return The report of the last upgrade.
+     */
+    @Nullable
+    public UpgradeReport getLastReport() {
+        return mPerformer.getLastReport();
+    }
+
     /**
      * Sets the manager callback.
      *
@@ -7,6 +7,8 @@ import org.slf4j.LoggerFactory;
 
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeCallback;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeReport;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Mode;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
@@ -16,6 +18,7 @@ import no.nordicsemi.android.mcumgr.dfu.mcuboot.task.PerformDfu;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.task.Task;
 import no.nordicsemi.android.mcumgr.task.TaskPerformer;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 
 public class FirmwareUpgradePerformer extends TaskPerformer<Settings, State> {
 	private final static Logger LOG = LoggerFactory.getLogger(FirmwareUpgradePerformer.class);
@@ -24,12 +27,39 @@ public class FirmwareUpgradePerformer extends TaskPerformer<Settings, State> {
 	 * Firmware upgrade callback passed into the constructor or set before the upload has started.
 	 */
 	@NotNull
-	private final FirmwareUpgradeCallback<State> callback;
+	private final FirmwareUpgradeCallback.Executor<State> callback;
 
-	FirmwareUpgradePerformer(@NotNull final FirmwareUpgradeCallback<State> callback) {
+	/**
+	 * Coalesces progress updates and calculates the upload throughput.
+	 */
+	@NotNull
+	private volatile ProgressTracker progressTracker = new ProgressTracker();
+
+	/**
+	 * Records the timeline of the upgrade.
+	 */
+	@NotNull
+	private final UpgradeProfiler profiler = new UpgradeProfiler();
+
+	/**
+	 * The report of the last upgrade, or null if no upgrade has finished yet.
+	 */
+	@Nullable
+	private volatile UpgradeReport lastReport;
+
+	FirmwareUpgradePerformer(@NotNull final FirmwareUpgradeCallback.Executor<State> callback) {
 		this.callback = callback;
 	}
 
+	void setProgressTracker(@NotNull final ProgressTracker progressTracker) {
+		this.progressTracker = progressTracker;
+	}
+
+	@Nullable
+	UpgradeReport getLastReport() {
+		return lastReport;
+	}
+
 	State getState() {
 		final FirmwareUpgradeTask task = (FirmwareUpgradeTask) getCurrentTask();
 		if (task == null)
@@ -42,43 +72,68 @@ public class FirmwareUpgradePerformer extends TaskPerformer<Settings, State> {
 			   @NotNull final ImageSet images,
 			   @NotNull final Mode mode) {
 		LOG.trace("Starting DFU, mode: {}", mode.name());
+		progressTracker.reset();
+		profiler.start(transport);
 		super.start(transport, settings, new PerformDfu(mode, images));
 	}
 
 	@Override
 	public void onTaskStarted(final @Nullable Task<Settings, State> previousTask,
 							  final @NotNull Task<Settings, State> nextTask) {
+		final State state = nextTask.getState();
+		profiler.onTaskStarted(nextTask.getClass().getSimpleName(), state != null ? state.name() : null);
+
 		if (previousTask == null)
 			return;
 
 		// Notify observer about changing the state.
 		final State oldState = previousTask.getState();
-		final State newState = nextTask.getState();
-		if (oldState != null && newState != null && newState != oldState) {
-			LOG.trace("Moving from state {} to state {}", oldState.name(), newState.name());
-			callback.onStateChanged(oldState, newState);
+		if (oldState != null && state != null && state != oldState) {
+			LOG.trace("Moving from state {} to state {}", oldState.name(), state.name());
+			callback.onStateChanged(oldState, state);
 		}
 	}
 
 	@Override
 	public void onCompleted(final @NotNull Task<Settings, State> task) {
+		report(UpgradeReport.Outcome.COMPLETED, null);
 		callback.onUpgradeCompleted();
 	}
 
 	@Override
 	public void onTaskProgressChanged(final @NotNull Task<Settings, State> task,
 									  final int current, final int total, final long timestamp) {
+		final ProgressTracker tracker = progressTracker;
+		final float throughput, averageThroughput;
+		final long remainingTime;
+		synchronized (tracker) {
+			if (!tracker.update(current, total, timestamp))
+				return;
+			throughput = tracker.getThroughput();
+			averageThroughput = tracker.getAverageThroughput();
+			remainingTime = tracker.getRemainingTime();
+		}
 		callback.onUploadProgressChanged(current, total, timestamp);
+		callback.onUploadThroughputChanged(throughput, averageThroughput, remainingTime);
 	}
 
 	@Override
 	public void onCancelled(final @NotNull Task<Settings, State> task) {
+		report(UpgradeReport.Outcome.CANCELLED, null);
 		callback.onUpgradeCanceled(task.getState());
 	}
 
 	@Override
 	public void onTaskFailed(final @NotNull Task<Settings, State> task,
 							 final @NotNull McuMgrException error) {
+		report(UpgradeReport.Outcome.FAILED, error);
 		callback.onUpgradeFailed(task.getState(), error);
 	}
+
+	private void report(@NotNull final UpgradeReport.Outcome outcome,
+	                    @Nullable final McuMgrException error) {
+		final UpgradeReport report = profiler.finish(outcome, error);
+		lastReport = report;
+		LOG.info("{}", report);
+	}
 }
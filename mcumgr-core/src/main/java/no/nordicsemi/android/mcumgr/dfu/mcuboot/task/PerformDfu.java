@@ -2,10 +2,16 @@ package no.nordicsemi.android.mcumgr.dfu.mcuboot.task;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.ImageSet;
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
+import no.nordicsemi.android.mcumgr.image.ImageVerifier;
+import no.nordicsemi.android.mcumgr.image.ImageWithHash;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
 
 /**
@@ -38,7 +44,15 @@ public class PerformDfu extends FirmwareUpgradeTask {
 
 	@Override
 	public void start(final @NotNull TaskManager<Settings, State> performer) {
-		performer.enqueue(new Validate(mode, images));
+		// Verify the images in the background. They are sent in the meantime, but any upload
+		// will fail if the corresponding image turns out to be corrupted.
+		final List<ImageWithHash> targets = new ArrayList<>(images.getImages().size());
+		for (final TargetImage target : images.getImages()) {
+			targets.add(target.image);
+		}
+		final ImageVerifier verifier = new ImageVerifier(targets).start();
+
+		performer.enqueue(new Validate(mode, images, verifier));
 		performer.onTaskCompleted(this);
 	}
 }
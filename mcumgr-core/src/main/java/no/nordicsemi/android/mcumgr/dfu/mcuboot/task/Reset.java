@@ -4,6 +4,7 @@ import android.os.Handler;
 import android.os.SystemClock;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +12,7 @@ import java.nio.charset.StandardCharsets;
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
@@ -18,6 +20,7 @@ import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.managers.DefaultManager;
 import no.nordicsemi.android.mcumgr.managers.SettingsManager;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse;
 import no.nordicsemi.android.mcumgr.response.dflt.McuMgrOsResponse;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
 
@@ -31,6 +34,68 @@ class Reset extends FirmwareUpgradeTask {
 	 */
 	private final static String KEY_SET_NAME = "fw_loader/adv_name";
 
+	/**
+	 * The delay after disconnection before the device is probed for the first time.
+	 * Following probes are delayed according to the Fibonacci sequence.
+	 * <p>
+	 * Probing does not use {@link no.nordicsemi.android.mcumgr.task.Poller}, which polls
+	 * a status from a connected device and fails on the first error. Here, failing to connect
+	 * is the expected result of a probe, the probing is bounded by the estimated swap time
+	 * counted from the reset response rather than from the first probe, and probes are
+	 * run on the {@link Scheduler}, so that they can be tested without waiting.
+	 */
+	private final static long PROBE_INITIAL_DELAY = 1000; // ms
+
+	/**
+	 * Schedules probes and measures the swap time. Probes and their results are handled
+	 * one at a time, in order they were posted.
+	 */
+	interface Scheduler {
+		/**
+		 * Returns the current time, in milliseconds.
+		 */
+		long now();
+
+		/**
+		 * Posts the runnable to be run after the given delay.
+		 */
+		void post(@NotNull Runnable runnable, long delay);
+
+		/**
+		 * Removes all posted runnables.
+		 */
+		void cancel();
+	}
+
+	/**
+	 * The default scheduler, using a {@link Handler} created on the thread which
+	 * posts the first runnable.
+	 */
+	private static class HandlerScheduler implements Scheduler {
+		@Nullable
+		private Handler mHandler;
+
+		@Override
+		public long now() {
+			return SystemClock.elapsedRealtime();
+		}
+
+		@Override
+		public synchronized void post(@NotNull final Runnable runnable, final long delay) {
+			if (mHandler == null) {
+				mHandler = new Handler();
+			}
+			mHandler.postDelayed(runnable, delay);
+		}
+
+		@Override
+		public synchronized void cancel() {
+			if (mHandler != null) {
+				mHandler.removeCallbacksAndMessages(null);
+			}
+		}
+	}
+
 	/**
 	 * The timestamp at which the response to Reset command was received.
 	 * Assuming that the target device has reset just after sending this response,
@@ -39,20 +104,44 @@ class Reset extends FirmwareUpgradeTask {
 	 */
 	private long mResetResponseTime;
 
+	/**
+	 * The scheduler used to schedule probes. Probe results are handled on it as well.
+	 */
+	@NotNull
+	private final Scheduler mScheduler;
+	private long mProbeDelay;
+	private long mNextProbeDelay;
+	private volatile boolean mCompleted;
+
+	/**
+	 * The transport and the observer waiting for the disconnection, removed when the task
+	 * is cancelled.
+	 */
+	@Nullable
+	private McuMgrTransport mTransport;
+	@Nullable
+	private McuMgrTransport.ConnectionObserver mObserver;
+
 	private final boolean mNoSwap;
 	private final int mBootMode;
 	private final String mAdvName;
 
 	Reset(final boolean noSwap) {
+		this(noSwap, new HandlerScheduler());
+	}
+
+	Reset(final boolean noSwap, @NotNull final Scheduler scheduler) {
 		this.mNoSwap = noSwap;
 		this.mBootMode = 0;
 		this.mAdvName = null;
+		this.mScheduler = scheduler;
 	}
 
 	Reset(final @NotNull String advName) {
 		this.mNoSwap = true;
 		this.mBootMode = DefaultManager.BOOT_MODE_TYPE_BOOTLOADER;
 		this.mAdvName = advName;
+		this.mScheduler = new HandlerScheduler();
 	}
 
 	@Override
@@ -71,7 +160,8 @@ class Reset extends FirmwareUpgradeTask {
 		final Settings settings = performer.getSettings();
 		final McuMgrTransport transport = performer.getTransport();
 
-		transport.addObserver(new McuMgrTransport.ConnectionObserver() {
+		mTransport = transport;
+		mObserver = new McuMgrTransport.ConnectionObserver() {
 			@Override
 			public void onConnected() {
 				// Do nothing
@@ -79,9 +169,10 @@ class Reset extends FirmwareUpgradeTask {
 
 			@Override
 			public void onDisconnected() {
-				LOG.info("Device disconnected");
-
 				transport.removeObserver(this);
+				if (mCompleted)
+					return;
+				LOG.info("Device disconnected");
 
 				// If there is no swap, we're done. No need to wait anything.
 				if (mNoSwap) {
@@ -89,8 +180,8 @@ class Reset extends FirmwareUpgradeTask {
 					return;
 				}
 
-				// Calculate the delay need that we need to wait until the swap is complete.
-				long now = SystemClock.elapsedRealtime();
+				// Calculate the maximum time that we need to wait until the swap is complete.
+				long now = mScheduler.now();
 				if (mResetResponseTime == 0) {
 					// In case the response to Reset command wasn't received before the disconnection
 					// start counting remaining time from now.
@@ -98,16 +189,22 @@ class Reset extends FirmwareUpgradeTask {
 				}
 				long timeSinceReset = now - mResetResponseTime;
 				long remainingTime = settings.estimatedSwapTime - timeSinceReset;
-				final Runnable complete = () -> performer.onTaskCompleted(Reset.this);
 
-				if (remainingTime > 0) {
-					LOG.trace("Waiting remaining {} ms for the swap operation to complete", remainingTime);
-					new Handler().postDelayed(complete, remainingTime);
-				} else {
-					complete.run();
+				if (remainingTime <= 0) {
+					performer.onTaskCompleted(Reset.this);
+					return;
 				}
+
+				// The estimated swap time is an upper bound. In the meantime, probe the device
+				// so that the upgrade continues as soon as it's back.
+				LOG.trace("Probing the device for up to {} ms until the swap operation is complete", remainingTime);
+				mScheduler.post(() -> complete(performer, false), remainingTime);
+				mProbeDelay = PROBE_INITIAL_DELAY;
+				mNextProbeDelay = PROBE_INITIAL_DELAY;
+				scheduleProbe(performer);
 			}
-		});
+		};
+		transport.addObserver(mObserver);
 
 		if (mAdvName != null) {
 			setName(mAdvName, performer, () -> reset(mBootMode, performer));
@@ -116,6 +213,81 @@ class Reset extends FirmwareUpgradeTask {
 		reset(mBootMode, performer);
 	}
 
+	private void scheduleProbe(@NotNull final TaskManager<Settings, State> performer) {
+		if (mCompleted)
+			return;
+		mScheduler.post(() -> probe(performer), mProbeDelay);
+		final long delay = mProbeDelay + mNextProbeDelay;
+		mProbeDelay = mNextProbeDelay;
+		mNextProbeDelay = delay;
+	}
+
+	/**
+	 * Connects to the device and sends Echo command. Any response, including an error,
+	 * means that the device is back.
+	 */
+	private void probe(@NotNull final TaskManager<Settings, State> performer) {
+		if (mCompleted)
+			return;
+		final McuMgrTransport transport = performer.getTransport();
+		LOG.trace("Probing the device...");
+		transport.connect(new McuMgrTransport.ConnectionCallback() {
+			@Override
+			public void onConnected() {
+				echo(performer);
+			}
+
+			@Override
+			public void onDeferred() {
+				// The transport will connect when the request is sent.
+				echo(performer);
+			}
+
+			@Override
+			public void onError(@NotNull final Throwable t) {
+				LOG.trace("Device not available yet: {}", t.getMessage());
+				mScheduler.post(() -> scheduleProbe(performer), 0);
+			}
+		});
+	}
+
+	private void echo(@NotNull final TaskManager<Settings, State> performer) {
+		final DefaultManager manager = new DefaultManager(performer.getTransport());
+		manager.echo("", new McuMgrCallback<>() {
+			@Override
+			public void onResponse(@NotNull final McuMgrEchoResponse response) {
+				mScheduler.post(() -> complete(performer, true), 0);
+			}
+
+			@Override
+			public void onError(@NotNull final McuMgrException error) {
+				LOG.trace("Device not available yet: {}", error.getMessage());
+				mScheduler.post(() -> scheduleProbe(performer), 0);
+			}
+		});
+	}
+
+	private void complete(@NotNull final TaskManager<Settings, State> performer, final boolean probed) {
+		if (mCompleted)
+			return;
+		mCompleted = true;
+		mScheduler.cancel();
+
+		final long swapTime = mScheduler.now() - mResetResponseTime;
+		if (probed) {
+			LOG.info("Device is back {} ms after reset", swapTime);
+			// The measured time is reported as the swap time of the RESET phase
+			// in the upgrade report.
+			final UpgradeProfiler profiler = UpgradeProfiler.forTransport(performer.getTransport());
+			if (profiler != null) {
+				profiler.setSwapTime(swapTime);
+			}
+		} else {
+			LOG.info("Estimated swap time elapsed, device did not respond to probes");
+		}
+		performer.onTaskCompleted(Reset.this);
+	}
+
 	private void setName(@NotNull final String advName, @NotNull final TaskManager<Settings, State> performer, @NotNull final Runnable then) {
 		final McuMgrTransport transport = performer.getTransport();
 		final SettingsManager manager = new SettingsManager(transport);
@@ -164,7 +336,7 @@ class Reset extends FirmwareUpgradeTask {
 					performer.onTaskFailed(Reset.this, new McuMgrErrorException(response.getReturnCode()));
 					return;
 				}
-				mResetResponseTime = SystemClock.elapsedRealtime();
+				mResetResponseTime = mScheduler.now();
 				LOG.trace("Reset request success. Waiting for disconnect...");
 			}
 
@@ -177,4 +349,15 @@ class Reset extends FirmwareUpgradeTask {
 			}
 		});
 	}
+
+	@Override
+	public void cancel() {
+		mCompleted = true;
+		mScheduler.cancel();
+		final McuMgrTransport transport = mTransport;
+		final McuMgrTransport.ConnectionObserver observer = mObserver;
+		if (transport != null && observer != null) {
+			transport.removeObserver(observer);
+		}
+	}
 }
@@ -1,13 +1,19 @@
 package no.nordicsemi.android.mcumgr.dfu.mcuboot.task;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import kotlinx.coroutines.CoroutineScope;
+import kotlinx.coroutines.CoroutineScopeKt;
+import kotlinx.coroutines.Dispatchers;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.image.ImageVerifier;
 import no.nordicsemi.android.mcumgr.managers.ImageManager;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
 import no.nordicsemi.android.mcumgr.transfer.ImageUploader;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
 
@@ -20,6 +26,39 @@ class Upload extends FirmwareUpgradeTask {
 	 */
 	private TransferController mUploadController;
 
+	/**
+	 * The uploader, created when the upload is prepared or started.
+	 * It is only used when window capacity is greater than 1.
+	 */
+	@Nullable
+	private ImageUploader mUploader;
+
+	/**
+	 * The scope in which the upload is prepared. It is cancelled when the upgrade is cancelled
+	 * or fails, so that no image is prepared after the upgrade has ended.
+	 */
+	@NotNull
+	private final CoroutineScope mPreparationScope = CoroutineScopeKt.CoroutineScope(Dispatchers.getDefault());
+
+	/**
+	 * The upload that will be prepared while this one is in progress.
+	 */
+	@Nullable
+	private Upload mNext;
+
+	/**
+	 * The verifier of the images being sent, if any. The upload is aborted when the verification
+	 * fails.
+	 */
+	@Nullable
+	private ImageVerifier mVerifier;
+
+	/**
+	 * The verification error, set when the upload is being aborted.
+	 */
+	@Nullable
+	private volatile McuMgrException mVerificationError;
+
 	Upload(final byte @NotNull [] data, final int image) {
 		this.data = data;
 		this.image = image;
@@ -36,6 +75,51 @@ class Upload extends FirmwareUpgradeTask {
 		return PRIORITY_UPLOAD;
 	}
 
+	/**
+	 * Sets the upload that will be prepared in the background when this upload starts.
+	 *
+	 * @param next the next upload.
+	 */
+	void setNext(@Nullable final Upload next) {
+		mNext = next;
+	}
+
+	/**
+	 * Sets the verifier of the images. The image is sent while the verification is in progress,
+	 * but the upload fails if the verification fails.
+	 *
+	 * @param verifier the verifier, which must have been started.
+	 */
+	void setVerifier(@Nullable final ImageVerifier verifier) {
+		mVerifier = verifier;
+	}
+
+	/**
+	 * Prepares the upload in the background, so that the first chunk can be sent immediately
+	 * when the task is started. This includes splitting the image into chunks and computing
+	 * its hash.
+	 *
+	 * @param performer the task performer.
+	 */
+	void prepare(@NotNull final TaskManager<Settings, State> performer) {
+		final Settings settings = performer.getSettings();
+		if (settings.windowCapacity <= 1 || mUploader != null)
+			return;
+		mUploader = createUploader(performer);
+		mUploader.prepareAsync(mPreparationScope);
+	}
+
+	/**
+	 * Cancels preparing this and all following uploads. Preparation which has already started
+	 * is not interrupted, but its result is not used.
+	 */
+	private void cancelPreparation() {
+		CoroutineScopeKt.cancel(mPreparationScope, null);
+		if (mNext != null) {
+			mNext.cancelPreparation();
+		}
+	}
+
 	@Override
 	public void start(@NotNull final TaskManager<Settings, State> performer) {
 		// Should we resume?
@@ -44,6 +128,11 @@ class Upload extends FirmwareUpgradeTask {
 			return;
 		}
 
+		final ImageVerifier verifier = mVerifier;
+		final ImageVerifier.Listener listener = error -> {
+			mVerificationError = error;
+			mUploadController.cancel();
+		};
 		final UploadCallback callback = new UploadCallback() {
 			@Override
 			public void onUploadProgressChanged(final int current, final int total, final long timestamp) {
@@ -52,32 +141,82 @@ class Upload extends FirmwareUpgradeTask {
 
 			@Override
 			public void onUploadFailed(@NotNull final McuMgrException error) {
+				if (verifier != null) {
+					verifier.removeListener(listener);
+				}
+				cancelPreparation();
 				performer.onTaskFailed(Upload.this, error);
 			}
 
 			@Override
 			public void onUploadCanceled() {
+				if (verifier != null) {
+					verifier.removeListener(listener);
+				}
+				final McuMgrException error = mVerificationError;
+				if (error != null) {
+					cancelPreparation();
+					performer.onTaskFailed(Upload.this, error);
+					return;
+				}
 				performer.onTaskCompleted(Upload.this);
 			}
 
 			@Override
 			public void onUploadCompleted() {
+				if (verifier != null) {
+					verifier.removeListener(listener);
+					// The verification has most probably finished long ago. If not, the task
+					// is completed when it finishes, without blocking the calling thread.
+					verifier.whenComplete(error -> {
+						if (error != null) {
+							cancelPreparation();
+							performer.onTaskFailed(Upload.this, error);
+							return;
+						}
+						performer.onTaskCompleted(Upload.this);
+					});
+					return;
+				}
 				performer.onTaskCompleted(Upload.this);
 			}
 		};
 
 		final Settings settings = performer.getSettings();
-		final ImageManager manager = new ImageManager(performer.getTransport());
 		if (settings.windowCapacity > 1) {
-			mUploadController =	new ImageUploader(
-					manager,
-					data, image,
-					settings.windowCapacity,
-					settings.memoryAlignment
-			).uploadAsync(callback);
+			if (mUploader == null) {
+				mUploader = createUploader(performer);
+			}
+			mUploadController = mUploader.uploadAsync(callback);
 		} else {
+			final ImageManager manager = new ImageManager(performer.getTransport());
 			mUploadController = manager.imageUpload(data, image, callback);
 		}
+
+		// Abort the upload as soon as any of the images is found to be corrupted.
+		if (verifier != null) {
+			verifier.addListener(listener);
+		}
+
+		// Prepare the next image while this one is being sent.
+		if (mNext != null) {
+			mNext.prepare(performer);
+		}
+	}
+
+	@NotNull
+	private ImageUploader createUploader(@NotNull final TaskManager<Settings, State> performer) {
+		final Settings settings = performer.getSettings();
+		final ImageManager manager = new ImageManager(performer.getTransport());
+		final ImageUploader uploader = new ImageUploader(
+				manager,
+				data, image,
+				settings.windowCapacity,
+				settings.memoryAlignment
+		);
+		// The progress is coalesced by the performer.
+		uploader.setProgressTracker(new ProgressTracker(0L, 0));
+		return uploader;
 	}
 
 	@Override
@@ -87,6 +226,7 @@ class Upload extends FirmwareUpgradeTask {
 
 	@Override
 	public void cancel() {
+		cancelPreparation();
 		mUploadController.cancel();
 	}
 }
@@ -1,15 +1,20 @@
 package no.nordicsemi.android.mcumgr.dfu.mcuboot.task;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
 import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrErrorCode;
+import no.nordicsemi.android.mcumgr.McuMgrTransport;
+import no.nordicsemi.android.mcumgr.capabilities.CapabilitiesProvider;
+import no.nordicsemi.android.mcumgr.capabilities.DeviceCapabilities;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Mode;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings;
 import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State;
@@ -18,6 +23,7 @@ import no.nordicsemi.android.mcumgr.dfu.mcuboot.model.TargetImage;
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.image.ImageVerifier;
 import no.nordicsemi.android.mcumgr.image.ImageWithHash;
 import no.nordicsemi.android.mcumgr.image.SUITImage;
 import no.nordicsemi.android.mcumgr.managers.DefaultManager;
@@ -33,20 +39,23 @@ class Validate extends FirmwareUpgradeTask {
 	private final ImageSet images;
 	@NotNull
 	private final Mode mode;
+	@Nullable
+	private final ImageVerifier verifier;
 	private final boolean forceReset;
 
 	Validate(final @NotNull Mode mode,
-			 final @NotNull ImageSet images) {
-		this.mode = mode;
-		this.images = images;
-		this.forceReset = false;
+			 final @NotNull ImageSet images,
+			 final @Nullable ImageVerifier verifier) {
+		this(mode, images, verifier, false);
 	}
 
 	private Validate(final @NotNull Mode mode,
 					 final @NotNull ImageSet images,
+					 final @Nullable ImageVerifier verifier,
 					 final boolean forceReset) {
 		this.mode = mode;
 		this.images = images;
+		this.verifier = verifier;
 		this.forceReset = forceReset;
 	}
 
@@ -63,54 +72,154 @@ class Validate extends FirmwareUpgradeTask {
 
 	@Override
 	public void start(@NotNull final TaskManager<Settings, State> performer) {
-		final DefaultManager manager = new DefaultManager(performer.getTransport());
+		final McuMgrTransport transport = performer.getTransport();
+		final DefaultManager defaultManager = new DefaultManager(transport);
+		final ImageManager imageManager = new ImageManager(transport);
+
+		// Bootloader info doesn't change until the device is reset, so it may be cached
+		// by the transport.
+		final DeviceCapabilities capabilities = transport instanceof CapabilitiesProvider ?
+				((CapabilitiesProvider) transport).getCapabilities() : null;
+		if (capabilities != null && capabilities.bootloader != null) {
+			LOG.info("Bootloader name: {} (cached)", capabilities.bootloader);
+			final Probes probes = new Probes(performer, 1);
+			probes.bootloader = capabilities.bootloader;
+			probes.mode = capabilities.bootloaderMode;
+			probes.noDowngrade = capabilities.noDowngrade;
+			list(imageManager, probes);
+			return;
+		}
+		final Probes probes = new Probes(performer, 3);
 
 		// Starting from NCS 2.5 different bootloader modes allow sending the image in
 		// slightly different ways. For that, we need to read bootloader info.
 		// If that command is not supported, we assume the old, normal way of sending.
-		manager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_QUERY_BOOTLOADER, new McuMgrCallback<>() {
+		// The probes are independent, so they are sent at once and the results are
+		// combined when all responses have been received.
+		defaultManager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_QUERY_BOOTLOADER, new McuMgrCallback<>() {
 			@Override
 			public void onResponse(@NotNull final McuMgrBootloaderInfoResponse response) {
 				LOG.info("Bootloader name: {}", response.bootloader);
+				probes.onBootloader(response.bootloader);
+			}
 
-				if ("MCUboot".equals(response.bootloader)) {
-					manager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_MCUBOOT_QUERY_MODE, new McuMgrCallback<>() {
-						@Override
-						public void onResponse(@NotNull McuMgrBootloaderInfoResponse response) {
-							LOG.info("Bootloader is in mode: {}, no downgrade: {}", parseMode(response.mode), response.noDowngrade);
-							validate(performer,
-									response.mode ==  McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP ||
-									response.mode == McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP_WITH_REVERT ||
-									response.mode == McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER,
-									response.mode != McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP &&
-									response.mode != McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER,
-									response.mode == McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER);
-						}
+			@Override
+			public void onError(@NotNull final McuMgrException error) {
+				probes.onBootloader(null);
+			}
+		});
+		// The mode is only used if the bootloader turns out to be MCUboot.
+		defaultManager.bootloaderInfo(DefaultManager.BOOTLOADER_INFO_MCUBOOT_QUERY_MODE, new McuMgrCallback<>() {
+			@Override
+			public void onResponse(@NotNull final McuMgrBootloaderInfoResponse response) {
+				probes.onMode(response.mode, response.noDowngrade);
+			}
 
-						@Override
-						public void onError(@NotNull McuMgrException error) {
-							// Pretend nothing happened.
-							validate(performer, false, true, false);
-						}
-					});
-				} else {
-					// It's some unknown bootloader. Try sending the old way.
-					validate(performer, false, true, false);
-				}
+			@Override
+			public void onError(@NotNull final McuMgrException error) {
+				probes.onMode(McuMgrBootloaderInfoResponse.MODE_UNKNOWN, false);
+			}
+		});
+		list(imageManager, probes);
+	}
+
+	private void list(@NotNull final ImageManager imageManager, @NotNull final Probes probes) {
+		imageManager.list(new McuMgrCallback<>() {
+			@Override
+			public void onResponse(@NotNull final McuMgrImageStateResponse response) {
+				probes.onImageState(response, null);
 			}
 
 			@Override
 			public void onError(@NotNull final McuMgrException error) {
-				// Pretend nothing happened.
-				validate(performer, false, true, false);
+				probes.onImageState(null, error);
 			}
 		});
 	}
 
+	/**
+	 * Collects responses to the probes sent in parallel and validates the firmware
+	 * when all of them have been received.
+	 */
+	private class Probes {
+		@NotNull
+		private final TaskManager<Settings, State> performer;
+		private int remaining;
+
+		@Nullable
+		private String bootloader;
+		private int mode = McuMgrBootloaderInfoResponse.MODE_UNKNOWN;
+		private boolean noDowngrade;
+		@Nullable
+		private McuMgrImageStateResponse imageState;
+		@Nullable
+		private McuMgrException imageStateError;
+
+		private Probes(@NotNull final TaskManager<Settings, State> performer, final int count) {
+			this.performer = performer;
+			this.remaining = count;
+		}
+
+		void onBootloader(@Nullable final String bootloader) {
+			synchronized (this) {
+				this.bootloader = bootloader;
+			}
+			onProbeCompleted();
+		}
+
+		void onMode(final int mode, final boolean noDowngrade) {
+			synchronized (this) {
+				this.mode = mode;
+				this.noDowngrade = noDowngrade;
+			}
+			onProbeCompleted();
+		}
+
+		void onImageState(@Nullable final McuMgrImageStateResponse response,
+						  @Nullable final McuMgrException error) {
+			synchronized (this) {
+				this.imageState = response;
+				this.imageStateError = error;
+			}
+			onProbeCompleted();
+		}
+
+		private void onProbeCompleted() {
+			// The last response validates the firmware. This is done outside of the lock,
+			// as it may start the next task.
+			synchronized (this) {
+				if (--remaining > 0)
+					return;
+			}
+
+			boolean noSwap = false;
+			boolean allowRevert = true;
+			boolean forcePrimarySlot = false;
+			// Mode is only known for MCUboot. For an unknown bootloader, or when any of
+			// the commands is not supported, try sending the old way.
+			if ("MCUboot".equals(bootloader) && mode != McuMgrBootloaderInfoResponse.MODE_UNKNOWN) {
+				LOG.info("Bootloader is in mode: {}, no downgrade: {}", parseMode(mode), noDowngrade);
+				noSwap = mode == McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP ||
+						 mode == McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP_WITH_REVERT ||
+						 mode == McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER;
+				allowRevert = mode != McuMgrBootloaderInfoResponse.MODE_DIRECT_XIP &&
+							  mode != McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER;
+				forcePrimarySlot = mode == McuMgrBootloaderInfoResponse.MODE_FIRMWARE_LOADER;
+			}
+			if (imageState != null) {
+				validate(performer, imageState, noSwap, allowRevert, forcePrimarySlot);
+			} else {
+				//noinspection DataFlowIssue
+				onListFailed(performer, imageStateError, forcePrimarySlot);
+			}
+		}
+	}
+
 	/**
 	 * Validates the current firmware on the device and adds the required tasks to the queue.
 	 *
 	 * @param performer The task performer.
+	 * @param response The response to Image List command.
 	 * @param noSwap Whether the bootloader is in Direct XIP mode and there will be no swapping.
 	 * @param allowRevert Whether the bootloader requires confirming images.
 	 * @param forcePrimarySlot Whether the image should be sent to the primary slot (0) despite
@@ -119,282 +228,310 @@ class Validate extends FirmwareUpgradeTask {
 	 *                         the primary slot.
 	 */
 	private void validate(@NotNull final TaskManager<Settings, State> performer,
+						  @NotNull final McuMgrImageStateResponse response,
 						  final boolean noSwap,
 						  final boolean allowRevert,
 						  final boolean forcePrimarySlot) {
 		final Settings settings = performer.getSettings();
-		final ImageManager manager = new ImageManager(performer.getTransport());
 
-		manager.list(new McuMgrCallback<>() {
-			@Override
-			public void onResponse(@NotNull final McuMgrImageStateResponse response) {
-				LOG.trace("Validation response: {}", response);
+		LOG.trace("Validation response: {}", response);
 
-				// Check for an error return code.
-				if (!response.isSuccess()) {
-					performer.onTaskFailed(Validate.this, new McuMgrErrorException(response.getReturnCode()));
-					return;
-				}
+		// Check for an error return code.
+		if (!response.isSuccess()) {
+			performer.onTaskFailed(this, new McuMgrErrorException(response.getReturnCode()));
+			return;
+		}
 
-				// Initial validation.
-				McuMgrImageStateResponse.ImageSlot[] slots = response.images;
-				if (slots == null) {
-					LOG.error("Missing images information: {}", response);
-					performer.onTaskFailed(Validate.this, new McuMgrException("Missing images information"));
-					return;
-				}
+		// Initial validation.
+		McuMgrImageStateResponse.ImageSlot[] slots = response.images;
+		if (slots == null) {
+			LOG.error("Missing images information: {}", response);
+			performer.onTaskFailed(this, new McuMgrException("Missing images information"));
+			return;
+		}
 
-				// For each core (image index) there may be one or two images given.
-				// One, if the image will be placed in the secondary slot and swapped on reboot,
-				// or two, if the MCUboot is in Direct XIP mode (with or without revert) and each
-				// image targets its own slot. Depending on the active slot, the image will be
-				// sent to the other one.
-				// However, it may happen, that the firmware that the user is trying to send is
-				// already running, that is the hash of the active slot is equal to the hash of
-				// one of the images. In that case, we need to remove images for this image index,
-				// as that core is already up-to-date.
-				if (images.getImages().size() > 1) {
-					// Iterate over all slots looking for active ones.
-					for (final McuMgrImageStateResponse.ImageSlot slot : slots) {
-						if (slot.active) {
-							// Check if any of the images has the same hash as the image on the active slot.
-							for (final TargetImage image : images.getImages()) {
-								final ImageWithHash mcuMgrImage = image.image;
-								if (slot.image == image.imageIndex && Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
-									// The image was found on an active slot, which means that core
-									// does not need to be updated.
-									images.removeImagesWithImageIndex(image.imageIndex);
-									// Note: This break is important, as we just modified list that
-									//       we're iterating over.
-									break;
-								}
-							}
+		// For each core (image index) there may be one or two images given.
+		// One, if the image will be placed in the secondary slot and swapped on reboot,
+		// or two, if the MCUboot is in Direct XIP mode (with or without revert) and each
+		// image targets its own slot. Depending on the active slot, the image will be
+		// sent to the other one.
+		// However, it may happen, that the firmware that the user is trying to send is
+		// already running, that is the hash of the active slot is equal to the hash of
+		// one of the images. In that case, we need to remove images for this image index,
+		// as that core is already up-to-date.
+		if (images.getImages().size() > 1) {
+			// Iterate over all slots looking for active ones.
+			for (final McuMgrImageStateResponse.ImageSlot slot : slots) {
+				if (slot.active) {
+					// Check if any of the images has the same hash as the image on the active slot.
+					for (final TargetImage image : images.getImages()) {
+						final ImageWithHash mcuMgrImage = image.image;
+						if (slot.image == image.imageIndex && Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
+							// The image was found on an active slot, which means that core
+							// does not need to be updated.
+							images.removeImagesWithImageIndex(image.imageIndex);
+							// Note: This break is important, as we just modified list that
+							//       we're iterating over.
+							break;
 						}
 					}
 				}
+			}
+		}
 
-				// The following code adds Erase, Upload, Test, Reset and Confirm operations
-				// to the task priority queue. The priorities of those tasks ensure they are executed
-				// in the right (given 2 lines above) order.
-
-				// The flag indicates whether a reset operation should be performed during the process.
-				boolean resetRequired = forceReset;
-
-				// For each image that is to be sent, check if the same image has already been sent.
-				for (final TargetImage image : images.getImages()) {
-					final int imageIndex = image.imageIndex;
-					final ImageWithHash mcuMgrImage = image.image;
-
-					// The following flags will be updated based on the received slot information.
-					boolean found = false;     // An image with the same hash was found on the device
-					boolean skip = false;      // When this flag is set the image will not be uploaded
-					boolean pending = false;   // TEST command was sent
-					boolean permanent = false; // CONFIRM command was sent
-					boolean confirmed = false; // Image has booted and confirmed itself
-					boolean active = false;    // Image is currently running
-					for (final McuMgrImageStateResponse.ImageSlot slot : slots) {
-						// Skip slots of a different core than the image is for.
-						if (slot.image != imageIndex)
-							continue;
-
-						// If the same image was found in any of the slots, the upload will not be
-						// required. The image may need testing or confirming, or may already be running.
-						if (Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
-							found = true;
-							pending = slot.pending;
-							permanent = slot.permanent;
-							confirmed = slot.confirmed;
-							active = slot.active;
-
-							// If the image has been found on its target slot and it's confirmed,
-							// we just need to restart the device in order for it to be swapped back to
-							// primary slot.
-							if (mcuMgrImage.needsConfirmation() && confirmed && slot.slot == image.slot && !noSwap) {
-								resetRequired = true;
-							}
-							break;
-						} else {
-							// In the Firmware Loader mode, the secondary slot is used for the
-							// firmware loader itself. Updating the app or the loader is done
-							// using the primary slot only.
-							if (forcePrimarySlot) {
-								slot.slot = TargetImage.SLOT_PRIMARY;
-							}
-
-							// The `image.slot` determines to which slot the image will be uploaded.
-							// If the target slot of the image matches the slot number it means that
-							// a Direct XIP mode is used. In that case the firmware comes in two
-							// versions, one for each slot. We need to determine which one to send.
-							if (slot.slot == image.slot) {
-								// There are 5 cases the slots can be in:
-								//
-								// In "Swap" mode slots A and B are primary and secondary slots.
-								// In "Direct XIP" mode, slot A is the confirmed one, and slot B is the
-								// other one, but any of them can be primary.
-								//
-								// ----------------------------|--------|-----------|-----------------------|---------------------|
-								//                    | Normal | Tested | Confirmed | Test Mode Unconfirmed | Test Mode Confirmed |
-								// ----------------------------|--------|-----------|-----------------------|---------------------|
-								// Slot A | active    |   *    |   *    |    *      |                       |                     |
-								//        | confirmed |   *    |   *    |    *      |           *           |         *           |
-								//        | pending   |        |        |           |                       |                     |
-								//        | permanent |        |        |           |                       |                     |
-								// ----------------------------|--------|-----------|-----------------------|---------------------|
-								// Slot B | active    |        |        |           |           *           |         *           |
-								//        | confirmed |        |        |           |                       |                     |
-								//		  | pending   |        |   *    |    *      |                       |         *           |
-								//		  | permanent |        |        |    *      |                       |         *           |
-								// ----------------------------|--------|-----------|-----------------------|---------------------|
-								//
-								// Update can only be made in the Normal state, where the "other" slot is
-								// empty or has "pending" flag clear (the existing firmware will get
-								// erased automatically if needed).
-								// Sending Reset command will have the following effect:
-								// - Confirmed             -> Normal
-								// - Tested                -> Test Mode Unconfirmed
-								// - Test Mode Unconfirmed -> Normal
-								// - Test Mode Confirmed   -> Normal
-
-								// If the slot is pending or the device is in test mode (one slot
-								// is confirmed and the other active), we need to reset
-								// the device before uploading the image. Both slots in that case
-								// are in use and cannot be erased.
-								//
-								// Reset will cause MCUboot to boot the other slot and change flags,
-								// so we need to Validate again.
-								// Note:
-								//    It may happen that initial reset will be done two times.
-								//    If the image on the secondary slot has been marked as pending
-								//    (using Test command), the reset will switch the device to Test
-								//    mode. In that case, the image on the primary slot will be marked
-								//    as confirmed, and the one on the secondary slot as active.
-								//    Again, neither can be erased. Second reset will switch the device
-								//    back to the primary slot, and the secondary image will be erased
-								//    automatically.
-								// Note 2:
-								//    In the Firmware Loader mode the primary slot is always erasable
-								//    even with the confirmed flag is set.
-								if (!forcePrimarySlot && slot.pending || slot.confirmed != slot.active) {
-									// Both slots are in use, we need to reset the device.
-									performer.enqueue(new ResetBeforeUpload(noSwap));
-									// And schedule the validation again.
-									performer.enqueue(new Validate(mode, images));
-									performer.onTaskCompleted(Validate.this);
-									return;
-								}
-								// If the image on the target slot is confirmed we cannot send
-								// there anything, so we skip this image. It will not be uploaded.
-								// This can happen on the primary slot or, when Direct XIP feature
-								// is enabled, also on the secondary slot.
-								if (slot.confirmed) {
-									skip = true;
-								}
-							}
-						}
+		// The following code adds Erase, Upload, Test, Reset and Confirm operations
+		// to the task priority queue. The priorities of those tasks ensure they are executed
+		// in the right (given 2 lines above) order.
+
+		// The flag indicates whether a reset operation should be performed during the process.
+		boolean resetRequired = forceReset;
+
+		// Uploads in the order they were enqueued. Each upload prepares the next one.
+		final List<Upload> uploads = new ArrayList<>();
+
+		// For each image that is to be sent, check if the same image has already been sent.
+		for (final TargetImage image : images.getImages()) {
+			final int imageIndex = image.imageIndex;
+			final ImageWithHash mcuMgrImage = image.image;
+
+			// The following flags will be updated based on the received slot information.
+			boolean found = false;     // An image with the same hash was found on the device
+			boolean skip = false;      // When this flag is set the image will not be uploaded
+			boolean pending = false;   // TEST command was sent
+			boolean permanent = false; // CONFIRM command was sent
+			boolean confirmed = false; // Image has booted and confirmed itself
+			boolean active = false;    // Image is currently running
+			for (final McuMgrImageStateResponse.ImageSlot slot : slots) {
+				// Skip slots of a different core than the image is for.
+				if (slot.image != imageIndex)
+					continue;
+
+				// If the same image was found in any of the slots, the upload will not be
+				// required. The image may need testing or confirming, or may already be running.
+				if (Arrays.equals(slot.hash, mcuMgrImage.getHash())) {
+					found = true;
+					pending = slot.pending;
+					permanent = slot.permanent;
+					confirmed = slot.confirmed;
+					active = slot.active;
+
+					// If the image has been found on its target slot and it's confirmed,
+					// we just need to restart the device in order for it to be swapped back to
+					// primary slot.
+					if (mcuMgrImage.needsConfirmation() && confirmed && slot.slot == image.slot && !noSwap) {
+						resetRequired = true;
 					}
-					if (skip) {
-						continue;
+					break;
+				} else {
+					// In the Firmware Loader mode, the secondary slot is used for the
+					// firmware loader itself. Updating the app or the loader is done
+					// using the primary slot only.
+					if (forcePrimarySlot) {
+						slot.slot = TargetImage.SLOT_PRIMARY;
+					}
+
+					// The `image.slot` determines to which slot the image will be uploaded.
+					// If the target slot of the image matches the slot number it means that
+					// a Direct XIP mode is used. In that case the firmware comes in two
+					// versions, one for each slot. We need to determine which one to send.
+					if (slot.slot == image.slot) {
+						// There are 5 cases the slots can be in:
+						//
+						// In "Swap" mode slots A and B are primary and secondary slots.
+						// In "Direct XIP" mode, slot A is the confirmed one, and slot B is the
+						// other one, but any of them can be primary.
+						//
+						// ----------------------------|--------|-----------|-----------------------|---------------------|
+						//                    | Normal | Tested | Confirmed | Test Mode Unconfirmed | Test Mode Confirmed |
+						// ----------------------------|--------|-----------|-----------------------|---------------------|
+						// Slot A | active    |   *    |   *    |    *      |                       |                     |
+						//        | confirmed |   *    |   *    |    *      |           *           |         *           |
+						//        | pending   |        |        |           |                       |                     |
+						//        | permanent |        |        |           |                       |                     |
+						// ----------------------------|--------|-----------|-----------------------|---------------------|
+						// Slot B | active    |        |        |           |           *           |         *           |
+						//        | confirmed |        |        |           |                       |                     |
+						//		  | pending   |        |   *    |    *      |                       |         *           |
+						//		  | permanent |        |        |    *      |                       |         *           |
+						// ----------------------------|--------|-----------|-----------------------|---------------------|
+						//
+						// Update can only be made in the Normal state, where the "other" slot is
+						// empty or has "pending" flag clear (the existing firmware will get
+						// erased automatically if needed).
+						// Sending Reset command will have the following effect:
+						// - Confirmed             -> Normal
+						// - Tested                -> Test Mode Unconfirmed
+						// - Test Mode Unconfirmed -> Normal
+						// - Test Mode Confirmed   -> Normal
+
+						// If the slot is pending or the device is in test mode (one slot
+						// is confirmed and the other active), we need to reset
+						// the device before uploading the image. Both slots in that case
+						// are in use and cannot be erased.
+						//
+						// Reset will cause MCUboot to boot the other slot and change flags,
+						// so we need to Validate again.
+						// Note:
+						//    It may happen that initial reset will be done two times.
+						//    If the image on the secondary slot has been marked as pending
+						//    (using Test command), the reset will switch the device to Test
+						//    mode. In that case, the image on the primary slot will be marked
+						//    as confirmed, and the one on the secondary slot as active.
+						//    Again, neither can be erased. Second reset will switch the device
+						//    back to the primary slot, and the secondary image will be erased
+						//    automatically.
+						// Note 2:
+						//    In the Firmware Loader mode the primary slot is always erasable
+						//    even with the confirmed flag is set.
+						if (!forcePrimarySlot && slot.pending || slot.confirmed != slot.active) {
+							// Both slots are in use, we need to reset the device.
+							performer.enqueue(new ResetBeforeUpload(noSwap));
+							// And schedule the validation again.
+							performer.enqueue(new Validate(mode, images, verifier));
+							performer.onTaskCompleted(this);
+							return;
+						}
+						// If the image on the target slot is confirmed we cannot send
+						// there anything, so we skip this image. It will not be uploaded.
+						// This can happen on the primary slot or, when Direct XIP feature
+						// is enabled, also on the secondary slot.
+						if (slot.confirmed) {
+							skip = true;
+						}
 					}
-					if (!found) {
-						performer.enqueue(new Upload(mcuMgrImage.getData(), imageIndex));
-						if (mcuMgrImage.needsConfirmation() && (!allowRevert || mode == Mode.NONE)) {
+				}
+			}
+			if (skip) {
+				continue;
+			}
+			if (!found) {
+				final Upload upload = new Upload(mcuMgrImage.getData(), imageIndex);
+				upload.setVerifier(verifier);
+				enqueueUpload(performer, uploads, upload);
+				if (mcuMgrImage.needsConfirmation() && (!allowRevert || mode == Mode.NONE)) {
+					resetRequired = true;
+				}
+			}
+			if (!mcuMgrImage.needsConfirmation()) {
+				// Since nRF Connect SDK v.2.8 the SUIT image requires no confirmation.
+				if (mcuMgrImage instanceof SUITImage) {
+					performer.enqueue(new Confirm());
+				}
+				continue;
+			}
+			if (allowRevert && mode != Mode.NONE) {
+				switch (mode) {
+					case TEST_AND_CONFIRM: {
+						// If the image is not pending (test command has not been sent) and not
+						// confirmed (another image is under test), and isn't the currently
+						// running image, send test command and update the flag.
+						if (!pending && !confirmed && !active) {
+							performer.enqueue(new Test(mcuMgrImage.getHash()));
+							pending = true;
+						}
+						// If the image is pending, reset is required.
+						if (pending) {
 							resetRequired = true;
 						}
+						if (!permanent && !confirmed) {
+							performer.enqueue(new ConfirmAfterReset(mcuMgrImage.getHash()));
+						}
+						break;
 					}
-					if (!mcuMgrImage.needsConfirmation()) {
-						// Since nRF Connect SDK v.2.8 the SUIT image requires no confirmation.
-						if (mcuMgrImage instanceof SUITImage) {
-							performer.enqueue(new Confirm());
+					case TEST_ONLY: {
+						// If the image is not pending (test command has not been sent) and not
+						// confirmed (another image is under test), and isn't the currently
+						// running image, send test command and update the flag.
+						if (!pending && !confirmed && !active) {
+							performer.enqueue(new Test(mcuMgrImage.getHash()));
+							pending = true;
+						}
+						// If the image is pending, reset is required.
+						if (pending) {
+							resetRequired = true;
 						}
-						continue;
+						break;
 					}
-					if (allowRevert && mode != Mode.NONE) {
-						switch (mode) {
-							case TEST_AND_CONFIRM: {
-								// If the image is not pending (test command has not been sent) and not
-								// confirmed (another image is under test), and isn't the currently
-								// running image, send test command and update the flag.
-								if (!pending && !confirmed && !active) {
-									performer.enqueue(new Test(mcuMgrImage.getHash()));
-									pending = true;
-								}
-								// If the image is pending, reset is required.
-								if (pending) {
-									resetRequired = true;
-								}
-								if (!permanent && !confirmed) {
-									performer.enqueue(new ConfirmAfterReset(mcuMgrImage.getHash()));
-								}
-								break;
-							}
-							case TEST_ONLY: {
-								// If the image is not pending (test command has not been sent) and not
-								// confirmed (another image is under test), and isn't the currently
-								// running image, send test command and update the flag.
-								if (!pending && !confirmed && !active) {
-									performer.enqueue(new Test(mcuMgrImage.getHash()));
-									pending = true;
-								}
-								// If the image is pending, reset is required.
-								if (pending) {
-									resetRequired = true;
-								}
-								break;
-							}
-							case CONFIRM_ONLY: {
-								// If the firmware is not confirmed yet, confirm t.
-								if (!permanent && !confirmed) {
-									performer.enqueue(new Confirm(mcuMgrImage.getHash()));
-									permanent = true;
-								}
-								if (permanent) {
-									resetRequired = true;
-								}
-								break;
-							}
+					case CONFIRM_ONLY: {
+						// If the firmware is not confirmed yet, confirm t.
+						if (!permanent && !confirmed) {
+							performer.enqueue(new Confirm(mcuMgrImage.getHash()));
+							permanent = true;
+						}
+						if (permanent) {
+							resetRequired = true;
 						}
+						break;
 					}
 				}
+			}
+		}
 
-				// Enqueue uploading all cache images.
-				final List<CacheImage> cacheImages = images.getCacheImages();
-				if (cacheImages != null) {
-					for (final CacheImage cacheImage : cacheImages) {
-						performer.enqueue(new Upload(cacheImage.image, cacheImage.partitionId));
-					}
-				}
+		// Enqueue uploading all cache images.
+		final List<CacheImage> cacheImages = images.getCacheImages();
+		if (cacheImages != null) {
+			for (final CacheImage cacheImage : cacheImages) {
+				enqueueUpload(performer, uploads, new Upload(cacheImage.image, cacheImage.partitionId));
+			}
+		}
 
-				// To make sure the reset command are added just once, they're added based on flags.
-				if (resetRequired) {
-					if (settings.eraseAppSettings)
-						performer.enqueue(new EraseStorage());
-					performer.enqueue(new Reset(noSwap));
-				}
+		// Start preparing the first image. The following ones will be prepared
+		// while the previous one is being sent.
+		if (!uploads.isEmpty()) {
+			uploads.get(0).prepare(performer);
+		}
 
-				performer.onTaskCompleted(Validate.this);
-			}
+		// To make sure the reset command are added just once, they're added based on flags.
+		if (resetRequired) {
+			if (settings.eraseAppSettings)
+				performer.enqueue(new EraseStorage());
+			performer.enqueue(new Reset(noSwap));
+		}
 
-			@Override
-			public void onError(@NotNull final McuMgrException e) {
-				// In case of a Firmware Loader mode, the application returns NOT_SUPPORTED
-				// for Image List command. A reset to bootloader modes is required.
-				// For now, before the automatic reset is implemented, we just
-				// notify the user that the reset is required.
-				// Use DefaultManager.reset(BOOT_MODE_TYPE_BOOTLOADER, false, callback).
-				if (forcePrimarySlot &&
-					e instanceof McuMgrErrorException &&
-					((McuMgrErrorException) e).getCode() == McuMgrErrorCode.NOT_SUPPORTED) {
-					final int randomNumber = (int) (Math.random() * 99999);
-					final String advName = String.format(Locale.US, "FL_%05d", randomNumber);
-					performer.enqueue(new ResetBeforeUpload(advName));
-					performer.enqueue(new Scan(advName));
-					performer.enqueue(new Validate(mode, images, true));
-					performer.onTaskCompleted(Validate.this);
-				} else {
-					performer.onTaskFailed(Validate.this, e);
-				}
-			}
-		});
+		performer.onTaskCompleted(this);
+	}
+
+	/**
+	 * Handles an error returned for Image List command.
+	 *
+	 * @param performer The task performer.
+	 * @param e The error.
+	 * @param forcePrimarySlot Whether the bootloader is in Firmware Loader mode.
+	 */
+	private void onListFailed(@NotNull final TaskManager<Settings, State> performer,
+							  @NotNull final McuMgrException e,
+							  final boolean forcePrimarySlot) {
+		// In case of a Firmware Loader mode, the application returns NOT_SUPPORTED
+		// for Image List command. A reset to bootloader modes is required.
+		// For now, before the automatic reset is implemented, we just
+		// notify the user that the reset is required.
+		// Use DefaultManager.reset(BOOT_MODE_TYPE_BOOTLOADER, false, callback).
+		if (forcePrimarySlot &&
+			e instanceof McuMgrErrorException &&
+			((McuMgrErrorException) e).getCode() == McuMgrErrorCode.NOT_SUPPORTED) {
+			final int randomNumber = (int) (Math.random() * 99999);
+			final String advName = String.format(Locale.US, "FL_%05d", randomNumber);
+			performer.enqueue(new ResetBeforeUpload(advName));
+			performer.enqueue(new Scan(advName));
+			performer.enqueue(new Validate(mode, images, verifier, true));
+			performer.onTaskCompleted(this);
+		} else {
+			performer.onTaskFailed(this, e);
+		}
+	}
+
+	private static void enqueueUpload(@NotNull final TaskManager<Settings, State> performer,
+									  @NotNull final List<Upload> uploads,
+									  @NotNull final Upload upload) {
+		if (!uploads.isEmpty()) {
+			// The next upload is prepared by the previous one, so it must not be
+			// started before it.
+			final Upload previous = uploads.get(uploads.size() - 1);
+			previous.setNext(upload);
+			upload.dependsOn(previous);
+		}
+		uploads.add(upload);
+		performer.enqueue(upload);
 	}
 
 	private String parseMode(final int mode) {
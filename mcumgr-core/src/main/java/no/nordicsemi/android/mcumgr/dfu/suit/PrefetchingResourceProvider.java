@@ -0,0 +1,248 @@
+package no.nordicsemi.android.mcumgr.dfu.suit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.image.SUITEnvelope;
+
+/**
+ * A resource provider which fetches resources referenced by the SUIT envelope before they are
+ * requested by the device.
+ * <p>
+ * When the upgrade is started with {@link SUITUpgradeManager}, the envelope is parsed for
+ * resource URIs and all of them are fetched in parallel into a {@link ResourceCache}. When the
+ * device requests a resource, it is provided immediately from the cache, or as soon as it has
+ * been fetched. Resources which were not found in the envelope are fetched on request.
+ * <p>
+ * Resources are cached for the envelope last given to {@link #prefetch(byte[])}, identified by
+ * the digest of its manifest, as different builds use the same URIs for different content.
+ * An envelope which can't be parsed is identified by its SHA-256. Resources fetched before any
+ * envelope was given are cached without a scope.
+ * <p>
+ * Use {@link SUITUpgradeManager#setResourceCallback(SUITUpgradeManager.OnResourceRequiredCallback)}
+ * to set the provider.
+ * @noinspection unused
+ */
+public class PrefetchingResourceProvider implements SUITUpgradeManager.OnResourceRequiredCallback {
+    private final static Logger LOG = LoggerFactory.getLogger(PrefetchingResourceProvider.class);
+
+    /**
+     * The loader of resources.
+     */
+    public interface ResourceLoader {
+        /**
+         * Loads the resource. This method is called from a background thread and may block.
+         *
+         * @param uri the resource URI.
+         * @return The resource.
+         * @throws Exception if the resource could not be loaded.
+         */
+        byte @NotNull [] load(@NotNull URI uri) throws Exception;
+    }
+
+    /**
+     * The executor shared by all providers created without an executor. It runs up to 4
+     * daemon threads, which are terminated when idle, so the provider does not need to be closed.
+     */
+    private static class DefaultExecutor {
+        private final static int THREAD_COUNT = 4;
+        private final static long KEEP_ALIVE_TIME = 30; // s
+
+        @NotNull
+        private final static Executor INSTANCE = create();
+
+        @NotNull
+        private static Executor create() {
+            final AtomicInteger count = new AtomicInteger();
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        final Thread thread = new Thread(runnable, "ResourcePrefetch-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    @NotNull
+    private final ResourceLoader loader;
+    @NotNull
+    private final ResourceCache cache;
+    @NotNull
+    private final Executor executor;
+
+    /**
+     * Callbacks waiting for resources being fetched, by cache key.
+     */
+    @NotNull
+    private final Map<String, List<SUITUpgradeManager.ResourceCallback>> pending = new HashMap<>();
+
+    /**
+     * The digest of the manifest of the current envelope, or null if not known.
+     */
+    private byte @Nullable [] envelopeDigest;
+
+    /**
+     * Creates the provider which fetches up to 4 resources in parallel, using a shared pool of
+     * daemon threads.
+     *
+     * @param loader the loader of resources.
+     * @param cache  the cache.
+     */
+    public PrefetchingResourceProvider(@NotNull final ResourceLoader loader,
+                                       @NotNull final ResourceCache cache) {
+        this(loader, cache, DefaultExecutor.INSTANCE);
+    }
+
+    /**
+     * Creates the provider.
+     *
+     * @param loader   the loader of resources.
+     * @param cache    the cache.
+     * @param executor the executor used to fetch resources.
+     */
+    public PrefetchingResourceProvider(@NotNull final ResourceLoader loader,
+                                       @NotNull final ResourceCache cache,
+                                       @NotNull final Executor executor) {
+        this.loader = loader;
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the SUIT envelope of the upgrade and starts fetching all resources referenced by it
+     * which are not cached for it yet. This method returns immediately.
+     *
+     * @param envelope the SUIT envelope.
+     */
+    public void prefetch(final byte @NotNull [] envelope) {
+        final Set<URI> uris = new LinkedHashSet<>();
+        byte[] digest;
+        try {
+            final SUITEnvelope suitEnvelope = SUITEnvelope.parse(envelope);
+            digest = suitEnvelope.getDigest();
+            for (final String uri : suitEnvelope.getResourceUris()) {
+                try {
+                    uris.add(new URI(uri));
+                } catch (final URISyntaxException e) {
+                    LOG.warn("Invalid resource URI: {}", uri);
+                }
+            }
+        } catch (final McuMgrException e) {
+            LOG.warn("Failed to parse SUIT envelope, resources will be fetched on request", e);
+            digest = ResourceCache.sha256(envelope);
+        }
+        synchronized (this) {
+            envelopeDigest = digest;
+        }
+        for (final URI uri : uris) {
+            prefetch(uri);
+        }
+    }
+
+    /**
+     * Starts fetching the resource for the current envelope, unless it's cached or already
+     * being fetched.
+     *
+     * @param uri the resource URI.
+     */
+    public void prefetch(@NotNull final URI uri) {
+        final byte[] digest;
+        final String key;
+        synchronized (this) {
+            digest = envelopeDigest;
+            key = ResourceCache.key(digest, uri);
+            if (pending.containsKey(key) || cache.contains(digest, uri))
+                return;
+            pending.put(key, new ArrayList<>(1));
+        }
+        LOG.debug("Prefetching {}", uri);
+        executor.execute(() -> fetch(digest, uri));
+    }
+
+    @Override
+    public void onResourceRequired(@NotNull final URI uri,
+                                   @NotNull final SUITUpgradeManager.ResourceCallback callback) {
+        final byte[] data;
+        final byte[] digest;
+        synchronized (this) {
+            digest = envelopeDigest;
+            final String key = ResourceCache.key(digest, uri);
+            final List<SUITUpgradeManager.ResourceCallback> callbacks = pending.get(key);
+            if (callbacks != null) {
+                // The resource is being fetched, it will be provided when ready.
+                callbacks.add(callback);
+                return;
+            }
+            data = cache.get(digest, uri);
+            if (data == null) {
+                final List<SUITUpgradeManager.ResourceCallback> list = new ArrayList<>(1);
+                list.add(callback);
+                pending.put(key, list);
+            }
+        }
+        if (data != null) {
+            LOG.debug("Resource {} served from cache", uri);
+            callback.provide(data);
+            return;
+        }
+        LOG.debug("Resource {} not prefetched, fetching", uri);
+        executor.execute(() -> fetch(digest, uri));
+    }
+
+    @Override
+    public void onUploadCancelled() {
+        // Resources being fetched will be cached for the next attempt,
+        // but the cancelled upgrade must not be notified.
+        synchronized (this) {
+            for (final List<SUITUpgradeManager.ResourceCallback> callbacks : pending.values()) {
+                callbacks.clear();
+            }
+        }
+    }
+
+    private void fetch(final byte @Nullable [] digest, @NotNull final URI uri) {
+        byte[] data = null;
+        Exception error = null;
+        try {
+            data = loader.load(uri);
+            cache.put(digest, uri, data);
+        } catch (final Exception e) {
+            LOG.warn("Failed to fetch {}", uri, e);
+            error = e;
+        }
+        final List<SUITUpgradeManager.ResourceCallback> callbacks;
+        synchronized (this) {
+            callbacks = pending.remove(ResourceCache.key(digest, uri));
+        }
+        if (callbacks == null)
+            return;
+        for (final SUITUpgradeManager.ResourceCallback callback : callbacks) {
+            if (data != null) {
+                callback.provide(data);
+            } else {
+                callback.error(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package no.nordicsemi.android.mcumgr.dfu.suit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import no.nordicsemi.android.mcumgr.util.ByteUtil;
+
+/**
+ * A bounded, least-recently-used cache of SUIT resources.
+ * <p>
+ * Resources are kept in memory up to the given number of bytes. Optionally, they are also stored
+ * in a directory on disk, also bounded in size, so that they survive eviction from memory and
+ * restarts of the application. The least recently used resources are evicted first.
+ * <p>
+ * Resources are scoped to the SUIT envelope referencing them: each entry is keyed by the digest
+ * of the manifest and the URI. URIs, like {@code file://app.bin}, are names of files in the DFU
+ * package, so envelopes of different builds use the same URIs for different content. A resource
+ * cached for one envelope is never returned for another. Entries added with a null digest are
+ * not scoped and should only be used for URIs which identify the content.
+ * <p>
+ * The cache is thread safe.
+ * @noinspection unused
+ */
+public class ResourceCache {
+    private final static Logger LOG = LoggerFactory.getLogger(ResourceCache.class);
+
+    private final long maxMemorySize;
+    private final long maxDiskSize;
+    @Nullable
+    private final File directory;
+
+    /** Resources in memory, in access order. */
+    @NotNull
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+
+    /**
+     * Creates a memory-only cache.
+     *
+     * @param maxMemorySize the maximum size of resources kept in memory, in bytes.
+     */
+    public ResourceCache(final long maxMemorySize) {
+        this(maxMemorySize, null, 0);
+    }
+
+    /**
+     * Creates a cache backed by a directory on disk.
+     *
+     * @param maxMemorySize the maximum size of resources kept in memory, in bytes.
+     * @param directory     the directory for cached resources, or null to disable disk cache.
+     *                      The directory should not be used for anything else.
+     * @param maxDiskSize   the maximum size of resources kept on disk, in bytes.
+     */
+    public ResourceCache(final long maxMemorySize,
+                         @Nullable final File directory,
+                         final long maxDiskSize) {
+        this.maxMemorySize = maxMemorySize;
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Failed to create cache directory: {}", directory);
+        }
+    }
+
+    /**
+     * Returns the cached resource.
+     *
+     * @param envelopeDigest the digest of the manifest referencing the resource, or null.
+     * @param uri            the resource URI.
+     * @return The resource, or null if not cached for the envelope.
+     */
+    public synchronized byte @Nullable [] get(final byte @Nullable [] envelopeDigest,
+                                              @NotNull final URI uri) {
+        final String key = key(envelopeDigest, uri);
+        final byte[] data = memory.get(key);
+        if (data != null)
+            return data;
+
+        final File file = getFile(key);
+        if (file == null || !file.isFile())
+            return null;
+        try {
+            final byte[] content = read(file);
+            // Mark the file as recently used.
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            putInMemory(key, content);
+            return content;
+        } catch (final IOException e) {
+            LOG.warn("Failed to read cached resource {}", uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether the resource is cached.
+     *
+     * @param envelopeDigest the digest of the manifest referencing the resource, or null.
+     * @param uri            the resource URI.
+     * @return True, if the resource is cached for the envelope in memory or on disk.
+     */
+    public synchronized boolean contains(final byte @Nullable [] envelopeDigest,
+                                         @NotNull final URI uri) {
+        final String key = key(envelopeDigest, uri);
+        if (memory.containsKey(key))
+            return true;
+        final File file = getFile(key);
+        return file != null && file.isFile();
+    }
+
+    /**
+     * Adds the resource to the cache, evicting least recently used resources if needed.
+     *
+     * @param envelopeDigest the digest of the manifest referencing the resource, or null.
+     * @param uri            the resource URI.
+     * @param data           the resource.
+     */
+    public synchronized void put(final byte @Nullable [] envelopeDigest,
+                                 @NotNull final URI uri, final byte @NotNull [] data) {
+        final String key = key(envelopeDigest, uri);
+        putInMemory(key, data);
+
+        final File file = getFile(key);
+        if (file == null || data.length > maxDiskSize)
+            return;
+        try (FileOutputStream os = new FileOutputStream(file)) {
+            os.write(data);
+        } catch (final IOException e) {
+            LOG.warn("Failed to cache resource {}", uri, e);
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    /**
+     * Removes all resources from the cache, including the disk.
+     */
+    public synchronized void clear() {
+        memory.clear();
+        memorySize = 0;
+        final File[] files = directory != null ? directory.listFiles() : null;
+        if (files != null) {
+            for (final File file : files) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+        }
+    }
+
+    private void putInMemory(@NotNull final String key, final byte @NotNull [] data) {
+        if (data.length > maxMemorySize)
+            return;
+        final byte[] previous = memory.put(key, data);
+        if (previous != null)
+            memorySize -= previous.length;
+        memorySize += data.length;
+
+        final Iterator<Map.Entry<String, byte[]>> iterator = memory.entrySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            memorySize -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private void trimDisk() {
+        final File[] files = directory != null ? directory.listFiles() : null;
+        if (files == null)
+            return;
+        long size = 0;
+        for (final File file : files) {
+            size += file.length();
+        }
+        if (size <= maxDiskSize)
+            return;
+        // Evict least recently used files first.
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (final File file : files) {
+            if (size <= maxDiskSize)
+                break;
+            size -= file.length();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Nullable
+    private File getFile(@NotNull final String key) {
+        if (directory == null)
+            return null;
+        final byte[] digest = sha256(key.getBytes(StandardCharsets.UTF_8));
+        if (digest == null)
+            return null;
+        return new File(directory, ByteUtil.byteArrayToHex(digest, "%02x"));
+    }
+
+    /**
+     * Returns the key of the resource referenced by the envelope with the given digest.
+     */
+    @NotNull
+    static String key(final byte @Nullable [] envelopeDigest, @NotNull final URI uri) {
+        if (envelopeDigest == null)
+            return uri.toString();
+        return ByteUtil.byteArrayToHex(envelopeDigest, "%02x") + " " + uri;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the data, or null if the algorithm is not available.
+     */
+    static byte @Nullable [] sha256(final byte @NotNull [] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (final NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static byte @NotNull [] read(@NotNull final File file) throws IOException {
+        final byte[] data = new byte[(int) file.length()];
+        try (FileInputStream is = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                final int count = is.read(data, offset, data.length - offset);
+                if (count < 0)
+                    throw new IOException("Unexpected end of file");
+                offset += count;
+            }
+        }
+        return data;
+    }
+}
@@ -11,7 +11,10 @@ import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeCallback;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeController;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeReport;
+import no.nordicsemi.android.mcumgr.dfu.UploadThroughputCallback;
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImageSet;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 
 /** @noinspection unused*/
 public class SUITUpgradeManager implements FirmwareUpgradeController {
@@ -121,6 +124,37 @@ public class SUITUpgradeManager implements FirmwareUpgradeController {
         mInternalCallback.setRunOnIUThread(uiThreadCallbacks);
     }
 
+    /**
+     * Sets how often the upload progress is reported to the callback.
+     * <p>
+     * A progress update is reported when at least the given time has passed, or the given number
+     * of bytes has been sent, since the last reported update. The first and the last update of
+     * each upload are always reported. Set both values to 0 to report every acknowledged chunk.
+     * <p>
+     * By default, the progress is reported at most every 100 ms.
+     *
+     * @param minIntervalMillis minimum time between progress updates, in milliseconds.
+     * @param minBytes          minimum number of bytes sent between progress updates.
+     * @see UploadThroughputCallback
+     */
+    public void setProgressReportingRate(final long minIntervalMillis, final int minBytes) {
+        mPerformer.setProgressTracker(new ProgressTracker(minIntervalMillis, minBytes));
+    }
+
+    /**
+     * Returns the report of the last firmware upgrade, or null if no upgrade has finished yet.
+     * <p>
+     * The report contains the duration of each task, the statistics of the requests sent
+     * and the time the device was disconnected, and allows to tell whether the time was spent
+     * on transfer, swap or reconnection.
+     *
+     * @return The report of the last upgrade.
+     */
+    @Nullable
+    public UpgradeReport getLastReport() {
+        return mPerformer.getLastReport();
+    }
+
     /**
      * Sets the manager callback.
      *
@@ -132,6 +166,9 @@ public class SUITUpgradeManager implements FirmwareUpgradeController {
 
     /**
      * Set the resource callback used to provide resources requested by the DFU target.
+     * <p>
+     * Use {@link PrefetchingResourceProvider} to fetch resources referenced by the envelope
+     * before they are requested.
      *
      * @param resourceCallback the callback for providing resources.
      */
@@ -170,6 +207,11 @@ public class SUITUpgradeManager implements FirmwareUpgradeController {
             return;
         }
 
+        // Start fetching resources that will be requested by the device.
+        if (mResourceCallback instanceof PrefetchingResourceProvider) {
+            ((PrefetchingResourceProvider) mResourceCallback).prefetch(envelope);
+        }
+
         // Start upgrade.
         mInternalCallback.onUpgradeStarted(this);
         final SUITUpgradePerformer.Settings performerSettings =
@@ -8,12 +8,15 @@ import org.slf4j.LoggerFactory;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeCallback;
 import no.nordicsemi.android.mcumgr.dfu.FirmwareUpgradeSettings;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler;
+import no.nordicsemi.android.mcumgr.dfu.UpgradeReport;
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImageSet;
 import no.nordicsemi.android.mcumgr.dfu.suit.task.PerformDfu;
 import no.nordicsemi.android.mcumgr.dfu.suit.task.SUITUpgradeTask;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.task.Task;
 import no.nordicsemi.android.mcumgr.task.TaskPerformer;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 
 public class SUITUpgradePerformer extends TaskPerformer<SUITUpgradePerformer.Settings, SUITUpgradeManager.State> {
     private final static Logger LOG = LoggerFactory.getLogger(SUITUpgradePerformer.class);
@@ -37,12 +40,39 @@ public class SUITUpgradePerformer extends TaskPerformer<SUITUpgradePerformer.Set
      * Firmware upgrade callback passed into the constructor or set before the upload has started.
      */
     @NotNull
-    private final FirmwareUpgradeCallback<SUITUpgradeManager.State> callback;
+    private final FirmwareUpgradeCallback.Executor<SUITUpgradeManager.State> callback;
 
-    SUITUpgradePerformer(@NotNull final FirmwareUpgradeCallback<SUITUpgradeManager.State> callback) {
+    /**
+     * Coalesces progress updates and calculates the upload throughput.
+     */
+    @NotNull
+    private volatile ProgressTracker progressTracker = new ProgressTracker();
+
+    /**
+     * Records the timeline of the upgrade.
+     */
+    @NotNull
+    private final UpgradeProfiler profiler = new UpgradeProfiler();
+
+    /**
+     * The report of the last upgrade, or null if no upgrade has finished yet.
+     */
+    @Nullable
+    private volatile UpgradeReport lastReport;
+
+    SUITUpgradePerformer(@NotNull final FirmwareUpgradeCallback.Executor<SUITUpgradeManager.State> callback) {
         this.callback = callback;
     }
 
+    void setProgressTracker(@NotNull final ProgressTracker progressTracker) {
+        this.progressTracker = progressTracker;
+    }
+
+    @Nullable
+    UpgradeReport getLastReport() {
+        return lastReport;
+    }
+
     SUITUpgradeManager.State getState() {
         final SUITUpgradeTask task = (SUITUpgradeTask) getCurrentTask();
         if (task == null)
@@ -55,43 +85,68 @@ public class SUITUpgradePerformer extends TaskPerformer<SUITUpgradePerformer.Set
                final byte @NotNull [] envelope,
                @Nullable final CacheImageSet cacheImageSet) {
         LOG.trace("Starting SUIT upgrade");
+        progressTracker.reset();
+        profiler.start(transport);
         super.start(transport, settings, new PerformDfu(envelope, cacheImageSet));
     }
 
     @Override
     public void onTaskStarted(final @Nullable Task<Settings, SUITUpgradeManager.State> previousTask,
                               final @NotNull Task<Settings, SUITUpgradeManager.State> nextTask) {
+        final SUITUpgradeManager.State state = nextTask.getState();
+        profiler.onTaskStarted(nextTask.getClass().getSimpleName(), state != null ? state.name() : null);
+
         if (previousTask == null)
             return;
 
         // Notify observer about changing the state.
         final SUITUpgradeManager.State oldState = previousTask.getState();
-        final SUITUpgradeManager.State newState = nextTask.getState();
-        if (oldState != null && newState != null && newState != oldState) {
-            LOG.trace("Moving from state {} to state {}", oldState.name(), newState.name());
-            callback.onStateChanged(oldState, newState);
+        if (oldState != null && state != null && state != oldState) {
+            LOG.trace("Moving from state {} to state {}", oldState.name(), state.name());
+            callback.onStateChanged(oldState, state);
         }
     }
 
     @Override
     public void onCompleted(final @NotNull Task<Settings, SUITUpgradeManager.State> task) {
+        report(UpgradeReport.Outcome.COMPLETED, null);
         callback.onUpgradeCompleted();
     }
 
     @Override
     public void onTaskProgressChanged(final @NotNull Task<Settings, SUITUpgradeManager.State> task,
                                       final int current, final int total, final long timestamp) {
+        final ProgressTracker tracker = progressTracker;
+        final float throughput, averageThroughput;
+        final long remainingTime;
+        synchronized (tracker) {
+            if (!tracker.update(current, total, timestamp))
+                return;
+            throughput = tracker.getThroughput();
+            averageThroughput = tracker.getAverageThroughput();
+            remainingTime = tracker.getRemainingTime();
+        }
         callback.onUploadProgressChanged(current, total, timestamp);
+        callback.onUploadThroughputChanged(throughput, averageThroughput, remainingTime);
     }
 
     @Override
     public void onCancelled(final @NotNull Task<Settings, SUITUpgradeManager.State> task) {
+        report(UpgradeReport.Outcome.CANCELLED, null);
         callback.onUpgradeCanceled(task.getState());
     }
 
     @Override
     public void onTaskFailed(final @NotNull Task<Settings, SUITUpgradeManager.State> task,
                              final @NotNull McuMgrException error) {
+        report(UpgradeReport.Outcome.FAILED, error);
         callback.onUpgradeFailed(task.getState(), error);
     }
+
+    private void report(@NotNull final UpgradeReport.Outcome outcome,
+                        @Nullable final McuMgrException error) {
+        final UpgradeReport report = profiler.finish(outcome, error);
+        lastReport = report;
+        LOG.info("{}", report);
+    }
 }
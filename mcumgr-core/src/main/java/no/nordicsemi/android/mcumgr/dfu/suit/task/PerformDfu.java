@@ -3,11 +3,8 @@ package no.nordicsemi.android.mcumgr.dfu.suit.task;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
-
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
-import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage;
 import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImageSet;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
 
@@ -58,10 +55,8 @@ public class PerformDfu extends SUITUpgradeTask {
 
 		// Upload the cache images, if any.
 		if (cacheImages != null) {
-			final List<CacheImage> images = cacheImages.getImages();
-			for (CacheImage image : images) {
-				performer.enqueue(new UploadCache(image.partitionId, image.image));
-			}
+			// All cache images are sent as one stream.
+			performer.enqueue(new UploadCache(cacheImages.getImages()));
 			// After the cache images are uploaded, begin the deferred install.
 			performer.enqueue(new BeginInstall());
 		}
@@ -1,10 +1,13 @@
 package no.nordicsemi.android.mcumgr.dfu.suit.task
 
-import kotlinx.coroutines.DelicateCoroutinesApi
-import kotlinx.coroutines.GlobalScope
-import kotlinx.coroutines.delay
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
 import kotlinx.coroutines.launch
 import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager.OnResourceRequiredCallback
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager.ResourceCallback
@@ -12,18 +15,34 @@ import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
 import no.nordicsemi.android.mcumgr.managers.SUITManager
+import no.nordicsemi.android.mcumgr.task.Poller
 import no.nordicsemi.android.mcumgr.task.TaskManager
 import no.nordicsemi.android.mcumgr.util.ByteUtil
 import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 
+/**
+ * Polls the device for resources requested by the SUIT manifest.
+ *
+ * Polling starts with a short interval, which grows while the device is busy. A new task is
+ * enqueued after each provided resource, so polling returns to the short interval.
+ * The task completes when the device disconnects or stops responding, which means that
+ * the update has been processed. Poll statistics are added to the task's phase of the upgrade
+ * report.
+ *
+ * @param timeout the maximum time to poll without any resource being requested, in milliseconds.
+ * @param poller the poller.
+ */
 internal class PollTask(
-    private val limit: Int = 5,
-    private val interval: Long = 1000L
+    private val timeout: Long = 5000L,
+    private val poller: Poller = Poller(),
 ): SUITUpgradeTask() {
     private val LOG: Logger = LoggerFactory.getLogger(PollTask::class.java)
 
-    private var isCancelled = false
+    /** The scope of polling, cancelled when the task is cancelled or complete. */
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    @Volatile
     private var isComplete = false
     private var resourceCallback: OnResourceRequiredCallback? = null
 
@@ -31,7 +50,6 @@ internal class PollTask(
 
     override fun getState(): SUITUpgradeManager.State = SUITUpgradeManager.State.PROCESSING
 
-    @OptIn(DelicateCoroutinesApi::class)
     override fun start(
         performer: TaskManager<SUITUpgradePerformer.Settings, SUITUpgradeManager.State>
     ) {
@@ -47,93 +65,104 @@ internal class PollTask(
                 if (!isComplete) {
                     isComplete = true
                     manager.transporter.removeObserver(this)
+                    scope.cancel()
+                    reportStatistics(performer)
                     performer.onTaskCompleted(task)
                 }
             }
         }
         manager.transporter.addObserver(observer)
 
-        // Let's count retries.
-        var count = 0
-
-        GlobalScope.launch {
-            while (!isCancelled && !isComplete) {
-                count += 1
-                try {
-                    // Wait initial interval
-                    delay(interval)
-                    if (isComplete || isCancelled) {
-                        break
-                    }
-                    LOG.trace("Polling for resources ({}/{})...", count, limit)
-                    val response = manager.poll()
-                    if (response.isRequestingResource) {
-                        manager.transporter.removeObserver(observer)
-
-                        val uri = response.resourceUri ?: run {
-                            performer.onTaskFailed(task, McuMgrException("Resource URI is invalid (0x): ${ByteUtil.byteArrayToHex(response.resourceId)}"))
-                            return@launch
+        scope.launch {
+            try {
+                LOG.trace("Polling for resources...")
+                val response = poller.poll(timeout) {
+                    manager.poll().takeIf { it.isRequestingResource }
+                }
+                manager.transporter.removeObserver(observer)
+                LOG.debug("Polling finished: {}", poller)
+                if (isComplete) {
+                    return@launch
+                }
+                reportStatistics(performer)
+                if (response == null) {
+                    LOG.warn("No resources requested after {} ms, also no disconnection", timeout)
+                    performer.onTaskFailed(task, McuMgrTimeoutException())
+                    return@launch
+                }
+
+                val uri = response.resourceUri ?: run {
+                    performer.onTaskFailed(task, McuMgrException("Resource URI is invalid (0x): ${ByteUtil.byteArrayToHex(response.resourceId)}"))
+                    return@launch
+                }
+                LOG.info("Resource requested: {}", uri)
+
+                val resourceCallback = performer.settings.resourceCallback
+                if (resourceCallback != null) {
+                    this@PollTask.resourceCallback = resourceCallback
+                    val callback: ResourceCallback = object : ResourceCallback {
+
+                        override fun provide(data: ByteArray) {
+                            LOG.info("Resource of size {} bytes provided", data.size)
+                            this@PollTask.resourceCallback = null
+                            performer.enqueue(UploadResource(response.sessionId, data))
+                            performer.onTaskCompleted(task)
                         }
-                        LOG.info("Resource requested: {}", uri)
-
-                        val resourceCallback = performer.settings.resourceCallback
-                        if (resourceCallback != null) {
-                            this@PollTask.resourceCallback = resourceCallback
-                            val callback: ResourceCallback = object : ResourceCallback {
-
-                                override fun provide(data: ByteArray) {
-                                    LOG.info("Resource of size {} bytes provided", data.size)
-                                    this@PollTask.resourceCallback = null
-                                    performer.enqueue(UploadResource(response.sessionId, data))
-                                    performer.onTaskCompleted(task)
-                                }
-
-                                override fun error(e: Exception) = when (e) {
-                                    is McuMgrException -> performer.onTaskFailed(task, e)
-                                    else -> performer.onTaskFailed(task, McuMgrException(e))
-                                }.also {
-                                    LOG.error("Resource error", e)
-                                    this@PollTask.resourceCallback = null
-                                }
-
-                            }
-                            resourceCallback.onResourceRequired(uri, callback)
-                        } else {
-                            // Hint: Use setResourceCallback in SUITUpgradeManager to provide a callback.
-                            LOG.error("Resource {} is required but no callback is provided", uri)
-                            performer.onTaskFailed(task, McuMgrException("Resource $uri is required but no callback is provided"))
+
+                        override fun error(e: Exception) = when (e) {
+                            is McuMgrException -> performer.onTaskFailed(task, e)
+                            else -> performer.onTaskFailed(task, McuMgrException(e))
+                        }.also {
+                            LOG.error("Resource error", e)
+                            this@PollTask.resourceCallback = null
                         }
-                        return@launch
-                    } else if (count < limit) {
-                        LOG.trace("Retrying in {} ms", interval)
-                    } else {
-                        LOG.warn("No resources requested after {} attempts, also no disconnection", limit)
-                        performer.onTaskFailed(task, McuMgrTimeoutException())
-                        break
+
                     }
-                } catch (e: McuMgrTimeoutException) {
+                    resourceCallback.onResourceRequired(uri, callback)
+                } else {
+                    // Hint: Use setResourceCallback in SUITUpgradeManager to provide a callback.
+                    LOG.error("Resource {} is required but no callback is provided", uri)
+                    performer.onTaskFailed(task, McuMgrException("Resource $uri is required but no callback is provided"))
+                }
+            } catch (e: McuMgrTimeoutException) {
+                if (!isComplete) {
                     LOG.info("Request timed out, upload complete")
                     isComplete = true
+                    reportStatistics(performer)
                     performer.onTaskCompleted(task)
-                    break
-                } catch (e: McuMgrException) {
+                }
+            } catch (e: McuMgrException) {
+                if (!isComplete) {
                     LOG.error("Error polling for SUIT manifest", e)
+                    reportStatistics(performer)
                     performer.onTaskFailed(task, e)
-                    break
-                } catch (e: Exception) {
+                }
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                // Any other exception, e.g. thrown by the resource callback, fails the task.
+                if (!isComplete) {
                     LOG.error("Error polling for SUIT manifest", e)
+                    reportStatistics(performer)
                     performer.onTaskFailed(task, McuMgrException(e))
-                    break
                 }
+            } finally {
+                manager.transporter.removeObserver(observer)
             }
-            manager.transporter.removeObserver(observer)
         }
     }
 
+    private fun reportStatistics(
+        performer: TaskManager<SUITUpgradePerformer.Settings, SUITUpgradeManager.State>
+    ) {
+        UpgradeProfiler.forTransport(performer.transport)
+            ?.setPollStatistics(poller.pollCount, poller.totalLatency, poller.maxLatency)
+    }
+
     override fun cancel() {
         super.cancel()
-        isCancelled = true
+        scope.cancel()
         resourceCallback?.onUploadCancelled()
         resourceCallback = null
     }
-}
\ No newline at end of file
+}
@@ -5,20 +5,30 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradeManager;
 import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
+import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.managers.SUITManager;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
-import no.nordicsemi.android.mcumgr.transfer.CacheUploader;
+import no.nordicsemi.android.mcumgr.transfer.CacheStreamUploader;
+import no.nordicsemi.android.mcumgr.transfer.PartitionTiming;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
 
+/**
+ * Uploads all cache images as one continuous stream.
+ * The next partition is started as soon as the last chunk of the previous one is sent.
+ * The timing of each partition is added to the task's phase of the upgrade report.
+ */
 class UploadCache extends SUITUpgradeTask {
     private final static Logger LOG = LoggerFactory.getLogger(UploadCache.class);
 
-    private final byte @NotNull [] data;
-    private final int targetId;
+    @NotNull
+    private final List<CacheImage> images;
     private boolean canceled = false;
 
     /**
@@ -26,12 +36,13 @@ class UploadCache extends SUITUpgradeTask {
      */
     private TransferController mUploadController;
 
-    public UploadCache(
-            final int targetId,
-            final byte @NotNull [] data
-    ) {
-        this.targetId = targetId;
-        this.data = data;
+    /**
+     * The uploader, set when the upload is started.
+     */
+    private CacheStreamUploader mUploader;
+
+    public UploadCache(@NotNull final List<CacheImage> images) {
+        this.images = images;
     }
 
     @Override
@@ -61,6 +72,7 @@ class UploadCache extends SUITUpgradeTask {
             @Override
             public void onUploadFailed(@NotNull final McuMgrException error) {
                 LOG.error("Upload failed: {}", error.getMessage());
+                reportTimings(performer);
                 performer.onTaskFailed(UploadCache.this, error);
             }
 
@@ -73,6 +85,7 @@ class UploadCache extends SUITUpgradeTask {
             @Override
             public void onUploadCompleted() {
                 LOG.info("Uploading complete");
+                reportTimings(performer);
                 performer.onTaskCompleted(UploadCache.this);
             }
         };
@@ -83,16 +96,29 @@ class UploadCache extends SUITUpgradeTask {
             return;
         }
 
-        LOG.info("Uploading cache image with target partition ID: {} ({} bytes)", targetId, data.length);
+        for (final CacheImage image : images) {
+            LOG.info("Uploading cache image with target partition ID: {} ({} bytes)", image.partitionId, image.image.length);
+        }
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
         final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new CacheUploader(
+        mUploader = new CacheStreamUploader(
                 manager,
-                targetId,
-                data,
+                images,
                 settings.settings.windowCapacity,
                 settings.settings.memoryAlignment
-        ).uploadAsync(callback);
+        );
+        mUploadController = mUploader.uploadAsync(callback);
+    }
+
+    private void reportTimings(@NotNull final TaskManager<SUITUpgradePerformer.Settings, SUITUpgradeManager.State> performer) {
+        final List<PartitionTiming> timings = mUploader.getTimings();
+        for (final PartitionTiming timing : timings) {
+            LOG.info("{}", timing);
+        }
+        final UpgradeProfiler profiler = UpgradeProfiler.forTransport(performer.getTransport());
+        if (profiler != null) {
+            profiler.setPartitionTimings(timings);
+        }
     }
 
     @Override
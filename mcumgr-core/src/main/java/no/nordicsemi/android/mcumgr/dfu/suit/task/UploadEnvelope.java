@@ -11,6 +11,7 @@ import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.managers.SUITManager;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
 import no.nordicsemi.android.mcumgr.transfer.EnvelopeUploader;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
 
@@ -83,13 +84,16 @@ class UploadEnvelope extends SUITUpgradeTask {
         LOG.info("Uploading SUIT envelope of size: {}", envelope.length);
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
         final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new EnvelopeUploader(
+        final EnvelopeUploader uploader = new EnvelopeUploader(
                 manager,
                 envelope,
                 settings.settings.windowCapacity,
                 settings.settings.memoryAlignment,
                 deferInstall
-        ).uploadAsync(callback);
+        );
+        // The progress is coalesced by the performer.
+        uploader.setProgressTracker(new ProgressTracker(0L, 0));
+        mUploadController = uploader.uploadAsync(callback);
     }
 
     @Override
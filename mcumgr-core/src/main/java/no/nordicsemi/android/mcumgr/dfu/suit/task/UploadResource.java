@@ -10,6 +10,7 @@ import no.nordicsemi.android.mcumgr.dfu.suit.SUITUpgradePerformer;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.managers.SUITManager;
 import no.nordicsemi.android.mcumgr.task.TaskManager;
+import no.nordicsemi.android.mcumgr.transfer.ProgressTracker;
 import no.nordicsemi.android.mcumgr.transfer.ResourceUploader;
 import no.nordicsemi.android.mcumgr.transfer.TransferController;
 import no.nordicsemi.android.mcumgr.transfer.UploadCallback;
@@ -90,13 +91,16 @@ class UploadResource extends SUITUpgradeTask {
         LOG.info("Uploading resource with session ID: {} ({} bytes)", sessionId, data.length);
         final SUITUpgradePerformer.Settings settings = performer.getSettings();
         final SUITManager manager = new SUITManager(performer.getTransport());
-        mUploadController =	new ResourceUploader(
+        final ResourceUploader uploader = new ResourceUploader(
                 manager,
                 sessionId,
                 data,
                 settings.settings.windowCapacity,
                 settings.settings.memoryAlignment
-        ).uploadAsync(callback);
+        );
+        // The progress is coalesced by the performer.
+        uploader.setProgressTracker(new ProgressTracker(0L, 0));
+        mUploadController = uploader.uploadAsync(callback);
     }
 
     @Override
@@ -0,0 +1,197 @@
+package no.nordicsemi.android.mcumgr.image;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+
+/**
+ * Verifies integrity of a set of images in parallel, using the common fork-join pool.
+ * <p>
+ * The verification runs in the background, so that images may be sent while their hashes are
+ * being calculated. A {@link Listener} is notified as soon as any image is found to be corrupted,
+ * which allows to abort the upload.
+ *
+ * @see McuMgrImage#verify()
+ */
+public class ImageVerifier {
+
+    /**
+     * Listener notified when verification has failed.
+     */
+    public interface Listener {
+        /**
+         * Called when any of the images has failed verification.
+         * This method is called from a background thread.
+         *
+         * @param error the error.
+         */
+        void onVerificationFailed(@NotNull McuMgrException error);
+    }
+
+    /**
+     * Callback notified when verification of all images has finished.
+     */
+    public interface CompletionCallback {
+        /**
+         * Called when all images have been verified.
+         * This method may be called from a background thread.
+         *
+         * @param error the error if any of the images is corrupted, or null.
+         */
+        void onVerificationCompleted(@Nullable McuMgrException error);
+    }
+
+    @NotNull
+    private final ForkJoinTask<Void> task;
+    @NotNull
+    private final List<Listener> listeners = new ArrayList<>();
+    @NotNull
+    private final List<CompletionCallback> callbacks = new ArrayList<>();
+    @Nullable
+    private McuMgrException error;
+    private boolean failed;
+    private boolean completed;
+
+    /**
+     * Creates the verifier for the given images. Only {@link McuMgrImage}s are verified, other
+     * images are ignored.
+     *
+     * @param images the images to be verified.
+     */
+    public ImageVerifier(@NotNull final List<? extends ImageWithHash> images) {
+        final List<McuMgrImage> mcuMgrImages = new ArrayList<>(images.size());
+        for (final ImageWithHash image : images) {
+            if (image instanceof McuMgrImage) {
+                mcuMgrImages.add((McuMgrImage) image);
+            }
+        }
+        this.task = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                final List<RecursiveAction> actions = new ArrayList<>(mcuMgrImages.size());
+                for (final McuMgrImage image : mcuMgrImages) {
+                    actions.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            try {
+                                image.verify();
+                            } catch (final McuMgrException e) {
+                                fail(e);
+                            }
+                        }
+                    });
+                }
+                try {
+                    invokeAll(actions);
+                } finally {
+                    complete();
+                }
+            }
+        };
+    }
+
+    /**
+     * Starts the verification in the background.
+     *
+     * @return This verifier.
+     */
+    @NotNull
+    public ImageVerifier start() {
+        ForkJoinPool.commonPool().execute(task);
+        return this;
+    }
+
+    /**
+     * Waits until all images are verified. The verification must have been started.
+     *
+     * @throws McuMgrException if any of the images is corrupted.
+     */
+    public void await() throws McuMgrException {
+        task.join();
+        final McuMgrException error;
+        synchronized (this) {
+            error = this.error;
+        }
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * Registers a callback notified when the verification has finished, without blocking.
+     * If it has already finished, the callback is called immediately.
+     *
+     * @param callback the callback.
+     */
+    public void whenComplete(@NotNull final CompletionCallback callback) {
+        final McuMgrException error;
+        synchronized (this) {
+            if (!completed) {
+                callbacks.add(callback);
+                return;
+            }
+            error = this.error;
+        }
+        callback.onVerificationCompleted(error);
+    }
+
+    /**
+     * Adds the listener. If the verification has already failed, the listener is called
+     * immediately.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(@NotNull final Listener listener) {
+        final McuMgrException error;
+        synchronized (this) {
+            listeners.add(listener);
+            error = this.error;
+        }
+        if (error != null)
+            listener.onVerificationFailed(error);
+    }
+
+    /**
+     * Removes the listener.
+     *
+     * @param listener the listener.
+     */
+    public synchronized void removeListener(@NotNull final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fail(@NotNull final McuMgrException error) {
+        final List<Listener> listeners;
+        synchronized (this) {
+            // Only the first error is reported.
+            if (failed)
+                return;
+            failed = true;
+            this.error = error;
+            listeners = new ArrayList<>(this.listeners);
+        }
+        for (final Listener listener : listeners) {
+            listener.onVerificationFailed(error);
+        }
+    }
+
+    private void complete() {
+        final List<CompletionCallback> callbacks;
+        final McuMgrException error;
+        synchronized (this) {
+            completed = true;
+            error = this.error;
+            callbacks = new ArrayList<>(this.callbacks);
+            this.callbacks.clear();
+        }
+        for (final CompletionCallback callback : callbacks) {
+            callback.onVerificationCompleted(error);
+        }
+    }
+}
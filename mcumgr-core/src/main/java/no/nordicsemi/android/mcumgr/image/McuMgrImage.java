@@ -10,6 +10,9 @@ package no.nordicsemi.android.mcumgr.image;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.image.tlv.McuMgrImageTlv;
 
@@ -25,6 +28,11 @@ import no.nordicsemi.android.mcumgr.image.tlv.McuMgrImageTlv;
 public class McuMgrImage implements ImageWithHash {
     public final static int IMG_HASH_LEN = 32;
 
+    /** Image is encrypted using AES-128. The hash is calculated over the plain image. */
+    private final static int IMAGE_F_ENCRYPTED_AES128 = 0x04;
+    /** Image is encrypted using AES-256. The hash is calculated over the plain image. */
+    private final static int IMAGE_F_ENCRYPTED_AES256 = 0x08;
+
     @NotNull
     private final McuMgrImageHeader mHeader;
     @Nullable
@@ -90,6 +98,48 @@ public class McuMgrImage implements ImageWithHash {
         return true;
     }
 
+    /**
+     * Verifies the image integrity by calculating the digest of the image header, body and
+     * protected TLVs and comparing it with the hash from the TLV trailer, the same way
+     * the bootloader does.
+     * <p>
+     * Legacy and encrypted images cannot be verified, as their hash is calculated differently
+     * or over the plain image. For such images this method returns without an error.
+     * <p>
+     * This method may take a while for large images and should not be called on the UI thread.
+     *
+     * @throws McuMgrException if the calculated digest does not match the hash.
+     */
+    public void verify() throws McuMgrException {
+        if (mHeader.isLegacy())
+            return;
+        if ((mHeader.getFlags() & (IMAGE_F_ENCRYPTED_AES128 | IMAGE_F_ENCRYPTED_AES256)) != 0)
+            return;
+
+        final String algorithm;
+        switch (mHash.length) {
+            case 32: algorithm = "SHA-256"; break;
+            case 48: algorithm = "SHA-384"; break;
+            case 64: algorithm = "SHA-512"; break;
+            default: throw new McuMgrException("Unsupported image hash length: " + mHash.length);
+        }
+        final int length = mHeader.getHdrSize() + mHeader.getImgSize() +
+                (mProtectedTlv != null ? mProtectedTlv.getSize() : 0);
+        if (length > mData.length)
+            throw new McuMgrException("Image is truncated");
+
+        final byte[] digest;
+        try {
+            final MessageDigest md = MessageDigest.getInstance(algorithm);
+            md.update(mData, 0, length);
+            digest = md.digest();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new McuMgrException(e);
+        }
+        if (!MessageDigest.isEqual(digest, mHash))
+            throw new McuMgrException("Image hash mismatch, the image is corrupted");
+    }
+
     public static byte @NotNull [] getHash(byte @NotNull [] data) throws McuMgrException {
         return fromBytes(data).getHash();
     }
@@ -0,0 +1,296 @@
+package no.nordicsemi.android.mcumgr.image;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.util.CborReader;
+
+/**
+ * Metadata of a SUIT envelope.
+ * <p>
+ * The envelope is parsed in place using a {@link CborReader}. Only the authentication wrapper,
+ * the manifest and severed command sequences are visited; integrated payloads are skipped
+ * without being copied. Integrated dependency manifests, e.g. the application manifest
+ * integrated into the root envelope, are only searched for resource URIs.
+ * <p>
+ * Member keys follow draft-ietf-suit-manifest and draft-ietf-suit-trust-domains, as used by
+ * SUIT in the nRF Connect SDK. For more info about the SUIT manifest format see:
+ * <a href="https://datatracker.ietf.org/doc/draft-ietf-suit-manifest/">draft-ietf-suit-manifest</a>
+ * @noinspection unused
+ */
+public class SUITEnvelope {
+    /** CBOR tag of the SUIT envelope. */
+    private final static long SUIT_ENVELOPE_TAG = 107;
+
+    // Envelope members.
+    private final static int SUIT_AUTHENTICATION_WRAPPER = 2;
+    private final static int SUIT_MANIFEST = 3;
+
+    // Manifest members.
+    private final static int SUIT_MANIFEST_SEQUENCE_NUMBER = 2;
+    private final static int SUIT_COMMON = 3;
+    private final static int SUIT_VALIDATE = 7;
+    private final static int SUIT_LOAD = 8;
+    private final static int SUIT_INVOKE = 9;
+    private final static int SUIT_DEPENDENCY_RESOLUTION = 15;
+    private final static int SUIT_PAYLOAD_FETCH = 16;
+    private final static int SUIT_CANDIDATE_VERIFICATION = 18;
+    private final static int SUIT_INSTALL = 20;
+
+    // Common members.
+    private final static int SUIT_COMPONENTS = 2;
+    private final static int SUIT_SHARED_SEQUENCE = 4;
+
+    // Directives containing parameters or nested command sequences.
+    private final static int SUIT_DIRECTIVE_TRY_EACH = 15;
+    private final static int SUIT_DIRECTIVE_SET_PARAMETERS = 19;
+    private final static int SUIT_DIRECTIVE_OVERRIDE_PARAMETERS = 20;
+    private final static int SUIT_DIRECTIVE_RUN_SEQUENCE = 32;
+
+    // Parameters.
+    private final static int SUIT_PARAMETER_URI = 21;
+
+    private final int digestAlgorithm;
+    private final byte @NotNull [] digest;
+    private final long sequenceNumber;
+    @NotNull
+    private final List<List<byte[]>> components;
+    @NotNull
+    private final List<String> resourceUris;
+
+    private SUITEnvelope(final int digestAlgorithm,
+                         final byte @NotNull [] digest,
+                         final long sequenceNumber,
+                         @NotNull final List<List<byte[]>> components,
+                         @NotNull final List<String> resourceUris) {
+        this.digestAlgorithm = digestAlgorithm;
+        this.digest = digest;
+        this.sequenceNumber = sequenceNumber;
+        this.components = Collections.unmodifiableList(components);
+        this.resourceUris = Collections.unmodifiableList(resourceUris);
+    }
+
+    /**
+     * Returns the COSE algorithm ID of the manifest digest, e.g. -16 for SHA-256.
+     */
+    public int getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * Returns the digest of the manifest from the authentication wrapper.
+     */
+    public byte @NotNull [] getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns the sequence number of the manifest, or -1 if not present.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Returns the list of component IDs. Each component ID is a list of byte strings.
+     */
+    @NotNull
+    public List<List<byte[]>> getComponents() {
+        return components;
+    }
+
+    /**
+     * Returns the URIs of resources set as suit-parameter-uri in any command sequence,
+     * in order of appearance, without duplicates. URIs of integrated payloads, starting with
+     * '#', are not included, as they are never requested from the client.
+     */
+    @NotNull
+    public List<String> getResourceUris() {
+        return resourceUris;
+    }
+
+    /**
+     * Parses the SUIT envelope.
+     *
+     * @param data the envelope.
+     * @return The envelope metadata.
+     * @throws McuMgrException if the envelope is invalid.
+     */
+    @NotNull
+    public static SUITEnvelope parse(final byte @NotNull [] data) throws McuMgrException {
+        try {
+            return new Parser().parse(new CborReader(data));
+        } catch (final IOException e) {
+            throw new McuMgrException("Invalid SUIT envelope", e);
+        }
+    }
+
+    private static class Parser {
+        private int digestAlgorithm;
+        private byte[] digest;
+        private long sequenceNumber = -1;
+        private final List<List<byte[]>> components = new ArrayList<>();
+        @NotNull
+        private final Set<String> uris;
+
+        Parser() {
+            this(new LinkedHashSet<>());
+        }
+
+        /**
+         * Creates a parser adding resource URIs to the given set.
+         */
+        Parser(@NotNull final Set<String> uris) {
+            this.uris = uris;
+        }
+
+        @NotNull
+        SUITEnvelope parse(@NotNull final CborReader envelope) throws IOException {
+            if (envelope.peekMajorType() == CborReader.MAJOR_TYPE_TAG) {
+                final long tag = envelope.readTag();
+                if (tag != SUIT_ENVELOPE_TAG)
+                    throw new IOException("Unexpected tag: " + tag);
+            }
+            final int count = envelope.readMapHeader();
+            for (int i = 0; i < count; i++) {
+                // Integrated payloads use text keys.
+                if (envelope.peekMajorType() == CborReader.MAJOR_TYPE_TEXT_STRING) {
+                    envelope.skip();
+                    parseIntegratedPayload(envelope.readEmbedded());
+                    continue;
+                }
+                final long key = envelope.readInt();
+                if (key == SUIT_AUTHENTICATION_WRAPPER) {
+                    parseAuthenticationWrapper(envelope.readEmbedded());
+                } else if (key == SUIT_MANIFEST) {
+                    parseManifest(envelope.readEmbedded());
+                } else if ((key == SUIT_DEPENDENCY_RESOLUTION || key == SUIT_PAYLOAD_FETCH ||
+                        key == SUIT_INSTALL) &&
+                        envelope.peekMajorType() == CborReader.MAJOR_TYPE_BYTE_STRING) {
+                    // Severed command sequence.
+                    parseCommandSequence(envelope.readEmbedded());
+                } else {
+                    envelope.skip();
+                }
+            }
+            if (digest == null)
+                throw new IOException("Authentication wrapper not found");
+            return new SUITEnvelope(digestAlgorithm, digest, sequenceNumber,
+                    components, new ArrayList<>(uris));
+        }
+
+        private void parseIntegratedPayload(@NotNull final CborReader payload) throws IOException {
+            // Integrated dependency manifests are tagged envelopes; other payloads are images.
+            if (!payload.hasNext() || payload.peekMajorType() != CborReader.MAJOR_TYPE_TAG)
+                return;
+            try {
+                if (payload.readTag() == SUIT_ENVELOPE_TAG) {
+                    new Parser(uris).parse(payload);
+                }
+            } catch (final IOException e) {
+                // An image which happens to start with a tag.
+            }
+        }
+
+        private void parseAuthenticationWrapper(@NotNull final CborReader wrapper) throws IOException {
+            // The first element is the digest of the manifest, followed by authentication blocks.
+            final int count = wrapper.readArrayHeader();
+            if (count < 1)
+                throw new IOException("Empty authentication wrapper");
+            final CborReader reader = wrapper.readEmbedded();
+            if (reader.readArrayHeader() != 2)
+                throw new IOException("Invalid digest");
+            digestAlgorithm = (int) reader.readInt();
+            digest = reader.readByteString();
+        }
+
+        private void parseManifest(@NotNull final CborReader manifest) throws IOException {
+            final int count = manifest.readMapHeader();
+            for (int i = 0; i < count; i++) {
+                final long key = manifest.readInt();
+                if (key == SUIT_MANIFEST_SEQUENCE_NUMBER) {
+                    sequenceNumber = manifest.readInt();
+                } else if (key == SUIT_COMMON) {
+                    parseCommon(manifest.readEmbedded());
+                } else if ((key == SUIT_VALIDATE || key == SUIT_LOAD || key == SUIT_INVOKE ||
+                        key == SUIT_DEPENDENCY_RESOLUTION || key == SUIT_PAYLOAD_FETCH ||
+                        key == SUIT_CANDIDATE_VERIFICATION || key == SUIT_INSTALL) &&
+                        manifest.peekMajorType() == CborReader.MAJOR_TYPE_BYTE_STRING) {
+                    // Severable members may be replaced with their digest.
+                    parseCommandSequence(manifest.readEmbedded());
+                } else {
+                    manifest.skip();
+                }
+            }
+        }
+
+        private void parseCommon(@NotNull final CborReader common) throws IOException {
+            final int count = common.readMapHeader();
+            for (int i = 0; i < count; i++) {
+                final long key = common.readInt();
+                if (key == SUIT_COMPONENTS) {
+                    final int componentCount = common.readArrayHeader();
+                    for (int c = 0; c < componentCount; c++) {
+                        final int length = common.readArrayHeader();
+                        final List<byte[]> id = new ArrayList<>(length);
+                        for (int j = 0; j < length; j++) {
+                            id.add(common.readByteString());
+                        }
+                        components.add(Collections.unmodifiableList(id));
+                    }
+                } else if (key == SUIT_SHARED_SEQUENCE) {
+                    parseCommandSequence(common.readEmbedded());
+                } else {
+                    common.skip();
+                }
+            }
+        }
+
+        private void parseCommandSequence(@NotNull final CborReader sequence) throws IOException {
+            final int count = sequence.readArrayHeader();
+            for (int i = 0; i + 1 < count; i += 2) {
+                final long command = sequence.readInt();
+                if (command == SUIT_DIRECTIVE_SET_PARAMETERS || command == SUIT_DIRECTIVE_OVERRIDE_PARAMETERS) {
+                    parseParameters(sequence);
+                } else if (command == SUIT_DIRECTIVE_TRY_EACH) {
+                    final int options = sequence.readArrayHeader();
+                    for (int o = 0; o < options; o++) {
+                        if (sequence.peekMajorType() == CborReader.MAJOR_TYPE_BYTE_STRING) {
+                            parseCommandSequence(sequence.readEmbedded());
+                        } else {
+                            // An empty option is encoded as nil.
+                            sequence.skip();
+                        }
+                    }
+                } else if (command == SUIT_DIRECTIVE_RUN_SEQUENCE) {
+                    parseCommandSequence(sequence.readEmbedded());
+                } else {
+                    sequence.skip();
+                }
+            }
+        }
+
+        private void parseParameters(@NotNull final CborReader parameters) throws IOException {
+            final int count = parameters.readMapHeader();
+            for (int i = 0; i < count; i++) {
+                final long key = parameters.readInt();
+                if (key == SUIT_PARAMETER_URI &&
+                        parameters.peekMajorType() == CborReader.MAJOR_TYPE_TEXT_STRING) {
+                    final String uri = parameters.readTextString();
+                    if (!uri.startsWith("#")) {
+                        uris.add(uri);
+                    }
+                } else {
+                    parameters.skip();
+                }
+            }
+        }
+    }
+}
@@ -559,6 +559,13 @@ public class FsManager extends TransferManager {
         protected UploadResponse write(byte @NotNull [] data, int offset) throws McuMgrException {
             return upload(mName, data, offset);
         }
+
+        @Override
+        protected boolean write(byte @NotNull [] data, int offset,
+                                @NotNull McuMgrCallback<UploadResponse> callback) {
+            upload(mName, data, offset, forward(callback));
+            return true;
+        }
     }
 
     /**
@@ -636,6 +643,12 @@ public class FsManager extends TransferManager {
         protected DownloadResponse read(int offset) throws McuMgrException {
             return download(mName, offset);
         }
+
+        @Override
+        protected boolean read(int offset, @NotNull McuMgrCallback<DownloadResponse> callback) {
+            download(mName, offset, forward(callback));
+            return true;
+        }
     }
 
     /**
@@ -676,6 +689,12 @@ public class FsManager extends TransferManager {
         protected DownloadResponse read(int offset) throws McuMgrException {
             return download(mName, offset);
         }
+
+        @Override
+        protected boolean read(int offset, @NotNull McuMgrCallback<DownloadResponse> callback) {
+            download(mName, offset, forward(callback));
+            return true;
+        }
     }
 
     //******************************************************************
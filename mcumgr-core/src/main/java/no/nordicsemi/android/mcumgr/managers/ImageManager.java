@@ -630,6 +630,7 @@ public class ImageManager extends TransferManager {
      * @return The object used to control this download.
      * @see TransferController
      * @see CoreDump
+     * @see no.nordicsemi.android.mcumgr.crash.CoreDumpDownload
      */
     @NotNull
     public TransferController coreDownload(@NotNull DownloadCallback callback) {
@@ -648,6 +649,12 @@ public class ImageManager extends TransferManager {
         public DownloadResponse read(int offset) throws McuMgrException {
             return coreLoad(offset);
         }
+
+        @Override
+        protected boolean read(int offset, @NotNull McuMgrCallback<DownloadResponse> callback) {
+            coreLoad(offset, forward(callback));
+            return true;
+        }
     }
 
     //******************************************************************
@@ -708,6 +715,13 @@ public class ImageManager extends TransferManager {
         protected UploadResponse write(byte @NotNull [] data, int offset) throws McuMgrException {
             return upload(data, offset, mImage);
         }
+
+        @Override
+        protected boolean write(byte @NotNull [] data, int offset,
+                                @NotNull McuMgrCallback<UploadResponse> callback) {
+            upload(data, offset, mImage, forward(callback));
+            return true;
+        }
     }
 
     //******************************************************************
@@ -125,6 +125,28 @@ public class ShellManager extends McuManager {
 		send(OP_WRITE, ID_EXEC, payloadMap, timeout, McuMgrExecResponse.class, callback);
 	}
 
+	/**
+	 * The command allows to execute command line in a similar way to typing
+	 * it into a shell, but both a request and a response are transported with use of SMP
+	 * (asynchronous).
+	 * <p>
+	 * Unlike {@link #exec(String, String[], long, McuMgrCallback)}, the array is sent as is,
+	 * which avoids copying it when the same command is sent repeatedly.
+	 *
+	 * @param argv     the command followed by its arguments.
+	 * @param timeout  the operation timeout in milliseconds.
+	 * @param callback the asynchronous callback.
+	 */
+	public void exec(@NotNull String[] argv, long timeout,
+					 @NotNull McuMgrCallback<McuMgrExecResponse> callback) {
+		if (argv.length == 0) {
+			throw new IllegalArgumentException("Command is empty");
+		}
+		HashMap<String, Object> payloadMap = new HashMap<>();
+		payloadMap.put("argv", argv);
+		send(OP_WRITE, ID_EXEC, payloadMap, timeout, McuMgrExecResponse.class, callback);
+	}
+
 	/**
 	 * The command allows to execute command line in a similar way to typing
 	 * it into a shell, but both a request and a response are transported with use of SMP
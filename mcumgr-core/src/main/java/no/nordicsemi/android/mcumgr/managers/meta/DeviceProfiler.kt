@@ -0,0 +1,338 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import com.fasterxml.jackson.core.JsonFactory
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.suspendCancellableCoroutine
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrMpStatResponse
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrTaskStatResponse
+import org.slf4j.LoggerFactory
+import java.io.Writer
+import java.util.Locale
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Samples of a single thread, stored in columns.
+ *
+ * @property name the thread name.
+ */
+class ThreadProfile internal constructor(val name: String, capacity: Int) {
+    /** Share of the CPU time since the previous sample, in per mille. */
+    internal val cpu = ShortArray(capacity)
+    /** Context switches per second since the previous sample. */
+    internal val contextSwitches = IntArray(capacity)
+    /** Stack usage, in bytes. */
+    internal val stackUsage = IntArray(capacity)
+
+    /** Size of the stack, in bytes. */
+    var stackSize = 0
+        internal set
+    /** Priority of the thread. */
+    var priority = 0L
+        internal set
+}
+
+/**
+ * Samples of a single memory pool, stored in columns.
+ *
+ * @property name the memory pool name.
+ */
+class PoolProfile internal constructor(val name: String, capacity: Int) {
+    /** Number of free blocks. */
+    internal val free = IntArray(capacity)
+
+    /** Number of blocks in the pool. */
+    var blocks = 0
+        internal set
+    /** Size of a block, in bytes. */
+    var blockSize = 0
+        internal set
+    /** Minimum number of free blocks ever, as reported by the device. */
+    var minFree = 0
+        internal set
+}
+
+/**
+ * A sampling profiler of threads and memory pools of the device.
+ *
+ * At each [interval] the profiler sends Task Statistics and Memory Pool Statistics commands at
+ * the same time. From the difference between samples it calculates the share of CPU time used
+ * by each thread, based on the `runtime` field, and the context switch rate. Stack usage and free
+ * memory pool blocks are recorded as reported.
+ *
+ * Samples are kept in primitive columns of fixed [capacity]; when the capacity is reached, the
+ * oldest samples are overwritten. Threads and pools which appear during profiling get 0 values
+ * for the earlier samples.
+ *
+ * The collected data may be exported as a text [report] or a
+ * [Chrome trace](https://docs.google.com/document/d/1CvAClvFfyA5R-PhYUmn5OOQtYMH4h6I0nSsKchNAySU)
+ * JSON file, which can be opened in chrome://tracing or Perfetto.
+ *
+ * @param defaultManager the Default Manager.
+ * @property interval the sampling interval, in milliseconds.
+ * @property capacity the maximum number of samples retained.
+ */
+class DeviceProfiler @JvmOverloads constructor(
+    private val defaultManager: DefaultManager,
+    val interval: Long = 1000,
+    val capacity: Int = 600,
+) {
+    private val log = LoggerFactory.getLogger(DeviceProfiler::class.java)
+
+    private val ring = RingIndex(capacity)
+    private val timestamps = LongArray(capacity)
+    private val threads = linkedMapOf<String, ThreadProfile>()
+    private val pools = linkedMapOf<String, PoolProfile>()
+
+    /** The last task statistics, used to calculate deltas. */
+    private var previous: Map<String, McuMgrTaskStatResponse.TaskStat>? = null
+    private var previousTimestamp = 0L
+
+    /** Whether Memory Pool Statistics command is supported. */
+    @Volatile
+    private var mpStatSupported = true
+
+    private val sampler = PeriodicSampler(
+        interval,
+        onError = { e -> log.warn("Profiling failed: ${e.message}") },
+        sample = { timestamp -> sample(timestamp) },
+    )
+
+    /**
+     * Number of samples retained.
+     */
+    val size: Int
+        @Synchronized get() = ring.size
+
+    /**
+     * Starts profiling. Profiling continues until [stop] is called.
+     */
+    fun start() = sampler.start()
+
+    /**
+     * Stops profiling. Requests in flight are cancelled. Collected samples are retained.
+     */
+    fun stop() = sampler.stop()
+
+    private suspend fun sample(timestamp: Long) = coroutineScope {
+        val tasks = async { request<McuMgrTaskStatResponse> { defaultManager.taskstats(it) } }
+        val pools = async {
+            if (!mpStatSupported) return@async null
+            try {
+                request<McuMgrMpStatResponse> { defaultManager.mpstat(it) }
+            } catch (e: McuMgrErrorException) {
+                log.info("Memory pool statistics not available: ${e.message}")
+                mpStatSupported = false
+                null
+            }
+        }
+        onSample(timestamp, tasks.await().tasks.orEmpty(), pools.await()?.mpools.orEmpty())
+    }
+
+    private suspend fun <T : McuMgrResponse> request(send: (McuMgrCallback<T>) -> Unit): T =
+        suspendCancellableCoroutine { continuation ->
+            send(object : McuMgrCallback<T> {
+                override fun onResponse(response: T) = continuation.resume(response)
+                override fun onError(error: McuMgrException) = continuation.resumeWithException(error)
+            })
+        }
+
+    /**
+     * Records a sample taken at the given time.
+     */
+    @Synchronized
+    internal fun onSample(
+        timestamp: Long,
+        tasks: Map<String, McuMgrTaskStatResponse.TaskStat>,
+        mpools: Map<String, McuMgrMpStatResponse.MpStat>,
+    ) {
+        val last = previous
+        val elapsed = timestamp - previousTimestamp
+        previous = tasks
+        previousTimestamp = timestamp
+        // The first sample is only used as a reference.
+        if (last == null || elapsed <= 0) return
+
+        val runtimeDeltas = tasks.mapValues { (name, task) ->
+            (task.runtime - (last[name]?.runtime ?: task.runtime)).coerceAtLeast(0)
+        }
+        val totalRuntime = runtimeDeltas.values.sum()
+
+        val head = ring.head
+        timestamps[head] = timestamp
+        threads.values.forEach { thread ->
+            thread.cpu[head] = 0
+            thread.contextSwitches[head] = 0
+            thread.stackUsage[head] = 0
+        }
+        tasks.forEach { (name, task) ->
+            val thread = threads.getOrPut(name) { ThreadProfile(name, capacity) }
+            val switches = (task.cswcnt - (last[name]?.cswcnt ?: task.cswcnt)).coerceAtLeast(0)
+            thread.cpu[head] = if (totalRuntime > 0)
+                (runtimeDeltas.getValue(name) * 1000 / totalRuntime).toInt().toShort() else 0
+            thread.contextSwitches[head] = (switches * 1000 / elapsed).toInt()
+            thread.stackUsage[head] = task.stkuse.toInt()
+            thread.stackSize = task.stksiz.toInt()
+            thread.priority = task.prio
+        }
+        pools.values.forEach { it.free[head] = 0 }
+        mpools.forEach { (name, stat) ->
+            val pool = pools.getOrPut(name) { PoolProfile(name, capacity) }
+            pool.free[head] = stat.nfree
+            pool.blocks = stat.nblks
+            pool.blockSize = stat.blksiz
+            pool.minFree = stat.min
+        }
+        ring.advance()
+    }
+
+    /**
+     * Returns the names of profiled threads.
+     */
+    @Synchronized
+    fun threadNames(): List<String> = threads.keys.toList()
+
+    /**
+     * Returns the names of profiled memory pools.
+     */
+    @Synchronized
+    fun poolNames(): List<String> = pools.keys.toList()
+
+    /**
+     * Returns the timestamp of the sample with the given index, in milliseconds.
+     * Index 0 is the oldest sample retained.
+     */
+    @Synchronized
+    fun timestamp(index: Int): Long = timestamps[position(index)]
+
+    /**
+     * Returns the share of CPU time used by the thread in the sample with the given index,
+     * in percent.
+     */
+    @Synchronized
+    fun cpuUsage(thread: String, index: Int): Float =
+        (threads[thread]?.cpu?.get(position(index)) ?: 0) / 10f
+
+    /**
+     * Returns the number of context switches per second of the thread in the sample with
+     * the given index.
+     */
+    @Synchronized
+    fun contextSwitchRate(thread: String, index: Int): Int =
+        threads[thread]?.contextSwitches?.get(position(index)) ?: 0
+
+    /**
+     * Returns the stack usage of the thread in the sample with the given index, in bytes.
+     */
+    @Synchronized
+    fun stackUsage(thread: String, index: Int): Int =
+        threads[thread]?.stackUsage?.get(position(index)) ?: 0
+
+    /**
+     * Returns the number of used blocks of the memory pool in the sample with the given index.
+     */
+    @Synchronized
+    fun poolUsage(pool: String, index: Int): Int {
+        val profile = pools[pool] ?: return 0
+        return profile.blocks - profile.free[position(index)]
+    }
+
+    /**
+     * Returns a text report with the average and peak values of each thread and memory pool.
+     */
+    @Synchronized
+    fun report(): String = buildString {
+        if (size == 0) {
+            append("No samples")
+            return@buildString
+        }
+        append(String.format(Locale.US, "%d samples over %d ms%n",
+            size, timestamps[position(size - 1)] - timestamps[position(0)] + interval))
+        append(String.format(Locale.US, "%-20s %8s %8s %10s %16s%n",
+            "Thread", "CPU avg", "CPU max", "Switch/s", "Stack (trend)"))
+        threads.values.forEach { thread ->
+            var cpuSum = 0L
+            var cpuMax = 0
+            var switchesSum = 0L
+            for (i in 0 until size) {
+                val p = position(i)
+                cpuSum += thread.cpu[p]
+                cpuMax = maxOf(cpuMax, thread.cpu[p].toInt())
+                switchesSum += thread.contextSwitches[p]
+            }
+            val stackFirst = thread.stackUsage[position(0)]
+            val stackLast = thread.stackUsage[position(size - 1)]
+            append(String.format(Locale.US, "%-20s %7.1f%% %7.1f%% %10d %6d/%-6d %+d%n",
+                thread.name, cpuSum / 10f / size, cpuMax / 10f, switchesSum / size,
+                stackLast, thread.stackSize, stackLast - stackFirst))
+        }
+        if (pools.isNotEmpty()) {
+            append(String.format(Locale.US, "%-20s %8s %8s %8s%n",
+                "Pool", "Used max", "Blocks", "Min free"))
+            pools.values.forEach { pool ->
+                var minFree = pool.blocks
+                for (i in 0 until size) {
+                    minFree = minOf(minFree, pool.free[position(i)])
+                }
+                append(String.format(Locale.US, "%-20s %8d %8d %8d%n",
+                    pool.name, pool.blocks - minFree, pool.blocks, pool.minFree))
+            }
+        }
+    }
+
+    /**
+     * Writes the samples as counter events in Chrome trace JSON format.
+     *
+     * Each thread is a counter with `cpu` (percent), `switches` (per second) and `stack` (bytes)
+     * series; each memory pool is a counter with the number of `used` blocks.
+     *
+     * @param writer the destination. The writer is not closed.
+     */
+    @Synchronized
+    fun writeChromeTrace(writer: Writer) {
+        val generator = JsonFactory().createGenerator(writer)
+        generator.writeStartObject()
+        generator.writeArrayFieldStart("traceEvents")
+        for (i in 0 until size) {
+            val p = position(i)
+            // Chrome trace timestamps are in microseconds.
+            val ts = timestamps[p] * 1000
+            threads.values.forEach { thread ->
+                generator.writeStartObject()
+                generator.writeStringField("name", thread.name)
+                generator.writeStringField("ph", "C")
+                generator.writeNumberField("ts", ts)
+                generator.writeNumberField("pid", 1)
+                generator.writeObjectFieldStart("args")
+                generator.writeNumberField("cpu", thread.cpu[p] / 10f)
+                generator.writeNumberField("switches", thread.contextSwitches[p])
+                generator.writeNumberField("stack", thread.stackUsage[p])
+                generator.writeEndObject()
+                generator.writeEndObject()
+            }
+            pools.values.forEach { pool ->
+                generator.writeStartObject()
+                generator.writeStringField("name", "mpool " + pool.name)
+                generator.writeStringField("ph", "C")
+                generator.writeNumberField("ts", ts)
+                generator.writeNumberField("pid", 1)
+                generator.writeObjectFieldStart("args")
+                generator.writeNumberField("used", pool.blocks - pool.free[p])
+                generator.writeEndObject()
+                generator.writeEndObject()
+            }
+        }
+        generator.writeEndArray()
+        generator.writeStringField("displayTimeUnit", "ms")
+        generator.writeEndObject()
+        generator.flush()
+    }
+
+    private fun position(index: Int): Int = ring.position(index)
+}
@@ -0,0 +1,270 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.suspendCancellableCoroutine
+import no.nordicsemi.android.mcumgr.McuMgrBatch
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.capabilities.CapabilitiesProvider
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import org.slf4j.LoggerFactory
+import kotlin.coroutines.cancellation.CancellationException
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * A link setting under which the benchmark is run, for example a connection priority.
+ *
+ * For a Bluetooth LE transport:
+ * ```
+ * LinkConfiguration("high priority") {
+ *     transport.requestConnPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH)
+ * }
+ * LinkConfiguration("high priority, 20-byte packets") {
+ *     transport.setMaxPacketLength(20)
+ * }
+ * ```
+ *
+ * @property name the name of the configuration in the report.
+ * @property apply applies the configuration to the transport.
+ */
+class LinkConfiguration(val name: String, val apply: Runnable)
+
+/**
+ * Round-trip times of echo requests with a single payload size, in milliseconds.
+ */
+data class RttResult(
+    val payloadSize: Int,
+    val samples: Int,
+    val failures: Int,
+    val min: Double,
+    val mean: Double,
+    val p50: Double,
+    val p90: Double,
+    val p99: Double,
+    val max: Double,
+)
+
+/**
+ * Throughput of pipelined echo requests with a single window capacity.
+ *
+ * @property bytesPerSecond the number of payload bytes echoed per second, in each direction.
+ */
+data class ThroughputResult(
+    val windowCapacity: Int,
+    val payloadSize: Int,
+    val requests: Int,
+    val failures: Int,
+    val duration: Long,
+    val requestsPerSecond: Double,
+    val bytesPerSecond: Double,
+)
+
+/**
+ * Results of the benchmark with a single [LinkConfiguration].
+ */
+data class ConfigurationResult(
+    val name: String,
+    val rtt: List<RttResult>,
+    val throughput: List<ThroughputResult>,
+)
+
+/**
+ * The report of a [LinkBenchmark].
+ *
+ * @property timestamp the time the benchmark was started, in milliseconds.
+ * @property transport the transport scheme.
+ * @property maxPayloadSize the largest echo payload used, in bytes.
+ */
+data class LinkBenchmarkReport(
+    val timestamp: Long,
+    val transport: String,
+    val maxPayloadSize: Int,
+    val configurations: List<ConfigurationResult>,
+) {
+    /**
+     * Returns the report as JSON.
+     */
+    fun toJson(): String = ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(this)
+}
+
+/**
+ * Callback for the result of a [LinkBenchmark] started with [LinkBenchmark.start].
+ * Either the report or the error is set.
+ */
+typealias LinkBenchmarkCallback = (report: LinkBenchmarkReport?, error: Throwable?) -> Unit
+
+/**
+ * Measures the performance of the link to the device using Echo commands.
+ *
+ * For each [LinkConfiguration] the benchmark:
+ * 1. Sends [samples] echo requests, one at a time, for each payload size, and records the
+ *    distribution of round-trip times.
+ * 2. Sends [throughputRequests] echo requests with the largest payload without waiting for
+ *    the previous responses, for each window capacity, and records the throughput.
+ *
+ * Payload sizes, unless given, are powers of 2 up to the largest payload which fits into a single
+ * McuMgr buffer of the device, as reported by the transport if it is a [CapabilitiesProvider],
+ * or [DEFAULT_MAX_PAYLOAD_SIZE] otherwise. Larger payloads require reassembly on the device, so
+ * a sweep up to the buffer size also covers the reassembly limit.
+ *
+ * The benchmark only uses [DefaultManager], so it works with any transport, including simulated
+ * ones.
+ *
+ * @param defaultManager the Default Manager.
+ * @property samples the number of round-trip time samples per payload size.
+ * @property throughputRequests the number of requests sent per window capacity.
+ * @property windowCapacities the window capacities for the throughput test.
+ * @param payloadSizes the payload sizes of the round-trip time test, or null for the default.
+ */
+class LinkBenchmark @JvmOverloads constructor(
+    private val defaultManager: DefaultManager,
+    val samples: Int = 50,
+    val throughputRequests: Int = 100,
+    val windowCapacities: List<Int> = listOf(1, 2, 4, 8),
+    payloadSizes: List<Int>? = null,
+) {
+    private val log = LoggerFactory.getLogger(LinkBenchmark::class.java)
+
+    /** The payload sizes of the round-trip time test. */
+    val payloadSizes: List<Int> = (payloadSizes ?: defaultPayloadSizes()).sorted()
+
+    init {
+        require(samples > 0 && throughputRequests > 0) { "Number of requests must be positive" }
+        require(windowCapacities.all { it > 0 }) { "Window capacity must be positive" }
+        require(this.payloadSizes.isNotEmpty()) { "List of payload sizes is empty" }
+    }
+
+    /**
+     * Runs the benchmark with each configuration, in order.
+     *
+     * @param configurations the link configurations. By default, the current one is used.
+     */
+    suspend fun run(
+        configurations: List<LinkConfiguration> = listOf(LinkConfiguration("default") {}),
+    ): LinkBenchmarkReport {
+        val timestamp = System.currentTimeMillis()
+        val results = configurations.map { configuration ->
+            log.info("Running link benchmark: {}", configuration.name)
+            configuration.apply.run()
+            val rtt = payloadSizes.map { measureRtt(it) }
+            val throughput = windowCapacities.map { measureThroughput(it, payloadSizes.last()) }
+            ConfigurationResult(configuration.name, rtt, throughput)
+        }
+        return LinkBenchmarkReport(
+            timestamp, defaultManager.scheme.name, payloadSizes.last(), results
+        )
+    }
+
+    /**
+     * Runs the benchmark in the background. This method returns immediately.
+     *
+     * @param configurations the link configurations.
+     * @param callback the callback with the report, or the failure.
+     * @return The object used to cancel the benchmark.
+     */
+    fun start(configurations: List<LinkConfiguration>, callback: LinkBenchmarkCallback): Cancellable {
+        val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+        scope.launch {
+            val report = try {
+                run(configurations)
+            } catch (e: Exception) {
+                if (e is CancellationException) throw e
+                callback(null, e)
+                return@launch
+            }
+            callback(report, null)
+        }
+        return object : Cancellable {
+            override fun cancel() = scope.cancel()
+        }
+    }
+
+    private suspend fun measureRtt(payloadSize: Int): RttResult {
+        val payload = payload(payloadSize)
+        val times = mutableListOf<Double>()
+        var failures = 0
+        repeat(samples) {
+            val start = System.nanoTime()
+            try {
+                echo(payload)
+                times.add((System.nanoTime() - start) / 1_000_000.0)
+            } catch (e: McuMgrException) {
+                failures++
+            }
+        }
+        times.sort()
+        return RttResult(
+            payloadSize, times.size, failures,
+            min = times.firstOrNull() ?: 0.0,
+            mean = if (times.isEmpty()) 0.0 else times.average(),
+            p50 = percentile(times, 50),
+            p90 = percentile(times, 90),
+            p99 = percentile(times, 99),
+            max = times.lastOrNull() ?: 0.0,
+        )
+    }
+
+    private suspend fun measureThroughput(windowCapacity: Int, payloadSize: Int): ThroughputResult {
+        val payload = payload(payloadSize)
+        val batch = McuMgrBatch(windowCapacity)
+        repeat(throughputRequests) {
+            batch.add<McuMgrEchoResponse> { defaultManager.echo(payload, it) }
+        }
+        val start = System.nanoTime()
+        val results = suspendCancellableCoroutine { continuation ->
+            batch.execute { continuation.resume(it) }
+        }
+        val duration = (System.nanoTime() - start) / 1_000_000
+        val succeeded = results.count { it.isSuccess && (it.response as McuMgrEchoResponse).r == payload }
+        val seconds = duration.coerceAtLeast(1) / 1000.0
+        return ThroughputResult(
+            windowCapacity, payloadSize, throughputRequests, throughputRequests - succeeded, duration,
+            requestsPerSecond = succeeded / seconds,
+            bytesPerSecond = succeeded.toLong() * payloadSize / seconds,
+        )
+    }
+
+    private suspend fun echo(payload: String) = suspendCancellableCoroutine { continuation ->
+        defaultManager.echo(payload, object : McuMgrCallback<McuMgrEchoResponse> {
+            override fun onResponse(response: McuMgrEchoResponse) {
+                if (response.r == payload) {
+                    continuation.resume(response)
+                } else {
+                    continuation.resumeWithException(McuMgrException("Echo response does not match"))
+                }
+            }
+
+            override fun onError(error: McuMgrException) = continuation.resumeWithException(error)
+        })
+    }
+
+    private fun defaultPayloadSizes(): List<Int> {
+        val transport = defaultManager.transporter
+        val bufferSize = (transport as? CapabilitiesProvider)?.capabilities?.bufferSize ?: 0
+        val max = if (bufferSize > ECHO_OVERHEAD) bufferSize - ECHO_OVERHEAD else DEFAULT_MAX_PAYLOAD_SIZE
+        return generateSequence(1) { it * 2 }.takeWhile { it < max }.toList() + max
+    }
+
+    companion object {
+        /** The largest payload used when the buffer size of the device is not known. */
+        const val DEFAULT_MAX_PAYLOAD_SIZE = 128
+
+        /** Size of the SMP header and the CBOR encoding of the echo request around the payload. */
+        private const val ECHO_OVERHEAD = 8 + 8
+
+        private fun payload(size: Int) = "x".repeat(size)
+
+        private fun percentile(sorted: List<Double>, percentile: Int): Double {
+            if (sorted.isEmpty()) return 0.0
+            val index = ((sorted.size - 1) * percentile + 50) / 100
+            return sorted[index]
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+
+/**
+ * A store of log entries which keeps them in memory up to a threshold and then spills them
+ * to a file.
+ *
+ * Once the estimated size of entries in memory exceeds [memoryThreshold], all of them are
+ * written to [file] and every following entry is appended there. Each entry is stored as
+ * a length-prefixed CBOR map. The file is overwritten when the first entry is spilled.
+ *
+ * @property file the file used when the threshold is crossed.
+ * @property memoryThreshold the maximum estimated size of entries kept in memory, in bytes.
+ */
+class LogBuffer @JvmOverloads constructor(
+    val file: File,
+    val memoryThreshold: Int = 256 * 1024,
+) : Closeable {
+    private val log = LoggerFactory.getLogger(LogBuffer::class.java)
+
+    private val entries = mutableListOf<McuMgrLogResponse.Entry>()
+    private var memorySize = 0
+    private var output: DataOutputStream? = null
+
+    /**
+     * Number of entries in the buffer.
+     */
+    var size = 0
+        @Synchronized get
+        private set
+
+    /**
+     * The index following the last entry added, or 0 if the buffer is empty. Use it to continue
+     * reading the log.
+     */
+    var nextIndex = 0L
+        @Synchronized get
+        private set
+
+    /**
+     * Whether entries have been spilled to the [file].
+     */
+    val isSpilled: Boolean
+        @Synchronized get() = output != null
+
+    /**
+     * Adds the entry to the buffer.
+     */
+    @Synchronized
+    fun add(entry: McuMgrLogResponse.Entry) {
+        val output = output
+        if (output != null) {
+            write(output, entry)
+        } else {
+            entries.add(entry)
+            memorySize += estimateSize(entry)
+            if (memorySize > memoryThreshold) {
+                spill()
+            }
+        }
+        size++
+        nextIndex = entry.index + 1
+    }
+
+    /**
+     * Calls the action for each entry, in the order they were added. Entries spilled to the file
+     * are read back one by one.
+     */
+    @Synchronized
+    fun forEach(action: (McuMgrLogResponse.Entry) -> Unit) {
+        val output = output
+        if (output == null) {
+            entries.forEach(action)
+            return
+        }
+        output.flush()
+        DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+            while (true) {
+                val length = try {
+                    input.readInt()
+                } catch (e: EOFException) {
+                    break
+                }
+                val data = ByteArray(length)
+                input.readFully(data)
+                action(CBOR.toObject(data, McuMgrLogResponse.Entry::class.java))
+            }
+        }
+    }
+
+    /**
+     * Closes the file, if entries were spilled. Entries can't be added afterwards.
+     */
+    @Synchronized
+    override fun close() {
+        output?.close()
+    }
+
+    private fun spill() {
+        log.info("Log buffer exceeded {} bytes, spilling {} entries to {}",
+            memoryThreshold, entries.size, file)
+        val output = DataOutputStream(BufferedOutputStream(FileOutputStream(file)))
+        entries.forEach { write(output, it) }
+        entries.clear()
+        memorySize = 0
+        this.output = output
+    }
+
+    private fun write(output: DataOutputStream, entry: McuMgrLogResponse.Entry) {
+        val data = CBOR.toBytes(entry)
+        output.writeInt(data.size)
+        output.write(data)
+    }
+
+    private fun estimateSize(entry: McuMgrLogResponse.Entry): Int =
+        // Fixed fields and object headers, plus the variable length arrays.
+        64 + (entry.msg?.size ?: 0) + (entry.imghash?.size ?: 0) + (entry.type?.length ?: 0)
+}
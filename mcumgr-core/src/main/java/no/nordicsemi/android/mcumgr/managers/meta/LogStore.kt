@@ -0,0 +1,365 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+import no.nordicsemi.android.mcumgr.util.ByteUtil
+import org.slf4j.LoggerFactory
+import java.io.BufferedInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.security.MessageDigest
+
+/**
+ * A filter of log entries in the [LogStore].
+ *
+ * @property from the minimum timestamp, inclusive.
+ * @property to the maximum timestamp, exclusive.
+ * @property minLevel the minimum level, for example
+ * [McuMgrLogResponse.Entry.LOG_LEVEL_ERROR].
+ * @property modules the modules to include, or null for all.
+ * @property logName the name of the log to include, or null for all.
+ * @property limit the maximum number of entries returned.
+ */
+data class LogQuery @JvmOverloads constructor(
+    val from: Long = Long.MIN_VALUE,
+    val to: Long = Long.MAX_VALUE,
+    val minLevel: Int = McuMgrLogResponse.Entry.LOG_LEVEL_DEBUG,
+    val modules: Set<Int>? = null,
+    val logName: String? = null,
+    val limit: Int = Int.MAX_VALUE,
+)
+
+/**
+ * A log entry read from the [LogStore].
+ *
+ * @property logName the name of the log the entry was read from.
+ * @property entry the entry.
+ */
+data class StoredLogEntry(val logName: String, val entry: McuMgrLogResponse.Entry)
+
+/**
+ * An append-only store of log entries downloaded from many devices.
+ *
+ * Entries of each device are appended as binary records to segment files in a subdirectory of
+ * [directory]. A new segment is started when the current one exceeds [segmentSize]. For each
+ * device, a compact index of the timestamp, level, module and location of every record is kept
+ * in memory, so queries only read the records which match. The index is rebuilt from the segment
+ * files the first time a device is accessed; a record left incomplete by an interrupted write is
+ * discarded.
+ *
+ * The store also remembers the index following the last entry of each log, so repeated pulls
+ * with [pull] read only new entries from the device.
+ *
+ * @property directory the directory of the store.
+ * @property segmentSize the size above which a new segment file is started, in bytes.
+ */
+class LogStore @JvmOverloads constructor(
+    val directory: File,
+    val segmentSize: Long = 1024 * 1024,
+) {
+    private val log = LoggerFactory.getLogger(LogStore::class.java)
+    private val devices = mutableMapOf<String, DeviceIndex>()
+
+    init {
+        // Offsets in the index are stored as integers.
+        require(segmentSize in 1..Int.MAX_VALUE / 2) { "Invalid segment size" }
+    }
+
+    /**
+     * Appends entries of the given log of a device.
+     *
+     * Entries with an index lower than [nextIndex] of the log are skipped, as they are already
+     * stored.
+     *
+     * @param deviceId the device identifier, for example its address.
+     * @param logName the name of the log.
+     * @param entries the entries, in the order of their indexes.
+     * @return The number of entries appended.
+     * @throws IOException if writing to the segment file failed.
+     */
+    @Synchronized
+    @Throws(IOException::class)
+    fun append(deviceId: String, logName: String, entries: Collection<McuMgrLogResponse.Entry>): Int =
+        index(deviceId).append(logName, entries)
+
+    /**
+     * Returns the index of the entry following the last one stored from the given log,
+     * or 0 if none were stored.
+     */
+    @Synchronized
+    fun nextIndex(deviceId: String, logName: String): Long =
+        index(deviceId).nextIndexes[logName] ?: 0
+
+    /**
+     * Returns the number of entries stored for the device.
+     */
+    @Synchronized
+    fun size(deviceId: String): Int = index(deviceId).size
+
+    /**
+     * Returns entries of the device matching the query, in the order they were stored.
+     *
+     * @throws IOException if reading a segment file failed.
+     */
+    @JvmOverloads
+    @Synchronized
+    @Throws(IOException::class)
+    fun query(deviceId: String, query: LogQuery = LogQuery()): List<StoredLogEntry> =
+        index(deviceId).query(query)
+
+    /**
+     * Reads new entries of the given log from the device and appends them to the store.
+     *
+     * Reading starts from [nextIndex] of the log. Entries are appended in chunks as they
+     * arrive, so entries read before a failure are kept.
+     *
+     * @param deviceId the device identifier.
+     * @param tail the log reader of the device.
+     * @param logName the name of the log.
+     * @return The number of entries appended.
+     */
+    suspend fun pull(deviceId: String, tail: LogTail, logName: String): Int {
+        val chunk = mutableListOf<McuMgrLogResponse.Entry>()
+        var count = 0
+        try {
+            tail.entries(logName, nextIndex(deviceId, logName)).collect { entry ->
+                chunk.add(entry)
+                if (chunk.size == PULL_CHUNK_SIZE) {
+                    count += append(deviceId, logName, chunk)
+                    chunk.clear()
+                }
+            }
+        } finally {
+            count += append(deviceId, logName, chunk)
+        }
+        log.info("Pulled {} entries from {} of {}", count, logName, deviceId)
+        return count
+    }
+
+    private fun index(deviceId: String): DeviceIndex = devices.getOrPut(deviceId) {
+        val digest = MessageDigest.getInstance("SHA-256").digest(deviceId.toByteArray())
+        DeviceIndex(File(directory, ByteUtil.byteArrayToHex(digest, "%02x"))).also { it.load() }
+    }
+
+    /**
+     * The in-memory index of the records of a single device, stored in columns.
+     */
+    private inner class DeviceIndex(private val directory: File) {
+        var size = 0
+            private set
+        val nextIndexes = mutableMapOf<String, Long>()
+
+        private val logNames = mutableListOf<String>()
+        private var timestamps = LongArray(INITIAL_CAPACITY)
+        private var levels = ByteArray(INITIAL_CAPACITY)
+        private var modules = IntArray(INITIAL_CAPACITY)
+        private var names = ShortArray(INITIAL_CAPACITY)
+        private var segments = IntArray(INITIAL_CAPACITY)
+        private var offsets = IntArray(INITIAL_CAPACITY)
+
+        /** Whether timestamps are in ascending order, which allows a binary search. */
+        private var sorted = true
+        private var segment = 0
+        private var segmentLength = 0L
+
+        fun load() {
+            val files = directory.listFiles { file -> file.name.endsWith(SEGMENT_EXTENSION) }
+                ?.sortedBy { it.name } ?: return
+            files.forEachIndexed { number, file ->
+                segment = number
+                segmentLength = loadSegment(file)
+            }
+            log.debug("Loaded {} log entries from {} segments", size, files.size)
+        }
+
+        /**
+         * Adds all complete records of the segment to the index and returns the valid length.
+         */
+        private fun loadSegment(file: File): Long {
+            var offset = 0L
+            DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+                try {
+                    while (true) {
+                        val length = input.readInt()
+                        val record = ByteArray(length)
+                        input.readFully(record)
+                        val header = DataInputStream(record.inputStream())
+                        index(header.readUTF(), header.readLong(), header.readLong(),
+                            header.readByte().toInt(), header.readInt(), offset)
+                        offset += 4 + length
+                    }
+                } catch (e: EOFException) {
+                    // End of the segment, or an incomplete record.
+                }
+            }
+            if (offset < file.length()) {
+                log.warn("Discarding incomplete record in {}", file)
+                RandomAccessFile(file, "rw").use { it.setLength(offset) }
+            }
+            return offset
+        }
+
+        fun append(logName: String, entries: Collection<McuMgrLogResponse.Entry>): Int {
+            val next = nextIndexes[logName] ?: 0
+            val newEntries = entries.filter { it.index >= next }
+            if (newEntries.isEmpty()) return 0
+
+            directory.mkdirs()
+            var output: FileOutputStream? = null
+            try {
+                newEntries.forEach { entry ->
+                    if (output == null || segmentLength >= segmentSize) {
+                        output?.close()
+                        if (segmentLength >= segmentSize) {
+                            segment++
+                            segmentLength = 0
+                        }
+                        output = FileOutputStream(segmentFile(segment), true)
+                    }
+                    val record = encode(logName, entry)
+                    output!!.write(record)
+                    index(logName, entry.index, entry.ts, entry.level, entry.module, segmentLength)
+                    segmentLength += record.size
+                }
+            } finally {
+                output?.close()
+            }
+            return newEntries.size
+        }
+
+        fun query(query: LogQuery): List<StoredLogEntry> {
+            val name = query.logName?.let { logNames.indexOf(it) }
+            if (name == -1) return emptyList()
+
+            val result = mutableListOf<StoredLogEntry>()
+            val files = mutableMapOf<Int, RandomAccessFile>()
+            try {
+                for (i in firstIndexFrom(query.from) until size) {
+                    if (result.size == query.limit) break
+                    val timestamp = timestamps[i]
+                    if (timestamp >= query.to) {
+                        if (sorted) break else continue
+                    }
+                    if (timestamp < query.from || levels[i] < query.minLevel) continue
+                    if (query.modules != null && modules[i] !in query.modules) continue
+                    if (name != null && names[i].toInt() != name) continue
+
+                    val file = files.getOrPut(segments[i]) {
+                        RandomAccessFile(segmentFile(segments[i]), "r")
+                    }
+                    result.add(decode(file, offsets[i].toLong()))
+                }
+            } finally {
+                files.values.forEach { it.close() }
+            }
+            return result
+        }
+
+        private fun firstIndexFrom(timestamp: Long): Int {
+            if (!sorted) return 0
+            var low = 0
+            var high = size
+            while (low < high) {
+                val middle = (low + high) ushr 1
+                if (timestamps[middle] < timestamp) low = middle + 1 else high = middle
+            }
+            return low
+        }
+
+        private fun index(logName: String, index: Long, timestamp: Long, level: Int, module: Int, offset: Long) {
+            if (size == timestamps.size) {
+                val capacity = size * 2
+                timestamps = timestamps.copyOf(capacity)
+                levels = levels.copyOf(capacity)
+                modules = modules.copyOf(capacity)
+                names = names.copyOf(capacity)
+                segments = segments.copyOf(capacity)
+                offsets = offsets.copyOf(capacity)
+            }
+            var name = logNames.indexOf(logName)
+            if (name == -1) {
+                name = logNames.size
+                logNames.add(logName)
+            }
+            if (size > 0 && timestamp < timestamps[size - 1]) sorted = false
+            timestamps[size] = timestamp
+            levels[size] = level.toByte()
+            modules[size] = module
+            names[size] = name.toShort()
+            segments[size] = segment
+            offsets[size] = offset.toInt()
+            size++
+            nextIndexes[logName] = maxOf(nextIndexes[logName] ?: 0, index + 1)
+        }
+
+        private fun segmentFile(number: Int) =
+            File(directory, String.format("%08d%s", number, SEGMENT_EXTENSION))
+    }
+
+    private companion object {
+        const val SEGMENT_EXTENSION = ".seg"
+        const val INITIAL_CAPACITY = 256
+        const val PULL_CHUNK_SIZE = 64
+
+        /**
+         * Encodes a record: its length, followed by the log name, index, timestamp, level and
+         * module, which are read when the index is rebuilt, and the type, image hash and message.
+         */
+        fun encode(logName: String, entry: McuMgrLogResponse.Entry): ByteArray {
+            val bytes = ByteArrayOutputStream()
+            DataOutputStream(bytes).use { output ->
+                output.writeInt(0)
+                output.writeUTF(logName)
+                output.writeLong(entry.index)
+                output.writeLong(entry.ts)
+                output.writeByte(entry.level)
+                output.writeInt(entry.module)
+                output.writeUTF(entry.type ?: "")
+                writeBytes(output, entry.imghash)
+                writeBytes(output, entry.msg)
+            }
+            val record = bytes.toByteArray()
+            val length = record.size - 4
+            record[0] = (length ushr 24).toByte()
+            record[1] = (length ushr 16).toByte()
+            record[2] = (length ushr 8).toByte()
+            record[3] = length.toByte()
+            return record
+        }
+
+        fun decode(file: RandomAccessFile, offset: Long): StoredLogEntry {
+            file.seek(offset)
+            val record = ByteArray(file.readInt())
+            file.readFully(record)
+            val input = DataInputStream(record.inputStream())
+            val logName = input.readUTF()
+            val entry = McuMgrLogResponse.Entry().apply {
+                index = input.readLong()
+                ts = input.readLong()
+                level = input.readByte().toInt()
+                module = input.readInt()
+                type = input.readUTF().ifEmpty { null }
+                imghash = readBytes(input)
+                msg = readBytes(input)
+            }
+            return StoredLogEntry(logName, entry)
+        }
+
+        private fun writeBytes(output: DataOutputStream, data: ByteArray?) {
+            output.writeInt(data?.size ?: -1)
+            data?.let { output.write(it) }
+        }
+
+        private fun readBytes(input: DataInputStream): ByteArray? {
+            val length = input.readInt()
+            if (length < 0) return null
+            return ByteArray(length).also { input.readFully(it) }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import kotlinx.coroutines.channels.produce
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.suspendCancellableCoroutine
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.LogManager
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+import org.slf4j.LoggerFactory
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Reads entries of a device log page by page and emits them as they arrive.
+ *
+ * Unlike [LogManager.getAll], entries are not accumulated: each page is emitted and released
+ * before the following one. The next page is requested while the current one is being
+ * collected, but no further, so a slow collector suspends reading instead of filling the heap.
+ * To keep the entries, collect them into a [LogBuffer].
+ *
+ * @param logManager the Log Manager.
+ * @property pollInterval the delay before reading again when the end of the log was reached in
+ * follow mode, in milliseconds.
+ */
+class LogTail @JvmOverloads constructor(
+    private val logManager: LogManager,
+    val pollInterval: Long = 1000,
+) {
+    private val log = LoggerFactory.getLogger(LogTail::class.java)
+
+    /**
+     * Returns a cold flow of entries of the given log.
+     *
+     * If [follow] is false, the flow completes when the end of the log is reached. Otherwise,
+     * the log is polled for new entries until the collection is cancelled. A failed request,
+     * or an error returned by the device, completes the flow with the [McuMgrException].
+     *
+     * @param logName the name of the log, as returned by [LogManager.logsList].
+     * @param fromIndex the index of the first entry to read.
+     * @param follow whether to wait for new entries after reaching the end of the log.
+     */
+    @JvmOverloads
+    fun entries(
+        logName: String,
+        fromIndex: Long = 0,
+        follow: Boolean = false,
+    ): Flow<McuMgrLogResponse.Entry> = flow {
+        coroutineScope {
+            // With capacity 0 the reader sends the next page only when the previous one has been
+            // taken, so at most one page is prefetched.
+            val pages = produce {
+                var nextIndex = fromIndex
+                while (true) {
+                    val entries = show(logName, nextIndex)
+                    if (entries.isEmpty()) {
+                        if (!follow) break
+                        delay(pollInterval)
+                        continue
+                    }
+                    nextIndex = entries.last().index + 1
+                    log.trace("Read {} entries from {}, next index: {}", entries.size, logName, nextIndex)
+                    send(entries)
+                }
+            }
+            for (page in pages) {
+                page.forEach { emit(it) }
+            }
+        }
+    }
+
+    private suspend fun show(logName: String, index: Long): Array<McuMgrLogResponse.Entry> =
+        suspendCancellableCoroutine { continuation ->
+            logManager.show(logName, index, null, object : McuMgrCallback<McuMgrLogResponse> {
+                override fun onResponse(response: McuMgrLogResponse) {
+                    if (!response.isSuccess) {
+                        continuation.resumeWithException(McuMgrErrorException(response))
+                        return
+                    }
+                    continuation.resume(response.logs?.firstOrNull()?.entries ?: emptyArray())
+                }
+
+                override fun onError(error: McuMgrException) {
+                    continuation.resumeWithException(error)
+                }
+            })
+        }
+}
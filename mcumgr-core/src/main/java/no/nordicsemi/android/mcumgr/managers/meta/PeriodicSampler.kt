@@ -0,0 +1,63 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+
+/**
+ * Takes a sample every [interval] milliseconds in its own coroutine scope, until stopped.
+ *
+ * The interval is measured from the start of a sample, so a slow sample does not shift the
+ * following ones. A failed sample is reported to [onError] and sampling continues.
+ *
+ * @property interval the sampling interval, in milliseconds.
+ * @param onError called when a sample has failed.
+ * @param sample takes a sample, given the time it was started, in milliseconds.
+ */
+internal class PeriodicSampler(
+    val interval: Long,
+    private val onError: (Exception) -> Unit,
+    private val sample: suspend (timestamp: Long) -> Unit,
+) {
+    private var scope: CoroutineScope? = null
+
+    /**
+     * Whether sampling has been started.
+     */
+    val isRunning: Boolean
+        @Synchronized get() = scope != null
+
+    /**
+     * Starts sampling. Does nothing if already started.
+     */
+    @Synchronized
+    fun start() {
+        if (scope != null) return
+        val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO).also { scope = it }
+        scope.launch {
+            while (isActive) {
+                val start = System.currentTimeMillis()
+                try {
+                    sample(start)
+                } catch (e: Exception) {
+                    if (!isActive) break
+                    onError(e)
+                }
+                delay((interval - (System.currentTimeMillis() - start)).coerceAtLeast(0))
+            }
+        }
+    }
+
+    /**
+     * Stops sampling. The sample in progress is cancelled.
+     */
+    @Synchronized
+    fun stop() {
+        scope?.cancel()
+        scope = null
+    }
+}
@@ -0,0 +1,45 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+/**
+ * Positions of entries in ring buffers of a fixed [capacity], kept as primitive arrays
+ * by the owner.
+ *
+ * A new entry is written at [head], after which [advance] is called. When the capacity is
+ * reached, the oldest entry is overwritten. Entries are indexed from 0, the oldest retained
+ * entry, to [size] - 1, the newest one.
+ *
+ * The index is not thread safe; the owner must synchronize access.
+ *
+ * @property capacity the maximum number of entries retained.
+ */
+internal class RingIndex(val capacity: Int) {
+    /** Position in the ring buffers of the next entry. */
+    var head = 0
+        private set
+
+    /** Number of entries retained. */
+    var size = 0
+        private set
+
+    init {
+        require(capacity > 0) { "Capacity must be positive" }
+    }
+
+    /**
+     * Moves the [head] to the next position after an entry has been written.
+     */
+    fun advance() {
+        head = (head + 1) % capacity
+        if (size < capacity) size++
+    }
+
+    /**
+     * Returns the position in the ring buffers of the entry with the given index.
+     *
+     * @throws IndexOutOfBoundsException if there is no entry with the given index.
+     */
+    fun position(index: Int): Int {
+        if (index !in 0 until size) throw IndexOutOfBoundsException("Index: $index, size: $size")
+        return (head - size + index + capacity) % capacity
+    }
+}
@@ -0,0 +1,251 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.McuMgrBatch
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.SettingsManager
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.settings.McuMgrSettingsReadResponse
+import org.slf4j.LoggerFactory
+
+/**
+ * Result of a [SettingsCache] operation.
+ */
+sealed class SettingsResult {
+    /**
+     * @property values the values read, or written, by name.
+     */
+    data class Success(val values: Map<String, ByteArray>) : SettingsResult()
+    data class Failure(val throwable: Throwable) : SettingsResult()
+}
+
+/**
+ * Callback for [SettingsCache] operations.
+ */
+typealias SettingsCallback = (SettingsResult) -> Unit
+
+/**
+ * A write-back cache of device settings.
+ *
+ * Values read from the device are cached, so repeated reads are served locally. Writes and
+ * deletions are only recorded; [flush] sends all of them without waiting for the previous
+ * responses, with at most [windowCapacity] requests in flight, and then a single Commit and,
+ * optionally, Save command.
+ *
+ * Values of settings with pending writes are returned by [read] and [get] before they are
+ * flushed. The cache does not observe changes made on the device by other means; use
+ * [invalidate] or [sync] to read such settings again.
+ *
+ * @param windowCapacity the maximum number of requests in flight. By default, this is the number
+ * of McuMgr buffers of the device, if known, or 1.
+ */
+class SettingsCache @JvmOverloads constructor(
+    private val settingsManager: SettingsManager,
+    private val windowCapacity: Int = McuMgrBatch.getDefaultWindowCapacity(settingsManager.transporter),
+) {
+    private val log = LoggerFactory.getLogger(SettingsCache::class.java)
+
+    /** Values known to be equal to those on the device. */
+    private val values = mutableMapOf<String, ByteArray>()
+    /** Pending writes, in order. A null value is a pending deletion. */
+    private val dirty = linkedMapOf<String, ByteArray?>()
+
+    /**
+     * Names of settings with pending writes or deletions.
+     */
+    val dirtyNames: Set<String>
+        @Synchronized get() = dirty.keys.toSet()
+
+    /**
+     * Whether there are pending writes or deletions.
+     */
+    val isDirty: Boolean
+        @Synchronized get() = dirty.isNotEmpty()
+
+    /**
+     * Returns the value of the setting if it is cached or has a pending write,
+     * without sending any request.
+     */
+    @Synchronized
+    fun get(name: String): ByteArray? = if (dirty.containsKey(name)) dirty[name] else values[name]
+
+    /**
+     * Records a write of the setting. The value is sent to the device by [flush].
+     */
+    @Synchronized
+    fun write(name: String, value: ByteArray) {
+        dirty[name] = value.copyOf()
+    }
+
+    /**
+     * Records a deletion of the setting. The deletion is sent to the device by [flush].
+     */
+    @Synchronized
+    fun delete(name: String) {
+        dirty[name] = null
+    }
+
+    /**
+     * Discards the cached value of the setting, or of all settings if the name is null.
+     * Pending writes are kept.
+     */
+    @JvmOverloads
+    @Synchronized
+    fun invalidate(name: String? = null) {
+        if (name == null) values.clear() else values.remove(name)
+    }
+
+    /**
+     * Discards pending writes and deletions.
+     */
+    @Synchronized
+    fun discard() {
+        dirty.clear()
+    }
+
+    /**
+     * Returns values of the given settings.
+     *
+     * Cached values and pending writes are returned without sending a request. The remaining
+     * settings are read from the device in one burst. Settings with a pending deletion are
+     * omitted from the result.
+     */
+    fun read(names: List<String>, callback: SettingsCallback) {
+        val result = mutableMapOf<String, ByteArray>()
+        val missing = mutableListOf<String>()
+        synchronized(this) {
+            names.distinct().forEach { name ->
+                when {
+                    dirty.containsKey(name) -> dirty[name]?.let { result[name] = it }
+                    values.containsKey(name) -> result[name] = values.getValue(name)
+                    else -> missing.add(name)
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            callback(SettingsResult.Success(result))
+            return
+        }
+        log.debug("Reading {} settings, {} cached", missing.size, result.size)
+        val batch = McuMgrBatch(windowCapacity)
+        missing.forEach { name ->
+            batch.add<McuMgrSettingsReadResponse> { settingsManager.read(name, it) }
+        }
+        batch.execute { results ->
+            results.firstNotNullOfOrNull { it.failure }?.let {
+                callback(SettingsResult.Failure(it))
+                return@execute
+            }
+            synchronized(this) {
+                missing.forEachIndexed { index, name ->
+                    val value = (results[index].response as McuMgrSettingsReadResponse).`val` ?: ByteArray(0)
+                    values[name] = value
+                    // A write recorded while reading takes precedence.
+                    if (!dirty.containsKey(name)) result[name] = value
+                    else dirty[name]?.let { result[name] = it }
+                }
+            }
+            callback(SettingsResult.Success(result))
+        }
+    }
+
+    /**
+     * Reads all cached settings from the device again.
+     */
+    fun sync(callback: SettingsCallback) {
+        val names = synchronized(this) {
+            values.keys.toList().also { values.clear() }
+        }
+        read(names, callback)
+    }
+
+    /**
+     * Sends all pending writes and deletions in one burst, followed by the Commit command and,
+     * if [save] is set, the Save command.
+     *
+     * Settings which were written successfully are no longer dirty and their values are cached.
+     * If any of the writes fails, or is rejected by the device, the settings are not committed
+     * and the failed ones remain dirty, so the flush may be retried.
+     *
+     * @param save whether the settings should be saved to persistent storage.
+     * @param callback the callback with the values written.
+     */
+    @JvmOverloads
+    fun flush(save: Boolean = true, callback: SettingsCallback) {
+        val pending = synchronized(this) { dirty.toList() }
+        if (pending.isEmpty()) {
+            callback(SettingsResult.Success(emptyMap()))
+            return
+        }
+        log.debug("Flushing {} settings", pending.size)
+
+        val batch = McuMgrBatch(windowCapacity)
+        pending.forEach { (name, value) ->
+            batch.add<McuMgrResponse> {
+                if (value != null) settingsManager.write(name, value, it)
+                else settingsManager.delete(name, it)
+            }
+        }
+        batch.execute { results ->
+            var error: McuMgrException? = null
+            val written = mutableMapOf<String, ByteArray>()
+            synchronized(this) {
+                pending.forEachIndexed { index, (name, value) ->
+                    results[index].failure?.let {
+                        error = error ?: it
+                        return@forEachIndexed
+                    }
+                    // Keep the entry if the setting has been written again in the meantime.
+                    if (dirty.containsKey(name) && dirty[name] === value) dirty.remove(name)
+                    if (value != null) {
+                        values[name] = value
+                        written[name] = value
+                    } else {
+                        values.remove(name)
+                    }
+                }
+            }
+            error?.let {
+                callback(SettingsResult.Failure(it))
+                return@execute
+            }
+            commit(save) { result ->
+                callback(if (result is SettingsResult.Success) SettingsResult.Success(written) else result)
+            }
+        }
+    }
+
+    private fun commit(save: Boolean, callback: SettingsCallback) {
+        settingsManager.commit(object : McuMgrCallback<McuMgrResponse> {
+            override fun onResponse(response: McuMgrResponse) {
+                if (!response.isSuccess) {
+                    callback(SettingsResult.Failure(McuMgrErrorException(response)))
+                    return
+                }
+                if (!save) {
+                    callback(SettingsResult.Success(emptyMap()))
+                    return
+                }
+                settingsManager.save(object : McuMgrCallback<McuMgrResponse> {
+                    override fun onResponse(response: McuMgrResponse) = callback(
+                        if (response.isSuccess) SettingsResult.Success(emptyMap())
+                        else SettingsResult.Failure(McuMgrErrorException(response))
+                    )
+
+                    override fun onError(error: McuMgrException) =
+                        callback(SettingsResult.Failure(error))
+                })
+            }
+
+            override fun onError(error: McuMgrException) =
+                callback(SettingsResult.Failure(error))
+        })
+    }
+}
+
+/**
+ * The error of the request, or of the response if the device has returned an error code.
+ */
+private val McuMgrBatch.Result<*>.failure: McuMgrException?
+    get() = error ?: response?.takeUnless { it.isSuccess }?.let { McuMgrErrorException(it) }
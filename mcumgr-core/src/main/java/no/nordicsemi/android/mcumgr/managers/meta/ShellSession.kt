@@ -0,0 +1,169 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.McuMgrBatch
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.ShellManager
+import no.nordicsemi.android.mcumgr.response.shell.McuMgrExecResponse
+import org.slf4j.LoggerFactory
+
+/**
+ * Result of a single command of a [ShellSession] script.
+ *
+ * @property index the index of the command in the script.
+ * @property argv the command followed by its arguments.
+ * @property response the response, or null if the request has failed.
+ * @property error the error, or null if the response was received.
+ * @property latency the time from sending the command to receiving the result, in milliseconds.
+ */
+class ShellCommandResult internal constructor(
+    val index: Int,
+    val argv: List<String>,
+    val response: McuMgrExecResponse?,
+    val error: McuMgrException?,
+    val latency: Long,
+) {
+    /** The command output, or null if the request has failed. */
+    val output: String?
+        get() = response?.o
+
+    /** Whether the response was received and the command returned 0. */
+    val isSuccess: Boolean
+        get() = response != null && response.ret == 0
+
+    override fun toString(): String =
+        "ShellCommandResult(index=$index, argv=$argv, ret=${response?.ret}, error=$error, latency=$latency)"
+}
+
+/**
+ * Callback for results of single commands, called in the order of the script.
+ */
+typealias ShellResultCallback = (ShellCommandResult) -> Unit
+
+/**
+ * Callback called when all commands of a script have completed.
+ */
+typealias ShellScriptCallback = (List<ShellCommandResult>) -> Unit
+
+/**
+ * Runs scripts of shell commands.
+ *
+ * Commands are sent in order without waiting for the previous responses, with at most
+ * [windowCapacity] commands in flight. The device executes them in the order they are received.
+ * Results are reported in the order of the script as soon as they, and all preceding ones, are
+ * available.
+ *
+ * Note, that a command is sent even if a preceding one has failed. Scripts which depend on the
+ * result of a command should be split at that command.
+ *
+ * @param windowCapacity the maximum number of commands in flight. By default, this is the number
+ * of McuMgr buffers of the device, if known, or 1.
+ * @property timeout the timeout of each command, in milliseconds.
+ */
+class ShellSession @JvmOverloads constructor(
+    private val shellManager: ShellManager,
+    private val windowCapacity: Int = McuMgrBatch.getDefaultWindowCapacity(shellManager.transporter),
+    val timeout: Long = 40_000,
+) {
+    private val log = LoggerFactory.getLogger(ShellSession::class.java)
+
+    /**
+     * Runs a script of command lines. Each line is split into arguments at whitespace, except
+     * within double quotes. Empty lines are skipped.
+     *
+     * @param script the command lines.
+     * @param onResult the callback called for each command, in order.
+     * @param callback the callback called with all results when the script has completed.
+     */
+    @JvmOverloads
+    fun run(
+        script: List<String>,
+        onResult: ShellResultCallback? = null,
+        callback: ShellScriptCallback,
+    ) {
+        val commands = script.map { split(it) }.filter { it.isNotEmpty() }
+        runCommands(commands, onResult, callback)
+    }
+
+    /**
+     * Runs a list of commands, each given as the command followed by its arguments.
+     *
+     * @param commands the commands.
+     * @param onResult the callback called for each command, in order.
+     * @param callback the callback called with all results when the script has completed.
+     */
+    @JvmOverloads
+    fun runCommands(
+        commands: List<Array<String>>,
+        onResult: ShellResultCallback? = null,
+        callback: ShellScriptCallback,
+    ) {
+        require(commands.none { it.isEmpty() }) { "Command is empty" }
+        val sentTimestamps = LongArray(commands.size)
+        val latencies = LongArray(commands.size)
+        val batch = McuMgrBatch(windowCapacity)
+        commands.forEachIndexed { index, argv ->
+            batch.add<McuMgrExecResponse> { callback ->
+                sentTimestamps[index] = System.currentTimeMillis()
+                shellManager.exec(argv, timeout, object : McuMgrCallback<McuMgrExecResponse> {
+                    override fun onResponse(response: McuMgrExecResponse) {
+                        latencies[index] = System.currentTimeMillis() - sentTimestamps[index]
+                        callback.onResponse(response)
+                    }
+
+                    override fun onError(error: McuMgrException) {
+                        latencies[index] = System.currentTimeMillis() - sentTimestamps[index]
+                        callback.onError(error)
+                    }
+                })
+            }
+        }
+        val results = arrayOfNulls<ShellCommandResult>(commands.size)
+        val startTimestamp = System.currentTimeMillis()
+        batch.execute({ index, result ->
+            val commandResult = ShellCommandResult(
+                index, commands[index].toList(),
+                result.response as McuMgrExecResponse?, result.error, latencies[index]
+            )
+            results[index] = commandResult
+            onResult?.invoke(commandResult)
+        }) {
+            log.info("Script of {} commands completed in {} ms, average latency: {} ms",
+                commands.size, System.currentTimeMillis() - startTimestamp,
+                if (commands.isEmpty()) 0 else latencies.sum() / commands.size)
+            callback(results.map { it!! })
+        }
+    }
+
+    private companion object {
+
+        /**
+         * Splits the command line into arguments at whitespace, except within double quotes.
+         */
+        fun split(line: String): Array<String> {
+            val arguments = mutableListOf<String>()
+            val current = StringBuilder()
+            var quoted = false
+            var started = false
+            line.forEach { c ->
+                when {
+                    c == '"' -> {
+                        quoted = !quoted
+                        started = true
+                    }
+                    c.isWhitespace() && !quoted -> {
+                        if (started) arguments.add(current.toString())
+                        current.clear()
+                        started = false
+                    }
+                    else -> {
+                        current.append(c)
+                        started = true
+                    }
+                }
+            }
+            if (started) arguments.add(current.toString())
+            return arguments.toTypedArray()
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+/**
+ * A fixed-capacity time series of the fields of a single statistics group.
+ *
+ * Each entry holds a timestamp and, for each field, the increase of the counter since the
+ * previous entry. All fields share the same timestamps. Values are kept in primitive ring
+ * buffers, so the memory used does not grow once the capacity is reached; the oldest entries
+ * are overwritten.
+ *
+ * Entries are indexed from 0, the oldest retained entry, to [size] - 1, the newest one.
+ * The series may be read from any thread while it is being written.
+ *
+ * @property capacity the maximum number of entries retained.
+ * @property interval the nominal interval between entries, in milliseconds.
+ */
+class StatTimeSeries(
+    val capacity: Int,
+    val interval: Long,
+) {
+    private val ring = RingIndex(capacity)
+    private val timestamps = LongArray(capacity)
+    private val fields = mutableMapOf<String, LongArray>()
+
+    /**
+     * Number of entries retained.
+     */
+    val size: Int
+        @Synchronized get() = ring.size
+
+    /**
+     * Names of the fields in this series.
+     */
+    val fieldNames: Set<String>
+        @Synchronized get() = fields.keys.toSet()
+
+    /**
+     * Appends an entry. Fields not present in [deltas] are recorded as 0.
+     *
+     * @param timestamp the time of the entry, in milliseconds.
+     * @param deltas the increase of each counter since the previous entry.
+     */
+    @Synchronized
+    fun append(timestamp: Long, deltas: Map<String, Long>) {
+        val head = ring.head
+        timestamps[head] = timestamp
+        fields.values.forEach { it[head] = 0 }
+        deltas.forEach { (name, delta) ->
+            fields.getOrPut(name) { LongArray(capacity) }[head] = delta
+        }
+        ring.advance()
+    }
+
+    /**
+     * Returns the timestamp of the entry with the given index, in milliseconds.
+     */
+    @Synchronized
+    fun timestamp(index: Int): Long = timestamps[position(index)]
+
+    /**
+     * Returns the increase of the field in the entry with the given index,
+     * or 0 if the field is not known.
+     */
+    @Synchronized
+    fun delta(field: String, index: Int): Long = fields[field]?.get(position(index)) ?: 0
+
+    /**
+     * Returns the rate of the field in the entry with the given index, per second.
+     *
+     * The rate is calculated using the time since the previous entry, or [interval] for the
+     * oldest entry.
+     */
+    @Synchronized
+    fun rate(field: String, index: Int): Double {
+        val elapsed = if (index > 0) timestamp(index) - timestamp(index - 1) else interval
+        if (elapsed <= 0) return 0.0
+        return delta(field, index) * 1000.0 / elapsed
+    }
+
+    /**
+     * Copies a window of entries of the given field into the given arrays.
+     *
+     * Only the requested window is copied, not the whole history.
+     *
+     * @param field the field name.
+     * @param from index of the first entry to copy.
+     * @param timestamps the destination of timestamps, or null.
+     * @param deltas the destination of increases of the field.
+     * @return The number of entries copied.
+     */
+    @Synchronized
+    fun read(field: String, from: Int, timestamps: LongArray?, deltas: LongArray): Int {
+        require(from >= 0) { "Index must not be negative" }
+        val values = fields[field]
+        val count = minOf(deltas.size, size - from).coerceAtLeast(0)
+        for (i in 0 until count) {
+            val position = position(from + i)
+            timestamps?.set(i, this.timestamps[position])
+            deltas[i] = values?.get(position) ?: 0
+        }
+        return count
+    }
+
+    /**
+     * Returns the index of the oldest entry not older than the given timestamp,
+     * or [size] if there is no such entry.
+     */
+    @Synchronized
+    fun indexOf(timestamp: Long): Int {
+        // Timestamps are monotonic, so a binary search can be used.
+        var low = 0
+        var high = size
+        while (low < high) {
+            val middle = (low + high) ushr 1
+            if (timestamp(middle) < timestamp) low = middle + 1 else high = middle
+        }
+        return low
+    }
+
+    private fun position(index: Int): Int = ring.position(index)
+}
@@ -1,5 +1,6 @@
 package no.nordicsemi.android.mcumgr.managers.meta
 
+import no.nordicsemi.android.mcumgr.McuMgrBatch
 import no.nordicsemi.android.mcumgr.McuMgrCallback
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
@@ -22,6 +23,11 @@ sealed class StatCollectionResult {
  */
 typealias StatCollectionCallback = (StatCollectionResult) -> Unit
 
+/**
+ * Callback for statistics of a single group, called as soon as the group has been read.
+ */
+typealias StatGroupCallback = (groupName: String, statistics: Map<String, Long>) -> Unit
+
 /**
  * Non-blocking cancellable interface for cancelling an ongoing task.
  */
@@ -31,28 +37,54 @@ interface Cancellable {
 
 /**
  * Collects stats from a device.
+ *
+ * Groups are read without waiting for the previous responses, with at most [windowCapacity]
+ * requests in flight.
+ *
+ * @param windowCapacity the maximum number of requests in flight. By default, this is the number
+ * of McuMgr buffers of the device, if known, or 1.
  */
-class StatisticsCollector(private val statsManager: StatsManager) {
+class StatisticsCollector @JvmOverloads constructor(
+    private val statsManager: StatsManager,
+    private val windowCapacity: Int = McuMgrBatch.getDefaultWindowCapacity(statsManager.transporter),
+) {
 
     /**
      * Collect stats from a single group by name.
      */
-    fun collect(groupName: String, callback: StatCollectionCallback): Cancellable {
-        return StatCollection(statsManager, callback).start(listOf(groupName))
+    @JvmOverloads
+    fun collect(
+        groupName: String,
+        onGroupCollected: StatGroupCallback? = null,
+        callback: StatCollectionCallback
+    ): Cancellable {
+        return StatCollection(statsManager, windowCapacity, onGroupCollected, callback)
+            .start(listOf(groupName))
     }
 
     /**
      * Collect from a list of statistic group names.
      */
-    fun collectGroups(groupNames: List<String>, callback: StatCollectionCallback): Cancellable {
-        return StatCollection(statsManager, callback).start(groupNames)
+    @JvmOverloads
+    fun collectGroups(
+        groupNames: List<String>,
+        onGroupCollected: StatGroupCallback? = null,
+        callback: StatCollectionCallback
+    ): Cancellable {
+        return StatCollection(statsManager, windowCapacity, onGroupCollected, callback)
+            .start(groupNames)
     }
 
     /**
      * List the stat group names from the device and collect each which intersects with the filter.
      */
-    fun collectAll(filter: Set<String>? = null, callback: StatCollectionCallback): Cancellable {
-        val collection = StatCollection(statsManager, callback)
+    @JvmOverloads
+    fun collectAll(
+        filter: Set<String>? = null,
+        onGroupCollected: StatGroupCallback? = null,
+        callback: StatCollectionCallback
+    ): Cancellable {
+        val collection = StatCollection(statsManager, windowCapacity, onGroupCollected, callback)
         statsManager.list(object: McuMgrCallback<McuMgrStatListResponse> {
 
             override fun onResponse(response: McuMgrStatListResponse) {
@@ -85,15 +117,29 @@ class StatisticsCollector(private val statsManager: StatsManager) {
 
 /**
  * Manages a single statistics collection.
+ *
+ * Up to [windowCapacity] groups are read at the same time. When the collection is cancelled,
+ * no new requests are sent and the result is reported when the requests in flight complete.
  */
 private class StatCollection(
     private val statsManager: StatsManager,
+    private val windowCapacity: Int,
+    private val onGroupCollected: StatGroupCallback?,
     private val callback: StatCollectionCallback
 ): Cancellable {
 
     private val cancelled = AtomicBoolean(false)
     private val started = AtomicBoolean(false)
+
+    // The following fields are guarded by the collection.
+    private var groupNames: List<String> = emptyList()
     private val result = mutableMapOf<String, Map<String, Long>>()
+    /** Index of the next group to be read. */
+    private var next = 0
+    /** Number of requests in flight. */
+    private var inFlight = 0
+    /** Whether the final result has been reported. */
+    private var finished = false
 
     /**
      * Start the stat collection for a given list of statistics groups.
@@ -109,39 +155,76 @@ private class StatCollection(
             callback(StatCollectionResult.Failure(IllegalArgumentException("List of group names is empty.")))
             return this
         }
-        if (cancelled.get()) {
-            callback(StatCollectionResult.Cancelled(result))
-            return this
+        synchronized(this) {
+            this.groupNames = groupNames
         }
-        collect(0, groupNames, callback)
+        repeat(minOf(windowCapacity, groupNames.size)) { collectNext() }
+        // Report the result if the collection was cancelled before any request was sent.
+        complete(null)
         return this
     }
 
-    private fun collect(index: Int, groupNames: List<String>, callback: StatCollectionCallback) {
-        require(index in groupNames.indices) { "Index $index is out of range of groupList." }
-        statsManager.read(groupNames[index], object: McuMgrCallback<McuMgrStatResponse> {
+    private fun collectNext() {
+        val groupName = synchronized(this) {
+            if (finished || cancelled.get() || next == groupNames.size) {
+                return
+            }
+            inFlight++
+            groupNames[next++]
+        }
+        statsManager.read(groupName, object: McuMgrCallback<McuMgrStatResponse> {
 
             override fun onResponse(response: McuMgrStatResponse) {
                 if (!response.isSuccess) {
-                    callback(StatCollectionResult.Failure(McuMgrErrorException(response)))
+                    onError(McuMgrErrorException(response))
                     return
                 }
-                result[response.name] = response.fields
-                when {
-                    index == groupNames.size - 1 -> callback(StatCollectionResult.Success(result))
-                    cancelled.get() -> callback(StatCollectionResult.Cancelled(result))
-                    else -> collect(index + 1, groupNames, callback)
+                synchronized(this@StatCollection) {
+                    if (finished) return
+                    inFlight--
+                    result[response.name] = response.fields
                 }
+                onGroupCollected?.invoke(response.name, response.fields)
+                collectNext()
+                complete(null)
             }
 
             override fun onError(error: McuMgrException) {
-                error.printStackTrace()
-                callback(StatCollectionResult.Failure(error))
+                synchronized(this@StatCollection) {
+                    inFlight--
+                }
+                complete(error)
             }
         })
     }
 
+    /**
+     * Reports the result if the collection has failed, or when all requests have completed.
+     */
+    private fun complete(error: McuMgrException?) {
+        val outcome = synchronized(this) {
+            when {
+                finished || groupNames.isEmpty() -> return
+                error != null -> StatCollectionResult.Failure(error)
+                inFlight > 0 -> return
+                next == groupNames.size -> StatCollectionResult.Success(sorted())
+                cancelled.get() -> StatCollectionResult.Cancelled(sorted())
+                else -> return
+            }.also { finished = true }
+        }
+        callback(outcome)
+    }
+
+    /**
+     * Returns the statistics in the order the groups were requested.
+     */
+    private fun sorted(): Map<String, Map<String, Long>> =
+        groupNames.mapNotNull { name -> result[name]?.let { name to it } }.toMap()
+
     override fun cancel() {
-        cancelled.set(true)
+        if (cancelled.compareAndSet(false, true)) {
+            // If nothing is in flight, report the result immediately.
+            complete(null)
+        }
     }
 }
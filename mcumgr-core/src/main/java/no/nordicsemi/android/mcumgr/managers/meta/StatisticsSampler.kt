@@ -0,0 +1,165 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import kotlinx.coroutines.suspendCancellableCoroutine
+import no.nordicsemi.android.mcumgr.managers.StatsManager
+import org.slf4j.LoggerFactory
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * A downsampling tier of the [StatisticsSampler].
+ *
+ * @property interval the interval between entries, in milliseconds. The interval of the first
+ * tier is the sampling interval.
+ * @property capacity the number of entries retained.
+ */
+data class SamplingTier(val interval: Long, val capacity: Int)
+
+/**
+ * Default tiers: 1 second for 10 minutes, 1 minute for 12 hours and 1 hour for 7 days.
+ */
+val DEFAULT_SAMPLING_TIERS = listOf(
+    SamplingTier(1_000, 600),
+    SamplingTier(60_000, 720),
+    SamplingTier(3_600_000, 168),
+)
+
+/**
+ * Periodically reads statistics groups from the device and records how much each counter has
+ * increased between samples.
+ *
+ * Increases are stored in a [StatTimeSeries] for each group and tier. The first tier holds an
+ * entry for every sample; each following tier sums the increases over its interval. As every
+ * series has a fixed capacity, the memory used is bounded regardless of how long the device is
+ * watched.
+ *
+ * If a counter decreases, for example because the device has been reset, its current value is
+ * taken as the increase.
+ *
+ * @param statsManager the Stats Manager.
+ * @param groupNames names of the groups to sample.
+ * @property tiers the downsampling tiers, starting from the sampling interval.
+ */
+class StatisticsSampler @JvmOverloads constructor(
+    statsManager: StatsManager,
+    private val groupNames: List<String>,
+    val tiers: List<SamplingTier> = DEFAULT_SAMPLING_TIERS,
+) {
+    private val log = LoggerFactory.getLogger(StatisticsSampler::class.java)
+    private val collector = StatisticsCollector(statsManager)
+
+    init {
+        require(groupNames.isNotEmpty()) { "List of group names is empty" }
+        require(tiers.isNotEmpty()) { "List of tiers is empty" }
+        require(tiers.zipWithNext().all { (a, b) -> b.interval > a.interval }) {
+            "Tier intervals must be increasing"
+        }
+    }
+
+    /** The sampling interval, in milliseconds. */
+    val interval: Long
+        get() = tiers.first().interval
+
+    private val series: Map<String, List<StatTimeSeries>> = groupNames.associateWith {
+        tiers.map { tier -> StatTimeSeries(tier.capacity, tier.interval) }
+    }
+
+    /** Values of counters from the last sample, by group. */
+    private val previous = mutableMapOf<String, Map<String, Long>>()
+
+    /** Increases accumulated for the current entry of each following tier, by group. */
+    private val pending = groupNames.associateWith {
+        List(tiers.size - 1) { Bucket() }
+    }
+
+    private class Bucket {
+        var start = -1L
+        val deltas = mutableMapOf<String, Long>()
+    }
+
+    private val sampler = PeriodicSampler(
+        interval,
+        onError = { e ->
+            failureCount++
+            log.warn("Sampling statistics failed: ${e.message}")
+        },
+        sample = { timestamp -> onSample(timestamp, collect()) },
+    )
+
+    /**
+     * Number of samples which failed.
+     */
+    @Volatile
+    var failureCount = 0
+        private set
+
+    /**
+     * Returns the time series of the given group and tier.
+     *
+     * @param groupName the group name.
+     * @param tier index of the tier, 0 for the sampling interval.
+     * @return The series, or null if the group is not sampled.
+     */
+    @JvmOverloads
+    fun series(groupName: String, tier: Int = 0): StatTimeSeries? = series[groupName]?.get(tier)
+
+    /**
+     * Starts sampling. Sampling continues until [stop] is called.
+     */
+    fun start() = sampler.start()
+
+    /**
+     * Stops sampling. Requests in flight are cancelled. Recorded series are retained.
+     */
+    fun stop() = sampler.stop()
+
+    /**
+     * Whether sampling has been started.
+     */
+    val isRunning: Boolean
+        get() = sampler.isRunning
+
+    private suspend fun collect(): Map<String, Map<String, Long>> =
+        suspendCancellableCoroutine { continuation ->
+            val cancellable = collector.collectGroups(groupNames) { result ->
+                when (result) {
+                    is StatCollectionResult.Success -> continuation.resume(result.statistics)
+                    is StatCollectionResult.Failure -> continuation.resumeWithException(result.throwable)
+                    // Cancellation is handled by the coroutine.
+                    is StatCollectionResult.Cancelled -> Unit
+                }
+            }
+            continuation.invokeOnCancellation { cancellable.cancel() }
+        }
+
+    /**
+     * Records a sample taken at the given time.
+     */
+    internal fun onSample(timestamp: Long, statistics: Map<String, Map<String, Long>>) {
+        statistics.forEach { (groupName, fields) ->
+            val series = series[groupName] ?: return@forEach
+            val last = previous.put(groupName, fields) ?: return@forEach
+            val deltas = fields.mapValues { (name, value) ->
+                val before = last[name] ?: 0
+                if (value >= before) value - before else value
+            }
+            series[0].append(timestamp, deltas)
+
+            // Accumulate the increases in the following tiers.
+            pending.getValue(groupName).forEachIndexed { index, bucket ->
+                val tier = tiers[index + 1]
+                val start = timestamp - timestamp % tier.interval
+                if (bucket.start != start) {
+                    if (bucket.start >= 0) {
+                        series[index + 1].append(bucket.start, bucket.deltas.toMap())
+                    }
+                    bucket.start = start
+                    bucket.deltas.clear()
+                }
+                deltas.forEach { (name, delta) ->
+                    bucket.deltas[name] = (bucket.deltas[name] ?: 0) + delta
+                }
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ package no.nordicsemi.android.mcumgr.response.log;
 
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -131,6 +132,7 @@ public class McuMgrLogResponse extends McuMgrResponse {
          * @return the type decoded string of the log message or null if the msg is null or decoding
          * failed
          */
+        @JsonIgnore
         @Nullable
         public String getMessageString() {
             if (msg == null) {
@@ -0,0 +1,117 @@
+package no.nordicsemi.android.mcumgr.task
+
+import kotlinx.coroutines.delay
+
+/**
+ * Default interval before the first poll and after activity, in milliseconds.
+ */
+const val DEFAULT_MIN_POLL_INTERVAL = 250L
+
+/**
+ * Default maximum interval between polls, in milliseconds.
+ */
+const val DEFAULT_MAX_POLL_INTERVAL = 1000L
+
+/**
+ * The poller repeatedly requests a status from the device until it reports something of interest,
+ * e.g. a SUIT resource request.
+ *
+ * Polling starts with a short interval, which grows by [backoffFactor] after each idle poll,
+ * up to [maxInterval]. Call [reset] after any activity, for example when a requested resource
+ * has been served, to return to the short interval.
+ *
+ * The poller collects the number of polls and their latencies, which can be used to tune
+ * the intervals. Statistics may be read from any thread.
+ *
+ * The poller requires the device to respond; an error ends the poll. Waiting for a device
+ * to come back after a reset is done by the reset task itself.
+ *
+ * @property minInterval the interval before the first poll and after [reset], in milliseconds.
+ * @property maxInterval the maximum interval between polls, in milliseconds.
+ * @property backoffFactor the factor by which the interval grows after an idle poll.
+ */
+class Poller @JvmOverloads constructor(
+    val minInterval: Long = DEFAULT_MIN_POLL_INTERVAL,
+    val maxInterval: Long = DEFAULT_MAX_POLL_INTERVAL,
+    val backoffFactor: Float = 2f,
+) {
+    private var interval = minInterval
+
+    /**
+     * Number of polls sent.
+     */
+    @Volatile
+    var pollCount = 0
+        private set
+
+    /**
+     * Sum of latencies of all polls, in milliseconds.
+     */
+    @Volatile
+    var totalLatency = 0L
+        private set
+
+    /**
+     * The longest latency of a poll, in milliseconds.
+     */
+    @Volatile
+    var maxLatency = 0L
+        private set
+
+    /**
+     * The average latency of a poll, in milliseconds, or 0 if nothing was polled.
+     */
+    val averageLatency: Long
+        get() = pollCount.let { count -> if (count > 0) totalLatency / count else 0 }
+
+    init {
+        require(minInterval in 0..maxInterval) { "Invalid poll intervals" }
+        require(backoffFactor >= 1f) { "Backoff factor must not be less than 1" }
+    }
+
+    /**
+     * Resets the interval to [minInterval].
+     */
+    fun reset() {
+        interval = minInterval
+    }
+
+    /**
+     * Polls until [request] returns a non-null value, or the [timeout] elapses.
+     *
+     * Exceptions thrown by the [request] are rethrown. The poll is cancelled together
+     * with the calling coroutine.
+     *
+     * @param timeout the maximum time to poll, in milliseconds.
+     * @param request the status request, returning null when there is nothing of interest yet.
+     * @return The value returned by the request, or null if the timeout has elapsed.
+     */
+    suspend fun <T : Any> poll(timeout: Long, request: suspend () -> T?): T? {
+        val deadline = System.currentTimeMillis() + timeout
+        while (true) {
+            val remaining = deadline - System.currentTimeMillis()
+            if (remaining <= 0) {
+                return null
+            }
+            delay(minOf(interval, remaining))
+
+            val start = System.currentTimeMillis()
+            val result = try {
+                request()
+            } finally {
+                val latency = System.currentTimeMillis() - start
+                pollCount += 1
+                totalLatency += latency
+                if (latency > maxLatency) maxLatency = latency
+            }
+            if (result != null) {
+                reset()
+                return result
+            }
+            interval = minOf(maxInterval, (interval * backoffFactor).toLong().coerceAtLeast(1))
+        }
+    }
+
+    override fun toString(): String =
+        "$pollCount polls (avg $averageLatency ms, max $maxLatency ms)"
+}
@@ -3,11 +3,43 @@ package no.nordicsemi.android.mcumgr.task;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public abstract class Task<S, State> implements Comparable<Task<S, State>> {
 
+	/**
+	 * Tasks that have to complete before this task may be started.
+	 */
+	@NotNull
+	private final List<Task<S, State>> prerequisites = new ArrayList<>(0);
+
 	protected Task() {
 	}
 
+	/**
+	 * Declares that this task may only be started after the given task has completed.
+	 * <p>
+	 * Prerequisites take precedence over priorities. A prerequisite which is not enqueued
+	 * is considered completed.
+	 * @param task the task that has to complete first.
+	 */
+	public final void dependsOn(@NotNull final Task<S, State> task) {
+		if (task == this)
+			throw new IllegalArgumentException("A task cannot depend on itself");
+		prerequisites.add(task);
+	}
+
+	/**
+	 * Returns the list of tasks that have to complete before this task may be started.
+	 * @return The prerequisites.
+	 */
+	@NotNull
+	public final List<Task<S, State>> getPrerequisites() {
+		return Collections.unmodifiableList(prerequisites);
+	}
+
 	/**
 	 * Returns task priority. Tasks are added to a priority queue and must be executed in
 	 * the right order, but can be added to the list in any order.
@@ -3,8 +3,9 @@ package no.nordicsemi.android.mcumgr.task;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -70,12 +71,13 @@ public abstract class TaskPerformer<S, State> {
 		private final McuMgrTransport transport;
 
 		/**
-		 * The queue of tasks to be performed.
+		 * The queue of tasks to be performed, sorted by priority. Tasks with the same priority
+		 * are kept in the order they were added.
 		 * <p>
 		 * The tasks may be added to the queue by calling {@link #enqueue(Task)}.
 		 */
 		@NotNull
-		private final Queue<Task<S, State>> taskQueue = new PriorityQueue<>();
+		private final List<Task<S, State>> taskQueue = new ArrayList<>();
 
 		/**
 		 * The currently performed task.
@@ -138,7 +140,42 @@ public abstract class TaskPerformer<S, State> {
 
 		@Override
 		public void enqueue(final @NotNull Task<S, State> task) {
-			taskQueue.add(task);
+			int index = taskQueue.size();
+			while (index > 0 && taskQueue.get(index - 1).compareTo(task) > 0) {
+				index--;
+			}
+			taskQueue.add(index, task);
+		}
+
+		/**
+		 * Removes and returns the task with the highest priority which prerequisites
+		 * have all completed.
+		 *
+		 * @return The next task, or null if the queue is empty.
+		 * @throws McuMgrException if the queue contains only tasks with unmet prerequisites,
+		 *                         that is the dependencies are circular.
+		 */
+		@Nullable
+		private Task<S, State> poll() throws McuMgrException {
+			if (taskQueue.isEmpty())
+				return null;
+			final Iterator<Task<S, State>> iterator = taskQueue.iterator();
+			while (iterator.hasNext()) {
+				final Task<S, State> task = iterator.next();
+				if (isReady(task)) {
+					iterator.remove();
+					return task;
+				}
+			}
+			throw new McuMgrException("Circular task dependencies");
+		}
+
+		private boolean isReady(final @NotNull Task<S, State> task) {
+			for (final Task<S, State> prerequisite : task.getPrerequisites()) {
+				if (taskQueue.contains(prerequisite))
+					return false;
+			}
+			return true;
 		}
 
 		@Override
@@ -161,7 +198,13 @@ public abstract class TaskPerformer<S, State> {
 			}
 
 			// Poll the next task. If there's nothing, we're done.
-			final Task<S, State> nextTask = currentTask = taskQueue.poll();
+			final Task<S, State> nextTask;
+			try {
+				nextTask = currentTask = poll();
+			} catch (final McuMgrException e) {
+				onTaskFailed(task, e);
+				return;
+			}
 			if (nextTask == null) {
 				cleanUp();
 				try {
@@ -0,0 +1,172 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import java.util.Arrays
+import java.util.BitSet
+
+/**
+ * Tracks acknowledgements of chunks sent by the [Uploader].
+ *
+ * The data are split into chunks upfront, using [chunkSize], so that an offset reported by the
+ * device can be mapped to a chunk index with a binary search. The device confirms the data
+ * cumulatively, by returning the offset of the next expected byte, so the confirmed chunks always
+ * form a prefix and are tracked with a single index.
+ *
+ * A chunk is missing when it was sent, but the device requested it again, or its response has
+ * timed out. As every chunk pipelined after a lost one gets the same response, a missing chunk
+ * is queued for retransmission only once, and is not queued again until its retransmission
+ * has completed. Failures are counted per chunk.
+ *
+ * This class is not thread safe.
+ *
+ * @param size the size of the data.
+ * @param chunkSize returns the size of a chunk starting at given offset.
+ */
+internal class AckTracker(
+    private val size: Int,
+    private val chunkSize: (offset: Int) -> Int,
+) {
+    /** Start offsets of the chunks. */
+    private var offsets = IntArray(0)
+    private var count = 0
+
+    /** Number of failures of each chunk. */
+    private var failures = IntArray(0)
+
+    /** Chunks queued for retransmission. */
+    private val queued = BitSet()
+
+    /** Chunks being retransmitted. */
+    private val retransmitting = BitSet()
+
+    /** Number of confirmed chunks. */
+    private var confirmed = 0
+
+    /** Offset of the next chunk to be sent in order. */
+    private var sendOffset = 0
+
+    init {
+        plan(0)
+    }
+
+    /**
+     * The offset up to which all data has been confirmed by the device.
+     */
+    val confirmedOffset: Int
+        get() = offsetAt(confirmed)
+
+    /**
+     * Whether there are chunks queued for retransmission.
+     */
+    val hasQueued: Boolean
+        get() = !queued.isEmpty
+
+    /**
+     * Sets the offset of the next chunk that will be sent in order. Chunks from this offset are
+     * not queued for retransmission, as they will be sent anyway.
+     */
+    fun advance(offset: Int) {
+        sendOffset = offset
+    }
+
+    /**
+     * Confirms all chunks below given offset.
+     *
+     * If the offset does not match any chunk, which happens when the device resumes a previously
+     * interrupted upload, the remaining chunks are planned starting from that offset.
+     *
+     * @param offset the offset of the next byte expected by the device.
+     */
+    fun confirm(offset: Int) {
+        val index = indexOf(offset)
+        if (index < 0) {
+            if (offset > offsetAt(0) && offset < size) {
+                plan(offset)
+            }
+            return
+        }
+        if (index > confirmed) {
+            queued.clear(confirmed, index)
+            retransmitting.clear(confirmed, index)
+            confirmed = index
+        }
+    }
+
+    /**
+     * Marks the chunk starting at given offset as missing and queues it for retransmission.
+     *
+     * @return The number of failures of the chunk, or 0 if the chunk is confirmed, already queued
+     * or being retransmitted, or will be sent in order.
+     */
+    fun markMissing(offset: Int): Int {
+        if (offset >= sendOffset) return 0
+        val index = indexOf(offset)
+        if (index < 0 || index < confirmed || queued[index] || retransmitting[index]) return 0
+        queued.set(index)
+        return ++failures[index]
+    }
+
+    /**
+     * Counts a failure of the chunk starting at given offset, without queueing it.
+     *
+     * @return The number of failures of the chunk, or 0 if the chunk is unknown.
+     */
+    fun fail(offset: Int): Int {
+        val index = indexOf(offset)
+        if (index < 0 || index >= count) return 0
+        return ++failures[index]
+    }
+
+    /**
+     * Returns the offset of the first chunk queued for retransmission and marks it as being
+     * retransmitted.
+     *
+     * @return The offset of the chunk, or -1 if no chunk is queued.
+     */
+    fun poll(): Int {
+        val index = queued.nextSetBit(0)
+        if (index < 0) return -1
+        queued.clear(index)
+        retransmitting.set(index)
+        return offsets[index]
+    }
+
+    /**
+     * Marks the retransmission of the chunk starting at given offset as complete.
+     */
+    fun retransmitted(offset: Int) {
+        val index = indexOf(offset)
+        if (index >= 0) {
+            retransmitting.clear(index)
+        }
+    }
+
+    private fun offsetAt(index: Int) = if (index < count) offsets[index] else size
+
+    private fun indexOf(offset: Int): Int {
+        if (offset >= size) return count
+        val index = Arrays.binarySearch(offsets, 0, count, offset)
+        return if (index >= 0) index else -1
+    }
+
+    private fun plan(start: Int) {
+        var array = IntArray(64)
+        var n = 0
+        var offset = start
+        while (offset < size) {
+            if (n == array.size) {
+                array = array.copyOf(n * 2)
+            }
+            array[n++] = offset
+            offset += chunkSize(offset).also {
+                check(it > 0) { "Chunk at offset $offset is empty" }
+            }
+        }
+        offsets = array
+        count = n
+        failures = IntArray(n)
+        queued.clear()
+        retransmitting.clear()
+        confirmed = 0
+        sendOffset = start
+    }
+}
@@ -0,0 +1,221 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineExceptionHandler
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.DelicateCoroutinesApi
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.SUITManager
+import org.slf4j.LoggerFactory
+
+/**
+ * Thrown when a chunk needs to be retransmitted after the upload of the next partition
+ * has already started.
+ */
+internal class ChunkLostAfterHandoffException :
+    McuMgrException("Chunk lost after the next partition has been started")
+
+/**
+ * Timing of the upload of a single cache partition.
+ *
+ * @property partition the partition ID.
+ * @property size the size of the cache image, in bytes.
+ * @property startTimestamp the time the first chunk was sent, in milliseconds.
+ * @property allSentTimestamp the time the last chunk was sent, in milliseconds.
+ * @property endTimestamp the time the last chunk was confirmed, in milliseconds.
+ */
+data class PartitionTiming(
+    val partition: Int,
+    val size: Int,
+    val startTimestamp: Long,
+    val allSentTimestamp: Long,
+    val endTimestamp: Long,
+) {
+    /** The duration of the upload, in milliseconds. */
+    val duration: Long
+        get() = endTimestamp - startTimestamp
+
+    override fun toString(): String =
+        "Partition $partition: $size bytes in $duration ms " +
+                "(last chunk sent after ${allSentTimestamp - startTimestamp} ms)"
+}
+
+/**
+ * This uploader sends multiple cache images as one continuous stream.
+ *
+ * Each partition is sent using a [CacheUploader], but the first chunk of the next partition is
+ * sent as soon as the last chunk of the previous one is in flight, without waiting for its
+ * confirmation. All uploaders share a single window, so the number of requests in flight never
+ * exceeds [windowCapacity].
+ *
+ * If a chunk of a partition is lost after the next one has been started, the stream falls back to
+ * sending the remaining partitions one by one, starting from the affected partition.
+ *
+ * @property suitManager The SUIT Manager.
+ * @property images The cache images to be sent, in order.
+ * @param windowCapacity Number of buffers available for sending data, shared by all partitions.
+ * @param memoryAlignment The memory alignment of the device.
+ */
+class CacheStreamUploader @JvmOverloads constructor(
+    private val suitManager: SUITManager,
+    private val images: List<CacheImage>,
+    private val windowCapacity: Int = 1,
+    private val memoryAlignment: Int = 1,
+) {
+    private val log = LoggerFactory.getLogger("CacheStreamUploader")
+
+    private val uploaders = images.map { image ->
+        CacheUploader(suitManager, image.partitionId, image.image, windowCapacity, memoryAlignment)
+            // Progress of all partitions is combined and reported to the callback as it is.
+            .apply { progressTracker = ProgressTracker(0L, 0) }
+    }
+    private val total = images.sumOf { it.image.size }
+
+    /** Number of bytes confirmed for each partition. */
+    private val confirmed = IntArray(images.size)
+
+    private val _timings = arrayOfNulls<PartitionTiming>(images.size)
+
+    /**
+     * Timing of each partition sent so far, in order.
+     */
+    val timings: List<PartitionTiming>
+        get() = synchronized(_timings) { _timings.filterNotNull() }
+
+    /**
+     * Uploads all cache images.
+     */
+    @Throws
+    suspend fun upload() {
+        var index = 0
+        var pipelined = windowCapacity > 1
+        while (index < uploaders.size) {
+            index = try {
+                uploadFrom(index, pipelined)
+            } catch (e: PipelineBrokenException) {
+                log.warn("Chunk of partition ${images[e.index].partitionId} lost after handoff, " +
+                        "sending remaining partitions one by one")
+                pipelined = false
+                e.index
+            }
+        }
+    }
+
+    /**
+     * Uploads partitions starting from the given index. Returns the number of partitions.
+     */
+    private suspend fun uploadFrom(first: Int, pipelined: Boolean): Int = coroutineScope {
+        val window = Semaphore(windowCapacity)
+        var previous: CompletableDeferred<Unit>? = null
+        val jobs = (first until uploaders.size).map { index ->
+            val uploader = uploaders[index]
+            val handoff = CompletableDeferred<Unit>()
+            val started = previous
+            previous = handoff
+            async {
+                // Prepare the plan while the previous partition is being sent.
+                uploader.prepare()
+                // Wait until the previous partition has sent its last chunk.
+                started?.await()
+                uploader.sharedWindow = window.takeIf { pipelined }
+                var allSentTimestamp = 0L
+                uploader.onAllSent = {
+                    allSentTimestamp = System.currentTimeMillis()
+                    handoff.complete(Unit)
+                }.takeIf { pipelined }
+                val progress = uploader.progress.onEach { progress ->
+                    onPartitionProgress(index, progress.offset)
+                }.launchIn(this)
+                val startTimestamp = System.currentTimeMillis()
+                try {
+                    uploader.uploadCatchMtu()
+                } catch (e: ChunkLostAfterHandoffException) {
+                    throw PipelineBrokenException(index)
+                } finally {
+                    progress.cancel()
+                    uploader.sharedWindow = null
+                    uploader.onAllSent = null
+                }
+                val end = System.currentTimeMillis()
+                // In sequential mode the handoff happens after the partition is complete.
+                handoff.complete(Unit)
+                val timing = PartitionTiming(
+                    images[index].partitionId, images[index].image.size, startTimestamp,
+                    if (allSentTimestamp != 0L) allSentTimestamp else end, end
+                )
+                synchronized(_timings) { _timings[index] = timing }
+                log.debug("$timing")
+            }
+        }
+        jobs.forEach { it.await() }
+        uploaders.size
+    }
+
+    /**
+     * Thrown when the pipeline has to be restarted from the partition with the given index.
+     */
+    private class PipelineBrokenException(val index: Int) : Exception()
+
+    /**
+     * Uploads all cache images asynchronously.
+     *
+     * Each confirmed chunk is reported to the callback; the progress is not coalesced.
+     */
+    @OptIn(DelicateCoroutinesApi::class)
+    @JvmOverloads fun uploadAsync(
+        callback: UploadCallback,
+        scope: CoroutineScope = GlobalScope,
+    ): TransferController {
+        val exceptionHandler = CoroutineExceptionHandler { _, t ->
+            log.error("Upload failed: ${t.message}")
+        }
+        progressCallback = callback
+        val job = scope.launch(exceptionHandler) {
+            val start = System.currentTimeMillis()
+            upload()
+            val duration = System.currentTimeMillis() - start
+            log.info("Upload of ${images.size} partitions completed. $total bytes sent in $duration ms")
+        }
+        job.invokeOnCompletion { throwable ->
+            when (throwable) {
+                null -> callback.onUploadCompleted()
+                is CancellationException -> callback.onUploadCanceled()
+                is McuMgrException -> callback.onUploadFailed(throwable)
+                else -> callback.onUploadFailed(McuMgrException(throwable))
+            }
+        }
+
+        return object : TransferController {
+            override fun pause() {
+                scope.launch { uploaders.forEach { it.pause() } }
+            }
+
+            override fun resume() {
+                uploaders.forEach { it.resume() }
+            }
+
+            override fun cancel() {
+                job.cancel()
+            }
+        }
+    }
+
+    private var progressCallback: UploadCallback? = null
+
+    private fun onPartitionProgress(index: Int, offset: Int) {
+        val current = synchronized(confirmed) {
+            confirmed[index] = offset
+            confirmed.sum()
+        }
+        progressCallback?.onUploadProgressChanged(current, total, System.currentTimeMillis())
+    }
+}
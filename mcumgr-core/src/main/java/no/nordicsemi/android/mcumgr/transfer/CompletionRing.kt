@@ -0,0 +1,123 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlin.coroutines.resume
+
+/**
+ * A fixed size ring of requests in flight, used by the [Uploader].
+ *
+ * Each request occupies a slot from the moment it is sent until its result is consumed.
+ * Results are posted from transport callbacks, on any thread, using the slot's callback, and are
+ * consumed by a single coroutine, in order of completion, using [await].
+ *
+ * Slots and their callbacks are allocated once, so no objects are created per request, apart
+ * from the results themselves. Only [callbacks] may be used from other threads.
+ *
+ * @param capacity the maximum number of requests in flight.
+ */
+internal class CompletionRing(capacity: Int) {
+    private val lock = Any()
+
+    /** Offsets of the chunks sent in each slot. */
+    val offsets = IntArray(capacity)
+
+    /** Sizes of the chunks sent in each slot. */
+    val sizes = IntArray(capacity)
+
+    /** Whether the chunk in each slot is a retransmission. */
+    val resends = BooleanArray(capacity)
+
+    private val results = arrayOfNulls<UploadResult>(capacity)
+
+    /** Stack of free slots. */
+    private val free = IntArray(capacity) { it }
+    private var freeCount = capacity
+
+    /** Queue of completed slots. */
+    private val completed = IntArray(capacity)
+    private var head = 0
+    private var completedCount = 0
+    private var waiter: CancellableContinuation<Unit>? = null
+
+    /**
+     * The callbacks to be passed to the transport, one per slot.
+     */
+    val callbacks: Array<(UploadResult) -> Unit> = Array(capacity) { slot ->
+        { result -> complete(slot, result) }
+    }
+
+    /**
+     * Number of slots in use.
+     */
+    val inFlight: Int
+        get() = offsets.size - freeCount
+
+    /**
+     * Whether all slots are in use.
+     */
+    val isFull: Boolean
+        get() = freeCount == 0
+
+    /**
+     * Acquires a free slot for a chunk. The ring must not be full.
+     *
+     * @return The slot index.
+     */
+    fun acquire(offset: Int, size: Int, resend: Boolean): Int {
+        val slot = free[--freeCount]
+        offsets[slot] = offset
+        sizes[slot] = size
+        resends[slot] = resend
+        return slot
+    }
+
+    /**
+     * Suspends until a request completes.
+     *
+     * The chunk parameters remain available until the slot is released.
+     *
+     * @return The slot index of the completed request.
+     */
+    suspend fun await(): Int {
+        while (true) {
+            synchronized(lock) {
+                if (completedCount > 0) {
+                    val slot = completed[head]
+                    head = (head + 1) % completed.size
+                    completedCount--
+                    return slot
+                }
+            }
+            suspendCancellableCoroutine { continuation ->
+                val ready = synchronized(lock) {
+                    (completedCount > 0).also { if (!it) waiter = continuation }
+                }
+                if (ready) continuation.resume(Unit)
+            }
+        }
+    }
+
+    /**
+     * Releases the completed slot.
+     *
+     * @return The result of the request.
+     */
+    fun release(slot: Int): UploadResult {
+        val result = synchronized(lock) {
+            results[slot].also { results[slot] = null }
+        }
+        free[freeCount++] = slot
+        return result!!
+    }
+
+    private fun complete(slot: Int, result: UploadResult) {
+        val waiter = synchronized(lock) {
+            results[slot] = result
+            completed[(head + completedCount) % completed.size] = slot
+            completedCount++
+            waiter.also { waiter = null }
+        }
+        waiter?.resume(Unit)
+    }
+}
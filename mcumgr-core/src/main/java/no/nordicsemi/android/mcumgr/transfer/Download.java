@@ -6,6 +6,7 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrErrorCode;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -36,9 +37,49 @@ public abstract class Download extends Transfer {
      */
     protected abstract DownloadResponse read(int offset) throws McuMgrException;
 
+    /**
+     * Sends read request from given offset asynchronously.
+     * <p>
+     * The default implementation returns false, which means that only the synchronous
+     * {@link #read(int)} is supported.
+     *
+     * @param offset   the offset.
+     * @param callback the callback to be notified with the received response.
+     * @return True if the request has been sent, false otherwise.
+     */
+    protected boolean read(int offset, @NotNull McuMgrCallback<DownloadResponse> callback) {
+        return false;
+    }
+
     @Override
     public McuMgrResponse send(int offset) throws McuMgrException {
         DownloadResponse response = read(offset);
+        onResponse(response);
+        return response;
+    }
+
+    @Override
+    public boolean sendAsync(int offset, @NotNull final McuMgrCallback<McuMgrResponse> callback) {
+        return read(offset, new McuMgrCallback<DownloadResponse>() {
+            @Override
+            public void onResponse(@NotNull DownloadResponse response) {
+                try {
+                    Download.this.onResponse(response);
+                } catch (McuMgrException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResponse(response);
+            }
+
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private void onResponse(@NotNull DownloadResponse response) throws McuMgrException {
         // Check for a McuManager error.
         if (response.rc != 0) {
             throw new McuMgrErrorException(McuMgrErrorCode.valueOf(response.rc));
@@ -68,8 +109,6 @@ public abstract class Download extends Transfer {
         // Copy received mData to the buffer.
         System.arraycopy(response.data, 0, mData, response.off, length);
         mOffset = response.off + response.data.length;
-
-        return response;
     }
 
     @Override
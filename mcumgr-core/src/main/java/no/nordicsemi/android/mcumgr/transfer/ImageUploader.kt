@@ -43,6 +43,12 @@ open class ImageUploader(
     imageManager.mtu,
     imageManager.scheme
 ) {
+    /**
+     * The SHA-256 of the image, sent in the initial request. It is computed once, either when
+     * the upload is prepared, or when the initial request is sent.
+     */
+    private val digest: ByteArray? by lazy { sha(imageData) }
+
     override fun write(requestMap: Map<String, Any>, timeout: Long, callback: (UploadResult) -> Unit) {
         imageManager.uploadAsync(requestMap, timeout, callback)
     }
@@ -54,7 +60,7 @@ open class ImageUploader(
     ) {
         map.takeIf { offset == 0 }?.apply {
             takeIf { image > 0 }?.let { put("image", image) }
-            sha(data)?.let { put("sha", it) }
+            digest?.let { put("sha", it) }
         }
     }
 
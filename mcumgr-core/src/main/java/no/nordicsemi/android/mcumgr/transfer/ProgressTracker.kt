@@ -0,0 +1,112 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+/**
+ * Default minimum time between two reported progress updates, in milliseconds.
+ */
+const val DEFAULT_PROGRESS_INTERVAL = 100L
+
+/**
+ * The progress tracker coalesces progress updates of a transfer and calculates its throughput
+ * and estimated remaining time.
+ *
+ * An update is reported when at least [minIntervalMillis] have passed, or at least [minBytes]
+ * have been transferred, since the last reported update. The first and the last update of a
+ * transfer are always reported. Set both thresholds to 0 to report every update.
+ *
+ * The tracker does not allocate memory when updated. It is not thread safe.
+ *
+ * @property minIntervalMillis minimum time between reported updates, in milliseconds.
+ * @property minBytes minimum number of bytes transferred between reported updates.
+ * @property smoothingFactor the weight of the most recent sample in the exponentially weighted
+ * moving average of the throughput, in range (0, 1].
+ */
+class ProgressTracker @JvmOverloads constructor(
+    val minIntervalMillis: Long = DEFAULT_PROGRESS_INTERVAL,
+    val minBytes: Int = 0,
+    val smoothingFactor: Float = 0.25f,
+) {
+    private var total = -1
+    private var lastCurrent = -1
+    private var lastTimestamp = 0L
+
+    /**
+     * The throughput measured between the last two reported updates, in bytes per second.
+     */
+    var throughput = 0f
+        private set
+
+    /**
+     * The exponentially weighted moving average of the throughput, in bytes per second.
+     */
+    var averageThroughput = 0f
+        private set
+
+    /**
+     * The estimated remaining time of the transfer in milliseconds, or -1 if unknown.
+     */
+    var remainingTime = -1L
+        private set
+
+    init {
+        require(smoothingFactor > 0f && smoothingFactor <= 1f) {
+            "Smoothing factor must be in range (0, 1]"
+        }
+    }
+
+    /**
+     * Resets the tracker. The next update will be reported.
+     */
+    fun reset() {
+        total = -1
+        lastCurrent = -1
+        lastTimestamp = 0L
+        throughput = 0f
+        averageThroughput = 0f
+        remainingTime = -1L
+    }
+
+    /**
+     * Updates the progress.
+     *
+     * If the total size has changed, or the current value went back, a new transfer is assumed
+     * and the tracker is reset.
+     *
+     * @param current number of bytes transferred so far.
+     * @param total total number of bytes to be transferred.
+     * @param timestamp the time of the update, in milliseconds.
+     * @return True if the update should be reported, false if it was coalesced.
+     */
+    fun update(current: Int, total: Int, timestamp: Long): Boolean {
+        if (total != this.total || current < lastCurrent) {
+            reset()
+            this.total = total
+            lastCurrent = current
+            lastTimestamp = timestamp
+            return true
+        }
+        val bytes = current - lastCurrent
+        val elapsed = timestamp - lastTimestamp
+        val due = (minIntervalMillis <= 0L && minBytes <= 0) ||
+                (minIntervalMillis > 0L && elapsed >= minIntervalMillis) ||
+                (minBytes > 0 && bytes >= minBytes)
+        if (bytes <= 0 || (!due && current != total)) {
+            return false
+        }
+
+        if (elapsed > 0) {
+            throughput = bytes * 1000f / elapsed
+            averageThroughput = if (averageThroughput == 0f) {
+                throughput
+            } else {
+                smoothingFactor * throughput + (1f - smoothingFactor) * averageThroughput
+            }
+        }
+        remainingTime = if (averageThroughput > 0f) {
+            ((total - current) * 1000f / averageThroughput).toLong()
+        } else -1L
+
+        lastCurrent = current
+        lastTimestamp = timestamp
+        return true
+    }
+}
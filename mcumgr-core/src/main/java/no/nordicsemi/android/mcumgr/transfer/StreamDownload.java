@@ -7,6 +7,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrErrorCode;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -43,9 +44,49 @@ public abstract class StreamDownload extends StreamTransfer {
      */
     protected abstract DownloadResponse read(int offset) throws McuMgrException;
 
+    /**
+     * Sends read request from given offset asynchronously.
+     * <p>
+     * The default implementation returns false, which means that only the synchronous
+     * {@link #read(int)} is supported.
+     *
+     * @param offset   the offset.
+     * @param callback the callback to be notified with the received response.
+     * @return True if the request has been sent, false otherwise.
+     */
+    protected boolean read(int offset, @NotNull McuMgrCallback<DownloadResponse> callback) {
+        return false;
+    }
+
     @Override
     public McuMgrResponse send(int offset) throws McuMgrException {
         DownloadResponse response = read(offset);
+        onResponse(response);
+        return response;
+    }
+
+    @Override
+    public boolean sendAsync(int offset, @NotNull final McuMgrCallback<McuMgrResponse> callback) {
+        return read(offset, new McuMgrCallback<DownloadResponse>() {
+            @Override
+            public void onResponse(@NotNull DownloadResponse response) {
+                try {
+                    StreamDownload.this.onResponse(response);
+                } catch (McuMgrException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResponse(response);
+            }
+
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private void onResponse(@NotNull DownloadResponse response) throws McuMgrException {
         // Check for a McuManager error.
         if (response.rc != 0) {
             throw new McuMgrErrorException(McuMgrErrorCode.valueOf(response.rc));
@@ -70,8 +111,6 @@ public abstract class StreamDownload extends StreamTransfer {
             throw new McuMgrException("Download data failed to write to stream.", e);
         }
         mOffset = response.off + response.data.length;
-
-        return response;
     }
 
     @Override
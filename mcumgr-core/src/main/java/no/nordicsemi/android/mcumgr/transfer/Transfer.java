@@ -1,7 +1,9 @@
 package no.nordicsemi.android.mcumgr.transfer;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
 
@@ -56,6 +58,21 @@ public abstract class Transfer implements TransferCallback {
         return send(mOffset);
     }
 
+    /**
+     * Asynchronously sends or requests the part of data from given offset.
+     * <p>
+     * The transfer state is updated before the callback is notified, exactly as in
+     * {@link #send(int)}. The default implementation does not support asynchronous sending
+     * and returns false, in which case the caller should fall back to {@link #send(int)}.
+     *
+     * @param offset   the offset, from which data will be transferred.
+     * @param callback the callback notified with the response or a reason of a failure.
+     * @return True if the request has been sent, false if asynchronous sending is not supported.
+     */
+    public boolean sendAsync(int offset, @NotNull McuMgrCallback<McuMgrResponse> callback) {
+        return false;
+    }
+
     /**
      * Returns the data associated with this object. For incoming transfers the data are available
      * only when the transfer is complete.
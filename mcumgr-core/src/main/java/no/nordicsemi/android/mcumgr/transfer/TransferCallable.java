@@ -9,6 +9,13 @@ import java.util.concurrent.Callable;
 import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 
+/**
+ * Executes a transfer synchronously, blocking the calling thread.
+ *
+ * @deprecated Transfers started using {@link TransferManager} are executed by
+ * {@link TransferScheduler}, which does not block a thread while awaiting responses.
+ */
+@Deprecated
 public class TransferCallable implements Callable<Transfer>, TransferController {
 
     public enum State {
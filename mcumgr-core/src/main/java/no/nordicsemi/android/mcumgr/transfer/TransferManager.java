@@ -2,16 +2,22 @@ package no.nordicsemi.android.mcumgr.transfer;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 import no.nordicsemi.android.mcumgr.McuManager;
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrTransport;
-import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException;
-
+import no.nordicsemi.android.mcumgr.exception.McuMgrException;
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse;
+
+/**
+ * Base class for managers supporting uploads and downloads.
+ * <p>
+ * Transfers from all managers using the same transport are executed sequentially by the
+ * {@link TransferScheduler} associated with the transport.
+ */
 public class TransferManager extends McuManager {
 
-    private ExecutorService mExecutor;
+    @NotNull
+    private TransferScheduler.Priority mTransferPriority = TransferScheduler.Priority.NORMAL;
 
     /**
      * Construct a McuManager instance.
@@ -23,10 +29,32 @@ public class TransferManager extends McuManager {
         super(groupId, transporter);
     }
 
+    /**
+     * Sets the priority of transfers started on this manager after this call.
+     * <p>
+     * Transfers with higher priority started on any manager using the same transport are
+     * executed first.
+     *
+     * @param priority the transfer priority, {@link TransferScheduler.Priority#NORMAL} by default.
+     */
+    public void setTransferPriority(@NotNull TransferScheduler.Priority priority) {
+        mTransferPriority = priority;
+    }
+
+    /**
+     * Returns the priority of transfers started on this manager.
+     *
+     * @return The transfer priority.
+     */
+    @NotNull
+    public TransferScheduler.Priority getTransferPriority() {
+        return mTransferPriority;
+    }
+
     /**
      * Start an upload.
      * <p>
-     * If there is an active transfer being executed on this manager, the transfer will be queued.
+     * If there is an active transfer being executed on this transport, the transfer will be queued.
      *
      * @param upload The upload to start.
      * @return The controller used to pause, resume, or cancel the upload.
@@ -39,7 +67,7 @@ public class TransferManager extends McuManager {
     /**
      * Start an upload.
      * <p>
-     * If there is an active transfer being executed on this manager, the transfer will be queued.
+     * If there is an active transfer being executed on this transport, the transfer will be queued.
      *
      * @param upload The upload to start.
      * @return The controller used to pause, resume, or cancel the upload.
@@ -52,7 +80,7 @@ public class TransferManager extends McuManager {
     /**
      * Start an download.
      * <p>
-     * If there is an active transfer being executed on this manager, the download will be queued.
+     * If there is an active transfer being executed on this transport, the download will be queued.
      *
      * @param download The upload to start.
      * @return The controller used to pause, resume, or cancel the download.
@@ -65,7 +93,7 @@ public class TransferManager extends McuManager {
     /**
      * Start an download.
      * <p>
-     * If there is an active transfer being executed on this manager, the download will be queued.
+     * If there is an active transfer being executed on this transport, the download will be queued.
      *
      * @param download The upload to start.
      * @return The controller used to pause, resume, or cancel the download.
@@ -76,55 +104,32 @@ public class TransferManager extends McuManager {
     }
 
     @NotNull
-    private synchronized TransferController startTransfer(@NotNull final Transfer transfer) {
-
-        final TransferCallable transferCallable = new TransferCallable(transfer);
-
-        /*
-         * Wrap the callable in the in an runnable which catches InsufficientMtuException and
-         * retries the transfer once.
-         */
-        getTransferExecutor().execute(new Runnable() {
-
-            // Whether to retry with a new MTU due to an MTU exception.
-            private boolean mRetry = true;
+    private TransferController startTransfer(@NotNull final Transfer transfer) {
+        return TransferScheduler.forTransport(getTransporter())
+                .enqueue(this, transfer, mTransferPriority);
+    }
 
+    /**
+     * Returns a callback which forwards responses of a specific type to a callback accepting
+     * their base type.
+     *
+     * @param callback the callback to forward the response to.
+     * @param <T>      the response type.
+     * @return The forwarding callback.
+     */
+    @NotNull
+    protected static <T extends McuMgrResponse> McuMgrCallback<T> forward(
+            @NotNull final McuMgrCallback<? super T> callback) {
+        return new McuMgrCallback<T>() {
             @Override
-            public void run() {
-                try {
-                    // Execute the transfer callable.
-                    transferCallable.call();
-                } catch (InsufficientMtuException e) {
-                    // If we have already retried, fail the transfer.
-                    if (!mRetry) {
-                        transferCallable.getTransfer().onFailed(e);
-                        return;
-                    }
-                    // Set the MTU to the value specified in the error response.
-                    int mtu = e.getMtu();
-                    if (mMtu == mtu) {
-                        mtu -= 1;
-                    }
-                    boolean isMtuSet = setUploadMtu(mtu);
-                    if (isMtuSet) {
-                        // If the MTU has been set successfully, restart the upload.
-                        transferCallable.getTransfer().reset();
-                        mRetry = false;
-                        run();
-                    } else {
-                        transferCallable.getTransfer().onFailed(e);
-                    }
-                }
+            public void onResponse(@NotNull T response) {
+                callback.onResponse(response);
             }
-        });
-        return transferCallable;
-    }
 
-    @NotNull
-    private synchronized ExecutorService getTransferExecutor() {
-        if (mExecutor == null) {
-            mExecutor = Executors.newSingleThreadExecutor();
-        }
-        return mExecutor;
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                callback.onError(error);
+            }
+        };
     }
 }
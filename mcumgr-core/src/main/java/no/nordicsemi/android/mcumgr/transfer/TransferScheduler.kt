@@ -0,0 +1,287 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.suspendCancellableCoroutine
+import no.nordicsemi.android.mcumgr.McuManager
+import no.nordicsemi.android.mcumgr.McuMgrCallback
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import org.slf4j.LoggerFactory
+import java.util.WeakHashMap
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Number of times a queued transfer may be overtaken by transfers with higher priority before
+ * it gets promoted by one priority level.
+ */
+private const val AGING_THRESHOLD = 4
+
+/**
+ * The transfer scheduler executes uploads and downloads started on all [TransferManager]s sharing
+ * the same [McuMgrTransport].
+ *
+ * Transfers are executed one at a time, as the device can handle only a single transfer at a time,
+ * in order of their [Priority]. Transfers with the same priority are executed in FIFO order.
+ * To prevent starvation, a transfer that has been overtaken [AGING_THRESHOLD] times is promoted
+ * to the next priority level.
+ *
+ * Transfers are executed on a coroutine. If the [Transfer] supports [Transfer.sendAsync], no thread
+ * is blocked while waiting for a response. Otherwise, the synchronous [Transfer.send] is called
+ * on [Dispatchers.IO].
+ *
+ * Use [forTransport] to obtain the scheduler for a transport.
+ */
+class TransferScheduler private constructor() {
+    private val log = LoggerFactory.getLogger(TransferScheduler::class.java)
+
+    /**
+     * The transfer priority.
+     */
+    enum class Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    companion object {
+        private val schedulers = WeakHashMap<McuMgrTransport, TransferScheduler>()
+
+        /**
+         * Returns the scheduler used by all managers using the given transport.
+         *
+         * @param transport the transport.
+         * @return The scheduler.
+         */
+        @JvmStatic
+        fun forTransport(transport: McuMgrTransport): TransferScheduler = synchronized(schedulers) {
+            schedulers.getOrPut(transport) { TransferScheduler() }
+        }
+    }
+
+    @Volatile
+    private var progressMinIntervalMillis = 0L
+    @Volatile
+    private var progressMinBytes = 0
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val queue = mutableListOf<ScheduledTransfer>()
+    private var worker: Job? = null
+    private var sequence = 0L
+
+    /**
+     * Number of transfers waiting in the queue, excluding the active one.
+     */
+    val pendingCount: Int
+        get() = synchronized(queue) { queue.size }
+
+    /**
+     * Sets the rate at which the progress of transfers is reported to their callbacks.
+     * By default, every update is reported.
+     *
+     * The rate applies to transfers enqueued after this call.
+     *
+     * @param minIntervalMillis minimum time between reported updates, in milliseconds.
+     * @param minBytes minimum number of bytes transferred between reported updates.
+     * @see ProgressTracker
+     */
+    fun setProgressReportingRate(minIntervalMillis: Long, minBytes: Int) {
+        progressMinIntervalMillis = minIntervalMillis
+        progressMinBytes = minBytes
+    }
+
+    /**
+     * Enqueues the transfer. The transfer will be started when all transfers with higher
+     * or equal priority that were enqueued before have completed.
+     *
+     * @param manager the manager that created the transfer. It is used to lower the MTU
+     * when the device reports [InsufficientMtuException].
+     * @param transfer the transfer to enqueue.
+     * @param priority the priority of the transfer.
+     * @return The controller used to pause, resume or cancel the transfer.
+     */
+    @JvmOverloads
+    fun enqueue(
+        manager: McuManager,
+        transfer: Transfer,
+        priority: Priority = Priority.NORMAL,
+    ): TransferController = synchronized(queue) {
+        ScheduledTransfer(manager, transfer, priority, sequence++).also {
+            queue.add(it)
+            if (worker == null) {
+                worker = scope.launch { drain() }
+            }
+        }
+    }
+
+    private suspend fun drain() {
+        while (true) {
+            val next = synchronized(queue) {
+                poll().also { if (it == null) worker = null }
+            } ?: return
+            // Each transfer is executed in its own child job, so that it can be cancelled
+            // without affecting the queue.
+            val job = scope.launch { next.execute() }
+            next.job = job
+            job.join()
+        }
+    }
+
+    // Must be called with the queue lock held.
+    private fun poll(): ScheduledTransfer? {
+        val next = queue.minWithOrNull(
+            compareBy<ScheduledTransfer> { it.effectivePriority }.thenBy { it.sequence }
+        ) ?: return null
+        queue.remove(next)
+        queue.forEach { if (it.sequence < next.sequence) it.overtaken++ }
+        return next
+    }
+
+    private fun remove(transfer: ScheduledTransfer) = synchronized(queue) {
+        queue.remove(transfer)
+    }
+
+    private inner class ScheduledTransfer(
+        private val manager: McuManager,
+        private val transfer: Transfer,
+        private val priority: Priority,
+        val sequence: Long,
+    ) : TransferController {
+        var job: Job? = null
+        var overtaken = 0
+
+        private val tracker = ProgressTracker(progressMinIntervalMillis, progressMinBytes)
+        private val paused = MutableStateFlow(false)
+        @Volatile
+        private var closed = false
+
+        val effectivePriority: Int
+            get() = maxOf(0, priority.ordinal - overtaken / AGING_THRESHOLD)
+
+        override fun pause() {
+            if (!closed) paused.value = true
+        }
+
+        override fun resume() {
+            paused.value = false
+        }
+
+        override fun cancel() {
+            synchronized(this) {
+                if (closed) return
+                closed = true
+            }
+            remove(this)
+            job?.cancel()
+            paused.value = false
+            transfer.onCanceled()
+        }
+
+        suspend fun execute() {
+            // Retry once with a new MTU due to an MTU exception.
+            var retry = true
+            while (true) {
+                try {
+                    transferAll()
+                    return
+                } catch (e: InsufficientMtuException) {
+                    // If we have already retried, fail the transfer.
+                    if (!retry) {
+                        fail(e)
+                        return
+                    }
+                    // Set the MTU to the value specified in the error response.
+                    var mtu = e.mtu
+                    if (manager.mtu == mtu) {
+                        mtu -= 1
+                    }
+                    if (!manager.setUploadMtu(mtu)) {
+                        fail(e)
+                        return
+                    }
+                    // If the MTU has been set successfully, restart the transfer.
+                    transfer.reset()
+                    retry = false
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    fail(McuMgrException(e))
+                    return
+                }
+            }
+        }
+
+        private suspend fun transferAll() {
+            while (!transfer.isFinished) {
+                // Suspend if the transfer has been paused.
+                paused.first { !it }
+
+                // Check if transfer hasn't been cancelled while paused.
+                if (closed) return
+
+                // Send the next packet.
+                try {
+                    transfer.sendNextSuspending()
+                } catch (e: InsufficientMtuException) {
+                    throw e
+                } catch (e: McuMgrException) {
+                    fail(e)
+                    return
+                }
+
+                synchronized(this) {
+                    // Check if transfer hasn't been cancelled.
+                    if (closed) return
+
+                    // Call the progress callback, unless the update was coalesced.
+                    val timestamp = System.currentTimeMillis()
+                    if (tracker.update(transfer.offset, transfer.mDataLength, timestamp)) {
+                        transfer.onProgressChanged(transfer.offset, transfer.mDataLength, timestamp)
+                    }
+                }
+            }
+            synchronized(this) {
+                if (closed) return
+                closed = true
+            }
+            transfer.onCompleted()
+        }
+
+        private fun fail(e: McuMgrException) {
+            synchronized(this) {
+                if (closed) return
+                closed = true
+            }
+            log.warn("Transfer failed: {}", e.message)
+            transfer.onFailed(e)
+        }
+    }
+
+    private suspend fun Transfer.sendNextSuspending(): McuMgrResponse {
+        val offset = offset
+        val response = suspendCancellableCoroutine<McuMgrResponse?> { continuation ->
+            val sent = sendAsync(offset, object : McuMgrCallback<McuMgrResponse> {
+                override fun onResponse(response: McuMgrResponse) {
+                    continuation.resume(response)
+                }
+
+                override fun onError(error: McuMgrException) {
+                    continuation.resumeWithException(error)
+                }
+            })
+            if (!sent) {
+                continuation.resume(null)
+            }
+        }
+        // Transfers which do not support asynchronous sending block a thread from the IO pool.
+        return response ?: runInterruptible(Dispatchers.IO) { send(offset) }
+    }
+}
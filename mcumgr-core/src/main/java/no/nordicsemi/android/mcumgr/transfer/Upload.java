@@ -3,6 +3,7 @@ package no.nordicsemi.android.mcumgr.transfer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import no.nordicsemi.android.mcumgr.McuMgrCallback;
 import no.nordicsemi.android.mcumgr.McuMgrErrorCode;
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
@@ -25,20 +26,63 @@ public abstract class Upload extends Transfer {
 
     protected abstract UploadResponse write(byte @NotNull [] data, int offset) throws McuMgrException;
 
+    /**
+     * Sends the chunk of data from given offset asynchronously.
+     * <p>
+     * The default implementation returns false, which means that only the synchronous
+     * {@link #write(byte[], int)} is supported.
+     *
+     * @param data     the data.
+     * @param offset   the offset, from which the chunk will be sent.
+     * @param callback the callback to be notified with the upload response.
+     * @return True if the request has been sent, false otherwise.
+     */
+    protected boolean write(byte @NotNull [] data, int offset,
+                            @NotNull McuMgrCallback<UploadResponse> callback) {
+        return false;
+    }
+
     @Override
     public McuMgrResponse send(int offset) throws McuMgrException {
         if (mData == null) {
             throw new NullPointerException("Upload data cannot be null!");
         }
         UploadResponse response = write(mData, offset);
+        onResponse(response);
+        return response;
+    }
+
+    @Override
+    public boolean sendAsync(int offset, @NotNull final McuMgrCallback<McuMgrResponse> callback) {
+        if (mData == null) {
+            throw new NullPointerException("Upload data cannot be null!");
+        }
+        return write(mData, offset, new McuMgrCallback<UploadResponse>() {
+            @Override
+            public void onResponse(@NotNull UploadResponse response) {
+                try {
+                    Upload.this.onResponse(response);
+                } catch (McuMgrException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResponse(response);
+            }
+
+            @Override
+            public void onError(@NotNull McuMgrException error) {
+                callback.onError(error);
+            }
+        });
+    }
+
+    private void onResponse(@NotNull UploadResponse response) throws McuMgrException {
         // Check for a McuManager error.
         if (response.rc != 0) {
             throw new McuMgrErrorException(McuMgrErrorCode.valueOf(response.rc));
         }
 
         mOffset = response.off;
-
-        return response;
     }
 
     @Override
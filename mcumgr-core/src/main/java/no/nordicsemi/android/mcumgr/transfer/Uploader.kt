@@ -7,18 +7,13 @@ import kotlinx.coroutines.DelicateCoroutinesApi
 import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.BufferOverflow
-import kotlinx.coroutines.channels.Channel
-import kotlinx.coroutines.channels.Channel.Factory.CONFLATED
-import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.launchIn
 import kotlinx.coroutines.flow.onEach
 import kotlinx.coroutines.launch
-import kotlinx.coroutines.selects.select
-import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.sync.Semaphore
-import kotlinx.coroutines.sync.withLock
 import no.nordicsemi.android.mcumgr.McuMgrScheme
 import no.nordicsemi.android.mcumgr.exception.InsufficientMtuException
 import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
@@ -26,41 +21,34 @@ import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
 import no.nordicsemi.android.mcumgr.util.CBOR
 import org.slf4j.LoggerFactory
+import java.nio.ByteBuffer
 import java.security.DigestException
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.resume
 import kotlin.math.min
 
 const val MAX_CHUNK_FAILURES = 5
 
+/**
+ * The upload progress.
+ *
+ * @property offset number of bytes sent and confirmed so far.
+ * @property size total number of bytes to send.
+ * @property timestamp the time of the progress update, in milliseconds.
+ * @property throughput the throughput since the previous progress update, in bytes per second.
+ * @property averageThroughput the smoothed throughput, in bytes per second.
+ * @property remainingTime the estimated remaining time, in milliseconds, or -1 if unknown.
+ * @see ProgressTracker
+ */
 data class UploadProgress(
     val offset: Int,
     val size: Int,
-    val timestamp: Long = System.currentTimeMillis()
+    val timestamp: Long = System.currentTimeMillis(),
+    val throughput: Float = 0f,
+    val averageThroughput: Float = 0f,
+    val remainingTime: Long = -1L,
 )
 
-private data class Chunk(val data: ByteArray, val offset: Int, val isLast: Boolean) {
-    override fun toString(): String {
-        return "Chunk(offset=$offset, size=${data.size})"
-    }
-
-    override fun equals(other: Any?): Boolean {
-        if (this === other) return true
-        if (javaClass != other?.javaClass) return false
-
-        other as Chunk
-
-        if (!data.contentEquals(other.data)) return false
-        if (offset != other.offset) return false
-
-        return true
-    }
-
-    override fun hashCode(): Int {
-        var result = data.contentHashCode()
-        result = 31 * result + offset
-        return result
-    }
-}
-
 abstract class Uploader(
     private val data: ByteArray,
     private val windowCapacity: Int,
@@ -80,8 +68,51 @@ abstract class Uploader(
     val progress: Flow<UploadProgress> = _progress
     private val resumed = Semaphore(1)
 
+    /**
+     * The tracker used to coalesce progress updates emitted to [progress] and calculate
+     * the throughput. By default, progress is reported at most every
+     * [DEFAULT_PROGRESS_INTERVAL] milliseconds.
+     *
+     * Set a tracker with both thresholds set to 0 if the updates are coalesced by the receiver,
+     * as the upgrade managers do.
+     */
+    var progressTracker = ProgressTracker()
+
+    /**
+     * Window shared with other uploaders sending data at the same time, if any.
+     * Each request in flight holds a permit, in addition to a slot in the uploader's own window.
+     */
+    internal var sharedWindow: Semaphore? = null
+
+    /**
+     * Called once all chunks have been sent in order, while the last ones may still be in flight.
+     * After that, any chunk that would need to be retransmitted fails the upload with
+     * [ChunkLostAfterHandoffException], as another upload may have been started.
+     */
+    internal var onAllSent: (() -> Unit)? = null
+    private var allSent = false
+
+    /** The chunk plan prepared with [prepare] and the MTU it was prepared for. */
+    private var preparedPlan: AckTracker? = null
+    private var preparedMtu = 0
+
+    /**
+     * The data of the chunk being sent, as a view of [data], and its offset. They are reused for
+     * all requests, as each request is serialized before [write] returns. Jackson writes a
+     * ByteBuffer as a byte string and an AtomicInteger as an integer, so the encoding is the same
+     * as of a ByteArray and an Int.
+     */
+    private val chunkData = ByteBuffer.wrap(data)
+    private val chunkOffset = AtomicInteger()
+
+    /** The request sent with each chunk except the initial one. */
+    private var chunkRequest: MutableMap<String, Any>? = null
+
     /**
      * This method should send the request with given parameters.
+     *
+     * The request map and its values are reused for the following chunk, so the request must be
+     * serialized before this method returns.
      */
     @Throws
     internal abstract fun write(
@@ -92,69 +123,143 @@ abstract class Uploader(
 
     /**
      * Uploads the data.
+     *
+     * The upload is driven by a single coroutine. It sends chunks until the window is full and
+     * then handles completed requests, one at a time, as they are posted to a [CompletionRing].
      */
     @Throws
-    suspend fun upload() = coroutineScope {
-        // Tracks the number of failures experienced for any given chunk,
-        // identified by the offset.
-        val failureDirectory = mutableMapOf<Int, Int>()
-        val failureDirectoryMutex = Mutex()
+    suspend fun upload() {
+        if (data.isEmpty()) {
+            uploadEmpty()
+            return
+        }
 
-        // Bounds number of in-progress requests within window capacity.
-        val window = Semaphore(windowCapacity)
+        // Tracks which chunks have been confirmed, which need to be retransmitted and
+        // the number of failures experienced for each chunk.
+        val acks = takePlan()
 
-        val next: Channel<Chunk> = Channel(CONFLATED)
-        val failures: Channel<Chunk> = Channel(CONFLATED)
-        val close: Channel<Unit> = Channel(CONFLATED)
+        // Holds the requests in flight. Its capacity bounds their number.
+        val ring = CompletionRing(windowCapacity)
+
+        val window = sharedWindow
+        allSent = false
+        currentOffset = 0
+
+        // Offset of the next chunk to be sent in order.
+        var nextOffset = 0
+        // The initial chunk and retransmitted chunks are sent synchronously. After they
+        // complete, sending continues in order from the offset returned by the device.
+        var syncInFlight = false
+        var done = false
 
         val initialTimestamp = System.currentTimeMillis()
-        next.send(newChunk(0))
+        val tracker = progressTracker.apply { synchronized(this) { reset() } }
 
-        while (true) {
-            window.acquire()
+        // Whether a chunk could not be sent as the shared window is full.
+        var windowFull: Boolean
 
-            // Try acquiring resumed lock. If worked, release it immediately.
-            resumed.acquire()
-            resumed.release()
+        try {
+            while (!done) {
+                // Send chunks until the window is full, prioritizing missing chunks.
+                // No new chunks are sent while the upload is paused.
+                windowFull = false
+                while (!syncInFlight && !ring.isFull && resumed.availablePermits > 0) {
+                    val resend = acks.hasQueued
+                    if (!resend && nextOffset >= data.size) {
+                        if (!allSent) {
+                            allSent = true
+                            onAllSent?.invoke()
+                        }
+                        break
+                    }
+                    if (window != null && !window.tryAcquire()) {
+                        windowFull = true
+                        break
+                    }
+                    val offset = if (resend) acks.poll() else nextOffset
+
+                    val size = chunkSize(offset)
+                    val slot = ring.acquire(offset, size, resend)
+                    write(
+                        prepareWrite(offset, size),
+                        timeout(offset, size),
+                        ring.callbacks[slot]
+                    )
+                    if (resend || offset == 0) {
+                        syncInFlight = true
+                    } else {
+                        nextOffset = offset + size
+                        acks.advance(nextOffset)
+                    }
+                }
 
-            // Select the next chunk to send, prioritizing failed chunks.
-            val (chunk, resend) = select<Pair<Chunk, Boolean>?> {
-                failures.onReceive { it to true }
-                next.onReceive { it to false }
-                close.onReceive { null }
-            } ?: break
+                if (ring.inFlight == 0) {
+                    if (resumed.availablePermits == 0) {
+                        // Wait until resumed.
+                        resumed.acquire()
+                        resumed.release()
+                    } else if (windowFull) {
+                        // Wait until another uploader frees a slot in the shared window.
+                        window?.acquire()
+                        window?.release()
+                    } else {
+                        checkNotHandedOff()
+                        // All chunks have been sent, but some were not confirmed.
+                        // Continue sending in order from the confirmed offset.
+                        nextOffset = acks.confirmedOffset
+                        acks.advance(nextOffset)
+                    }
+                    continue
+                }
+
+                // Handle the next completed request.
+                val slot = ring.await()
+                val offset = ring.offsets[slot]
+                val size = ring.sizes[slot]
+                val resend = ring.resends[slot]
+                val result = ring.release(slot)
+                window?.release()
+                val sync = resend || offset == 0
+                if (resend) {
+                    acks.retransmitted(offset)
+                }
 
-            val nextChunk = writeInternal(chunk, resend, this) { result ->
                 result.onSuccess { response ->
-                    if (!resend && response.off < chunk.offset + chunk.data.size) {
+                    acks.confirm(response.off)
+                    if (sync) {
+                        nextOffset = response.off
+                    }
+                    if (response.off < offset + size) {
                         // An unexpected offset means that the message was
                         // somehow lost or the device could not accept the
                         // chunk. We need to resend the chunk at the offset
-                        // requested by the device.
-                        log.warn("Chunk with offset ${chunk.offset} has been lost (expected offset=${chunk.offset + chunk.data.size}, received=${response.off})")
-                        val fails = failureDirectoryMutex.withLock {
-                            val fails = (failureDirectory[chunk.offset] ?: 0) + 1
-                            failureDirectory[chunk.offset] = fails
-                            fails
-                        }
+                        // requested by the device. Each chunk pipelined after the lost
+                        // one gets the same response, but it is retransmitted only once.
+                        log.warn("Chunk with offset $offset has been lost (expected offset=${offset + size}, received=${response.off})")
+                        checkNotHandedOff()
+                        val fails = if (sync) acks.fail(response.off) else acks.markMissing(response.off)
                         if (fails >= MAX_CHUNK_FAILURES) {
-                            throw McuMgrException("Chunk with offset ${chunk.offset} has not been acknowledged too many times")
+                            throw McuMgrException("Chunk with offset ${response.off} has not been acknowledged too many times")
                         }
-                        failures.send(newChunk(response.off))
                     } else {
                         // Success, update the progress.
-                        if (chunk.offset == 0 && response.off == chunk.data.size) {
-                            _progress.tryEmit(UploadProgress(0, data.size, initialTimestamp))
+                        if (offset == 0 && response.off == size) {
+                            tracker.emit(0, initialTimestamp)
                         }
                         if (currentOffset < response.off) {
-                            _progress.tryEmit(UploadProgress(response.off, data.size))
+                            tracker.emit(response.off, System.currentTimeMillis())
                             currentOffset = response.off
                         }
                         if (response.off == data.size) {
-                            close.send(Unit)
+                            done = true
                         }
                     }
                 }.onErrorOrFailure { failure ->
+                    // Synchronously sent chunks are resent in order.
+                    if (sync) {
+                        nextOffset = maxOf(offset, acks.confirmedOffset)
+                    }
+
                     // If a non-success response was returned abort sending the file.
                     if (failure is McuMgrErrorException) {
                         throw failure
@@ -179,42 +284,105 @@ abstract class Uploader(
                         // As the timeout for sending a packet is quite long (1 sec), some following
                         // packets may have been sent before the time run out, and those could have
                         // got the ack.
-                        if (currentOffset > chunk.offset) {
-                            log.warn("A notification for chunk with offset=${chunk.offset} was lost, but the chunk was ack-ed by later chunk (confirmed offset=$currentOffset)")
+                        if (currentOffset > offset) {
+                            log.warn("A notification for chunk with offset=$offset was lost, but the chunk was ack-ed by later chunk (confirmed offset=$currentOffset)")
                             return@onErrorOrFailure
                         } else {
-                            log.warn("A notification for chunk with offset=${chunk.offset} was lost, current offset: $currentOffset")
+                            log.warn("A notification for chunk with offset=$offset was lost, current offset: $currentOffset")
                         }
                     }
 
                     // Request failure, resend failed chunk.
-                    log.warn("Uploader write failure for chunk with offset=${chunk.offset}: $failure")
+                    log.warn("Uploader write failure for chunk with offset=$offset: $failure")
+                    checkNotHandedOff()
                     // Track the number of times a chunk has failed. If the
                     // chunk has failed more times than the threshold,
                     // throw the exception to fail the upload entirely.
-                    val fails = failureDirectoryMutex.withLock {
-                        val fails = (failureDirectory[chunk.offset] ?: 0) + 1
-                        failureDirectory[chunk.offset] = fails
-                        fails
-                    }
+                    val fails = if (sync) acks.fail(offset) else acks.markMissing(offset)
                     if (fails >= MAX_CHUNK_FAILURES) {
                         throw failure
                     }
-                    failures.send(newChunk(chunk.offset))
                 }
 
-                // Release the semaphore.
-                window.release()
+                if (sync) {
+                    syncInFlight = false
+                    acks.advance(nextOffset)
+                }
             }
 
-            // Only send the next chunk if the we still have more data to upload.
-            if (nextChunk.offset < data.size) {
-                next.send(nextChunk)
+            // Wait for the remaining requests, e.g. duplicates of already confirmed chunks.
+            while (ring.inFlight > 0) {
+                ring.release(ring.await())
+                window?.release()
             }
+        } finally {
+            // Requests abandoned due to an error no longer hold the shared window.
+            if (window != null) {
+                repeat(ring.inFlight) { window.release() }
+            }
+        }
+    }
+
+    // Empty data can't be split into chunks. A single empty chunk is sent, so that the device
+    // creates an empty file.
+    private suspend fun uploadEmpty() {
+        val window = sharedWindow
+        window?.acquire()
+        allSent = false
+        currentOffset = 0
+        val tracker = progressTracker.apply { synchronized(this) { reset() } }
+        try {
+            val timestamp = System.currentTimeMillis()
+            val result = suspendCancellableCoroutine { continuation ->
+                write(prepareWrite(0, 0), timeout(0, 0)) { continuation.resume(it) }
+            }
+            result.onSuccess {
+                tracker.emit(0, timestamp)
+            }.onErrorOrFailure { failure ->
+                throw failure
+            }
+        } finally {
+            window?.release()
+        }
+    }
+
+    // After the upload was handed off to the next one, the device may no longer accept
+    // retransmitted chunks of this one.
+    private fun checkNotHandedOff() {
+        if (allSent && onAllSent != null) {
+            throw ChunkLostAfterHandoffException()
         }
-        window.release()
     }
 
+    /**
+     * Prepares the upload, so that the first chunk can be sent as soon as [upload] is called.
+     *
+     * This splits the data into chunks for the current MTU and computes the parameters of the
+     * initial request, which, depending on the implementation, may require hashing the whole data.
+     * Calling this method is optional, but allows to prepare the next upload while the previous
+     * one is still in progress.
+     */
+    fun prepare() {
+        synchronized(this) {
+            if (preparedPlan == null || preparedMtu != mtu) {
+                preparedPlan = AckTracker(data.size, ::chunkSize)
+                preparedMtu = mtu
+            }
+        }
+        // Implementations cache the parameters of the initial request, e.g. the image hash.
+        getAdditionalData(data, 0, mutableMapOf())
+    }
+
+    /**
+     * Prepares the upload in the background.
+     *
+     * @see prepare
+     */
+    @OptIn(DelicateCoroutinesApi::class)
+    @JvmOverloads fun prepareAsync(
+        scope: CoroutineScope = GlobalScope,
+    ): Job = scope.launch { prepare() }
+
     /**
      * Uploads the data asynchronously.
      */
@@ -273,8 +441,19 @@ abstract class Uploader(
         }
     }
 
+    private fun ProgressTracker.emit(offset: Int, timestamp: Long) = synchronized(this) {
+        if (update(offset, data.size, timestamp)) {
+            _progress.tryEmit(
+                UploadProgress(
+                    offset, data.size, timestamp,
+                    throughput, averageThroughput, remainingTime
+                )
+            )
+        }
+    }
+
     // Catches an mtu exception, sets the new mtu and restarts the upload.
-    private suspend fun uploadCatchMtu() {
+    internal suspend fun uploadCatchMtu() {
         try {
             upload()
         } catch (e: InsufficientMtuException) {
@@ -297,86 +476,46 @@ abstract class Uploader(
         resumed.release()
     }
 
-    private suspend fun writeInternal(
-        chunk: Chunk,
-        resend: Boolean,
-        scope: CoroutineScope,
-        callback: suspend (UploadResult) -> Unit
-    ): Chunk {
-        val resultChannel: Channel<UploadResult> = Channel(1)
-        val timeout = when {
-            // Timeout for the initial chunk is long, as the device may need to erase the flash.
-            chunk.offset == 0 -> 40_000L
-            // Also, the last chunk may take a while to process, so we give it more time as well.
-            chunk.isLast -> 20_000L
-            else -> 2_500L
-        }
-        write(prepareWrite(chunk.data, chunk.offset), timeout) { result ->
-            resultChannel.trySend(result)
-        }
-
-        return if (chunk.offset == 0) {
-            // Send the first chunk synchronously, to get the last offset.
-            val result = resultChannel.receive()
-            callback(result)
-
-            result.onSuccess {
-                return newChunk(it.off)
-            }
-            return nextChunk(chunk)
-        } else if (resend) {
-            // Failed and resent chunks should suspend the current coroutine
-            // and await the result.
-            val result = resultChannel.receive()
-            callback(result)
-
-            // When the result is successful response with an offset, return
-            // a new chunk with the requested offset.
-            when (result) {
-                is UploadResult.Response -> {
-                    newChunk(result.body.off)
-                }
-                else -> nextChunk(chunk)
-            }
-        } else {
-            // Regular send should launch the result handling on a child coroutine.
-            scope.launch {
-                val result = resultChannel.receive()
-                callback(result)
-            }
+    // Returns the prepared chunk plan, if it matches the current MTU, or plans the chunks.
+    private fun takePlan(): AckTracker = synchronized(this) {
+        val plan = preparedPlan?.takeIf { preparedMtu == mtu }
+        preparedPlan = null
+        plan ?: AckTracker(data.size, ::chunkSize)
+    }
 
-            // Return the next logical chunk.
-            nextChunk(chunk)
-        }
+    private fun timeout(offset: Int, size: Int): Long = when {
+        // Timeout for the initial chunk is long, as the device may need to erase the flash.
+        offset == 0 -> 40_000L
+        // Also, the last chunk may take a while to process, so we give it more time as well.
+        offset + size >= data.size -> 20_000L
+        else -> 2_500L
     }
 
-    private fun newChunk(offset: Int): Chunk {
+    private fun chunkSize(offset: Int): Int {
         // SMP pipelining may require data to be aligned to some number of bytes.
         // In Zephyr, since https://github.com/zephyrproject-rtos/zephyr/pull/41959 has been merged
         // this is not required, but memory aligning here makes even older devices to work.
         val maxChunkSize = getMaxChunkSize(offset)
-        val alignedSize =
-            if (offset + maxChunkSize < data.size) maxChunkSize / memoryAlignment * memoryAlignment else maxChunkSize
-        val chunkData = data.copyOfRange(offset, offset + alignedSize)
-        val isLast = offset + alignedSize >= data.size
-        return Chunk(chunkData, offset, isLast)
+        return if (offset + maxChunkSize < data.size) maxChunkSize / memoryAlignment * memoryAlignment else maxChunkSize
     }
 
-    private fun nextChunk(chunk: Chunk): Chunk {
-        return newChunk(chunk.offset + chunk.data.size)
-    }
-
-    private fun prepareWrite(
-        data: ByteArray,
-        offset: Int,
-    ): Map<String, Any> = mutableMapOf<String, Any>(
-        "data" to data,
-        "off" to offset
-    ).also {
+    // Returns the request for the chunk. Only the initial request is allocated; all other chunks
+    // use the same map, as their parameters differ only by the data and the offset.
+    private fun prepareWrite(offset: Int, size: Int): Map<String, Any> {
+        chunkData.limit(offset + size).position(offset)
         if (offset == 0) {
-            it["len"] = this.data.size // NOT data.size, as data is just a chunk of this.data
+            return mutableMapOf<String, Any>(
+                "data" to chunkData,
+                "off" to 0,
+                "len" to data.size
+            ).also { getAdditionalData(data, 0, it) }
         }
-        getAdditionalData(this.data, offset, it)
+        chunkOffset.set(offset)
+        return chunkRequest ?: mutableMapOf<String, Any>("data" to chunkData, "off" to chunkOffset)
+            .also {
+                getAdditionalData(data, offset, it)
+                chunkRequest = it
+            }
     }
 
     /**
@@ -433,6 +572,9 @@ abstract class Uploader(
     /**
      * This method should add additional parameters to the map.
      * The "data", "len" and "off" parameters are already added.
+     *
+     * For chunks other than the initial one, this method is called only once, with the offset of
+     * the first of them, as their additional parameters must not depend on the offset.
      */
     internal open fun getAdditionalData(
         data: ByteArray,
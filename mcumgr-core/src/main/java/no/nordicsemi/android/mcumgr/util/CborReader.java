@@ -0,0 +1,243 @@
+package no.nordicsemi.android.mcumgr.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A minimal, streaming CBOR reader.
+ * <p>
+ * The reader walks over the encoded data in place, without creating a tree of objects.
+ * Integer keys, tags and byte strings containing embedded CBOR are supported, which is not
+ * the case with the Jackson CBOR parser. Indefinite length items are not supported.
+ * <p>
+ * A byte string containing CBOR can be read without copying using {@link #readEmbedded()}.
+ */
+@SuppressWarnings("unused")
+public class CborReader {
+    public final static int MAJOR_TYPE_UNSIGNED = 0;
+    public final static int MAJOR_TYPE_NEGATIVE = 1;
+    public final static int MAJOR_TYPE_BYTE_STRING = 2;
+    public final static int MAJOR_TYPE_TEXT_STRING = 3;
+    public final static int MAJOR_TYPE_ARRAY = 4;
+    public final static int MAJOR_TYPE_MAP = 5;
+    public final static int MAJOR_TYPE_TAG = 6;
+    public final static int MAJOR_TYPE_SIMPLE = 7;
+
+    private final byte @NotNull [] data;
+    private final int limit;
+    private int position;
+
+    /**
+     * Creates a reader of the whole array.
+     *
+     * @param data the CBOR encoded data.
+     */
+    public CborReader(final byte @NotNull [] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Creates a reader of a part of the array.
+     *
+     * @param data   the array.
+     * @param offset the offset of the CBOR encoded data.
+     * @param length the length of the CBOR encoded data.
+     */
+    public CborReader(final byte @NotNull [] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException();
+        this.data = data;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Returns the current position in the array.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns whether there is more data to read.
+     */
+    public boolean hasNext() {
+        return position < limit;
+    }
+
+    /**
+     * Returns the major type of the next item, without consuming it.
+     *
+     * @return The major type.
+     * @throws IOException if there is no more data.
+     */
+    public int peekMajorType() throws IOException {
+        ensure(1);
+        return (data[position] & 0xFF) >>> 5;
+    }
+
+    /**
+     * Reads an unsigned or negative integer.
+     *
+     * @return The value.
+     * @throws IOException if the next item is not an integer.
+     */
+    public long readInt() throws IOException {
+        final int majorType = peekMajorType();
+        if (majorType == MAJOR_TYPE_UNSIGNED)
+            return readHeader(MAJOR_TYPE_UNSIGNED);
+        if (majorType == MAJOR_TYPE_NEGATIVE)
+            return -1 - readHeader(MAJOR_TYPE_NEGATIVE);
+        throw new IOException("Integer expected at " + position);
+    }
+
+    /**
+     * Reads the header of an array.
+     *
+     * @return The number of items.
+     * @throws IOException if the next item is not an array.
+     */
+    public int readArrayHeader() throws IOException {
+        return toLength(readHeader(MAJOR_TYPE_ARRAY));
+    }
+
+    /**
+     * Reads the header of a map.
+     *
+     * @return The number of key-value pairs.
+     * @throws IOException if the next item is not a map.
+     */
+    public int readMapHeader() throws IOException {
+        return toLength(readHeader(MAJOR_TYPE_MAP));
+    }
+
+    /**
+     * Reads a tag.
+     *
+     * @return The tag number.
+     * @throws IOException if the next item is not a tag.
+     */
+    public long readTag() throws IOException {
+        return readHeader(MAJOR_TYPE_TAG);
+    }
+
+    /**
+     * Reads a byte string.
+     *
+     * @return A copy of the byte string.
+     * @throws IOException if the next item is not a byte string.
+     */
+    public byte @NotNull [] readByteString() throws IOException {
+        final int length = toLength(readHeader(MAJOR_TYPE_BYTE_STRING));
+        ensure(length);
+        final byte[] value = new byte[length];
+        System.arraycopy(data, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads a byte string containing CBOR encoded data and returns a reader of that data.
+     * The data are not copied.
+     *
+     * @return The reader of the embedded data.
+     * @throws IOException if the next item is not a byte string.
+     */
+    @NotNull
+    public CborReader readEmbedded() throws IOException {
+        final int length = toLength(readHeader(MAJOR_TYPE_BYTE_STRING));
+        ensure(length);
+        final CborReader reader = new CborReader(data, position, length);
+        position += length;
+        return reader;
+    }
+
+    /**
+     * Reads a text string.
+     *
+     * @return The text.
+     * @throws IOException if the next item is not a text string.
+     */
+    @NotNull
+    public String readTextString() throws IOException {
+        final int length = toLength(readHeader(MAJOR_TYPE_TEXT_STRING));
+        ensure(length);
+        final String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Skips the next item, including all nested items.
+     *
+     * @throws IOException if the data are invalid.
+     */
+    public void skip() throws IOException {
+        final int majorType = peekMajorType();
+        final long value = readHeader(majorType);
+        switch (majorType) {
+            case MAJOR_TYPE_BYTE_STRING:
+            case MAJOR_TYPE_TEXT_STRING:
+                final int length = toLength(value);
+                ensure(length);
+                position += length;
+                break;
+            case MAJOR_TYPE_ARRAY:
+                for (long i = 0; i < value; i++)
+                    skip();
+                break;
+            case MAJOR_TYPE_MAP:
+                for (long i = 0; i < value * 2; i++)
+                    skip();
+                break;
+            case MAJOR_TYPE_TAG:
+                skip();
+                break;
+            default:
+                // Integers and simple values have no content.
+                break;
+        }
+    }
+
+    /**
+     * Reads the header of an item of the given major type and returns its argument.
+     */
+    private long readHeader(final int expectedMajorType) throws IOException {
+        ensure(1);
+        final int initial = data[position] & 0xFF;
+        final int majorType = initial >>> 5;
+        if (majorType != expectedMajorType)
+            throw new IOException("Unexpected major type " + majorType + " at " + position);
+        final int info = initial & 0x1F;
+        position++;
+        if (info < 24)
+            return info;
+        final int size;
+        switch (info) {
+            case 24: size = 1; break;
+            case 25: size = 2; break;
+            case 26: size = 4; break;
+            case 27: size = 8; break;
+            default: throw new IOException("Unsupported additional info " + info + " at " + (position - 1));
+        }
+        ensure(size);
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    private void ensure(final int length) throws IOException {
+        if (length > limit - position)
+            throw new IOException("Unexpected end of data at " + position);
+    }
+
+    private static int toLength(final long value) throws IOException {
+        if (value < 0 || value > Integer.MAX_VALUE)
+            throw new IOException("Invalid length: " + value);
+        return (int) value;
+    }
+}
@@ -0,0 +1,97 @@
+package no.nordicsemi.android.mcumgr
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrEchoResponse
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class McuMgrBatchTest {
+
+    @Test
+    fun `results are returned in order with at most window capacity in flight`() {
+        val executor = Executors.newFixedThreadPool(8)
+        val inFlight = AtomicInteger()
+        val maxInFlight = AtomicInteger()
+        val batch = McuMgrBatch(3)
+        repeat(20) { index ->
+            batch.add<McuMgrEchoResponse> { callback ->
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+                executor.execute {
+                    // Complete requests out of order.
+                    Thread.sleep((20 - index % 5 * 4).toLong())
+                    inFlight.decrementAndGet()
+                    if (index % 7 == 3) {
+                        callback.onError(McuMgrException("Error $index"))
+                    } else {
+                        callback.onResponse(McuMgrEchoResponse().apply { r = "$index" })
+                    }
+                }
+            }
+        }
+
+        val latch = CountDownLatch(1)
+        var results: List<McuMgrBatch.Result<*>> = emptyList()
+        batch.execute {
+            results = it
+            latch.countDown()
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(20, results.size)
+        results.forEachIndexed { index, result ->
+            if (index % 7 == 3) {
+                assertEquals("Error $index", result.error?.message)
+            } else {
+                assertEquals("$index", (result.response as McuMgrEchoResponse).r)
+            }
+        }
+        assertTrue(maxInFlight.get() <= 3)
+        executor.shutdown()
+    }
+
+    @Test
+    fun `listener reports results in order before completion`() {
+        val executor = Executors.newFixedThreadPool(4)
+        val batch = McuMgrBatch(4)
+        repeat(10) { index ->
+            batch.add<McuMgrEchoResponse> { callback ->
+                executor.execute {
+                    // Later requests complete first.
+                    Thread.sleep((10 - index % 4 * 3).toLong())
+                    callback.onResponse(McuMgrEchoResponse().apply { r = "$index" })
+                }
+            }
+        }
+
+        val latch = CountDownLatch(1)
+        val reported = mutableListOf<Int>()
+        var reportedOnCompletion = 0
+        batch.execute({ index, _ -> synchronized(reported) { reported.add(index) } }) {
+            reportedOnCompletion = synchronized(reported) { reported.size }
+            latch.countDown()
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals((0 until 10).toList(), reported)
+        assertEquals(10, reportedOnCompletion)
+        executor.shutdown()
+    }
+
+    @Test
+    fun `empty batch completes immediately`() {
+        var results: List<McuMgrBatch.Result<*>>? = null
+        McuMgrBatch(1).execute { results = it }
+        assertEquals(emptyList(), results)
+    }
+
+    @Test
+    fun `requests are sent one by one if the number of device buffers is not known`() {
+        assertEquals(1, McuMgrBatch(MockBleMcuMgrTransport()).windowCapacity)
+    }
+}
@@ -1,9 +1,17 @@
 package no.nordicsemi.android.mcumgr
 
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.image.ImageVerifier
 import no.nordicsemi.android.mcumgr.image.McuMgrImage
 import org.junit.Test
 import java.io.ByteArrayOutputStream
 import java.io.InputStream
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertFailsWith
+import kotlin.test.assertIs
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
 
 class McuMgrImageTest {
 
@@ -23,6 +31,56 @@ class McuMgrImageTest {
         McuMgrImage.fromBytes(imageData)
     }
 
+    @Test
+    fun `verify image hash success`() {
+        listOf("slinky-no-prot-tlv.img", "slinky-prot-tlv.img").forEach { name ->
+            val inputStream = this::class.java.classLoader?.getResourceAsStream(name)
+                ?: throw IllegalStateException("input stream is null")
+            McuMgrImage.fromBytes(toByteArray(inputStream)).verify()
+        }
+    }
+
+    @Test
+    fun `verify corrupted image fails`() {
+        val inputStream = this::class.java.classLoader?.getResourceAsStream("slinky-prot-tlv.img")
+            ?: throw IllegalStateException("input stream is null")
+        val imageData = toByteArray(inputStream)
+        val valid = McuMgrImage.fromBytes(imageData.copyOf())
+        // Corrupt a byte in the image body.
+        imageData[1000] = (imageData[1000] + 1).toByte()
+        val corrupted = McuMgrImage.fromBytes(imageData)
+
+        assertFailsWith<McuMgrException> { corrupted.verify() }
+        assertFailsWith<McuMgrException> {
+            ImageVerifier(listOf(valid, corrupted)).start().await()
+        }
+    }
+
+    @Test
+    fun `verification result is reported to completion callbacks`() {
+        val inputStream = this::class.java.classLoader?.getResourceAsStream("slinky-prot-tlv.img")
+            ?: throw IllegalStateException("input stream is null")
+        val imageData = toByteArray(inputStream)
+        val valid = McuMgrImage.fromBytes(imageData.copyOf())
+        imageData[1000] = (imageData[1000] + 1).toByte()
+        val corrupted = McuMgrImage.fromBytes(imageData)
+
+        fun verify(vararg images: McuMgrImage): McuMgrException? {
+            val result = CompletableFuture<McuMgrException?>()
+            ImageVerifier(images.toList()).start().whenComplete { result.complete(it) }
+            return result.get(10, TimeUnit.SECONDS)
+        }
+        assertNull(verify(valid))
+        assertIs<McuMgrException>(verify(valid, corrupted))
+
+        // A callback registered after the verification has finished is called immediately.
+        val verifier = ImageVerifier(listOf(valid)).start()
+        verifier.await()
+        var called = false
+        verifier.whenComplete { called = it == null }
+        assertTrue(called)
+    }
+
     private fun toByteArray(inputStream: InputStream): ByteArray {
         val os = ByteArrayOutputStream()
         val buffer = ByteArray(1024)
@@ -0,0 +1,91 @@
+package no.nordicsemi.android.mcumgr
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.image.SUITEnvelope
+import no.nordicsemi.android.mcumgr.image.SUITImage
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+/**
+ * The envelopes in test resources have the layout of envelopes generated for nRF54H20:
+ *
+ * - suit-app-v1.suit and suit-app-v2.suit are application envelopes with sequence numbers 1 and 2,
+ *   signed with ES256. The suit-install sequence, which fetches "file://app.bin", and suit-text
+ *   are severed.
+ * - suit-root.suit is a root envelope with sequence number 3. The severed suit-dependency-resolution
+ *   sequence fetches the integrated "#app" manifest, which is suit-app-v1.suit, and the severed
+ *   suit-payload-fetch sequence fetches "file://rad.bin".
+ */
+class SUITEnvelopeTest {
+
+    private fun resource(name: String): ByteArray =
+        this::class.java.classLoader!!.getResourceAsStream(name)!!.use { it.readBytes() }
+
+    private fun hex(value: String): ByteArray =
+        value.chunked(2).map { it.toInt(16).toByte() }.toByteArray()
+
+    @Test
+    fun `parse application envelope success`() {
+        val data = resource("suit-app-v1.suit")
+        val envelope = SUITEnvelope.parse(data)
+        val digest = hex("f8126ec72a3111a68a88d330bd47fb7c4658ff6bca7e555f42a71b2139ab6ae8")
+
+        assertEquals(-16, envelope.digestAlgorithm)
+        assertContentEquals(digest, envelope.digest)
+        assertEquals(1, envelope.sequenceNumber)
+        assertEquals(2, envelope.components.size)
+        // MEM, 2, 0x0E0AA000, 0x0007F800
+        assertEquals(
+            listOf("614d", "02", "1a0e0aa000", "1a0007f800"),
+            envelope.components[0].map { it.toHex() }
+        )
+        // CACHE_POOL, 0
+        assertEquals(listOf("6143", "00"), envelope.components[1].map { it.toHex() })
+        // The URI is set only in the severed suit-install sequence.
+        assertEquals(listOf("file://app.bin"), envelope.resourceUris)
+
+        assertContentEquals(digest, SUITImage.fromBytes(data).hash)
+    }
+
+    @Test
+    fun `envelopes of different builds have different digests`() {
+        val v1 = SUITEnvelope.parse(resource("suit-app-v1.suit"))
+        val v2 = SUITEnvelope.parse(resource("suit-app-v2.suit"))
+
+        assertEquals(2, v2.sequenceNumber)
+        assertContentEquals(
+            hex("7064233d13e58bfdf82d9b0b201fc544632f8529a8bf3e8a9ab6b016eb039b98"),
+            v2.digest
+        )
+        assertEquals(v1.resourceUris, v2.resourceUris)
+    }
+
+    @Test
+    fun `parse root envelope with integrated dependency`() {
+        val envelope = SUITEnvelope.parse(resource("suit-root.suit"))
+
+        assertContentEquals(
+            hex("df5c6d962d5348c8522c0336ff55c65bd621591fac752b9f98de92fd39183540"),
+            envelope.digest
+        )
+        assertEquals(3, envelope.sequenceNumber)
+        // INSTLD_MFST with the class ID of the application, and CAND_MFST.
+        assertEquals(
+            listOf("6149", "5008c1b59955e85fbc9e767bc29ce1b04d"),
+            envelope.components[0].map { it.toHex() }
+        )
+        assertEquals(listOf("6144", "00"), envelope.components[1].map { it.toHex() })
+        // "#app" is integrated, "file://app.bin" is fetched by the integrated application manifest.
+        assertEquals(listOf("file://rad.bin", "file://app.bin"), envelope.resourceUris)
+    }
+
+    @Test
+    fun `parse truncated envelope fails`() {
+        val data = resource("suit-root.suit")
+        assertFailsWith<McuMgrException> { SUITEnvelope.parse(data.copyOf(data.size / 2)) }
+    }
+
+    private fun ByteArray.toHex(): String = joinToString("") { "%02x".format(it) }
+}
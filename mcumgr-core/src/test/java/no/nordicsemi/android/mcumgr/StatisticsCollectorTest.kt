@@ -98,6 +98,26 @@ class StatisticsCollectorTest {
         assertEquals(group1Stats + group2Stats, result.statistics)
     }
 
+    @Test
+    fun `collect all reports each group as it arrives`() = runBlocking {
+        val resultLock = Channel<StatCollectionResult>(Channel.CONFLATED)
+        val statsHandler = MockStatsHandler(McuMgrScheme.BLE, allStats)
+        val statsManager = StatsManager(MockBleMcuMgrTransport(statsHandler))
+        val statsCollector = StatisticsCollector(statsManager, windowCapacity = 2)
+        val groups = mutableMapOf<String, Map<String, Long>>()
+        statsCollector.collectAll(onGroupCollected = { name, stats ->
+            synchronized(groups) { groups[name] = stats }
+        }) { result ->
+            resultLock.trySend(result)
+        }
+        val result = resultLock.receive()
+        require(result is StatCollectionResult.Success) {
+            "Expected stat collection result success, was $result"
+        }
+        assertEquals(allStats, result.statistics)
+        assertEquals(allStats, synchronized(groups) { groups.toMap() })
+    }
+
     @Test
     fun `collect all with filter success`() = runBlocking {
         val resultLock = Channel<StatCollectionResult>(Channel.CONFLATED)
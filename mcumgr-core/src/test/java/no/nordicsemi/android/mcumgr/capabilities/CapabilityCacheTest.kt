@@ -0,0 +1,134 @@
+package no.nordicsemi.android.mcumgr.capabilities
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.nio.file.Files
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class CapabilityCacheTest {
+
+    private fun capabilities() = DeviceCapabilities().apply {
+        firmwareHash = byteArrayOf(1, 2, 3, 4)
+        bufferSize = 2475
+        bufferCount = 4
+        mtu = 498
+        bootloader = "MCUboot"
+        bootloaderMode = 3
+        groups.addAll(listOf(0, 1))
+    }
+
+    @Test
+    fun `capabilities survive a new cache instance`() {
+        val directory = Files.createTempDirectory("capabilities").toFile()
+        CapabilityCache(directory).put("AA:BB", capabilities())
+
+        val cached = CapabilityCache(directory).get("AA:BB")
+
+        assertNotNull(cached)
+        assertContentEquals(byteArrayOf(1, 2, 3, 4), cached.firmwareHash)
+        assertEquals(2475, cached.bufferSize)
+        assertEquals(4, cached.bufferCount)
+        assertEquals("MCUboot", cached.bootloader)
+        assertEquals(3, cached.bootloaderMode)
+        assertEquals(setOf(0, 1), cached.groups)
+        assertNull(CapabilityCache(directory).get("CC:DD"))
+    }
+
+    @Test
+    fun `invalidate removes capabilities from memory and disk`() {
+        val directory = Files.createTempDirectory("capabilities").toFile()
+        val cache = CapabilityCache(directory)
+        cache.put("AA:BB", capabilities())
+
+        cache.invalidate("AA:BB")
+
+        assertNull(cache.get("AA:BB"))
+        assertNull(CapabilityCache(directory).get("AA:BB"))
+    }
+
+    private val echoHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 0
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val response = CBOR.toBytes(mapOf("r" to CBOR.getString(payload, "d")))
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    // The device resets before sending the response.
+    private val resetHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 5
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T = throw McuMgrException("Disconnected")
+    }
+
+    private val paramsHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 6
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val response = CBOR.toBytes(mapOf("buf_size" to 1024, "buf_count" to 2))
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    @Test
+    fun `observer adds groups and invalidates after a failed reset`() {
+        val transport = MockBleMcuMgrTransport(handlerOverrides = listOf(echoHandler, resetHandler))
+        val manager = DefaultManager(transport)
+        val cache = CapabilityCache()
+        cache.put("AA:BB", capabilities().apply { groups.clear() })
+        cache.observe("AA:BB", transport)
+
+        manager.echo("Hello")
+        assertEquals(setOf(0), cache.get("AA:BB")?.groups)
+
+        assertFailsWith<McuMgrException> { manager.reset() }
+        assertNull(cache.get("AA:BB"))
+    }
+
+    @Test
+    fun `revalidation reports the capabilities read from the device`() {
+        val transport = MockBleMcuMgrTransport(handlerOverrides = listOf(paramsHandler))
+        val cache = CapabilityCache()
+        cache.put("AA:BB", capabilities())
+
+        val result = CompletableFuture<DeviceCapabilities>()
+        cache.revalidate("AA:BB", transport, 247) { result.complete(it) }
+        val revalidated = result.get(10, TimeUnit.SECONDS)
+
+        assertEquals(1024, revalidated.bufferSize)
+        assertEquals(2, revalidated.bufferCount)
+        assertEquals(247, revalidated.mtu)
+        assertEquals(1024, cache.get("AA:BB")?.bufferSize)
+    }
+}
@@ -0,0 +1,148 @@
+package no.nordicsemi.android.mcumgr.crash
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.transfer.StreamDownloadCallback
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.Executor
+import kotlin.random.Random
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class CoreDumpDownloadTest {
+
+    private fun ByteArrayOutputStream.writeLe(value: Long, width: Int) {
+        for (i in 0 until width) write((value ushr (8 * i)).toInt() and 0xFF)
+    }
+
+    private val memory = ByteArray(300) { (it * 7).toByte() }
+    private val dump = ByteArrayOutputStream().apply {
+        writeLe(0x690c47c3, 4)
+        writeLe(0, 4)
+        // A memory entry.
+        write(2)
+        write(0)
+        writeLe(memory.size.toLong(), 2)
+        writeLe(0x20000000, 4)
+        write(memory)
+    }.toByteArray()
+
+    /**
+     * Returns chunks of at most 32 bytes of the core dump. Every third response,
+     * except the first one, contains only half of the chunk.
+     */
+    private inner class CoreLoadHandler : OverrideHandler {
+        override val groupId = 1
+        override val commandId = 4
+
+        val offsets = mutableListOf<Int>()
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val offset = CBOR.getObject(payload, "off", Int::class.javaObjectType)
+            offsets.add(offset)
+            var length = minOf(32, dump.size - offset)
+            if (offsets.size > 1 && offsets.size % 3 == 0) length /= 2
+            val response = mapOf(
+                "off" to offset,
+                "len" to dump.size,
+                "data" to dump.copyOfRange(offset, offset + length),
+            )
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), CBOR.toBytes(response), responseType)
+        }
+    }
+
+    /**
+     * Holds posted runnables, so that responses can be delivered in any order.
+     */
+    private class ManualExecutor : Executor {
+        val pending = mutableListOf<Runnable>()
+
+        override fun execute(command: Runnable) {
+            pending.add(command)
+        }
+    }
+
+    /**
+     * Stores memory entries in memory.
+     */
+    private class MemorySink : CoreDumpMemorySink {
+        val data = ByteArrayOutputStream()
+
+        override fun onRegion(address: Long, length: Int) {}
+
+        override fun write(data: ByteArray, offset: Int, length: Int) =
+            this.data.write(data, offset, length)
+    }
+
+    private class Callback : StreamDownloadCallback {
+        var completed = 0
+        var error: McuMgrException? = null
+        var progress = 0
+
+        override fun onDownloadProgressChanged(current: Int, total: Int, timestamp: Long) {
+            assertTrue(current >= progress)
+            progress = current
+        }
+
+        override fun onDownloadFailed(error: McuMgrException) {
+            this.error = error
+        }
+
+        override fun onDownloadCanceled() {}
+
+        override fun onDownloadCompleted() {
+            completed++
+        }
+    }
+
+    @Test
+    fun `short and out of order chunks are parsed in order`() {
+        val executor = ManualExecutor()
+        val coreLoad = CoreLoadHandler()
+        val transport = MockBleMcuMgrTransport(handlerOverrides = listOf(coreLoad), executor = executor)
+        val sink = MemorySink()
+        val parsed = ByteArrayOutputStream()
+        val parser = object : CoreDumpParser(null, sink) {
+            override fun parse(data: ByteArray, offset: Int, length: Int) {
+                parsed.write(data, offset, length)
+                super.parse(data, offset, length)
+            }
+        }
+        val callback = Callback()
+
+        CoreDumpDownload(ImageManager(transport), parser, 4).start(callback)
+
+        // Deliver responses of the requests in flight in random order.
+        val random = Random(42)
+        var maxInFlight = 0
+        while (executor.pending.isNotEmpty()) {
+            maxInFlight = maxOf(maxInFlight, executor.pending.size)
+            executor.pending.removeAt(random.nextInt(executor.pending.size)).run()
+        }
+
+        assertNull(callback.error)
+        assertEquals(1, callback.completed)
+        assertEquals(dump.size, callback.progress)
+        assertEquals(4, maxInFlight)
+        assertContentEquals(dump, parsed.toByteArray())
+        assertContentEquals(memory, sink.data.toByteArray())
+        // Some chunks were requested again, as the device returned less data than requested.
+        assertTrue(coreLoad.offsets.size > (dump.size + 31) / 32)
+        assertEquals(coreLoad.offsets.size, coreLoad.offsets.distinct().size)
+    }
+}
@@ -0,0 +1,66 @@
+package no.nordicsemi.android.mcumgr.crash
+
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class CoreDumpParserTest {
+
+    private fun ByteArrayOutputStream.writeLe(value: Long, width: Int) {
+        for (i in 0 until width) write((value ushr (8 * i)).toInt() and 0xFF)
+    }
+
+    private fun ByteArrayOutputStream.writeTlv(type: Int, off: Long, value: ByteArray) {
+        write(type)
+        write(0)
+        writeLe(value.size.toLong(), 2)
+        writeLe(off, 4)
+        write(value)
+    }
+
+    @Test
+    fun `parser reads chunks and stores memory in file`() {
+        val hash = byteArrayOf(1, 2, 3, 4)
+        val registers = ByteArray(16) { it.toByte() }
+        val memory = ByteArray(100) { (it * 3).toByte() }
+        val dump = ByteArrayOutputStream().apply {
+            writeLe(0x690c47c3, 4)
+            writeLe(0, 4)
+            writeTlv(1, 0, hash)
+            writeTlv(3, 0, registers)
+            writeTlv(2, 0x20000000, memory)
+        }.toByteArray()
+
+        val file = File.createTempFile("core", ".bin")
+        try {
+            CoreDumpMemoryFile(file).use { sink ->
+                val entries = mutableListOf<Int>()
+                val parser = CoreDumpParser(object : CoreDumpParser.Listener {
+                    override fun onHeader(header: CoreDumpHeader) {}
+                    override fun onEntry(entry: CoreDumpTlvEntry) {
+                        entries.add(entry.type)
+                    }
+                }, sink)
+
+                // Chunks do not align with entries.
+                dump.toList().chunked(7).forEachIndexed { index, chunk ->
+                    parser.parse(chunk.toByteArray())
+                    if (index == 1) assertNull(parser.registers)
+                }
+                parser.finish()
+
+                assertEquals(listOf(1, 3), entries)
+                assertContentEquals(hash, parser.imageHash)
+                assertContentEquals(registers, parser.registers)
+                assertEquals(1, sink.regions.size)
+                assertContentEquals(memory.copyOfRange(10, 20), sink.read(0x2000000A, 10))
+                assertNull(sink.read(0x20000060, 10))
+            }
+        } finally {
+            file.delete()
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package no.nordicsemi.android.mcumgr.dfu
+
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class DfuPackageTest {
+
+    private fun createPackage(manifest: String, files: Map<String, ByteArray>): File {
+        val file = File.createTempFile("dfu", ".zip")
+        file.deleteOnExit()
+        ZipOutputStream(file.outputStream()).use { zip ->
+            zip.putNextEntry(ZipEntry("manifest.json"))
+            zip.write(manifest.toByteArray())
+            files.forEach { (name, data) ->
+                zip.putNextEntry(ZipEntry(name))
+                zip.write(data)
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun `cache images and resources are read from the package`() {
+        val cache = ByteArray(100_000) { it.toByte() }
+        val envelope = ByteArray(300) { 0x5A }
+        val file = createPackage(
+            """
+            {
+              "format-version": 1,
+              "files": [
+                { "type": "suit-envelope", "file": "root.suit", "size": 300 },
+                { "type": "cache", "file": "cache.bin", "size": 100000, "partition": 2 }
+              ]
+            }
+            """.trimIndent(),
+            mapOf("root.suit" to envelope, "cache.bin" to cache)
+        )
+
+        DfuPackage(file).use { dfu ->
+            assertEquals(1, dfu.formatVersion)
+            assertEquals(2, dfu.entries.size)
+            assertContentEquals(envelope, dfu.suitEnvelope)
+
+            val images = assertNotNull(dfu.cacheBinaries).images
+            assertEquals(1, images.size)
+            assertEquals(2, images[0].partitionId)
+            assertContentEquals(cache, images[0].image)
+
+            assertContentEquals(cache, dfu.getResource("cache.bin"))
+            assertNull(dfu.getResource("missing.bin"))
+        }
+    }
+
+    @Test
+    fun `files of a different size and missing files are rejected`() {
+        val truncated = createPackage(
+            """{ "files": [ { "type": "cache", "file": "cache.bin", "size": 200 } ] }""",
+            mapOf("cache.bin" to ByteArray(100))
+        )
+        assertFailsWith<IOException> { DfuPackage(truncated) }
+
+        val padded = createPackage(
+            """{ "files": [ { "type": "cache", "file": "cache.bin", "size": 200 } ] }""",
+            mapOf("cache.bin" to ByteArray(256))
+        )
+        assertFailsWith<IOException> { DfuPackage(padded) }
+
+        val missing = createPackage(
+            """{ "files": [ { "type": "cache", "file": "cache.bin", "size": 200 } ] }""",
+            emptyMap()
+        )
+        assertFailsWith<IOException> { DfuPackage(missing) }
+    }
+}
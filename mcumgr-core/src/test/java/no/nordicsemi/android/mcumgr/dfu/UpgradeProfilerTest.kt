@@ -0,0 +1,176 @@
+package no.nordicsemi.android.mcumgr.dfu
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.transfer.PartitionTiming
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class UpgradeProfilerTest {
+
+    private val echoHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 0
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val echo = CBOR.getString(payload, "d")
+            val response = CBOR.toBytes(mapOf("r" to echo))
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    // The device resets without sending a response.
+    private val resetHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 5
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T = throw McuMgrTimeoutException()
+    }
+
+    private val transport = MockBleMcuMgrTransport(handlerOverrides = listOf(echoHandler, resetHandler))
+    private val manager = DefaultManager(transport)
+
+    @Test
+    fun `requests and connection events are attributed to phases`() {
+        val profiler = UpgradeProfiler()
+        profiler.start(transport)
+
+        // Requests sent before the first task are not recorded.
+        manager.echo("ignored")
+        profiler.onTaskStarted("Validate", "VALIDATE")
+        manager.echo("a")
+        manager.echo("b")
+        profiler.onTaskStarted("Reset", "RESET")
+        assertFailsWith<McuMgrTimeoutException> { manager.reset() }
+        transport.simulateDisconnected()
+        Thread.sleep(20)
+        transport.simulateConnected()
+        val report = profiler.finish(UpgradeReport.Outcome.COMPLETED, null)
+
+        assertEquals(listOf("Validate", "Reset"), report.phases.map { it.task })
+        val (validate, reset) = report.phases
+        assertEquals(2, validate.requestCount)
+        assertEquals(0, validate.failedRequestCount)
+        assertEquals(0, validate.disconnectionCount)
+        assertEquals(1, reset.requestCount)
+        assertEquals(1, reset.failedRequestCount)
+        assertEquals(1, reset.disconnectionCount)
+        assertTrue(reset.disconnectedTime >= 20)
+        assertEquals(mapOf("VALIDATE" to validate.duration, "RESET" to reset.duration), report.timeByState)
+
+        assertEquals(
+            listOf(
+                UpgradeReport.Event.Type.REQUEST,
+                UpgradeReport.Event.Type.REQUEST,
+                UpgradeReport.Event.Type.REQUEST,
+                UpgradeReport.Event.Type.DISCONNECTED,
+                UpgradeReport.Event.Type.CONNECTED,
+            ),
+            report.events.map { it.type }
+        )
+        val failed = report.events[2]
+        assertEquals(0, failed.groupId)
+        assertEquals(5, failed.commandId)
+        assertTrue(failed.failed)
+        assertEquals(-1, report.events[3].groupId)
+        assertEquals(0, report.droppedEventCount)
+    }
+
+    @Test
+    fun `disconnected time is split between phases`() {
+        val profiler = UpgradeProfiler()
+        profiler.start(transport)
+
+        profiler.onTaskStarted("Reset", "RESET")
+        transport.simulateDisconnected()
+        Thread.sleep(20)
+        profiler.onTaskStarted("Confirm", "CONFIRM")
+        Thread.sleep(20)
+        transport.simulateConnected()
+        val report = profiler.finish(UpgradeReport.Outcome.COMPLETED, null)
+
+        val (reset, confirm) = report.phases
+        assertEquals(1, reset.disconnectionCount)
+        assertEquals(0, confirm.disconnectionCount)
+        assertTrue(reset.disconnectedTime >= 20)
+        assertTrue(confirm.disconnectedTime >= 20)
+        assertEquals(reset.disconnectedTime + confirm.disconnectedTime, report.disconnectedTime)
+    }
+
+    @Test
+    fun `measurements of tasks are added to the current phase`() {
+        val profiler = UpgradeProfiler()
+        profiler.start(transport)
+
+        profiler.onTaskStarted("Reset", "RESET")
+        assertSame(profiler, UpgradeProfiler.forTransport(transport))
+        UpgradeProfiler.forTransport(transport)?.setSwapTime(1500)
+        profiler.onTaskStarted("PollTask", "PROCESSING")
+        UpgradeProfiler.forTransport(transport)?.setPollStatistics(4, 100, 40)
+        UpgradeProfiler.forTransport(transport)?.setPartitionTimings(listOf(PartitionTiming(2, 1000, 0, 80, 100)))
+        val report = profiler.finish(UpgradeReport.Outcome.COMPLETED, null)
+        assertNull(UpgradeProfiler.forTransport(transport))
+
+        val (reset, poll) = report.phases
+        assertEquals(1500, reset.swapTime)
+        assertEquals(0, reset.pollCount)
+        assertEquals(-1, poll.swapTime)
+        assertEquals(4, poll.pollCount)
+        assertEquals(25, poll.averagePollTime)
+        assertEquals(40, poll.maxPollTime)
+        assertEquals(emptyList(), reset.partitionTimings)
+        assertEquals(100, poll.partitionTimings.single().duration)
+    }
+
+    @Test
+    fun `oldest events are dropped when the limit is reached`() {
+        val profiler = UpgradeProfiler(2)
+        profiler.start(transport)
+
+        profiler.onTaskStarted("Upload", "UPLOAD")
+        repeat(5) { manager.echo("$it") }
+        val report = profiler.finish(UpgradeReport.Outcome.FAILED, McuMgrTimeoutException())
+
+        assertEquals(5, report.phases[0].requestCount)
+        assertEquals(2, report.events.size)
+        assertEquals(3, report.droppedEventCount)
+        assertTrue(report.events[0].timestamp <= report.events[1].timestamp)
+    }
+
+    @Test
+    fun `requests are not recorded after the upgrade has finished`() {
+        val profiler = UpgradeProfiler()
+        profiler.start(transport)
+        profiler.onTaskStarted("Validate", "VALIDATE")
+        profiler.finish(UpgradeReport.Outcome.CANCELLED, null)
+
+        // The profiler is no longer registered as an observer.
+        manager.echo("after")
+        transport.simulateDisconnected()
+
+        profiler.start(transport)
+        val report = profiler.finish(UpgradeReport.Outcome.CANCELLED, null)
+        assertEquals(0, report.phases.size)
+        assertEquals(0, report.events.size)
+    }
+}
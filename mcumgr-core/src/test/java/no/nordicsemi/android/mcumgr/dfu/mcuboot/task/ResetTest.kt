@@ -0,0 +1,201 @@
+package no.nordicsemi.android.mcumgr.dfu.mcuboot.task
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.dfu.UpgradeProfiler
+import no.nordicsemi.android.mcumgr.dfu.UpgradeReport
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.Settings
+import no.nordicsemi.android.mcumgr.dfu.mcuboot.FirmwareUpgradeManager.State
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.exception.McuMgrTimeoutException
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.task.Task
+import no.nordicsemi.android.mcumgr.task.TaskManager
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.util.concurrent.Executor
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class ResetTest {
+
+    /**
+     * Runs posted runnables on the test thread, in order of their due time, advancing the time.
+     */
+    private class FakeScheduler : Reset.Scheduler {
+        var time = 0L
+        val delays = mutableListOf<Long>()
+        private val pending = mutableListOf<Pair<Long, Runnable>>()
+
+        val isIdle: Boolean
+            get() = pending.isEmpty()
+
+        override fun now() = time
+
+        override fun post(runnable: Runnable, delay: Long) {
+            delays.add(delay)
+            pending.add(time + delay to runnable)
+        }
+
+        override fun cancel() = pending.clear()
+
+        fun runNext(): Boolean {
+            val next = pending.minByOrNull { it.first } ?: return false
+            pending.remove(next)
+            time = next.first
+            next.second.run()
+            return true
+        }
+    }
+
+    private inner class Performer(private val settings: Settings) : TaskManager<Settings, State> {
+        var completed = 0
+        var error: McuMgrException? = null
+
+        override fun getTransport() = transport
+        override fun getSettings() = settings
+        override fun enqueue(task: Task<Settings, State>) {}
+        override fun onTaskProgressChanged(task: Task<Settings, State>, current: Int, total: Int, timestamp: Long) {}
+        override fun onTaskCompleted(task: Task<Settings, State>) { completed++ }
+        override fun onTaskFailed(task: Task<Settings, State>, error: McuMgrException) { this.error = error }
+    }
+
+    /** Number of probes the device does not respond to. */
+    private var unavailableProbes = 0
+    private var probes = 0
+    private var disconnectOnReset = true
+
+    // The device disconnects right after receiving the Reset command.
+    private val resetHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 5
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            if (disconnectOnReset) {
+                transport.simulateDisconnected()
+            }
+            val response = CBOR.toBytes(emptyMap<String, Any>())
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    private val echoHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 0
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            if (++probes <= unavailableProbes) {
+                throw McuMgrTimeoutException()
+            }
+            val response = CBOR.toBytes(mapOf("r" to CBOR.getString(payload, "d")))
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    // Callbacks are called on the test thread.
+    private val transport = MockBleMcuMgrTransport(
+        handlerOverrides = listOf(resetHandler, echoHandler),
+        executor = Executor { it.run() },
+    )
+
+    private fun settings(estimatedSwapTime: Int) =
+        Settings.Builder().setEstimatedSwapTime(estimatedSwapTime).build()
+
+    @Test
+    fun `device is probed with increasing delays until it responds`() {
+        unavailableProbes = 3
+        val scheduler = FakeScheduler()
+        val performer = Performer(settings(60_000))
+        val profiler = UpgradeProfiler().apply {
+            start(transport)
+            onTaskStarted("Reset", State.RESET.name)
+        }
+
+        Reset(false, scheduler).start(performer)
+        while (performer.completed == 0 && scheduler.runNext()) {
+            // Run until completed.
+        }
+
+        assertEquals(1, performer.completed)
+        assertNull(performer.error)
+        assertEquals(4, probes)
+        // The upper bound, then the probes, delayed according to the Fibonacci sequence.
+        assertEquals(listOf(60_000L, 1000L, 1000L, 2000L, 3000L), scheduler.delays.filter { it > 0 })
+        assertEquals(7000L, scheduler.time)
+        // The upper bound has been removed.
+        assertTrue(scheduler.isIdle)
+
+        val report = profiler.finish(UpgradeReport.Outcome.COMPLETED, null)
+        assertEquals(7000L, report.phases[0].swapTime)
+    }
+
+    @Test
+    fun `task completes after estimated swap time if the device does not respond`() {
+        unavailableProbes = Int.MAX_VALUE
+        val scheduler = FakeScheduler()
+        val performer = Performer(settings(10_000))
+        val profiler = UpgradeProfiler().apply {
+            start(transport)
+            onTaskStarted("Reset", State.RESET.name)
+        }
+
+        Reset(false, scheduler).start(performer)
+        while (scheduler.runNext()) {
+            // Run until all probes are done.
+        }
+
+        assertEquals(1, performer.completed)
+        assertEquals(10_000L, scheduler.time)
+        // Probes at 1, 2, 4 and 7 seconds. The next one would be after the estimated swap time.
+        assertEquals(4, probes)
+
+        val report = profiler.finish(UpgradeReport.Outcome.COMPLETED, null)
+        assertEquals(-1L, report.phases[0].swapTime)
+    }
+
+    @Test
+    fun `cancelled task stops probing`() {
+        unavailableProbes = Int.MAX_VALUE
+        val scheduler = FakeScheduler()
+        val performer = Performer(settings(60_000))
+
+        val reset = Reset(false, scheduler)
+        reset.start(performer)
+        scheduler.runNext()
+        reset.cancel()
+
+        assertTrue(scheduler.isIdle)
+        assertEquals(1, probes)
+        assertEquals(0, performer.completed)
+    }
+
+    @Test
+    fun `cancelled task ignores the disconnection`() {
+        disconnectOnReset = false
+        val scheduler = FakeScheduler()
+        val performer = Performer(settings(60_000))
+
+        val reset = Reset(false, scheduler)
+        reset.start(performer)
+        reset.cancel()
+        // The device disconnects after the task was cancelled.
+        transport.simulateDisconnected()
+
+        assertTrue(scheduler.isIdle)
+        assertEquals(0, probes)
+        assertEquals(0, performer.completed)
+    }
+}
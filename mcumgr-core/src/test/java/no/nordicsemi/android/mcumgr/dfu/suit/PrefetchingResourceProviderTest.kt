@@ -0,0 +1,107 @@
+package no.nordicsemi.android.mcumgr.dfu.suit
+
+import org.junit.Test
+import java.io.File
+import java.net.URI
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class PrefetchingResourceProviderTest {
+
+    @Test
+    fun `prefetched resources are served from the cache`() {
+        val tasks = mutableListOf<Runnable>()
+        val executor = Executor { tasks.add(it) }
+        val loads = mutableListOf<URI>()
+        val provider = PrefetchingResourceProvider(
+            { uri -> loads.add(uri); ByteArray(10) { 1 } },
+            ResourceCache(1024),
+            executor
+        )
+        val uri = URI("file://app.bin")
+
+        provider.prefetch(uri)
+        var provided: ByteArray? = null
+        val callback = object : SUITUpgradeManager.ResourceCallback {
+            override fun provide(data: ByteArray) { provided = data }
+            override fun error(e: Exception) = throw e
+        }
+        // Requested while being fetched.
+        provider.onResourceRequired(uri, callback)
+        assertNull(provided)
+        tasks.forEach { it.run() }
+        assertNotNull(provided)
+
+        // Requested again, served from the cache.
+        provided = null
+        provider.onResourceRequired(uri, callback)
+        assertContentEquals(ByteArray(10) { 1 }, provided)
+        assertEquals(1, loads.size)
+    }
+
+    @Test
+    fun `default executor does not keep the process alive`() {
+        val daemon = CompletableFuture<Boolean>()
+        val provider = PrefetchingResourceProvider(
+            { daemon.complete(Thread.currentThread().isDaemon); ByteArray(1) },
+            ResourceCache(1024)
+        )
+        provider.prefetch(URI("file://app.bin"))
+        assertTrue(daemon.get(10, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `resources are cached for the envelope referencing them`() {
+        val v1 = resource("suit-app-v1.suit")
+        val v2 = resource("suit-app-v2.suit")
+        val uri = URI("file://app.bin")
+        val directory = File.createTempFile("resources", "").apply { delete() }
+        try {
+            // Each build of the package contains a different app.bin.
+            var build = 1
+            val loads = mutableListOf<Int>()
+            val loader = PrefetchingResourceProvider.ResourceLoader {
+                loads.add(build)
+                ByteArray(10) { build.toByte() }
+            }
+            val executor = Executor { it.run() }
+            val provider = PrefetchingResourceProvider(loader, ResourceCache(1024, directory, 1024), executor)
+
+            provider.prefetch(v1)
+            assertEquals(listOf(1), loads)
+            assertContentEquals(ByteArray(10) { 1 }, provider.request(uri))
+
+            // A different envelope using the same URI does not get the cached resource.
+            build = 2
+            provider.prefetch(v2)
+            assertEquals(listOf(1, 2), loads)
+            assertContentEquals(ByteArray(10) { 2 }, provider.request(uri))
+
+            // After a restart, resources are read from disk for the matching envelope.
+            val restarted = PrefetchingResourceProvider(loader, ResourceCache(1024, directory, 1024), executor)
+            restarted.prefetch(v1)
+            assertContentEquals(ByteArray(10) { 1 }, restarted.request(uri))
+            assertEquals(listOf(1, 2), loads)
+        } finally {
+            directory.deleteRecursively()
+        }
+    }
+
+    private fun resource(name: String): ByteArray =
+        this::class.java.classLoader!!.getResourceAsStream(name)!!.use { it.readBytes() }
+
+    private fun PrefetchingResourceProvider.request(uri: URI): ByteArray? {
+        var provided: ByteArray? = null
+        onResourceRequired(uri, object : SUITUpgradeManager.ResourceCallback {
+            override fun provide(data: ByteArray) { provided = data }
+            override fun error(e: Exception) = throw e
+        })
+        return provided
+    }
+}
@@ -0,0 +1,54 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrMpStatResponse
+import no.nordicsemi.android.mcumgr.response.dflt.McuMgrTaskStatResponse
+import org.junit.Test
+import java.io.StringWriter
+import kotlin.test.assertEquals
+
+class DeviceProfilerTest {
+
+    private fun task(runtime: Long, cswcnt: Long, stkuse: Long) =
+        McuMgrTaskStatResponse.TaskStat().apply {
+            this.runtime = runtime
+            this.cswcnt = cswcnt
+            this.stkuse = stkuse
+            this.stksiz = 1024
+        }
+
+    private fun pool(nfree: Int) = McuMgrMpStatResponse.MpStat().apply {
+        this.nblks = 8
+        this.nfree = nfree
+    }
+
+    @Test
+    fun `profiler calculates cpu share and rates`() {
+        val profiler = DeviceProfiler(DefaultManager(MockBleMcuMgrTransport()), capacity = 2)
+        profiler.onSample(0, mapOf("main" to task(0, 0, 100), "idle" to task(0, 0, 64)), emptyMap())
+        profiler.onSample(1000, mapOf("main" to task(250, 10, 200), "idle" to task(750, 2, 64)),
+            mapOf("net" to pool(6)))
+        profiler.onSample(2000, mapOf("main" to task(750, 30, 300), "idle" to task(1250, 4, 64)),
+            mapOf("net" to pool(2)))
+        // The first sample is the reference only.
+        profiler.onSample(3000, mapOf("main" to task(1750, 30, 300), "idle" to task(1250, 4, 64)),
+            mapOf("net" to pool(2)))
+
+        assertEquals(2, profiler.size)
+        assertEquals(2000, profiler.timestamp(0))
+        assertEquals(50f, profiler.cpuUsage("main", 0))
+        assertEquals(100f, profiler.cpuUsage("main", 1))
+        assertEquals(20, profiler.contextSwitchRate("main", 0))
+        assertEquals(300, profiler.stackUsage("main", 1))
+        assertEquals(6, profiler.poolUsage("net", 0))
+
+        val writer = StringWriter()
+        profiler.writeChromeTrace(writer)
+        val events = ObjectMapper().readTree(writer.toString())["traceEvents"]
+        assertEquals(6, events.size())
+        assertEquals("C", events[0]["ph"].asText())
+        assertEquals(2_000_000, events[0]["ts"].asLong())
+    }
+}
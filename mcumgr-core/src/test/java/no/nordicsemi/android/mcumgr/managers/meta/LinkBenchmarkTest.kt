@@ -0,0 +1,66 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.managers.DefaultManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class LinkBenchmarkTest {
+
+    private val echoHandler = object : OverrideHandler {
+        override val groupId = 0
+        override val commandId = 0
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val echo = CBOR.getString(payload, "d")
+            val response = CBOR.toBytes(mapOf("r" to echo))
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), response, responseType)
+        }
+    }
+
+    @Test
+    fun `benchmark runs on simulated transport`() = runBlocking {
+        val transport = MockBleMcuMgrTransport(handlerOverrides = listOf(echoHandler))
+        val benchmark = LinkBenchmark(
+            DefaultManager(transport),
+            samples = 10,
+            throughputRequests = 20,
+            windowCapacities = listOf(1, 4),
+            payloadSizes = listOf(64, 8),
+        )
+        var applied = 0
+        val report = benchmark.run(listOf(
+            LinkConfiguration("a") { applied++ },
+            LinkConfiguration("b") { applied++ },
+        ))
+
+        assertEquals(2, applied)
+        assertEquals(64, report.maxPayloadSize)
+        assertEquals(listOf(8, 64), report.configurations[0].rtt.map { it.payloadSize })
+        report.configurations.flatMap { it.rtt }.forEach {
+            assertEquals(10, it.samples)
+            assertTrue(it.p50 <= it.p99)
+        }
+        report.configurations.flatMap { it.throughput }.forEach {
+            assertEquals(0, it.failures)
+        }
+
+        val json = ObjectMapper().readTree(report.toJson())
+        assertEquals("b", json["configurations"][1]["name"].asText())
+        assertEquals(4, json["configurations"][1]["throughput"][1]["windowCapacity"].asInt())
+    }
+}
@@ -0,0 +1,41 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+import org.junit.Test
+import java.io.File
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class LogBufferTest {
+
+    private fun entry(index: Long) = McuMgrLogResponse.Entry().apply {
+        this.index = index
+        this.msg = "Entry $index".toByteArray()
+        this.type = McuMgrLogResponse.Entry.LOG_ENTRY_TYPE_STRING
+    }
+
+    @Test
+    fun `buffer spills entries to file above threshold`() {
+        val file = File.createTempFile("log", ".cbor")
+        try {
+            LogBuffer(file, memoryThreshold = 200).use { buffer ->
+                buffer.add(entry(0))
+                buffer.add(entry(1))
+                assertFalse(buffer.isSpilled)
+
+                (2L..9L).forEach { buffer.add(entry(it)) }
+                assertTrue(buffer.isSpilled)
+                assertEquals(10, buffer.size)
+                assertEquals(10, buffer.nextIndex)
+
+                val indexes = mutableListOf<Long>()
+                buffer.forEach { indexes.add(it.index) }
+                assertContentEquals((0L..9L).toList(), indexes)
+            }
+        } finally {
+            file.delete()
+        }
+    }
+}
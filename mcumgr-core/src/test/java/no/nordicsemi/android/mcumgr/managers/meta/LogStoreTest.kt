@@ -0,0 +1,44 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.response.log.McuMgrLogResponse
+import org.junit.Test
+import java.nio.file.Files
+import kotlin.test.assertEquals
+
+class LogStoreTest {
+
+    private fun entry(index: Long, level: Int, module: Int) = McuMgrLogResponse.Entry().apply {
+        this.index = index
+        this.ts = index * 1000
+        this.level = level
+        this.module = module
+        this.msg = "Entry $index".toByteArray()
+        this.type = McuMgrLogResponse.Entry.LOG_ENTRY_TYPE_STRING
+    }
+
+    @Test
+    fun `store appends new entries and queries the index`() {
+        val directory = Files.createTempDirectory("logs").toFile()
+        try {
+            val store = LogStore(directory, segmentSize = 100)
+            val entries = (0L until 10L).map { entry(it, (it % 4).toInt(), (it % 2).toInt()) }
+            assertEquals(6, store.append("device", "log", entries.take(6)))
+            // Entries already stored are skipped.
+            assertEquals(4, store.append("device", "log", entries.drop(4)))
+            assertEquals(10, store.nextIndex("device", "log"))
+
+            val errors = store.query("device", LogQuery(minLevel = McuMgrLogResponse.Entry.LOG_LEVEL_WARN))
+            assertEquals(listOf(2L, 3L, 6L, 7L), errors.map { it.entry.index })
+
+            // The index is rebuilt from the segment files.
+            val reopened = LogStore(directory, segmentSize = 100)
+            assertEquals(10, reopened.size("device"))
+            val range = reopened.query("device", LogQuery(from = 3000, to = 8000, modules = setOf(1)))
+            assertEquals(listOf(3L, 5L, 7L), range.map { it.entry.index })
+            assertEquals("Entry 5", range[1].entry.getMessageString())
+            assertEquals(0, reopened.size("other"))
+        } finally {
+            directory.deleteRecursively()
+        }
+    }
+}
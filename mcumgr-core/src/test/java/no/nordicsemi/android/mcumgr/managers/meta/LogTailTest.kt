@@ -0,0 +1,156 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.LogManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockErrorResponse
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class LogTailTest {
+
+    /**
+     * A device log returning up to 3 entries with an index equal or greater than requested.
+     */
+    private class ShowHandler : OverrideHandler {
+        override val groupId = 4
+        override val commandId = 0
+
+        /** Indexes of entries in the log. */
+        val log = mutableListOf<Long>()
+        /** Requested indexes, in order. */
+        val requests = mutableListOf<Long>()
+        /** The index from which requests fail, or null. */
+        var failFrom: Long? = null
+        /** Whether requests fail with an error code instead of an exception. */
+        var errorCode = false
+        /** Called when the end of the log has been reached. */
+        var onEnd: () -> Unit = {}
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            synchronized(this) {
+                val index = CBOR.getObject(payload, "index", Long::class.javaObjectType)
+                requests.add(index)
+                failFrom?.let { failFrom ->
+                    if (index >= failFrom) {
+                        if (errorCode) {
+                            return buildMockErrorResponse(McuMgrScheme.BLE, McuMgrErrorCode.BAD_STATE, header.toResponse(), responseType)
+                        }
+                        throw McuMgrException("Read failed")
+                    }
+                }
+                val entries = log.filter { it >= index }.take(3).map { i ->
+                    mapOf(
+                        "msg" to "Entry $i".toByteArray(),
+                        "ts" to i * 1000,
+                        "level" to 1,
+                        "index" to i,
+                        "module" to 0,
+                        "type" to "str",
+                    )
+                }
+                if (entries.isEmpty()) onEnd()
+                val response = mapOf(
+                    "logs" to listOf(mapOf("name" to "log", "type" to 1, "entries" to entries))
+                )
+                return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), CBOR.toBytes(response), responseType)
+            }
+        }
+    }
+
+    private val device = ShowHandler()
+    private val tail = LogTail(LogManager(MockBleMcuMgrTransport(handlerOverrides = listOf(device))), pollInterval = 10)
+
+    @Test
+    fun `entries are read page by page from the next index`() = runBlocking {
+        device.log.addAll(listOf(0, 1, 2, 5, 6, 7, 8))
+
+        val entries = withTimeout(5_000) { tail.entries("log", fromIndex = 1).toList() }
+
+        assertEquals(listOf<Long>(1, 2, 5, 6, 7, 8), entries.map { it.index })
+        assertEquals("Entry 5", entries[2].messageString)
+        // Each page starts after the last entry of the previous one; the last page is empty.
+        assertEquals(listOf<Long>(1, 6, 9), device.requests)
+    }
+
+    @Test
+    fun `at most one page is read ahead of the collector`() = runBlocking {
+        device.log.addAll(0L until 30L)
+        val gate = CompletableDeferred<Unit>()
+        val received = mutableListOf<Long>()
+
+        val job = launch {
+            tail.entries("log").collect {
+                if (it.index == 0L) gate.await()
+                received.add(it.index)
+            }
+        }
+        // The collector is suspended on the first entry.
+        delay(200)
+        assertEquals(2, synchronized(device) { device.requests.size })
+
+        gate.complete(Unit)
+        withTimeout(5_000) { job.join() }
+        assertEquals((0L until 30L).toList(), received)
+        // 10 pages and an empty one.
+        assertEquals(11, device.requests.size)
+    }
+
+    @Test
+    fun `new entries are polled in follow mode`() = runBlocking {
+        device.log.addAll(listOf(0, 1, 2))
+        var polls = 0
+        device.onEnd = {
+            // New entries are logged after the end of the log has been reached twice.
+            if (++polls == 2) device.log.addAll(listOf(3, 4))
+        }
+
+        val entries = withTimeout(5_000) { tail.entries("log", follow = true).take(5).toList() }
+
+        assertEquals(listOf<Long>(0, 1, 2, 3, 4), entries.map { it.index })
+        // The next page may have been requested before the collection was cancelled.
+        assertEquals(listOf<Long>(0, 3, 3, 3), synchronized(device) { device.requests.take(4) })
+    }
+
+    @Test
+    fun `failed request completes the flow with the error`() = runBlocking {
+        device.log.addAll(0L until 10L)
+        device.failFrom = 3
+        val received = mutableListOf<Long>()
+
+        assertFailsWith<McuMgrException> {
+            withTimeout(5_000) { tail.entries("log").collect { received.add(it.index) } }
+        }
+        assertEquals(listOf<Long>(0, 1, 2), received)
+
+        // An error code returned by the device also completes the flow.
+        device.errorCode = true
+        received.clear()
+        assertFailsWith<McuMgrErrorException> {
+            withTimeout(5_000) { tail.entries("log", follow = true).collect { received.add(it.index) } }
+        }
+        assertEquals(listOf<Long>(0, 1, 2), received)
+        assertEquals(2, device.requests.count { it == 3L })
+    }
+}
@@ -0,0 +1,37 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class PeriodicSamplerTest {
+
+    @Test
+    fun `sampling continues after a failed sample until stopped`() {
+        val samples = AtomicInteger()
+        val errors = AtomicInteger()
+        val latch = CountDownLatch(3)
+        val sampler = PeriodicSampler(10, { errors.incrementAndGet() }) {
+            val sample = samples.incrementAndGet()
+            latch.countDown()
+            if (sample == 1) throw IllegalStateException("First sample fails")
+        }
+
+        sampler.start()
+        assertTrue(sampler.isRunning)
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        sampler.stop()
+        assertFalse(sampler.isRunning)
+        assertEquals(1, errors.get())
+
+        // No more samples are taken after stopping. A sample in progress may still complete.
+        Thread.sleep(20)
+        val count = samples.get()
+        Thread.sleep(50)
+        assertEquals(count, samples.get())
+    }
+}
@@ -0,0 +1,32 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class RingIndexTest {
+
+    @Test
+    fun `oldest entries are overwritten when capacity is reached`() {
+        val ring = RingIndex(3)
+        val values = IntArray(3)
+        for (value in 1..5) {
+            values[ring.head] = value
+            ring.advance()
+        }
+
+        assertEquals(3, ring.size)
+        assertEquals(listOf(3, 4, 5), (0 until ring.size).map { values[ring.position(it)] })
+        assertFailsWith<IndexOutOfBoundsException> { ring.position(3) }
+    }
+
+    @Test
+    fun `only written entries are indexed`() {
+        val ring = RingIndex(3)
+        assertFailsWith<IndexOutOfBoundsException> { ring.position(0) }
+        ring.advance()
+        assertEquals(1, ring.size)
+        assertEquals(0, ring.position(0))
+        assertFailsWith<IllegalArgumentException> { RingIndex(0) }
+    }
+}
@@ -0,0 +1,153 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.McuMgrErrorCode
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.exception.McuMgrErrorException
+import no.nordicsemi.android.mcumgr.managers.SettingsManager
+import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.buildMockErrorResponse
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.util.concurrent.Executor
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertIs
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SettingsCacheTest {
+
+    /**
+     * The settings group of the device. Settings listed in [rejected] are not written,
+     * or read, and an error code is returned instead.
+     */
+    private class SettingsHandler : McuMgrHandler {
+        val stored = mutableMapOf<String, ByteArray>()
+        val rejected = mutableSetOf<String>()
+        var reads = 0
+        var commits = 0
+        var saves = 0
+        /** Called after a setting has been written. */
+        var onWrite: (String) -> Unit = {}
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val response = when (header.commandId) {
+                // Read or write, depending on the operation.
+                0 -> {
+                    val name = CBOR.getString(payload, "name")
+                    if (name in rejected) {
+                        return buildMockErrorResponse(McuMgrScheme.BLE, McuMgrErrorCode.IN_VALUE, header.toResponse(), responseType)
+                    }
+                    if (header.op == 2) {
+                        stored[name] = CBOR.getObject(payload, "val", ByteArray::class.java)
+                        onWrite(name)
+                        emptyMap<String, Any>()
+                    } else {
+                        reads++
+                        mapOf("val" to stored.getValue(name))
+                    }
+                }
+                2 -> emptyMap<String, Any>().also { commits++ }
+                3 -> emptyMap<String, Any>().also { saves++ }
+                else -> return buildMockErrorResponse(McuMgrScheme.BLE, McuMgrErrorCode.NOT_SUPPORTED, header.toResponse(), responseType)
+            }
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), CBOR.toBytes(response), responseType)
+        }
+    }
+
+    private val device = SettingsHandler()
+
+    // Callbacks are called on the test thread.
+    private val transport = MockBleMcuMgrTransport(
+        handler = device,
+        executor = Executor { it.run() },
+    )
+
+    private val cache = SettingsCache(SettingsManager(transport))
+
+    private fun SettingsCache.flushSync(): SettingsResult {
+        var result: SettingsResult? = null
+        flush { result = it }
+        return result!!
+    }
+
+    private fun SettingsCache.readSync(vararg names: String): SettingsResult {
+        var result: SettingsResult? = null
+        read(names.toList()) { result = it }
+        return result!!
+    }
+
+    private fun SettingsCache.syncSync(): SettingsResult {
+        var result: SettingsResult? = null
+        sync { result = it }
+        return result!!
+    }
+
+    @Test
+    fun `rejected writes stay dirty and are not committed`() {
+        device.rejected.add("b")
+        cache.write("a", byteArrayOf(1))
+        cache.write("b", byteArrayOf(2))
+
+        val failure = assertIs<SettingsResult.Failure>(cache.flushSync())
+        assertIs<McuMgrErrorException>(failure.throwable)
+        assertEquals(setOf("b"), cache.dirtyNames)
+        assertContentEquals(byteArrayOf(1), device.stored["a"])
+        // Nothing is committed after a partial failure.
+        assertEquals(0, device.commits)
+        assertEquals(0, device.saves)
+
+        device.rejected.clear()
+        val success = assertIs<SettingsResult.Success>(cache.flushSync())
+        assertEquals(setOf("b"), success.values.keys)
+        assertTrue(!cache.isDirty)
+        assertEquals(1, device.commits)
+        assertEquals(1, device.saves)
+    }
+
+    @Test
+    fun `settings written again during a flush stay dirty`() {
+        device.onWrite = { name ->
+            if (name == "a") cache.write("a", byteArrayOf(2))
+        }
+        cache.write("a", byteArrayOf(1))
+
+        assertIs<SettingsResult.Success>(cache.flushSync())
+        assertContentEquals(byteArrayOf(1), device.stored["a"])
+        assertEquals(setOf("a"), cache.dirtyNames)
+        assertContentEquals(byteArrayOf(2), cache.get("a"))
+
+        device.onWrite = {}
+        assertIs<SettingsResult.Success>(cache.flushSync())
+        assertContentEquals(byteArrayOf(2), device.stored["a"])
+        assertTrue(!cache.isDirty)
+    }
+
+    @Test
+    fun `sync reads cached settings from the device again`() {
+        device.stored["a"] = byteArrayOf(1)
+        assertIs<SettingsResult.Success>(cache.readSync("a"))
+        // The cached value is returned without a request.
+        assertIs<SettingsResult.Success>(cache.readSync("a"))
+        assertEquals(1, device.reads)
+
+        device.stored["a"] = byteArrayOf(2)
+        val success = assertIs<SettingsResult.Success>(cache.syncSync())
+        assertContentEquals(byteArrayOf(2), success.values["a"])
+        assertEquals(2, device.reads)
+
+        // Values are cleared before reading, so a failed sync leaves nothing stale behind.
+        device.rejected.add("a")
+        assertIs<SettingsResult.Failure>(cache.syncSync())
+        assertNull(cache.get("a"))
+    }
+}
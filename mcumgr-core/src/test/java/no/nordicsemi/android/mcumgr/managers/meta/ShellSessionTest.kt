@@ -0,0 +1,117 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrScheme
+import no.nordicsemi.android.mcumgr.managers.ShellManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.mock.OverrideHandler
+import no.nordicsemi.android.mcumgr.mock.buildMockResponse
+import no.nordicsemi.android.mcumgr.mock.toResponse
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import java.util.concurrent.Executor
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class ShellSessionTest {
+
+    /**
+     * Records received commands. The "sleep" command delays the response by the given number
+     * of milliseconds; other commands return their arguments joined with spaces.
+     */
+    private class ExecHandler : OverrideHandler {
+        override val groupId = 9
+        override val commandId = 0
+
+        val received = mutableListOf<List<String>>()
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val argv = CBOR.getObject(payload, "argv", Array<String>::class.java).toList()
+            synchronized(received) { received.add(argv) }
+            if (argv[0] == "sleep") {
+                Thread.sleep(argv[1].toLong())
+            }
+            val response = mapOf("o" to argv.drop(1).joinToString(" "), "ret" to 0)
+            return buildMockResponse(McuMgrScheme.BLE, header.toResponse(), CBOR.toBytes(response), responseType)
+        }
+    }
+
+    /**
+     * Holds posted runnables until the test runs them.
+     */
+    private class ManualExecutor : Executor {
+        val pending = mutableListOf<Runnable>()
+
+        override fun execute(command: Runnable) {
+            pending.add(command)
+        }
+    }
+
+    private val exec = ExecHandler()
+
+    private fun session(executor: Executor) = ShellSession(
+        ShellManager(MockBleMcuMgrTransport(handlerOverrides = listOf(exec), executor = executor)),
+        windowCapacity = 3,
+    )
+
+    @Test
+    fun `lines are split at whitespace outside quotes and empty lines are skipped`() {
+        var results: List<ShellCommandResult>? = null
+        session(Executor { it.run() }).run(
+            listOf(
+                "echo  hello   world",
+                "",
+                "   ",
+                "echo \"hello  world\" \"\"",
+                "log\tlevel \"a b\"c",
+            )
+        ) { results = it }
+
+        val expected = listOf(
+            listOf("echo", "hello", "world"),
+            listOf("echo", "hello  world", ""),
+            listOf("log", "level", "a bc"),
+        )
+        assertEquals(expected, exec.received)
+        assertEquals(expected, results!!.map { it.argv })
+        assertEquals(listOf(0, 1, 2), results!!.map { it.index })
+        assertEquals("hello  world ", results!![1].output)
+    }
+
+    @Test
+    fun `latency is measured for each command`() {
+        var results: List<ShellCommandResult>? = null
+        session(Executor { it.run() }).run(listOf("sleep 50", "echo", "sleep 100")) { results = it }
+
+        val latencies = results!!.map { it.latency }
+        assertTrue(latencies[0] >= 50, "Latency: ${latencies[0]}")
+        assertTrue(latencies[1] < 50, "Latency: ${latencies[1]}")
+        assertTrue(latencies[2] >= 100, "Latency: ${latencies[2]}")
+        assertTrue(results!!.all { it.isSuccess })
+    }
+
+    @Test
+    fun `results are reported in script order`() {
+        val executor = ManualExecutor()
+        val reported = mutableListOf<Int>()
+        var results: List<ShellCommandResult>? = null
+        val script = (0 until 8).map { "echo $it" }
+        session(executor).run(script, { reported.add(it.index) }) { results = it }
+
+        // Deliver responses of the commands in flight in reverse order.
+        var maxInFlight = 0
+        while (executor.pending.isNotEmpty()) {
+            maxInFlight = maxOf(maxInFlight, executor.pending.size)
+            executor.pending.removeAt(executor.pending.lastIndex).run()
+        }
+
+        assertEquals(3, maxInFlight)
+        assertEquals((0 until 8).toList(), reported)
+        assertEquals((0 until 8).map { "$it" }, results!!.map { it.output })
+    }
+}
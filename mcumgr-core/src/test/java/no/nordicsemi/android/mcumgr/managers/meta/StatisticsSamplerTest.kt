@@ -0,0 +1,54 @@
+package no.nordicsemi.android.mcumgr.managers.meta
+
+import no.nordicsemi.android.mcumgr.managers.StatsManager
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import org.junit.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+
+class StatisticsSamplerTest {
+
+    @Test
+    fun `time series overwrites oldest entries`() {
+        val series = StatTimeSeries(capacity = 3, interval = 1000)
+        (1..5).forEach { i -> series.append(i * 1000L, mapOf("tx" to i.toLong())) }
+
+        assertEquals(3, series.size)
+        assertEquals(3000, series.timestamp(0))
+        assertEquals(5, series.delta("tx", 2))
+        assertEquals(4.0, series.rate("tx", 1))
+
+        val timestamps = LongArray(2)
+        val deltas = LongArray(2)
+        assertEquals(2, series.read("tx", 1, timestamps, deltas))
+        assertContentEquals(longArrayOf(4000, 5000), timestamps)
+        assertContentEquals(longArrayOf(4, 5), deltas)
+        assertEquals(1, series.indexOf(3500))
+    }
+
+    @Test
+    fun `sampler records increases and downsamples them`() {
+        val sampler = StatisticsSampler(
+            StatsManager(MockBleMcuMgrTransport()),
+            listOf("smp"),
+            listOf(SamplingTier(1_000, 10), SamplingTier(3_000, 10)),
+        )
+        // Counter values at 0, 1, ..., 7 s. The device is reset before 5 s.
+        val values = longArrayOf(10, 12, 15, 15, 20, 3, 6, 10)
+        values.forEachIndexed { i, value ->
+            sampler.onSample(i * 1000L, mapOf("smp" to mapOf("rx" to value)))
+        }
+
+        val raw = sampler.series("smp")!!
+        val deltas = LongArray(raw.size)
+        raw.read("rx", 0, null, deltas)
+        assertContentEquals(longArrayOf(2, 3, 0, 5, 3, 3, 4), deltas)
+
+        // Buckets starting at 0 and 3 s are complete, the one starting at 6 s is pending.
+        val downsampled = sampler.series("smp", 1)!!
+        assertEquals(2, downsampled.size)
+        assertEquals(0, downsampled.timestamp(0))
+        assertEquals(5, downsampled.delta("rx", 0))
+        assertEquals(8, downsampled.delta("rx", 1))
+    }
+}
@@ -7,15 +7,16 @@ import no.nordicsemi.android.mcumgr.McuMgrScheme
 import no.nordicsemi.android.mcumgr.McuMgrTransport
 import no.nordicsemi.android.mcumgr.exception.McuMgrException
 import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import java.util.concurrent.CopyOnWriteArrayList
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 
 class MockBleMcuMgrTransport(
     private val handler: McuMgrHandler? = null,
-    private val handlerOverrides: List<OverrideHandler> = listOf()
+    private val handlerOverrides: List<OverrideHandler> = listOf(),
+    private val executor: Executor = Executors.newSingleThreadExecutor(),
 ): McuMgrTransport {
-
-    private val executor: Executor = Executors.newSingleThreadExecutor()
+    private val observers = CopyOnWriteArrayList<McuMgrTransport.ConnectionObserver>()
 
     override fun getScheme(): McuMgrScheme {
         return McuMgrScheme.BLE
@@ -58,19 +59,35 @@ class MockBleMcuMgrTransport(
         }
     }
 
-    /*
-     * Unimplemented.
+    override fun addObserver(observer: McuMgrTransport.ConnectionObserver) {
+        observers.add(observer)
+    }
+
+    override fun removeObserver(observer: McuMgrTransport.ConnectionObserver) {
+        observers.remove(observer)
+    }
+
+    /**
+     * The mock device is always connected.
      */
-    override fun addObserver(observer: McuMgrTransport.ConnectionObserver) =
-        TODO("Not yet implemented")
+    override fun connect(callback: McuMgrTransport.ConnectionCallback?) {
+        callback?.onConnected()
+    }
 
-    override fun removeObserver(observer: McuMgrTransport.ConnectionObserver) =
-        TODO("Not yet implemented")
+    /**
+     * Notifies the connection observers that the device has connected.
+     */
+    fun simulateConnected() = observers.forEach { it.onConnected() }
 
-    override fun release() =
-        TODO("Not yet implemented")
+    /**
+     * Notifies the connection observers that the device has disconnected.
+     */
+    fun simulateDisconnected() = observers.forEach { it.onDisconnected() }
 
-    override fun connect(callback: McuMgrTransport.ConnectionCallback?) =
+    /*
+     * Unimplemented.
+     */
+    override fun release() =
         TODO("Not yet implemented")
 
     override fun changeMode(name: String, callback: McuMgrTransport.ModeChangeCallback?): Boolean {
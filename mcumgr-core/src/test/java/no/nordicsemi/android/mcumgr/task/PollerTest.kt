@@ -0,0 +1,34 @@
+package no.nordicsemi.android.mcumgr.task
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class PollerTest {
+
+    @Test
+    fun `poll backs off until a value is returned`() = runBlocking {
+        val poller = Poller(minInterval = 10, maxInterval = 40)
+        val timestamps = mutableListOf<Long>()
+
+        val result = poller.poll(timeout = 5000) {
+            timestamps.add(System.currentTimeMillis())
+            if (timestamps.size == 5) "done" else null
+        }
+
+        assertEquals("done", result)
+        assertEquals(5, poller.pollCount)
+        // Intervals: 10, 20, 40, 40 ms.
+        val intervals = timestamps.zipWithNext { a, b -> b - a }
+        assert(intervals[1] >= 20 && intervals[2] >= 40 && intervals[3] >= 40)
+    }
+
+    @Test
+    fun `poll returns null after timeout`() = runBlocking {
+        val poller = Poller(minInterval = 10, maxInterval = 10)
+
+        assertNull(poller.poll<String>(timeout = 100) { null })
+        assert(poller.pollCount in 1..10)
+    }
+}
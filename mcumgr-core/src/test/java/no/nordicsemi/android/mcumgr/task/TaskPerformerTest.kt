@@ -0,0 +1,67 @@
+package no.nordicsemi.android.mcumgr.task
+
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+
+class TaskPerformerTest {
+
+    private class Performer : TaskPerformer<Unit, String>() {
+        val started = mutableListOf<String?>()
+        var error: McuMgrException? = null
+
+        override fun onTaskStarted(previousTask: Task<Unit, String>?, newTask: Task<Unit, String>) {
+            started.add(newTask.state)
+        }
+
+        override fun onTaskFailed(task: Task<Unit, String>, error: McuMgrException) {
+            this.error = error
+        }
+    }
+
+    private open class Step(
+        private val name: String,
+        private val priority: Int,
+        private val next: List<Task<Unit, String>> = emptyList(),
+    ) : Task<Unit, String>() {
+        override fun getPriority() = priority
+        override fun getState() = name
+        override fun start(performer: TaskManager<Unit, String>) {
+            next.forEach { performer.enqueue(it) }
+            performer.onTaskCompleted(this)
+        }
+    }
+
+    @Test
+    fun `tasks with the same priority run in order of enqueueing`() {
+        val performer = Performer()
+        val tasks = listOf(Step("b", 2), Step("c", 1), Step("d", 2), Step("e", 2))
+        performer.start(MockBleMcuMgrTransport(), Unit, Step("a", 0, tasks))
+
+        assertEquals(listOf("a", "c", "b", "d", "e"), performer.started)
+    }
+
+    @Test
+    fun `prerequisites take precedence over priority`() {
+        val performer = Performer()
+        val first = Step("b", 5)
+        val second = Step("c", 1).apply { dependsOn(first) }
+        performer.start(MockBleMcuMgrTransport(), Unit, Step("a", 0, listOf(second, first)))
+
+        assertEquals(listOf("a", "b", "c"), performer.started)
+    }
+
+    @Test
+    fun `circular dependencies fail`() {
+        val performer = Performer()
+        val first = Step("b", 1)
+        val second = Step("c", 1)
+        first.dependsOn(second)
+        second.dependsOn(first)
+        performer.start(MockBleMcuMgrTransport(), Unit, Step("a", 0, listOf(first, second)))
+
+        assertNotNull(performer.error)
+    }
+}
@@ -0,0 +1,64 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.runBlocking
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImage
+import no.nordicsemi.android.mcumgr.managers.SUITManager
+import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.suit.McuMgrUploadResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertEquals
+
+internal class CacheStreamUploaderTest {
+
+    @Test
+    fun `partitions are streamed back to back`() {
+        val images = listOf(
+            CacheImage(1, ByteArray(10_000) { 1 }),
+            CacheImage(2, ByteArray(5_000) { 2 }),
+            CacheImage(3, ByteArray(7_000) { 3 }),
+        )
+        val mtu = 245
+
+        // The device writes to the partition given in the first chunk.
+        val received = mutableMapOf<Int, Int>()
+        var partition = -1
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                val map = CBOR.toObjectMap(payload)
+                val off = map["off"] as Int
+                val chunk = map["data"] as ByteArray
+                if (off == 0) {
+                    partition = map["target_id"] as Int
+                    received[partition] = 0
+                }
+                val current = received.getValue(partition)
+                if (off == current) {
+                    received[partition] = current + chunk.size
+                }
+                return McuMgrUploadResponse()
+                    .apply {
+                        this.off = received.getValue(partition)
+                        this.rc = 0
+                    } as T
+            }
+        }
+
+        val manager = SUITManager(MockBleMcuMgrTransport(handler))
+        manager.setUploadMtu(mtu)
+        val uploader = CacheStreamUploader(manager, images, 4, 1)
+        runBlocking { uploader.upload() }
+
+        images.forEach { image ->
+            assertEquals(image.image.size, received[image.partitionId])
+        }
+        assertEquals(images.map { it.partitionId }, uploader.timings.map { it.partition })
+    }
+}
@@ -0,0 +1,48 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+internal class ProgressTrackerTest {
+
+    @Test
+    fun `updates within the interval are coalesced`() {
+        val tracker = ProgressTracker(minIntervalMillis = 100)
+
+        assertTrue(tracker.update(0, 1000, 0))
+        assertFalse(tracker.update(100, 1000, 50))
+        assertTrue(tracker.update(200, 1000, 100))
+        assertFalse(tracker.update(300, 1000, 150))
+        // The last update is always reported.
+        assertTrue(tracker.update(1000, 1000, 160))
+    }
+
+    @Test
+    fun `throughput and remaining time are calculated`() {
+        val tracker = ProgressTracker(minIntervalMillis = 0, smoothingFactor = 0.5f)
+
+        tracker.update(0, 1000, 0)
+        tracker.update(100, 1000, 100)
+        assertEquals(1000f, tracker.throughput)
+        assertEquals(1000f, tracker.averageThroughput)
+        assertEquals(900L, tracker.remainingTime)
+
+        tracker.update(400, 1000, 200)
+        assertEquals(3000f, tracker.throughput)
+        assertEquals(2000f, tracker.averageThroughput)
+        assertEquals(300L, tracker.remainingTime)
+    }
+
+    @Test
+    fun `new transfer resets the tracker`() {
+        val tracker = ProgressTracker(minBytes = 100)
+
+        tracker.update(0, 1000, 0)
+        tracker.update(500, 1000, 100)
+        assertTrue(tracker.update(0, 2000, 200))
+        assertEquals(0f, tracker.averageThroughput)
+        assertEquals(-1L, tracker.remainingTime)
+    }
+}
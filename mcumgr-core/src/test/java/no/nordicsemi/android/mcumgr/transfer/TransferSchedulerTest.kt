@@ -0,0 +1,144 @@
+package no.nordicsemi.android.mcumgr.transfer
+
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import no.nordicsemi.android.mcumgr.McuMgrHeader
+import no.nordicsemi.android.mcumgr.McuMgrTransport
+import no.nordicsemi.android.mcumgr.exception.McuMgrException
+import no.nordicsemi.android.mcumgr.managers.FsManager
+import no.nordicsemi.android.mcumgr.managers.ImageManager
+import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
+import no.nordicsemi.android.mcumgr.mock.MockBleMcuMgrTransport
+import no.nordicsemi.android.mcumgr.response.McuMgrResponse
+import no.nordicsemi.android.mcumgr.response.UploadResponse
+import no.nordicsemi.android.mcumgr.util.CBOR
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+internal class TransferSchedulerTest {
+
+    /**
+     * Acknowledges every chunk and records the group of each request.
+     */
+    private class UploadHandler : McuMgrHandler {
+        val groups = mutableListOf<Int>()
+
+        override fun <T : McuMgrResponse> handle(
+            header: McuMgrHeader,
+            payload: ByteArray,
+            responseType: Class<T>
+        ): T {
+            val map = CBOR.toObjectMap(payload)
+            val off = map["off"] as Int
+            val chunk = map["data"] as ByteArray
+            synchronized(groups) { groups.add(header.groupId) }
+
+            val response = responseType.getDeclaredConstructor().newInstance()
+            (response as UploadResponse).apply {
+                this.off = off + chunk.size
+                this.rc = 0 // Success
+            }
+            return response
+        }
+    }
+
+    private class Callback(private val results: Channel<String>, private val name: String) : UploadCallback {
+        val progress = mutableListOf<Int>()
+
+        override fun onUploadProgressChanged(current: Int, total: Int, timestamp: Long) {
+            progress.add(current)
+        }
+        override fun onUploadFailed(error: McuMgrException) { results.trySend("$name failed") }
+        override fun onUploadCanceled() { results.trySend("$name canceled") }
+        override fun onUploadCompleted() { results.trySend(name) }
+    }
+
+    private suspend fun awaitStarted(transport: McuMgrTransport) {
+        while (TransferScheduler.forTransport(transport).pendingCount > 0) {
+            delay(1)
+        }
+    }
+
+    @Test
+    fun `transfers on managers sharing a transport are executed sequentially`() = runBlocking {
+        val handler = UploadHandler()
+        val transport = MockBleMcuMgrTransport(handler)
+        val fs = FsManager(transport).apply { setUploadMtu(128) }
+        val im = ImageManager(transport).apply { setUploadMtu(128) }
+        val results = Channel<String>(Channel.UNLIMITED)
+
+        im.imageUpload(ByteArray(2000), Callback(results, "image"))
+        fs.fileUpload("/lfs/file", ByteArray(2000), Callback(results, "file"))
+
+        withTimeout(10_000) {
+            assertEquals("image", results.receive())
+            assertEquals("file", results.receive())
+        }
+        // All image chunks must have been sent before the first file chunk.
+        val groups = handler.groups
+        assertEquals(groups.sortedBy { it != im.groupId }, groups)
+    }
+
+    @Test
+    fun `queued transfer with higher priority is executed first`() = runBlocking {
+        val handler = UploadHandler()
+        val transport = MockBleMcuMgrTransport(handler)
+        val fs = FsManager(transport).apply { setUploadMtu(128) }
+        val results = Channel<String>(Channel.UNLIMITED)
+
+        val first = fs.fileUpload("/lfs/first", ByteArray(2000), Callback(results, "first"))
+        first.pause()
+        awaitStarted(transport)
+        fs.fileUpload("/lfs/low", ByteArray(200), Callback(results, "low"))
+        fs.transferPriority = TransferScheduler.Priority.HIGH
+        fs.fileUpload("/lfs/high", ByteArray(200), Callback(results, "high"))
+        first.resume()
+
+        withTimeout(10_000) {
+            assertEquals("first", results.receive())
+            assertEquals("high", results.receive())
+            assertEquals("low", results.receive())
+        }
+    }
+
+    @Test
+    fun `cancelling a queued transfer removes it from the queue`() = runBlocking {
+        val transport = MockBleMcuMgrTransport(UploadHandler())
+        val fs = FsManager(transport).apply { setUploadMtu(128) }
+        val results = Channel<String>(Channel.UNLIMITED)
+
+        val first = fs.fileUpload("/lfs/first", ByteArray(2000), Callback(results, "first"))
+        first.pause()
+        awaitStarted(transport)
+        val second = fs.fileUpload("/lfs/second", ByteArray(200), Callback(results, "second"))
+        second.cancel()
+        first.resume()
+
+        withTimeout(10_000) {
+            assertEquals("second canceled", results.receive())
+            assertEquals("first", results.receive())
+        }
+        assertEquals(0, TransferScheduler.forTransport(transport).pendingCount)
+    }
+
+    @Test
+    fun `progress of each chunk is reported by default`() = runBlocking {
+        val transport = MockBleMcuMgrTransport(UploadHandler())
+        val fs = FsManager(transport).apply { setUploadMtu(128) }
+        val results = Channel<String>(Channel.UNLIMITED)
+        val callback = Callback(results, "file")
+
+        fs.fileUpload("/lfs/file", ByteArray(2000), callback)
+
+        withTimeout(10_000) {
+            assertEquals("file", results.receive())
+        }
+        // Chunks are smaller than the MTU, so there are more than 2000 / 128 of them.
+        assertTrue(callback.progress.size > 2000 / 128)
+        assertEquals(callback.progress.sorted().distinct(), callback.progress)
+        assertEquals(2000, callback.progress.last())
+    }
+}
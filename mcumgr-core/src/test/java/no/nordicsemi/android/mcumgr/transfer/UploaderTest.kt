@@ -1,6 +1,7 @@
 package no.nordicsemi.android.mcumgr.transfer
 
 import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
 import no.nordicsemi.android.mcumgr.McuMgrHeader
 import no.nordicsemi.android.mcumgr.managers.ImageManager
 import no.nordicsemi.android.mcumgr.mock.McuMgrHandler
@@ -80,5 +81,90 @@ internal class UploaderTest {
         assertEquals(data.size, received)
     }
 
-}
+    @Test
+    fun `test Uploader retransmits only missing chunks on a lossy link`() {
+        // Parameters
+        val data = ByteArray(100000) { it.toByte() }
+        val mtu = 245
+        val windowCapacity = 4
+
+        // Test values
+        val received = ByteArray(data.size)
+        var expected = 0
+        var requests = 0
+        var sent = 0
+        var dropped = 0
+
+        // The handler simulates a device which accepts chunks only in order
+        // and drops every 10th request.
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                val map = CBOR.toObjectMap(payload)
+                val off = map["off"] as Int
+                val chunk = map["data"] as ByteArray
+                sent += chunk.size
+
+                if (++requests % 10 == 0) {
+                    dropped++
+                } else if (off == expected) {
+                    chunk.copyInto(received, off)
+                    expected += chunk.size
+                }
+
+                return McuMgrImageUploadResponse()
+                    .apply {
+                        this.off = expected
+                        this.rc = 0 // Success
+                    } as T
+            }
+        }
+
+        // Test
+        val im = ImageManager(MockBleMcuMgrTransport(handler))
+        im.setUploadMtu(mtu)
+        val uploader = ImageUploader(im, data, 0, windowCapacity, 1)
+        runBlocking { uploader.upload() }
+
+        assertTrue { data.contentEquals(received) }
+        // Each dropped chunk may cause at most the rest of the window to be resent.
+        val redundant = sent - data.size
+        assertTrue("Too many bytes resent: $redundant, dropped: $dropped") {
+            redundant <= dropped * (windowCapacity + 1) * mtu
+        }
+    }
+
+    @Test
+    fun `test Uploader sends a single chunk of empty data`() {
+        // Test values
+        val requests = mutableListOf<Map<String, Any>>()
 
+        val handler = object : McuMgrHandler {
+            override fun <T : McuMgrResponse> handle(
+                header: McuMgrHeader,
+                payload: ByteArray,
+                responseType: Class<T>
+            ): T {
+                requests.add(CBOR.toObjectMap(payload))
+                return McuMgrImageUploadResponse()
+                    .apply {
+                        this.off = 0
+                        this.rc = 0 // Success
+                    } as T
+            }
+        }
+
+        // Test
+        val im = ImageManager(MockBleMcuMgrTransport(handler))
+        val uploader = ImageUploader(im, ByteArray(0), 0, 4, 1)
+        runBlocking { withTimeout(5_000) { uploader.upload() } }
+
+        assertEquals(1, requests.size)
+        assertEquals(0, requests[0]["off"])
+        assertEquals(0, requests[0]["len"])
+        assertEquals(0, (requests[0]["data"] as ByteArray).size)
+    }
+}
@@ -24,6 +24,15 @@ import no.nordicsemi.android.mcumgr.dfu.suit.model.CacheImageSet;
 import no.nordicsemi.android.mcumgr.exception.McuMgrException;
 import timber.log.Timber;
 
+/**
+ * A DFU package loaded from memory.
+ * <p>
+ * The library provides {@link no.nordicsemi.android.mcumgr.dfu.DfuPackage}, which reads entries
+ * lazily from a file. The sample does not use it, as the package is selected using
+ * the Storage Access Framework and is already loaded into a byte array, which is also used to
+ * try other formats (MCUboot image, SUIT envelope). Copying it to a file only to read it again
+ * would not save any memory.
+ */
 public final class ZipPackage {
 	private static final String MANIFEST = "manifest.json";
 